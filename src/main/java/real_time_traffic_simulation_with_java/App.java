@@ -86,8 +86,9 @@ public class App {
 
                 mainWindow.setOnCloseRequest(e -> {
                     try {
-                        simulationEngine.stopSimulation();
+                        // Stop the simulation driver first, so no step is running while the connection closes
                         mainWindow.stopAnimationTimer();
+                        simulationEngine.stopSimulation();
                     } catch (Exception ex) {
                         ex.printStackTrace();
                     }
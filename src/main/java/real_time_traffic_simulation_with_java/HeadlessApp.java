@@ -0,0 +1,200 @@
+package real_time_traffic_simulation_with_java;
+
+import java.io.IOException;
+import java.util.Locale;
+import java.util.logging.FileHandler;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.logging.SimpleFormatter;
+
+import real_time_traffic_simulation_with_java.alias.Metrics;
+import real_time_traffic_simulation_with_java.alias.Path;
+import real_time_traffic_simulation_with_java.cores.SimulationEngine;
+import real_time_traffic_simulation_with_java.cores.StepSnapshot;
+import real_time_traffic_simulation_with_java.tools.BackpressurePolicy;
+import real_time_traffic_simulation_with_java.tools.ExportingFiles;
+import real_time_traffic_simulation_with_java.wrapper.SumoTransport;
+
+/**
+ * Headless entry point for batch runs: drives the SimulationEngine as fast as SUMO allows, without any window. <br>
+ * No JavaFX class is loaded: map objects (EdgeData, VehicleData, ...) are never built,
+ *      the engine only steps, tracks congestion and publishes snapshots. Congestion starts and clears are logged. <br>
+ * Usage: HeadlessApp [--steps N] [--until SECONDS] [--report-every N] [--no-csv] [--csv] [--backpressure POLICY] [--transport SPEC] <br>
+ * Without --steps or --until the run lasts until Sumo closes the connection.
+ *      Metrics are printed every --report-every steps (default 100), the trace export is streamed like in the GUI
+ *      (--no-csv to disable it, --csv to also convert it to CSV on exit),
+ *      when the export falls behind the run waits for it (--backpressure DROP, BLOCK, SPILL or COALESCE to change that),
+ *      and the number of steps per second is printed on exit.
+ *      --transport selects how Sumo is reached ("sumo", "remote:host:port[:netfile]" or "fake", see {@link SumoTransport#fromSpec(String)}),
+ *      default -Dsumo.transport.
+ */
+public class HeadlessApp {
+    private static final Logger LOGGER = Logger.getLogger(HeadlessApp.class.getName());
+    private static final Logger ROOT_LOGGER = Logger.getLogger("");
+
+    /** Stop after this number of steps, -1 for no limit */
+    private long maxSteps = -1;
+    /** Stop once simulation time reaches this horizon (s), -1 for no limit */
+    private double timeHorizon = -1;
+    /** Print metrics every n steps */
+    private long reportEvery = 100;
+    /** Stream the trace export */
+    private boolean exportCSV = true;
+    /** Convert the trace to CSV on exit */
+    private boolean convertCSV = false;
+    /** Export backpressure policy: no frame has to be kept smooth here, so the run waits for the writer by default */
+    private BackpressurePolicy backpressure = BackpressurePolicy.BLOCK;
+    /** How Sumo is reached */
+    private String transport = Metrics.SUMO_TRANSPORT;
+
+    /**
+     * The headless entry point
+     * @param args the command line arguments, see class documentation
+    */
+    public static void main(String[] args) {
+        HeadlessApp app = new HeadlessApp();
+        try {
+            app.parseArguments(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println("Usage: HeadlessApp [--steps N] [--until SECONDS] [--report-every N] [--no-csv] [--csv] [--backpressure POLICY] [--transport SPEC]");
+            System.exit(2);
+        }
+        setupLogger();
+        System.exit(app.run());
+    }
+
+
+    /**
+     * Run the simulation until the step limit, the time horizon or the end of the connection
+     * @return exit code, 0 on success
+     */
+    private int run() {
+        SimulationEngine engine;
+        try {
+            engine = new SimulationEngine(SumoTransport.fromSpec(this.transport));
+        } catch (Exception e) {
+            LOGGER.log(Level.SEVERE, "Failed to start the simulation engine.", e);
+            return 1;
+        }
+        ExportingFiles exportingFiles = this.exportCSV ? new ExportingFiles(this.backpressure) : null;
+        // Congestion starts and clears are written to the log as they happen
+        engine.addCongestionListener(event -> LOGGER.log(Level.INFO, String.format(Locale.ROOT,
+                "Congestion %s on edge %s at %.1f s%s", event.type(), event.edgeID(), event.time(),
+                event.detectors().isEmpty() ? "" : " (" + event.detectors() + ")")));
+
+        long steps = 0;
+        long start = System.nanoTime();
+        long lastReport = start;
+        long lastReportSteps = 0;
+        try {
+            while (this.maxSteps < 0 || steps < this.maxSteps) {
+                engine.stepSimulation();
+                steps++;
+                StepSnapshot snapshot = engine.getSnapshot();
+                if (exportingFiles != null) {
+                    exportingFiles.queueCSV(engine.dataForCSV());
+                }
+                if (Thread.currentThread().isInterrupted()) {
+                    LOGGER.log(Level.WARNING, "Headless run interrupted.");
+                    break;
+                }
+                if (steps % this.reportEvery == 0) {
+                    long now = System.nanoTime();
+                    System.out.println(String.format(Locale.ROOT,
+                        "step %d  time %.1f s  vehicles %d  congested edges %d  %.1f steps/s",
+                        steps, snapshot.getTime(), snapshot.getVehicleCount(), engine.getCongestedEdgeCount(),
+                        (steps - lastReportSteps) / ((now - lastReport) / 1e9)));
+                    lastReport = now;
+                    lastReportSteps = steps;
+                }
+                if (this.timeHorizon >= 0 && snapshot.getTime() >= this.timeHorizon) {
+                    break;
+                }
+            }
+        } catch (IllegalStateException e) {
+            LOGGER.log(Level.INFO, "Simulation connection closed, headless run ended.");
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        engine.stopSimulation();
+        if (exportingFiles != null) {
+            exportingFiles.shutdown();
+        }
+        String summary = String.format(Locale.ROOT, "Headless run: %d steps in %.2f s, %.1f steps/s, simulation time %.1f s.",
+                                        steps, seconds, seconds > 0 ? steps / seconds : 0, engine.getSnapshot().getTime());
+        System.out.println(summary);
+        LOGGER.log(Level.INFO, summary);
+        if (exportingFiles != null) {
+            System.out.println("Trace export: " + exportingFiles.getTraceFilePath());
+            System.out.println("Export counters: " + exportingFiles.getCounters());
+            if (this.convertCSV) {
+                try {
+                    System.out.println("CSV export: " + exportingFiles.exportCSV());
+                } catch (IOException e) {
+                    LOGGER.log(Level.WARNING, "Failed to convert the trace to CSV.", e);
+                }
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Private helper method: read the command line options
+     */
+    private void parseArguments(String[] args) {
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--steps":
+                    this.maxSteps = Long.parseLong(value(args, ++i));
+                    break;
+                case "--until":
+                    this.timeHorizon = Double.parseDouble(value(args, ++i));
+                    break;
+                case "--report-every":
+                    this.reportEvery = Math.max(1, Long.parseLong(value(args, ++i)));
+                    break;
+                case "--no-csv":
+                    this.exportCSV = false;
+                    break;
+                case "--csv":
+                    this.convertCSV = true;
+                    break;
+                case "--backpressure":
+                    this.backpressure = BackpressurePolicy.valueOf(value(args, ++i).toUpperCase(Locale.ROOT));
+                    break;
+                case "--transport":
+                    this.transport = value(args, ++i);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+    }
+
+    /**
+     * Private helper method: value of an option, error if missing
+     */
+    private static String value(String[] args, int i) {
+        if (i >= args.length) {
+            throw new IllegalArgumentException("Missing value for option " + args[i - 1]);
+        }
+        return args[i];
+    }
+
+    /**
+     * private static method to setup logger configuration, same log file as the GUI
+    */
+    private static void setupLogger(){
+        try {
+            ROOT_LOGGER.setLevel(Level.INFO);
+
+            FileHandler fileHandler = new FileHandler(Path.LogFile, true);
+            fileHandler.setLevel(Level.INFO);
+            fileHandler.setFormatter(new SimpleFormatter());
+            ROOT_LOGGER.addHandler(fileHandler);
+        } catch (IOException e) {
+            ROOT_LOGGER.log(Level.SEVERE, "Failed to initialize logger", e);
+        }
+    }
+}
@@ -13,15 +13,6 @@ public final class Color {
     private Color(){
     }
 
-    /** Color to draw road */
-    public static final javafx.scene.paint.Color ROAD = javafx.scene.paint.Color.DIMGRAY;
-    /** Color to draw road border */
-    public static final javafx.scene.paint.Color ROAD_BORDER = javafx.scene.paint.Color.WHITE;
-    /** Color to draw lane divider */
-    public static final javafx.scene.paint.Color LANE_DIVIDER = javafx.scene.paint.Color.WHITE;
-    /** Color to draw congested road */
-    public static final javafx.scene.paint.Color CONGESTED_ROAD = javafx.scene.paint.Color.CHOCOLATE;
-
     /** Sumo Color(255,0,0,0) */
     public static final SumoColor RED = new SumoColor(255,0,0,0);
     /** Sumo Color(0,0,255,0) */
@@ -40,19 +31,34 @@ public final class Color {
      * @param color SumoColor instance
     */
     public static String colorToString(SumoColor color) {
-        if(color.r == RED.r && color.g == RED.g && color.b == RED.b){
+        return colorToString(toRGBA(color));
+    }
+
+    /** Convert color packed as 0xRRGGBBAA to its String representation, WHITE is default for unknown colors 
+     * @param rgba packed color, alpha is ignored
+    */
+    public static String colorToString(int rgba) {
+        int rgb = rgba >>> 8;
+        if(rgb == toRGBA(RED) >>> 8){
             return "RED";
-        } else if(color.r == BLUE.r && color.g == BLUE.g && color.b == BLUE.b){
+        } else if(rgb == toRGBA(BLUE) >>> 8){
             return "BLUE";
-        } else if(color.r == GREEN.r && color.g == GREEN.g && color.b == GREEN.b){
+        } else if(rgb == toRGBA(GREEN) >>> 8){
             return "GREEN";
-        } else if(color.r == BLACK.r && color.g == BLACK.g && color.b == BLACK.b){
+        } else if(rgb == toRGBA(BLACK) >>> 8){
             return "BLACK";
         } else {
             return "WHITE";
         }
     }
 
+    /** Pack SumoColor into an int 0xRRGGBBAA 
+     * @param color SumoColor instance
+    */
+    public static int toRGBA(SumoColor color) {
+        return (color.r & 0xFF) << 24 | (color.g & 0xFF) << 16 | (color.b & 0xFF) << 8 | (color.a & 0xFF);
+    }
+
     /** Convert String representation of color to SumoColor, WHITE is default for invalid input or unknown colors 
      * @param colorName Name of the color
     */
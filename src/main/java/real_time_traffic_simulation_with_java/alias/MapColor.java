@@ -0,0 +1,19 @@
+package real_time_traffic_simulation_with_java.alias;
+
+/**
+ * Utility class: Stores the JavaFX colors used to draw the map. <br>
+ * Kept apart from {@link Color}, which the simulation core also uses without JavaFX (headless runs).
+*/
+public final class MapColor {
+    private MapColor(){
+    }
+
+    /** Color to draw road */
+    public static final javafx.scene.paint.Color ROAD = javafx.scene.paint.Color.DIMGRAY;
+    /** Color to draw road border */
+    public static final javafx.scene.paint.Color ROAD_BORDER = javafx.scene.paint.Color.WHITE;
+    /** Color to draw lane divider */
+    public static final javafx.scene.paint.Color LANE_DIVIDER = javafx.scene.paint.Color.WHITE;
+    /** Color to draw congested road */
+    public static final javafx.scene.paint.Color CONGESTED_ROAD = javafx.scene.paint.Color.CHOCOLATE;
+}
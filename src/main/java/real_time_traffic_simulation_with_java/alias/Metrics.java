@@ -28,10 +28,22 @@ public final class Metrics {
     /** Gap between dashes in lane divider */
     public static final double LANE_DASHED_GAP = 4.0;
 
-    /** Threshold for high halting duration (in simulation seconds) to determine congestion */
+    /** Threshold for high halting duration (in simulation seconds) to determine congestion,
+     *      applies to every congestion detector: an edge is congested once a detector flags it this long in a row */
     public static final int HIGH_HALTING_DURATION_THRESHOLD = 60;
     /** Threshold for high halting rate (average halting vehicles/lane) */
     public static final double HIGH_HALTING_RATE_THRESHOLD = 5.0;
+    /** Threshold for high travel time index (estimated travel time / free-flow travel time at the speed limit) */
+    public static final double HIGH_TRAVEL_TIME_INDEX_THRESHOLD = 3.0;
+    /** Threshold for low speed ratio (average speed / speed limit) of an edge with vehicles */
+    public static final double LOW_SPEED_RATIO_THRESHOLD = 0.2;
+    /** Threshold for high occupancy (vehicle lengths / lane length, summed over the lanes) */
+    public static final double HIGH_OCCUPANCY_THRESHOLD = 0.5;
+    /** Congestion detectors, comma separated: "halting", "travelTime", "speedRatio", "occupancy".
+     *      Select at startup with -Dcongestion.detectors=halting,speedRatio */
+    public static final String CONGESTION_DETECTORS = System.getProperty("congestion.detectors", "halting");
+    /** Lowest speed (m/s) used to estimate edge travel time, so that a standing queue has a finite travel time */
+    public static final double MIN_TRAVEL_SPEED = 0.1;
 
     /** Hide delay for tooltips (in milliseconds) */
     public static final double HIDE_DELAY = 100;
@@ -44,9 +56,53 @@ public final class Metrics {
     public static final double MAX_ZOOM_LEVEL = 15.0;
     /** Minimum zoom level */
     public static final double MIN_ZOOM_LEVEL = 0.5;
+    /** Road layer level of detail: below this scale (pixels per meter) lane dividers are hidden */
+    public static final double ROAD_LOD_DETAIL_SCALE = 1.0;
+    /** Road layer level of detail: below this scale (pixels per meter) edges are merged into center line paths */
+    public static final double ROAD_LOD_MERGE_SCALE = 0.6;
 
-    /** Connection speed (in milliseconds): How often does the simulation update */
-    public static final int CONNECT_SPEED_MS = 200;
+    /** Cell size of the per-step vehicle position grid (in meters), for vehicle picking, culling and the edge filter */
+    public static final double VEHICLE_GRID_CELL_SIZE = 20.0;
+    /** Largest distance between cursor and vehicle center to pick the vehicle (in meters) */
+    public static final double PICK_RADIUS = DEFAULT_VEHICLE_LENGTH / 2;
+
+    /** Connection speed (in milliseconds): How often does the simulation update. 
+     *      Override with -Dsimulation.stepIntervalMs=..., 0 steps as fast as SUMO allows */
+    public static final int CONNECT_SPEED_MS = Integer.getInteger("simulation.stepIntervalMs", 200);
+
+    /** Transport to SUMO: "sumo" (start the local SUMO binary), "remote:host:port" (SUMO already running, network read
+     *      over TraCI), "remote:host:port:netfile" (same, network parsed from the net file it runs)
+     *      or "fake" (in-process fake TraCI server, no SUMO needed). Select at startup with -Dsumo.transport=fake */
+    public static final String SUMO_TRANSPORT = System.getProperty("sumo.transport", "sumo");
+    /** Port of the local SUMO binary. Override with -Dsumo.port=... */
+    public static final int SUMO_PORT = Integer.getInteger("sumo.port", 8813);
+    /** Fake TraCI server: junctions per side of the synthesized grid network. Override with -Dfake.gridSize=... */
+    public static final int FAKE_GRID_SIZE = Integer.getInteger("fake.gridSize", 30);
+    /** Fake TraCI server: vehicles running once all have departed. Override with -Dfake.vehicles=... */
+    public static final int FAKE_VEHICLES = Integer.getInteger("fake.vehicles", 2000);
+    /** Fake TraCI server: most vehicles departing in one step. Override with -Dfake.departuresPerStep=... */
+    public static final int FAKE_DEPARTURES_PER_STEP = Integer.getInteger("fake.departuresPerStep", 1000);
+    /** Fake TraCI server: latency added to every answer (in microseconds), like a remote SUMO. Override with -Dfake.latencyMicros=... */
+    public static final int FAKE_LATENCY_MICROS = Integer.getInteger("fake.latencyMicros", 0);
+    /** Fake TraCI server: time added to every step (in milliseconds), like a slow SUMO. Override with -Dfake.stepMillis=... */
+    public static final int FAKE_STEP_MILLIS = Integer.getInteger("fake.stepMillis", 0);
+    /** Fake TraCI server: seed of the synthesized network and traffic. Override with -Dfake.seed=... */
+    public static final long FAKE_SEED = Long.getLong("fake.seed", 42);
+
+    /** Vehicle renderer of the map: "nodes" (one shape per vehicle) or "canvas" (all vehicles drawn on one canvas). 
+     *      Select at startup with -Dmap.vehicleRenderer=canvas */
+    public static final String VEHICLE_RENDERER = System.getProperty("map.vehicleRenderer", "nodes");
+
+    /** Road renderer of the map: "nodes" (one shape per edge and junction) or "tiles" (pre-rendered image tiles).
+     *      Select at startup with -Dmap.roadRenderer=tiles */
+    public static final String ROAD_RENDERER = System.getProperty("map.roadRenderer", "nodes");
+    /** Size of a road tile (in pixels, square) */
+    public static final int ROAD_TILE_SIZE = 256;
+    /** Resolution of the finest road tile level (in meters per pixel), each coarser level doubles it */
+    public static final double ROAD_TILE_RESOLUTION = 1.0 / 16;
+    /** Memory cap of the road tile cache (in MB), least recently used tiles are dropped beyond it.
+     *      Override with -Dmap.tileCacheMB=... */
+    public static final int ROAD_TILE_CACHE_MB = Integer.getInteger("map.tileCacheMB", 64);
 
     /** Window pane width (in pixels) */
     public static final double WINDOW_WIDTH = 1400;
@@ -57,12 +113,39 @@ public final class Metrics {
 
     /** Dashboard panel width (in pixels) */
     public static final double DASHBOARD_WIDTH = 300;
+    /** Dashboard trends: window of the history shown (in simulation seconds) */
+    public static final double DASHBOARD_TREND_WINDOW = 60;
+
+    /** Memory budget of the in-memory metric history (in MB), sets how many steps are kept.
+     *      Override with -Dhistory.memoryBudgetMB=... */
+    public static final int HISTORY_MEMORY_BUDGET_MB = Integer.getInteger("history.memoryBudgetMB", 32);
 
     /** Header for CSV file to write */
     public static final String[] HEADERS = {"simulation step", "vehicle id","vehicle color", "vehicle speed",
                                                 "vehicle is on edge", "edge congestion status", 
                                                 "edge average speed", "edge density" };
+    /** CSV log buffer size (bytes), the buffer is written to the file when full */
+    public static final int CSV_BUFFER_SIZE = 1 << 20;
+    /** Log flush interval (ms): CSV rows and trace chunks reach the file at most this long after their step */
+    public static final long LOG_FLUSH_INTERVAL_MS = 1000;
+    /** Export queue capacity (steps waiting for the export worker) */
+    public static final int EXPORT_QUEUE_CAPACITY = 1000;
+    /** Export backpressure policy of the GUI when the queue is full: spill to disk, no step is lost and the stepper never waits */
+    public static final real_time_traffic_simulation_with_java.tools.BackpressurePolicy EXPORT_BACKPRESSURE =
+                                                        real_time_traffic_simulation_with_java.tools.BackpressurePolicy.SPILL;
+    /** Export ring capacity (steps): a sink can lag this far behind before the export waits for it */
+    public static final int EXPORT_RING_CAPACITY = 256;
+    /** Header for the per-edge aggregate CSV file */
+    public static final String[] EDGE_AGGREGATE_HEADERS = {"window start", "window end", "edge id", "steps",
+                                                            "mean vehicle count", "mean average speed", "mean density",
+                                                            "congested steps"};
+    /** Per-edge aggregate window length (s of simulation time) */
+    public static final double EDGE_AGGREGATE_WINDOW = 60;
+    /** Binary trace: a chunk is closed once it holds this number of rows (or after LOG_FLUSH_INTERVAL_MS) */
+    public static final int TRACE_CHUNK_ROWS = 1 << 16;
 
+    /** Number of PDF exports which may run at the same time, later ones wait in line */
+    public static final int PDF_EXPORT_THREADS = 2;
     /** PDF text font */
     public static final int PDF_FONT = com.lowagie.text.Font.TIMES_ROMAN;
     /** PDF title font size */
@@ -73,5 +156,7 @@ public final class Metrics {
     public static final int PDF_NORMAL_FONT_SIZE = 12;
     /** PDF chart image height: preffered height per unit on Y-axis */
     public static final int SIZE_PER_Y_UNIT = 17;
+    /** PDF chart: most points drawn per series and per unit (1/72 inch) of plot width, longer series are decimated */
+    public static final double PDF_CHART_POINTS_PER_UNIT = 2;
 
 }
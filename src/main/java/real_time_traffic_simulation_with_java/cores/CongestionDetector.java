@@ -0,0 +1,183 @@
+package real_time_traffic_simulation_with_java.cores;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import real_time_traffic_simulation_with_java.alias.Metrics;
+
+
+/**
+ * Flags the edges whose state of one step is over a congestion threshold, for the {@link CongestionEngine}. <br>
+ * A detector evaluates all edges at once, reading the per-edge vectors of the step and setting its bit in the mask
+ *      of the edges it flags, with the threshold precomputed per edge from the static network
+ *      so that each edge costs one comparison. <br>
+ * Built-in detectors (see {@link #parse(String, NetworkTopology)}):
+ * <ul>
+ *  <li>"halting": halting vehicles per lane at or above {@link Metrics#HIGH_HALTING_RATE_THRESHOLD}</li>
+ *  <li>"travelTime": estimated travel time at or above {@link Metrics#HIGH_TRAVEL_TIME_INDEX_THRESHOLD} times the free-flow travel time</li>
+ *  <li>"speedRatio": average speed at or below {@link Metrics#LOW_SPEED_RATIO_THRESHOLD} times the speed limit, on an edge with vehicles</li>
+ *  <li>"occupancy": vehicle lengths over lane length at or above {@link Metrics#HIGH_OCCUPANCY_THRESHOLD}</li>
+ * </ul>
+ */
+public interface CongestionDetector {
+    /** Name of the detector, reported with the congestion events it causes */
+    String getName();
+
+    /**
+     * Flag the edges over the threshold in this step
+     * @param snapshot state of the step
+     * @param metrics per-edge metrics of the step
+     * @param mask detector mask by edge handle, bit is set for the edges over the threshold, other bits are left as they are
+     * @param bit bit of this detector
+     */
+    void detect(StepSnapshot snapshot, EdgeMetrics metrics, int[] mask, int bit);
+
+
+    // ----------------------------------------------------------------------------
+    // Built-in detectors
+    // ----------------------------------------------------------------------------
+    /**
+     * Detector on halting vehicles per lane
+     * @param topology static network
+     * @param threshold halting vehicles per lane
+     */
+    static CongestionDetector haltingRate(NetworkTopology topology, double threshold) {
+        double[] limit = new double[topology.getEdgeCount()];
+        for (int edge = 0; edge < limit.length; edge++) {
+            limit[edge] = threshold * Math.max(1, topology.getLaneCount(edge));
+        }
+        return new HaltingRate(limit);
+    }
+
+    /**
+     * Detector on the travel time index (estimated travel time / free-flow travel time)
+     * @param topology static network
+     * @param threshold travel time index
+     */
+    static CongestionDetector travelTimeIndex(NetworkTopology topology, double threshold) {
+        double[] limit = new double[topology.getEdgeCount()];
+        for (int edge = 0; edge < limit.length; edge++) {
+            double freeFlowSpeed = Math.max(topology.getMaxSpeed(edge) / 3.6, Metrics.MIN_TRAVEL_SPEED);
+            limit[edge] = threshold * topology.getLength(edge) / freeFlowSpeed;
+        }
+        return new TravelTimeIndex(limit);
+    }
+
+    /**
+     * Detector on the ratio of average speed to speed limit
+     * @param topology static network
+     * @param threshold speed ratio
+     */
+    static CongestionDetector speedRatio(NetworkTopology topology, double threshold) {
+        double[] limit = new double[topology.getEdgeCount()];
+        for (int edge = 0; edge < limit.length; edge++) {
+            limit[edge] = threshold * topology.getMaxSpeed(edge);
+        }
+        return new SpeedRatio(limit);
+    }
+
+    /**
+     * Detector on occupancy, estimated from the vehicle count with vehicles of {@link Metrics#DEFAULT_VEHICLE_LENGTH}
+     * @param topology static network
+     * @param threshold occupancy (0..1)
+     */
+    static CongestionDetector occupancy(NetworkTopology topology, double threshold) {
+        double[] limit = new double[topology.getEdgeCount()];
+        for (int edge = 0; edge < limit.length; edge++) {
+            limit[edge] = Math.max(1, threshold * topology.getLength(edge) * topology.getLaneCount(edge) / Metrics.DEFAULT_VEHICLE_LENGTH);
+        }
+        return new Occupancy(limit);
+    }
+
+    /**
+     * Create built-in detectors by name, with the thresholds of {@link Metrics}
+     * @param names comma separated names, e.g. {@link Metrics#CONGESTION_DETECTORS}
+     * @param topology static network
+     * @return detectors in the given order, unknown names are logged and skipped, halting rate if none is known
+     */
+    static List<CongestionDetector> parse(String names, NetworkTopology topology) {
+        List<CongestionDetector> detectors = new ArrayList<>();
+        for (String name : names.split(",")) {
+            switch (name.trim()) {
+                case "halting" -> detectors.add(haltingRate(topology, Metrics.HIGH_HALTING_RATE_THRESHOLD));
+                case "travelTime" -> detectors.add(travelTimeIndex(topology, Metrics.HIGH_TRAVEL_TIME_INDEX_THRESHOLD));
+                case "speedRatio" -> detectors.add(speedRatio(topology, Metrics.LOW_SPEED_RATIO_THRESHOLD));
+                case "occupancy" -> detectors.add(occupancy(topology, Metrics.HIGH_OCCUPANCY_THRESHOLD));
+                case "" -> { }
+                default -> Logger.getLogger(CongestionDetector.class.getName())
+                                .log(Level.WARNING, "Unknown congestion detector: " + name.trim());
+            }
+        }
+        if (detectors.isEmpty()) {
+            detectors.add(haltingRate(topology, Metrics.HIGH_HALTING_RATE_THRESHOLD));
+        }
+        return detectors;
+    }
+
+
+    // ----------------------------------------------------------------------------
+    // Implementations: limit by edge handle, in the unit of the metric compared
+    // ----------------------------------------------------------------------------
+    /** Halting number at or above the limit (halting vehicles) */
+    record HaltingRate(double[] limit) implements CongestionDetector {
+        @Override
+        public String getName() {
+            return "halting";
+        }
+
+        @Override
+        public void detect(StepSnapshot snapshot, EdgeMetrics metrics, int[] mask, int bit) {
+            for (int edge = 0; edge < mask.length; edge++) {
+                mask[edge] |= metrics.getHaltingNumber(edge) >= limit[edge] ? bit : 0;
+            }
+        }
+    }
+
+    /** Estimated travel time at or above the limit (s), edges without statistics (-1) are never flagged */
+    record TravelTimeIndex(double[] limit) implements CongestionDetector {
+        @Override
+        public String getName() {
+            return "travelTime";
+        }
+
+        @Override
+        public void detect(StepSnapshot snapshot, EdgeMetrics metrics, int[] mask, int bit) {
+            for (int edge = 0; edge < mask.length; edge++) {
+                mask[edge] |= metrics.getTravelTime(edge) >= limit[edge] ? bit : 0;
+            }
+        }
+    }
+
+    /** Average speed at or below the limit (km/h) on an edge with vehicles */
+    record SpeedRatio(double[] limit) implements CongestionDetector {
+        @Override
+        public String getName() {
+            return "speedRatio";
+        }
+
+        @Override
+        public void detect(StepSnapshot snapshot, EdgeMetrics metrics, int[] mask, int bit) {
+            for (int edge = 0; edge < mask.length; edge++) {
+                double speed = metrics.getAverageSpeed(edge);
+                mask[edge] |= speed >= 0 && speed <= limit[edge] && snapshot.getEdgeVehicleCount(edge) > 0 ? bit : 0;
+            }
+        }
+    }
+
+    /** Vehicle count at or above the limit (vehicles) */
+    record Occupancy(double[] limit) implements CongestionDetector {
+        @Override
+        public String getName() {
+            return "occupancy";
+        }
+
+        @Override
+        public void detect(StepSnapshot snapshot, EdgeMetrics metrics, int[] mask, int bit) {
+            for (int edge = 0; edge < mask.length; edge++) {
+                mask[edge] |= snapshot.getEdgeVehicleCount(edge) >= limit[edge] ? bit : 0;
+            }
+        }
+    }
+}
@@ -0,0 +1,239 @@
+package real_time_traffic_simulation_with_java.cores;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.IntConsumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+
+/**
+ * Congestion state of every edge, updated once per step on the simulation thread from pluggable {@link CongestionDetector}s. <br>
+ * State is held in primitive arrays addressed by edge handle (the {@link NetworkTopology} edge index):
+ * <ul>
+ *  <li>each detector flags the edges over its threshold, the flags are combined into one bit mask per edge</li>
+ *  <li>an edge flagged by any detector for durationThreshold steps in a row becomes congested,
+ *      it is cleared as soon as no detector flags it</li>
+ *  <li>edges without statistics in the step keep their state</li>
+ * </ul>
+ * Consumers subscribe to congestion start and clear events ({@link #subscribe(Listener)}) instead of polling the state.
+ *      Events of a step are delivered on the simulation thread once the whole step is evaluated, in edge order. <br>
+ * State getters may be called from any thread: the congested edges of a step are published at once, as an immutable
+ *      state swapped through one volatile field when the step is evaluated. A getter sees a whole step,
+ *      never a step half evaluated, and listeners already see the step of their events.
+ */
+public final class CongestionEngine {
+    private static final Logger LOGGER = Logger.getLogger(CongestionEngine.class.getName());
+
+    /** Kind of congestion event */
+    public enum EventType { START, CLEAR }
+
+    /**
+     * Congestion of an edge started or cleared
+     * @param type START or CLEAR
+     * @param edge edge handle
+     * @param edgeID ID of the edge
+     * @param time simulation time of the step (s)
+     * @param detectors names of the detectors flagging the edge ("+" separated), empty for CLEAR
+     */
+    public record Event(EventType type, int edge, String edgeID, double time, String detectors) {}
+
+    /**
+     * Congested edges after a step, never modified once published
+     * @param congested congested edge handles
+     * @param count number of congested edges
+     */
+    private record State(BitSet congested, int count) {}
+
+    /** Receiver of congestion events, called on the simulation thread */
+    @FunctionalInterface
+    public interface Listener {
+        /**
+         * The congestion of an edge started or cleared
+         * @param event the event
+         */
+        void onEvent(Event event);
+    }
+
+    private final NetworkTopology topology;
+    private final CongestionDetector[] detectors;
+    private final int durationThreshold;
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+
+    /** Detectors flagging each edge in this step, one bit per detector */
+    private final int[] mask;
+    /** Steps in a row each edge has been flagged, up to durationThreshold: the edge is congested at durationThreshold. <br>
+     * Simulation thread only, other threads read {@link #state} */
+    private final int[] highSteps;
+    /** Events of the step being evaluated, edge handles and types */
+    private int[] eventEdges = new int[16];
+    private boolean[] eventStarts = new boolean[16];
+    /** Congested edges of the last evaluated step, replaced (not modified) by each step with events */
+    private volatile State state = new State(new BitSet(), 0);
+
+    /**
+     * Create the engine, no edge is congested
+     * @param topology static network
+     * @param detectors detectors to combine, at most 32
+     * @param durationThreshold steps in a row an edge must be flagged to become congested
+     */
+    public CongestionEngine(NetworkTopology topology, List<CongestionDetector> detectors, int durationThreshold) {
+        if (detectors.size() > Integer.SIZE) {
+            throw new IllegalArgumentException("At most " + Integer.SIZE + " congestion detectors, got " + detectors.size());
+        }
+        this.topology = topology;
+        this.detectors = detectors.toArray(new CongestionDetector[0]);
+        this.durationThreshold = Math.max(1, durationThreshold);
+        int edgeCount = topology.getEdgeCount();
+        this.mask = new int[edgeCount];
+        this.highSteps = new int[edgeCount];
+    }
+
+
+    /**
+     * Subscribe to congestion start and clear events
+     * @param listener receiver of the events, called on the simulation thread
+     */
+    public void subscribe(Listener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Unsubscribe from congestion events
+     * @param listener receiver given to {@link #subscribe(Listener)}
+     */
+    public void unsubscribe(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Evaluate one step: run the detectors, update the state of every edge and deliver the events. <br>
+     * Must be called by the simulation thread only.
+     * @param snapshot state of the step
+     * @param metrics per-edge metrics of the step
+     * @return number of events of the step
+     */
+    public int update(StepSnapshot snapshot, EdgeMetrics metrics) {
+        int edgeCount = highSteps.length;
+        // Combine the flags of the detectors into one mask per edge
+        Arrays.fill(mask, 0);
+        for (int d = 0; d < detectors.length; d++) {
+            detectors[d].detect(snapshot, metrics, mask, 1 << d);
+        }
+
+        // Duration hysteresis, without branching on the state of each edge (the flags of a step are random to the CPU):
+        //      steps in a row saturate at the threshold, congested <=> steps == threshold,
+        //      so the state changes when (old - threshold) and (steps - threshold) differ in sign
+        int events = 0;
+        int threshold = durationThreshold;
+        for (int edge = 0; edge < edgeCount; edge++) {
+            if (metrics.getHaltingNumber(edge) == -1) {
+                continue;
+            }
+            int old = highSteps[edge];
+            int flags = mask[edge];
+            int steps = Math.min(old + 1, threshold) & ((flags | -flags) >> 31);
+            highSteps[edge] = steps;
+            if (((old - threshold) ^ (steps - threshold)) < 0) {
+                events = addEvent(events, edge, steps == threshold);
+            }
+        }
+
+        // Publish the congested edges of the step, a copy of the previous ones with the events applied
+        if (events > 0) {
+            State previous = this.state;
+            BitSet congested = (BitSet) previous.congested().clone();
+            int count = previous.count();
+            for (int k = 0; k < events; k++) {
+                congested.set(eventEdges[k], eventStarts[k]);
+                count += eventStarts[k] ? 1 : -1;
+            }
+            this.state = new State(congested, count);
+        }
+
+        // Deliver the events of the step
+        if (events > 0 && !listeners.isEmpty()) {
+            for (int k = 0; k < events; k++) {
+                int edge = eventEdges[k];
+                Event event = new Event(eventStarts[k] ? EventType.START : EventType.CLEAR, edge, topology.getEdgeID(edge),
+                                        metrics.getTime(), eventStarts[k] ? getDetectorNames(mask[edge]) : "");
+                for (Listener listener : listeners) {
+                    try {
+                        listener.onEvent(event);
+                    } catch (RuntimeException e) {
+                        LOGGER.log(Level.WARNING, "Congestion listener failed on " + event + ".", e);
+                    }
+                }
+            }
+        }
+        return events;
+    }
+
+
+    // ----------------------------------------------------------------------------
+    // State getters
+    // ----------------------------------------------------------------------------
+    /**
+     * Get congested status of an edge
+     * @param edge edge handle
+     * @return congested status, false if the handle is not an edge of the topology (e.g. a junction edge)
+     */
+    public boolean isCongested(int edge) {
+        return edge >= 0 && this.state.congested().get(edge);
+    }
+
+    /**
+     * Report every congested edge of one step, in edge order
+     * @param consumer receiver of the edge handles
+     */
+    public void forEachCongested(IntConsumer consumer) {
+        BitSet congested = this.state.congested();
+        for (int edge = congested.nextSetBit(0); edge >= 0; edge = congested.nextSetBit(edge + 1)) {
+            consumer.accept(edge);
+        }
+    }
+
+    /** Getter for number of congested edges */
+    public int getCongestedCount() {
+        return this.state.count();
+    }
+
+    /** Getter for names of the detectors, in bit order */
+    public List<String> getDetectorNames() {
+        List<String> names = new ArrayList<>(detectors.length);
+        for (CongestionDetector detector : detectors) {
+            names.add(detector.getName());
+        }
+        return names;
+    }
+
+
+    /**
+     * Private helper method: names of the detectors of a mask, "+" separated
+     */
+    private String getDetectorNames(int detectorMask) {
+        StringBuilder names = new StringBuilder();
+        for (int d = 0; d < detectors.length; d++) {
+            if ((detectorMask & (1 << d)) != 0) {
+                names.append(names.length() == 0 ? "" : "+").append(detectors[d].getName());
+            }
+        }
+        return names.toString();
+    }
+
+    /**
+     * Private helper method: record an event of the step, growing the buffers if needed
+     */
+    private int addEvent(int events, int edge, boolean start) {
+        if (events == eventEdges.length) {
+            eventEdges = Arrays.copyOf(eventEdges, 2 * events);
+            eventStarts = Arrays.copyOf(eventStarts, 2 * events);
+        }
+        eventEdges[events] = edge;
+        eventStarts[events] = start;
+        return events + 1;
+    }
+}
@@ -6,7 +6,7 @@ import java.util.ArrayList;
 import de.tudresden.sumo.objects.SumoGeometry;
 import de.tudresden.sumo.objects.SumoPosition2D;
 import real_time_traffic_simulation_with_java.alias.Metrics;
-import real_time_traffic_simulation_with_java.alias.Color;
+import real_time_traffic_simulation_with_java.alias.MapColor;
 
 import javafx.geometry.Point2D;
 import javafx.scene.shape.Line;
@@ -19,12 +19,14 @@ import javafx.scene.Group;
  *      grouping a rectangle representing the edge and dashed lines representing lane dividers.
  */
 public class EdgeData extends Group {
-    /** Congestion status */
-    private boolean congested = false;
-    /** High travel time index status */
-    private boolean highHaltingRate = false;
-    /** Duration of high travel time index */
-    private int highHaltingDuration = 0;
+    /** Number of lanes within the edge */
+    private final int laneCount;
+    /** Congestion status, set by EdgeManager on the simulation thread and read by the GUI */
+    private volatile boolean congested = false;
+    /** Center line of the edge {startX, startY, endX, endY}, for simplified drawing */
+    private final double[] centerLine;
+    /** Whether lane dividers are shown */
+    private boolean detailed = true;
     /**
      * Represents the visual data of an edge in the simulation, 
      *      grouping a rectangle representing the edge and dashed lines representing lane dividers.
@@ -33,15 +35,18 @@ public class EdgeData extends Group {
      * @param coordinates List of SumoGeometry objects representing the coordinates of each lane within the edge
      */
     public EdgeData(String edgeID, int number_of_lanes, List<SumoGeometry> coordinates) {
+        this.laneCount = number_of_lanes;
+        Line midLine = calculateMidPoint(number_of_lanes, coordinates);
+        this.centerLine = new double[]{midLine.getStartX(), midLine.getStartY(), midLine.getEndX(), midLine.getEndY()};
         // Draw edge shape
         Polygon edge_shape = createPolygon(number_of_lanes, number_of_lanes * Metrics.DEFAULT_LANE_WIDTH, coordinates);
-        edge_shape.setFill(Color.ROAD);
-        edge_shape.setStroke(Color.ROAD_BORDER);
+        edge_shape.setFill(MapColor.ROAD);
+        edge_shape.setStroke(MapColor.ROAD_BORDER);
         edge_shape.setStrokeWidth(Metrics.EDGE_DIVIDER_WEIGHT);
         // Draw lane dividers
         List<Line> lane_dividers = calculateLaneDividers(number_of_lanes, number_of_lanes * Metrics.DEFAULT_LANE_WIDTH, coordinates);
         for(Line lane_divider: lane_dividers) {
-            lane_divider.setStroke(Color.LANE_DIVIDER);
+            lane_divider.setStroke(MapColor.LANE_DIVIDER);
             lane_divider.setStrokeWidth(Metrics.LANE_DIVIDER_WEIGHT);
             lane_divider.getStrokeDashArray().addAll(Metrics.LANE_DASHED_LENGTH, Metrics.LANE_DASHED_GAP);
         }
@@ -53,6 +58,30 @@ public class EdgeData extends Group {
     }
 
 
+    /** Getter for number of lanes within the edge */
+    public int getLaneCount() {
+        return laneCount;
+    }
+
+    /** Getter for center line of the edge {startX, startY, endX, endY} */
+    public double[] getCenterLine() {
+        return centerLine.clone();
+    }
+
+    /**
+     * Show or hide the lane dividers (level of detail of the map)
+     * @param detailed whether lane dividers are shown
+     */
+    public void setDetailed(boolean detailed) {
+        if (this.detailed == detailed) {
+            return;
+        }
+        this.detailed = detailed;
+        for (int i = 1; i < this.getChildren().size(); i++) {
+            this.getChildren().get(i).setVisible(detailed);
+        }
+    }
+
     /** Getter for congestion status */
     public boolean isCongested() {
         return congested;
@@ -61,35 +90,20 @@ public class EdgeData extends Group {
     /** */
     public void setColor() {
         Polygon edge_shape = (Polygon)this.getChildren().get(0);
-        if(isCongested() && edge_shape.getFill() != Color.CONGESTED_ROAD) {
-            edge_shape.setFill(Color.CONGESTED_ROAD);
-        } else if (!isCongested() && edge_shape.getFill() != Color.ROAD) {
-            edge_shape.setFill(Color.ROAD);
+        if(isCongested() && edge_shape.getFill() != MapColor.CONGESTED_ROAD) {
+            edge_shape.setFill(MapColor.CONGESTED_ROAD);
+        } else if (!isCongested() && edge_shape.getFill() != MapColor.ROAD) {
+            edge_shape.setFill(MapColor.ROAD);
         }
     }
 
 
     /**
-     * Update congested status based on average number of halting vehicles/edge's lane
-     * An edge is considered congested if number of halting vehicles/lane 
-     *      maintain above a certain threshold for a certain duration.
-     * @param haltingRate current average number of halting vehicles per lane
+     * Setter for congestion status, computed by EdgeManager from the halting rate of the edge
+     * @param congested new congestion status
      */
-    public void updateCongestedStatus(double haltingRate) {
-        if(haltingRate >= Metrics.HIGH_HALTING_RATE_THRESHOLD) {
-            highHaltingDuration++;
-            if(highHaltingRate == false)
-                highHaltingRate = true;
-            if(highHaltingDuration >= Metrics.HIGH_HALTING_DURATION_THRESHOLD)
-                congested = true;
-        } else {
-            if(highHaltingRate == true) {
-                if(congested == true)
-                    congested = false;
-                highHaltingRate = false;
-                highHaltingDuration = 0;
-            }
-        }
+    public void setCongested(boolean congested) {
+        this.congested = congested;
     }
 
 
@@ -0,0 +1,88 @@
+package real_time_traffic_simulation_with_java.cores;
+
+import real_time_traffic_simulation_with_java.alias.Metrics;
+
+
+/**
+ * Per-edge metrics of one step, computed once on the simulation thread from the {@link StepSnapshot}
+ *      and the static edge lengths and speed limits, then read in bulk by the dashboard chart and the edge tooltips. <br>
+ * One primitive vector per metric, addressed by edge handle (0..getEdgeCount()-1, the {@link NetworkTopology} edge index):
+ *      average speed (km/h), density (vehicle/km), halting number and estimated travel time (s).
+ *      Edges without statistics return -1, like the snapshot getters. <br>
+ * The travel time is estimated like SUMO does: length over the mean speed of the last step,
+ *      the mean speed of an empty edge being its speed limit. A standing queue is capped at {@link Metrics#MIN_TRAVEL_SPEED}.
+ */
+public final class EdgeMetrics {
+    /** Metrics used before the first step has been decoded */
+    public static final EdgeMetrics EMPTY = new EdgeMetrics(StepSnapshot.EMPTY, new double[0], new double[0]);
+
+    /** Simulation time of the step (s) */
+    private final double time;
+    private final double[] averageSpeed;
+    private final double[] density;
+    private final int[] haltingNumber;
+    private final double[] travelTime;
+
+    /**
+     * Compute the metrics of a step
+     * @param snapshot state of the step
+     * @param edgeLength length (m) by edge handle
+     * @param edgeMaxSpeed speed limit (km/h) by edge handle
+     */
+    public EdgeMetrics(StepSnapshot snapshot, double[] edgeLength, double[] edgeMaxSpeed) {
+        int edgeCount = edgeLength.length;
+        this.time = snapshot.getTime();
+        this.averageSpeed = new double[edgeCount];
+        this.density = new double[edgeCount];
+        this.haltingNumber = new int[edgeCount];
+        this.travelTime = new double[edgeCount];
+        for (int edge = 0; edge < edgeCount; edge++) {
+            double speed = snapshot.getEdgeAverageSpeed(edge);
+            averageSpeed[edge] = speed;
+            density[edge] = snapshot.getEdgeDensity(edge);
+            haltingNumber[edge] = snapshot.getEdgeHaltingNumber(edge);
+            if (speed < 0) {
+                travelTime[edge] = -1;
+            } else {
+                double metersPerSecond = (snapshot.getEdgeVehicleCount(edge) == 0 ? edgeMaxSpeed[edge] : speed) / 3.6;
+                travelTime[edge] = edgeLength[edge] / Math.max(metersPerSecond, Metrics.MIN_TRAVEL_SPEED);
+            }
+        }
+    }
+
+
+    /** Getter for simulation time of the step (s) */
+    public double getTime() {
+        return time;
+    }
+
+    /** Getter for number of edges */
+    public int getEdgeCount() {
+        return averageSpeed.length;
+    }
+
+    /** Getter for average speed on the edge handle (km/h), -1 if the edge has no statistics */
+    public double getAverageSpeed(int handle) {
+        return hasEdge(handle) ? averageSpeed[handle] : -1;
+    }
+
+    /** Getter for density on the edge handle (vehicle/km), -1 if the edge has no statistics */
+    public double getDensity(int handle) {
+        return hasEdge(handle) ? density[handle] : -1;
+    }
+
+    /** Getter for number of halting vehicles on the edge handle, -1 if the edge has no statistics */
+    public int getHaltingNumber(int handle) {
+        return hasEdge(handle) ? haltingNumber[handle] : -1;
+    }
+
+    /** Getter for estimated travel time on the edge handle (s), -1 if the edge has no statistics */
+    public double getTravelTime(int handle) {
+        return hasEdge(handle) ? travelTime[handle] : -1;
+    }
+
+    /** Private helper method: whether the edge handle has metrics */
+    private boolean hasEdge(int handle) {
+        return handle >= 0 && handle < averageSpeed.length;
+    }
+}
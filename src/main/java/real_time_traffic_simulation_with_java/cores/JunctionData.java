@@ -2,7 +2,7 @@ package real_time_traffic_simulation_with_java.cores;
 
 import de.tudresden.sumo.objects.SumoGeometry;
 import javafx.scene.shape.Polygon;
-import real_time_traffic_simulation_with_java.alias.Color;
+import real_time_traffic_simulation_with_java.alias.MapColor;
 
 
 /**
@@ -18,7 +18,7 @@ public class JunctionData extends Polygon {
         for (de.tudresden.sumo.objects.SumoPosition2D pos : coordinates.coords) {
             this.getPoints().addAll(new Double[]{pos.x, pos.y});
         }
-        this.setFill(Color.ROAD);
+        this.setFill(MapColor.ROAD);
         this.setId(junctionID);
     }
 }
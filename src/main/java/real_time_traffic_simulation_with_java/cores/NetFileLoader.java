@@ -0,0 +1,188 @@
+package real_time_traffic_simulation_with_java.cores;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+
+/**
+ * Streaming (StAX) loader of a SUMO net file into a {@link NetworkTopology}. <br>
+ * Edges, lanes, junction shapes, traffic light programs and traffic light links are read in a single pass
+ *      straight into the primitive arrays of the topology, no DOM and no TraCI round trip.
+ *      It only needs the net file, so it can run while Sumo is still starting. <br>
+ * Internal edges and internal junctions (IDs starting with ':') are skipped, like the TraCI path. <br>
+ * Only the first program of each traffic light is kept, its phase durations use maxDur when present
+ *      (same value as TraCI for static programs) and its first phase gives the initial state.
+ */
+public final class NetFileLoader {
+    private NetFileLoader() {
+    }
+
+
+    /**
+     * Parse a SUMO net file
+     * @param netFilePath path to the .net.xml file
+     * @return immutable NetworkTopology
+     * @throws IOException if the file cannot be read
+     * @throws XMLStreamException if the file is not well-formed XML
+     */
+    public static NetworkTopology load(String netFilePath) throws IOException, XMLStreamException {
+        long start = System.nanoTime();
+        NetworkTopology.Builder builder = new NetworkTopology.Builder();
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(Paths.get(netFilePath)), 1 << 16)) {
+            XMLInputFactory factory = XMLInputFactory.newFactory();
+            factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+            factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+            factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, false);
+            XMLStreamReader reader = factory.createXMLStreamReader(in);
+            try {
+                parse(reader, builder);
+            } finally {
+                reader.close();
+            }
+        }
+        long elapsedMs = (System.nanoTime() - start) / 1_000_000L;
+        NetworkTopology topology = builder.build(netFilePath, 0, elapsedMs);
+        topology.logLoaded();
+        return topology;
+    }
+
+
+    // ---------------------------------------------------------
+    // Private helper methods
+    // ---------------------------------------------------------
+    /**
+     * Private helper method: single pass over the elements of the net file. <br>
+     * Net files list edges first, then traffic light programs, junctions and connections,
+     *      which is the order the builder expects (lanes before junctions).
+     */
+    private static void parse(XMLStreamReader reader, NetworkTopology.Builder builder) throws XMLStreamException {
+        boolean inInternalEdge = false;
+        // Traffic light program being read
+        String tlsID = null;
+        String tlsInitialState = null;
+        List<Integer> tlsDurations = new ArrayList<>();
+
+        while (reader.hasNext()) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                switch (reader.getLocalName()) {
+                    case "edge":
+                        String edgeID = attribute(reader, "id");
+                        inInternalEdge = "internal".equals(attribute(reader, "function")) || edgeID.startsWith(":");
+                        if (!inInternalEdge) {
+                            builder.addEdge(edgeID);
+                        }
+                        break;
+                    case "lane":
+                        if (!inInternalEdge) {
+                            builder.addLane(parseDouble(attribute(reader, "length")), parseDouble(attribute(reader, "speed")));
+                            addShape(attribute(reader, "shape"), builder);
+                        }
+                        break;
+                    case "tlLogic":
+                        tlsID = attribute(reader, "id");
+                        tlsInitialState = null;
+                        tlsDurations.clear();
+                        break;
+                    case "phase":
+                        if (tlsID != null) {
+                            String maxDur = attribute(reader, "maxDur");
+                            tlsDurations.add((int) parseDouble(maxDur != null ? maxDur : attribute(reader, "duration")));
+                            if (tlsInitialState == null) {
+                                tlsInitialState = attribute(reader, "state");
+                            }
+                        }
+                        break;
+                    case "junction":
+                        String junctionID = attribute(reader, "id");
+                        if (!"internal".equals(attribute(reader, "type")) && !junctionID.startsWith(":")) {
+                            builder.addJunction(junctionID);
+                            addShape(attribute(reader, "shape"), builder);
+                        }
+                        break;
+                    case "connection":
+                        String tl = attribute(reader, "tl");
+                        if (tl != null) {
+                            builder.addTrafficLightLink(tl, Integer.parseInt(attribute(reader, "linkIndex")),
+                                                        attribute(reader, "from") + "_" + attribute(reader, "fromLane"));
+                        }
+                        break;
+                    default:
+                        break;
+                }
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                switch (reader.getLocalName()) {
+                    case "edge":
+                        inInternalEdge = false;
+                        break;
+                    case "tlLogic":
+                        int[] durations = new int[tlsDurations.size()];
+                        for (int i = 0; i < durations.length; i++) {
+                            durations[i] = tlsDurations.get(i);
+                        }
+                        builder.addTrafficLight(tlsID, tlsInitialState, durations);
+                        tlsID = null;
+                        break;
+                    default:
+                        break;
+                }
+            }
+        }
+    }
+
+    /**
+     * Private helper method: value of an attribute of the current element, null if absent
+     */
+    private static String attribute(XMLStreamReader reader, String name) {
+        return reader.getAttributeValue(null, name);
+    }
+
+    /**
+     * Private helper method: parse a number attribute, 0 if absent
+     */
+    private static double parseDouble(String value) {
+        return value == null ? 0 : Double.parseDouble(value);
+    }
+
+    /**
+     * Private helper method: add the points of a shape attribute ("x1,y1 x2,y2 ...") to the builder,
+     *      scanned in place instead of split into intermediate String arrays. A z-coordinate is ignored.
+     */
+    private static void addShape(String shape, NetworkTopology.Builder builder) {
+        if (shape == null) {
+            return;
+        }
+        int n = shape.length();
+        int i = 0;
+        while (i < n) {
+            while (i < n && shape.charAt(i) == ' ') {
+                i++;
+            }
+            if (i == n) {
+                break;
+            }
+            int end = i;
+            while (end < n && shape.charAt(end) != ' ') {
+                end++;
+            }
+            int comma = shape.indexOf(',', i);
+            if (comma != -1 && comma < end) {
+                int secondComma = shape.indexOf(',', comma + 1);
+                int yEnd = secondComma != -1 && secondComma < end ? secondComma : end;
+                builder.addPoint(Double.parseDouble(shape.substring(i, comma)),
+                                    Double.parseDouble(shape.substring(comma + 1, yEnd)));
+            }
+            i = end;
+        }
+    }
+}
@@ -0,0 +1,278 @@
+package real_time_traffic_simulation_with_java.cores;
+
+import java.util.function.IntConsumer;
+
+import real_time_traffic_simulation_with_java.alias.Metrics;
+
+
+/**
+ * Spatial index of the static road network: one {@link RTree} over edges, one over lanes and one over junctions,
+ *      built once from the {@link NetworkTopology}. <br>
+ * A lane is its center line widened by half a lane width ({@link Metrics#DEFAULT_LANE_WIDTH}),
+ *      an edge is the union of its lanes, a junction is its shape polygon. <br>
+ * Rectangle queries report items by index (edge index = edge handle, global lane index, junction index).
+ *      Nearest queries use the exact distance to the lane shapes or to the junction polygon, 0 on the item. <br>
+ * Immutable, queries may run on any thread.
+ */
+public final class NetworkIndex {
+    /** Index used before the topology is loaded */
+    public static final NetworkIndex EMPTY = new NetworkIndex(new NetworkTopology.Builder().build("none", 0, 0));
+
+    private static final double HALF_LANE_WIDTH = Metrics.DEFAULT_LANE_WIDTH / 2;
+
+    private final NetworkTopology topology;
+    private final RTree edges;
+    private final RTree lanes;
+    private final RTree junctions;
+    /** Global lane index -> edge index */
+    private final int[] laneEdge;
+    /** Bounds of each edge: minX, minY, maxX, maxY at 4*edge */
+    private final double[] edgeBounds;
+
+    /**
+     * Build the index
+     * @param topology static network
+     */
+    public NetworkIndex(NetworkTopology topology) {
+        this.topology = topology;
+        int edgeCount = topology.getEdgeCount();
+        int laneCount = topology.getLaneStart(edgeCount);
+        int junctionCount = topology.getJunctionCount();
+
+        // Lanes
+        this.laneEdge = new int[laneCount];
+        double[] laneMinX = new double[laneCount], laneMinY = new double[laneCount];
+        double[] laneMaxX = new double[laneCount], laneMaxY = new double[laneCount];
+        for (int edge = 0; edge < edgeCount; edge++) {
+            for (int lane = topology.getLaneStart(edge); lane < topology.getLaneStart(edge + 1); lane++) {
+                laneEdge[lane] = edge;
+                double[] bounds = pointBounds(topology.getLanePointStart(lane), topology.getLanePointStart(lane + 1));
+                laneMinX[lane] = bounds[0] - HALF_LANE_WIDTH;
+                laneMinY[lane] = bounds[1] - HALF_LANE_WIDTH;
+                laneMaxX[lane] = bounds[2] + HALF_LANE_WIDTH;
+                laneMaxY[lane] = bounds[3] + HALF_LANE_WIDTH;
+            }
+        }
+
+        // Edges: union of their lanes
+        this.edgeBounds = new double[4 * edgeCount];
+        double[] edgeMinX = new double[edgeCount], edgeMinY = new double[edgeCount];
+        double[] edgeMaxX = new double[edgeCount], edgeMaxY = new double[edgeCount];
+        for (int edge = 0; edge < edgeCount; edge++) {
+            double x0 = Double.POSITIVE_INFINITY, y0 = Double.POSITIVE_INFINITY;
+            double x1 = Double.NEGATIVE_INFINITY, y1 = Double.NEGATIVE_INFINITY;
+            for (int lane = topology.getLaneStart(edge); lane < topology.getLaneStart(edge + 1); lane++) {
+                x0 = Math.min(x0, laneMinX[lane]);
+                y0 = Math.min(y0, laneMinY[lane]);
+                x1 = Math.max(x1, laneMaxX[lane]);
+                y1 = Math.max(y1, laneMaxY[lane]);
+            }
+            edgeMinX[edge] = edgeBounds[4 * edge] = x0;
+            edgeMinY[edge] = edgeBounds[4 * edge + 1] = y0;
+            edgeMaxX[edge] = edgeBounds[4 * edge + 2] = x1;
+            edgeMaxY[edge] = edgeBounds[4 * edge + 3] = y1;
+        }
+
+        // Junctions
+        double[] junctionMinX = new double[junctionCount], junctionMinY = new double[junctionCount];
+        double[] junctionMaxX = new double[junctionCount], junctionMaxY = new double[junctionCount];
+        for (int j = 0; j < junctionCount; j++) {
+            double[] bounds = pointBounds(topology.getJunctionPointStart(j), topology.getJunctionPointStart(j + 1));
+            junctionMinX[j] = bounds[0];
+            junctionMinY[j] = bounds[1];
+            junctionMaxX[j] = bounds[2];
+            junctionMaxY[j] = bounds[3];
+        }
+
+        this.lanes = new RTree(laneMinX, laneMinY, laneMaxX, laneMaxY);
+        this.edges = new RTree(edgeMinX, edgeMinY, edgeMaxX, edgeMaxY);
+        this.junctions = new RTree(junctionMinX, junctionMinY, junctionMaxX, junctionMaxY);
+    }
+
+
+    // ----------------------------------------------------------------------------
+    // Rectangle queries
+    // ----------------------------------------------------------------------------
+    /**
+     * Report every edge whose bounds overlap the rectangle
+     * @return number of edges reported
+     */
+    public int queryEdges(double x0, double y0, double x1, double y1, IntConsumer consumer) {
+        return edges.query(x0, y0, x1, y1, consumer);
+    }
+
+    /**
+     * Report every lane (global lane index) whose bounds overlap the rectangle
+     * @return number of lanes reported
+     */
+    public int queryLanes(double x0, double y0, double x1, double y1, IntConsumer consumer) {
+        return lanes.query(x0, y0, x1, y1, consumer);
+    }
+
+    /**
+     * Report every junction whose bounds overlap the rectangle
+     * @return number of junctions reported
+     */
+    public int queryJunctions(double x0, double y0, double x1, double y1, IntConsumer consumer) {
+        return junctions.query(x0, y0, x1, y1, consumer);
+    }
+
+
+    // ----------------------------------------------------------------------------
+    // Nearest queries
+    // ----------------------------------------------------------------------------
+    /**
+     * Find the edge closest to a point, e.g. the edge under the cursor
+     * @param maxDistance edges further than this (m) are ignored
+     * @return edge index, -1 if no edge is within maxDistance
+     */
+    public int nearestEdge(double x, double y, double maxDistance) {
+        return edges.nearest(x, y, maxDistance, this::edgeDistance);
+    }
+
+    /**
+     * Find the lane closest to a point
+     * @param maxDistance lanes further than this (m) are ignored
+     * @return global lane index, -1 if no lane is within maxDistance
+     */
+    public int nearestLane(double x, double y, double maxDistance) {
+        return lanes.nearest(x, y, maxDistance, this::laneDistance);
+    }
+
+    /**
+     * Find the junction closest to a point
+     * @param maxDistance junctions further than this (m) are ignored
+     * @return junction index, -1 if no junction is within maxDistance
+     */
+    public int nearestJunction(double x, double y, double maxDistance) {
+        return junctions.nearest(x, y, maxDistance, this::junctionDistance);
+    }
+
+    /**
+     * Distance between a point and an edge: to its closest lane, 0 on the edge
+     */
+    public double edgeDistance(int edge, double x, double y) {
+        double distance = Double.POSITIVE_INFINITY;
+        for (int lane = topology.getLaneStart(edge); lane < topology.getLaneStart(edge + 1); lane++) {
+            distance = Math.min(distance, laneDistance(lane, x, y));
+        }
+        return distance;
+    }
+
+    /**
+     * Distance between a point and a lane: to its center line minus half a lane width, 0 on the lane
+     */
+    public double laneDistance(int lane, double x, double y) {
+        double distance = polylineDistance(topology.getLanePointStart(lane), topology.getLanePointStart(lane + 1), x, y);
+        return Math.max(0, distance - HALF_LANE_WIDTH);
+    }
+
+    /**
+     * Distance between a point and a junction: to its shape polygon, 0 inside
+     */
+    public double junctionDistance(int j, double x, double y) {
+        int from = topology.getJunctionPointStart(j);
+        int to = topology.getJunctionPointStart(j + 1);
+        if (to - from >= 3 && insidePolygon(from, to, x, y)) {
+            return 0;
+        }
+        // Closed polyline: the last point joins the first one
+        double distance = polylineDistance(from, to, x, y);
+        if (to - from >= 2) {
+            distance = Math.min(distance, segmentDistance(topology.getPointX(to - 1), topology.getPointY(to - 1),
+                                                            topology.getPointX(from), topology.getPointY(from), x, y));
+        }
+        return distance;
+    }
+
+
+    // ----------------------------------------------------------------------------
+    // Getters
+    // ----------------------------------------------------------------------------
+    /** Getter for bounds of an edge, {minX, minY, maxX, maxY} */
+    public double[] getEdgeBounds(int edge) {
+        return new double[]{edgeBounds[4 * edge], edgeBounds[4 * edge + 1], edgeBounds[4 * edge + 2], edgeBounds[4 * edge + 3]};
+    }
+
+    /** Getter for edge index of a lane (global lane index) */
+    public int getLaneEdge(int lane) {
+        return laneEdge[lane];
+    }
+
+    /** Getter for ID of a lane (global lane index), [edgeID]_[laneIndex] */
+    public String getLaneID(int lane) {
+        int edge = laneEdge[lane];
+        return topology.getEdgeID(edge) + "_" + (lane - topology.getLaneStart(edge));
+    }
+
+    /** Getter for number of lanes indexed */
+    public int getLaneCount() {
+        return laneEdge.length;
+    }
+
+
+    // ----------------------------------------------------------------------------
+    // Private helper methods
+    // ----------------------------------------------------------------------------
+    /**
+     * Private helper method: {minX, minY, maxX, maxY} of a range of the point pool, a point at 0,0 if the range is empty
+     */
+    private double[] pointBounds(int from, int to) {
+        if (from >= to) {
+            return new double[]{0, 0, 0, 0};
+        }
+        double x0 = Double.POSITIVE_INFINITY, y0 = Double.POSITIVE_INFINITY;
+        double x1 = Double.NEGATIVE_INFINITY, y1 = Double.NEGATIVE_INFINITY;
+        for (int p = from; p < to; p++) {
+            x0 = Math.min(x0, topology.getPointX(p));
+            y0 = Math.min(y0, topology.getPointY(p));
+            x1 = Math.max(x1, topology.getPointX(p));
+            y1 = Math.max(y1, topology.getPointY(p));
+        }
+        return new double[]{x0, y0, x1, y1};
+    }
+
+    /**
+     * Private helper method: distance between a point and an open polyline of the point pool
+     */
+    private double polylineDistance(int from, int to, double x, double y) {
+        if (from >= to) {
+            return Double.POSITIVE_INFINITY;
+        }
+        if (to - from == 1) {
+            return Math.hypot(topology.getPointX(from) - x, topology.getPointY(from) - y);
+        }
+        double distance = Double.POSITIVE_INFINITY;
+        for (int p = from; p + 1 < to; p++) {
+            distance = Math.min(distance, segmentDistance(topology.getPointX(p), topology.getPointY(p),
+                                                            topology.getPointX(p + 1), topology.getPointY(p + 1), x, y));
+        }
+        return distance;
+    }
+
+    /**
+     * Private helper method: distance between a point and a segment
+     */
+    private static double segmentDistance(double ax, double ay, double bx, double by, double x, double y) {
+        double dx = bx - ax;
+        double dy = by - ay;
+        double lengthSquared = dx * dx + dy * dy;
+        double t = lengthSquared == 0 ? 0 : Math.max(0, Math.min(1, ((x - ax) * dx + (y - ay) * dy) / lengthSquared));
+        return Math.hypot(ax + t * dx - x, ay + t * dy - y);
+    }
+
+    /**
+     * Private helper method: whether a point is inside a polygon of the point pool (even-odd rule)
+     */
+    private boolean insidePolygon(int from, int to, double x, double y) {
+        boolean inside = false;
+        for (int p = from, q = to - 1; p < to; q = p++) {
+            double px = topology.getPointX(p), py = topology.getPointY(p);
+            double qx = topology.getPointX(q), qy = topology.getPointY(q);
+            if ((py > y) != (qy > y) && x < (qx - px) * (y - py) / (qy - py) + px) {
+                inside = !inside;
+            }
+        }
+        return inside;
+    }
+}
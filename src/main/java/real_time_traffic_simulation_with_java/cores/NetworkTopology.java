@@ -0,0 +1,621 @@
+package real_time_traffic_simulation_with_java.cores;
+
+import it.polito.appeal.traci.SumoTraciConnection;
+import de.tudresden.sumo.cmd.Edge;
+import de.tudresden.sumo.cmd.Junction;
+import de.tudresden.sumo.cmd.Lane;
+import de.tudresden.sumo.cmd.Trafficlight;
+import de.tudresden.sumo.objects.SumoGeometry;
+import de.tudresden.sumo.objects.SumoLink;
+import de.tudresden.sumo.objects.SumoPosition2D;
+import de.tudresden.sumo.objects.SumoTLSController;
+import de.tudresden.sumo.objects.SumoTLSProgram;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+
+/**
+ * Immutable cache of the static road network: edges, lanes, junctions and traffic lights never change during a run,
+ *      so they are read once at startup instead of on every call. <br>
+ * Edges are integer-indexed (0..getEdgeCount()-1), junction edges are not included.
+ *      The index is the same edge handle used by {@link VehicleStateStore} and {@link StepSnapshot}. <br>
+ * Lane count, length (m) and speed limit (km/h) of an edge are those of its first lane, like the EdgeManager getters. <br>
+ * Everything is kept in compact primitive arrays: lanes of edge i are lanes edgeLaneStart[i]..edgeLaneStart[i+1]-1,
+ *      points of lane l are points laneShapeStart[l]..laneShapeStart[l+1]-1, and so on for junction shapes,
+ *      traffic light phases and traffic light links. SumoGeometry objects are only created on request. <br>
+ * The topology is either parsed from the net file ({@link NetFileLoader}, no Sumo needed)
+ *      or queried from Sumo ({@link #load(SumoTraciConnection)}), both fill the same {@link Builder}.
+ */
+public final class NetworkTopology {
+    private static final Logger LOGGER = Logger.getLogger(NetworkTopology.class.getName());
+
+    /** Edge index -> edge ID, and edge ID -> edge index */
+    private final String[] edgeIDs;
+    private final Map<String, Integer> edgeIndex;
+    /** Lanes of each edge, from lane 0 */
+    private final int[] edgeLaneStart;
+
+    /** Lane length (m) and speed limit (m/s), by global lane index */
+    private final double[] laneLength;
+    private final double[] laneSpeed;
+    /** Points of each lane shape */
+    private final int[] laneShapeStart;
+
+    /** Junction index -> junction ID, internal junctions are not included */
+    private final String[] junctionIDs;
+    /** Points of each junction shape */
+    private final int[] junctionShapeStart;
+
+    /** Point pool shared by lane and junction shapes */
+    private final double[] pointX;
+    private final double[] pointY;
+
+    /** Traffic light index -> traffic light ID, and traffic light ID -> traffic light index */
+    private final String[] tlsIDs;
+    private final Map<String, Integer> tlsIndex;
+    /** State of each traffic light at simulation start ('r', 'y', 'g' sequence) */
+    private final String[] tlsInitialState;
+    /** Phase durations (s) of each traffic light */
+    private final int[] tlsPhaseStart;
+    private final int[] phaseDuration;
+    /** Controlled links of each traffic light in link index order, as global index of the incoming lane (-1 if unknown) */
+    private final int[] tlsLinkStart;
+    private final int[] linkLane;
+
+    /** Startup cost: source, TraCI round trips and time (ms) needed to load the topology */
+    private final String loadSource;
+    private final int loadRoundTrips;
+    private final long loadTimeMs;
+
+    /**
+     * Private constructor: use {@link Builder#build}
+     */
+    private NetworkTopology(Builder b, String loadSource, int loadRoundTrips, long loadTimeMs) {
+        this.edgeIDs = b.edgeIDs.toArray(new String[0]);
+        this.edgeIndex = Collections.unmodifiableMap(indexOf(this.edgeIDs));
+        this.edgeLaneStart = Arrays.copyOf(b.edgeLaneStart, b.edgeIDs.size() + 1);
+        this.edgeLaneStart[b.edgeIDs.size()] = b.laneCount;
+
+        this.laneLength = Arrays.copyOf(b.laneLength, b.laneCount);
+        this.laneSpeed = Arrays.copyOf(b.laneSpeed, b.laneCount);
+        this.laneShapeStart = Arrays.copyOf(b.laneShapeStart, b.laneCount + 1);
+        this.laneShapeStart[b.laneCount] = b.laneShapeEnd;
+
+        this.junctionIDs = b.junctionIDs.toArray(new String[0]);
+        this.junctionShapeStart = Arrays.copyOf(b.junctionShapeStart, b.junctionIDs.size() + 1);
+        this.junctionShapeStart[b.junctionIDs.size()] = b.pointCount;
+
+        this.pointX = Arrays.copyOf(b.pointX, b.pointCount);
+        this.pointY = Arrays.copyOf(b.pointY, b.pointCount);
+
+        this.tlsIDs = b.tlsIDs.toArray(new String[0]);
+        this.tlsIndex = Collections.unmodifiableMap(indexOf(this.tlsIDs));
+        this.tlsInitialState = b.tlsInitialState.toArray(new String[0]);
+        int tlsCount = this.tlsIDs.length;
+        this.tlsPhaseStart = new int[tlsCount + 1];
+        this.tlsLinkStart = new int[tlsCount + 1];
+        int phases = 0;
+        int links = 0;
+        for (int t = 0; t < tlsCount; t++) {
+            phases += b.tlsPhases.get(t).length;
+            links += b.tlsLinks.get(t).size();
+            this.tlsPhaseStart[t + 1] = phases;
+            this.tlsLinkStart[t + 1] = links;
+        }
+        this.phaseDuration = new int[phases];
+        this.linkLane = new int[links];
+        for (int t = 0; t < tlsCount; t++) {
+            int[] durations = b.tlsPhases.get(t);
+            System.arraycopy(durations, 0, this.phaseDuration, this.tlsPhaseStart[t], durations.length);
+            // Links may be added in any order (net file connections are not grouped by traffic light)
+            Map<Integer, String> byLinkIndex = b.tlsLinks.get(t);
+            List<Integer> linkIndices = new ArrayList<>(byLinkIndex.keySet());
+            Collections.sort(linkIndices);
+            int k = this.tlsLinkStart[t];
+            for (int linkIndex : linkIndices) {
+                this.linkLane[k++] = laneIndexOf(byLinkIndex.get(linkIndex));
+            }
+        }
+
+        this.loadSource = loadSource;
+        this.loadRoundTrips = loadRoundTrips;
+        this.loadTimeMs = loadTimeMs;
+    }
+
+
+    /**
+     * Read the static network from SUMO, must be called once after Sumo has started. <br>
+     * Costs several round trips per edge, lane and traffic light, prefer {@link NetFileLoader#load(String)}.
+     * @param conn connection to Sumo
+     * @return immutable NetworkTopology
+     * @throws Exception
+     */
+    @SuppressWarnings("unchecked")
+    public static NetworkTopology load(SumoTraciConnection conn) throws Exception {
+        long start = System.nanoTime();
+        int roundTrips = 0;
+        Builder builder = new Builder();
+
+        // Edges, excluding junction edges
+        List<String> allEdgeIDs = (List<String>) conn.do_job_get(Edge.getIDList());
+        roundTrips++;
+        for (String edgeID : allEdgeIDs) {
+            if (edgeID.startsWith(":")) {
+                continue;
+            }
+            builder.addEdge(edgeID);
+            int laneCount = (int) conn.do_job_get(Edge.getLaneNumber(edgeID));
+            roundTrips++;
+            for (int lane = 0; lane < laneCount; lane++) {
+                String laneID = edgeID + "_" + lane;
+                double length = (double) conn.do_job_get(Lane.getLength(laneID));
+                double speed = (double) conn.do_job_get(Lane.getMaxSpeed(laneID));
+                SumoGeometry shape = (SumoGeometry) conn.do_job_get(Lane.getShape(laneID));
+                roundTrips += 3;
+                builder.addLane(length, speed);
+                for (SumoPosition2D pos : shape.coords) {
+                    builder.addPoint(pos.x, pos.y);
+                }
+            }
+        }
+
+        // Junctions, excluding internal junctions
+        List<String> allJunctionIDs = (List<String>) conn.do_job_get(Junction.getIDList());
+        roundTrips++;
+        for (String junctionID : allJunctionIDs) {
+            if (junctionID.startsWith(":")) {
+                continue;
+            }
+            SumoGeometry shape = (SumoGeometry) conn.do_job_get(Junction.getShape(junctionID));
+            roundTrips++;
+            builder.addJunction(junctionID);
+            for (SumoPosition2D pos : shape.coords) {
+                builder.addPoint(pos.x, pos.y);
+            }
+        }
+
+        // Traffic lights
+        List<String> tlsIDs = (List<String>) conn.do_job_get(Trafficlight.getIDList());
+        roundTrips++;
+        for (String tlsID : tlsIDs) {
+            SumoTLSController controller = (SumoTLSController) conn.do_job_get(Trafficlight.getCompleteRedYellowGreenDefinition(tlsID));
+            SumoTLSProgram program = controller.programs.containsKey("0") ? controller.programs.get("0")
+                                                                            : controller.programs.values().iterator().next();
+            int[] durations = new int[program.phases.size()];
+            for (int i = 0; i < durations.length; i++) {
+                durations[i] = (int) program.phases.get(i).maxDur;
+            }
+            String state = (String) conn.do_job_get(Trafficlight.getRedYellowGreenState(tlsID));
+            List<SumoLink> links = (List<SumoLink>) conn.do_job_get(Trafficlight.getControlledLinks(tlsID));
+            roundTrips += 3;
+            builder.addTrafficLight(tlsID, state, durations);
+            for (int linkIndex = 0; linkIndex < links.size(); linkIndex++) {
+                builder.addTrafficLightLink(tlsID, linkIndex, links.get(linkIndex).from);
+            }
+        }
+
+        long elapsedMs = (System.nanoTime() - start) / 1_000_000L;
+        NetworkTopology topology = builder.build("TraCI", roundTrips, elapsedMs);
+        topology.logLoaded();
+        return topology;
+    }
+
+
+    // ----------------------------------------------------------------------------
+    // Edges
+    // ----------------------------------------------------------------------------
+    /** Getter for number of edges, excluding junction edges */
+    public int getEdgeCount() {
+        return edgeIDs.length;
+    }
+
+    /** Getter for index of an edge, -1 if the edge is unknown (or a junction edge) */
+    public int getEdgeIndex(String edgeID) {
+        Integer i = edgeIndex.get(edgeID);
+        return i == null ? -1 : i;
+    }
+
+    /** Getter for ID of the i-th edge */
+    public String getEdgeID(int i) {
+        return edgeIDs[i];
+    }
+
+    /** Getter for a new modifiable List of edge IDs, in index order */
+    public List<String> getEdgeIDList() {
+        List<String> IDs = new ArrayList<>(edgeIDs.length);
+        Collections.addAll(IDs, edgeIDs);
+        return IDs;
+    }
+
+    /** Getter for number of lanes of the i-th edge */
+    public int getLaneCount(int i) {
+        return edgeLaneStart[i + 1] - edgeLaneStart[i];
+    }
+
+    /** Getter for length of the i-th edge (m) */
+    public double getLength(int i) {
+        return laneLength[edgeLaneStart[i]];
+    }
+
+    /** Getter for speed limit of the i-th edge (km/h) */
+    public double getMaxSpeed(int i) {
+        return laneSpeed[edgeLaneStart[i]] * 3.6;
+    }
+
+    /** Getter for new shapes of the lanes of the i-th edge, from lane 0 */
+    public List<SumoGeometry> getLaneShapes(int i) {
+        List<SumoGeometry> shapes = new ArrayList<>(getLaneCount(i));
+        for (int lane = edgeLaneStart[i]; lane < edgeLaneStart[i + 1]; lane++) {
+            shapes.add(toGeometry(laneShapeStart[lane], laneShapeStart[lane + 1]));
+        }
+        return shapes;
+    }
+
+    /**
+     * Getter for shape of a lane by lane ID ([edgeID]_[laneIndex])
+     * @return new shape of the lane, null if the lane does not belong to a cached edge
+     */
+    public SumoGeometry getLaneShape(String laneID) {
+        int lane = laneIndexOf(laneID);
+        return lane == -1 ? null : toGeometry(laneShapeStart[lane], laneShapeStart[lane + 1]);
+    }
+
+
+    // ----------------------------------------------------------------------------
+    // Junctions
+    // ----------------------------------------------------------------------------
+    /** Getter for number of junctions, excluding internal junctions */
+    public int getJunctionCount() {
+        return junctionIDs.length;
+    }
+
+    /** Getter for ID of the j-th junction */
+    public String getJunctionID(int j) {
+        return junctionIDs[j];
+    }
+
+    /** Getter for a new modifiable List of junction IDs, in index order */
+    public List<String> getJunctionIDList() {
+        List<String> IDs = new ArrayList<>(junctionIDs.length);
+        Collections.addAll(IDs, junctionIDs);
+        return IDs;
+    }
+
+    /** Getter for new shape of the j-th junction */
+    public SumoGeometry getJunctionShape(int j) {
+        return toGeometry(junctionShapeStart[j], junctionShapeStart[j + 1]);
+    }
+
+
+    // ----------------------------------------------------------------------------
+    // Traffic lights
+    // ----------------------------------------------------------------------------
+    /** Getter for a new modifiable List of traffic light IDs */
+    public List<String> getTlsIDList() {
+        List<String> IDs = new ArrayList<>(tlsIDs.length);
+        Collections.addAll(IDs, tlsIDs);
+        return IDs;
+    }
+
+    /** Getter for number of traffic lights */
+    public int getTlsCount() {
+        return tlsIDs.length;
+    }
+
+    /** Getter for index of a traffic light (0..getTlsCount()-1), -1 if the traffic light is unknown */
+    public int getTlsIndex(String tlsID) {
+        Integer t = tlsIndex.get(tlsID);
+        return t == null ? -1 : t;
+    }
+
+    /** Getter for ID of the t-th traffic light */
+    public String getTlsID(int t) {
+        return tlsIDs[t];
+    }
+
+    /** Getter for number of phases of a traffic light, -1 if the traffic light is unknown */
+    public int getPhaseCount(String tlsID) {
+        Integer t = tlsIndex.get(tlsID);
+        return t == null ? -1 : tlsPhaseStart[t + 1] - tlsPhaseStart[t];
+    }
+
+    /** Getter for a new List of initial phase durations of a traffic light (s), empty if the traffic light is unknown */
+    public List<Integer> getPhaseDurations(String tlsID) {
+        List<Integer> durations = new ArrayList<>();
+        Integer t = tlsIndex.get(tlsID);
+        if (t != null) {
+            for (int p = tlsPhaseStart[t]; p < tlsPhaseStart[t + 1]; p++) {
+                durations.add(phaseDuration[p]);
+            }
+        }
+        return durations;
+    }
+
+    /** Getter for state of a traffic light at simulation start, null if the traffic light is unknown */
+    public String getInitialState(String tlsID) {
+        Integer t = tlsIndex.get(tlsID);
+        return t == null ? null : tlsInitialState[t];
+    }
+
+    /**
+     * Getter for new shapes of the incoming lanes of the links controlled by a traffic light, in link index order. <br>
+     * A lane that is not cached (should not happen) is given an empty shape so the link indices stay aligned.
+     */
+    public List<SumoGeometry> getControlledLaneShapes(String tlsID) {
+        List<SumoGeometry> shapes = new ArrayList<>();
+        Integer t = tlsIndex.get(tlsID);
+        if (t != null) {
+            for (int k = tlsLinkStart[t]; k < tlsLinkStart[t + 1]; k++) {
+                int lane = linkLane[k];
+                shapes.add(lane == -1 ? new SumoGeometry() : toGeometry(laneShapeStart[lane], laneShapeStart[lane + 1]));
+            }
+        }
+        return shapes;
+    }
+
+
+    // ----------------------------------------------------------------------------
+    // Raw shapes, read by NetworkIndex without creating SumoGeometry objects
+    // ----------------------------------------------------------------------------
+    /** Getter for global index of lane 0 of the i-th edge, i = getEdgeCount() gives the number of lanes */
+    int getLaneStart(int i) {
+        return edgeLaneStart[i];
+    }
+
+    /** Getter for first point of a lane (global lane index), the lane after it starts at its last point + 1 */
+    int getLanePointStart(int lane) {
+        return laneShapeStart[lane];
+    }
+
+    /** Getter for first point of the j-th junction, j = getJunctionCount() gives the end of the last junction */
+    int getJunctionPointStart(int j) {
+        return junctionShapeStart[j];
+    }
+
+    /** Getter for x-coordinate of a point of the point pool */
+    double getPointX(int p) {
+        return pointX[p];
+    }
+
+    /** Getter for y-coordinate of a point of the point pool */
+    double getPointY(int p) {
+        return pointY[p];
+    }
+
+
+    // ----------------------------------------------------------------------------
+    // Startup cost
+    // ----------------------------------------------------------------------------
+    /** Getter for source of the topology ("TraCI" or the net file path) */
+    public String getLoadSource() {
+        return loadSource;
+    }
+
+    /** Getter for number of TraCI round trips needed to load the topology, 0 if parsed from the net file */
+    public int getLoadRoundTrips() {
+        return loadRoundTrips;
+    }
+
+    /** Getter for time needed to load the topology (ms) */
+    public long getLoadTimeMs() {
+        return loadTimeMs;
+    }
+
+    /** Getter for number of points stored for lane and junction shapes */
+    public int getPointCount() {
+        return pointX.length;
+    }
+
+
+    // ----------------------------------------------------------------------------
+    // Private helper methods
+    // ----------------------------------------------------------------------------
+    /**
+     * Log the size and startup cost of the topology, called by the loaders
+     */
+    void logLoaded() {
+        LOGGER.log(Level.INFO, String.format(
+            "Network topology loaded from %s: %d edges, %d lanes, %d junctions, %d traffic lights, %d round trips in %d ms.",
+            loadSource, edgeIDs.length, laneLength.length, junctionIDs.length, tlsIDs.length, loadRoundTrips, loadTimeMs));
+    }
+
+    /**
+     * Private helper method: global index of a lane by lane ID ([edgeID]_[laneIndex]), -1 if not cached
+     */
+    private int laneIndexOf(String laneID) {
+        if (laneID == null) {
+            return -1;
+        }
+        int separator = laneID.lastIndexOf('_');
+        if (separator <= 0) {
+            return -1;
+        }
+        int edge = getEdgeIndex(laneID.substring(0, separator));
+        if (edge == -1) {
+            return -1;
+        }
+        try {
+            int lane = Integer.parseInt(laneID.substring(separator + 1));
+            return lane >= 0 && lane < getLaneCount(edge) ? edgeLaneStart[edge] + lane : -1;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Private helper method: new SumoGeometry from a range of the point pool
+     */
+    private SumoGeometry toGeometry(int from, int to) {
+        SumoGeometry geometry = new SumoGeometry();
+        for (int p = from; p < to; p++) {
+            geometry.add(new SumoPosition2D(pointX[p], pointY[p]));
+        }
+        return geometry;
+    }
+
+    /**
+     * Private helper method: ID -> index map of an ID array
+     */
+    private static Map<String, Integer> indexOf(String[] IDs) {
+        Map<String, Integer> index = new HashMap<>(IDs.length * 2);
+        for (int i = 0; i < IDs.length; i++) {
+            index.put(IDs[i], i);
+        }
+        return index;
+    }
+
+
+    // ----------------------------------------------------------------------------
+    // Builder
+    // ----------------------------------------------------------------------------
+    /**
+     * Mutable builder of a NetworkTopology, filled in network order:
+     *      each addLane belongs to the last added edge, each addPoint to the last added lane or junction. <br>
+     * Traffic light links are given by incoming lane ID and resolved when the topology is built,
+     *      so they can be added before or after the edges.
+     */
+    public static final class Builder {
+        private static final int INITIAL_CAPACITY = 256;
+
+        private final List<String> edgeIDs = new ArrayList<>();
+        private int[] edgeLaneStart = new int[INITIAL_CAPACITY];
+
+        private int laneCount = 0;
+        private double[] laneLength = new double[INITIAL_CAPACITY];
+        private double[] laneSpeed = new double[INITIAL_CAPACITY];
+        private int[] laneShapeStart = new int[INITIAL_CAPACITY];
+        /** End of the points of the last lane, junction points come after it */
+        private int laneShapeEnd = 0;
+
+        private final List<String> junctionIDs = new ArrayList<>();
+        private int[] junctionShapeStart = new int[INITIAL_CAPACITY];
+
+        private int pointCount = 0;
+        private double[] pointX = new double[INITIAL_CAPACITY * 4];
+        private double[] pointY = new double[INITIAL_CAPACITY * 4];
+
+        private final List<String> tlsIDs = new ArrayList<>();
+        private final Map<String, Integer> tlsIndex = new HashMap<>();
+        private final List<String> tlsInitialState = new ArrayList<>();
+        private final List<int[]> tlsPhases = new ArrayList<>();
+        private final List<Map<Integer, String>> tlsLinks = new ArrayList<>();
+
+        /**
+         * Add an edge, its lanes are added next with {@link #addLane}
+         * @param edgeID ID of the edge
+         */
+        public void addEdge(String edgeID) {
+            if (edgeIDs.size() + 1 >= edgeLaneStart.length) {
+                edgeLaneStart = Arrays.copyOf(edgeLaneStart, edgeLaneStart.length * 2);
+            }
+            edgeLaneStart[edgeIDs.size()] = laneCount;
+            edgeIDs.add(edgeID);
+        }
+
+        /**
+         * Add the next lane of the last added edge, its shape points are added next with {@link #addPoint}. <br>
+         * All lanes must be added before the first junction.
+         * @param length length of the lane (m)
+         * @param speed speed limit of the lane (m/s)
+         */
+        public void addLane(double length, double speed) {
+            if (!junctionIDs.isEmpty()) {
+                throw new IllegalStateException("Lanes must be added before junctions.");
+            }
+            if (laneCount + 1 >= laneLength.length) {
+                int capacity = laneLength.length * 2;
+                laneLength = Arrays.copyOf(laneLength, capacity);
+                laneSpeed = Arrays.copyOf(laneSpeed, capacity);
+                laneShapeStart = Arrays.copyOf(laneShapeStart, capacity);
+            }
+            laneLength[laneCount] = length;
+            laneSpeed[laneCount] = speed;
+            laneShapeStart[laneCount] = pointCount;
+            laneCount++;
+        }
+
+        /**
+         * Add a junction, its shape points are added next with {@link #addPoint}
+         * @param junctionID ID of the junction
+         */
+        public void addJunction(String junctionID) {
+            if (junctionIDs.isEmpty()) {
+                laneShapeEnd = pointCount;
+            }
+            if (junctionIDs.size() + 1 >= junctionShapeStart.length) {
+                junctionShapeStart = Arrays.copyOf(junctionShapeStart, junctionShapeStart.length * 2);
+            }
+            junctionShapeStart[junctionIDs.size()] = pointCount;
+            junctionIDs.add(junctionID);
+        }
+
+        /**
+         * Add a shape point to the last added lane or junction
+         */
+        public void addPoint(double x, double y) {
+            if (pointCount == pointX.length) {
+                pointX = Arrays.copyOf(pointX, pointX.length * 2);
+                pointY = Arrays.copyOf(pointY, pointY.length * 2);
+            }
+            pointX[pointCount] = x;
+            pointY[pointCount] = y;
+            pointCount++;
+        }
+
+        /**
+         * Add a traffic light, only the first program of each traffic light is kept
+         * @param tlsID ID of the traffic light
+         * @param initialState state at simulation start ('r', 'y', 'g' sequence)
+         * @param phaseDurations duration of each phase (s)
+         */
+        public void addTrafficLight(String tlsID, String initialState, int[] phaseDurations) {
+            if (tlsIndex.containsKey(tlsID)) {
+                return;
+            }
+            tlsIndex.put(tlsID, tlsIDs.size());
+            tlsIDs.add(tlsID);
+            tlsInitialState.add(initialState);
+            tlsPhases.add(phaseDurations);
+            tlsLinks.add(new HashMap<>());
+        }
+
+        /**
+         * Add a link controlled by an already added traffic light, ignored if the traffic light is unknown
+         * @param tlsID ID of the traffic light
+         * @param linkIndex index of the link in the traffic light state
+         * @param fromLaneID ID of the incoming lane of the link
+         */
+        public void addTrafficLightLink(String tlsID, int linkIndex, String fromLaneID) {
+            Integer t = tlsIndex.get(tlsID);
+            if (t != null) {
+                tlsLinks.get(t).putIfAbsent(linkIndex, fromLaneID);
+            }
+        }
+
+        /** Getter for number of edges added so far */
+        public int getEdgeCount() {
+            return edgeIDs.size();
+        }
+
+        /**
+         * Build the immutable topology, the builder must not be used afterwards
+         * @param loadSource source of the topology, for logs
+         * @param loadRoundTrips number of TraCI round trips needed to load the topology
+         * @param loadTimeMs time needed to load the topology (ms)
+         * @return immutable NetworkTopology
+         */
+        public NetworkTopology build(String loadSource, int loadRoundTrips, long loadTimeMs) {
+            if (junctionIDs.isEmpty()) {
+                laneShapeEnd = pointCount;
+            }
+            return new NetworkTopology(this, loadSource, loadRoundTrips, loadTimeMs);
+        }
+    }
+}
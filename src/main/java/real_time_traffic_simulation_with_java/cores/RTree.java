@@ -0,0 +1,358 @@
+package real_time_traffic_simulation_with_java.cores;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+
+/**
+ * Static R-tree over the axis-aligned bounds of items (edges, lanes, junctions, map nodes), packed once
+ *      with Sort-Tile-Recursive: items are sorted by x into vertical slices, each slice by y into leaves of
+ *      {@link #NODE_CAPACITY} items, then the same is done with the leaves, and so on up to the root. <br>
+ * Nodes are stored level by level in primitive arrays, the children of a node are contiguous:
+ *      a leaf holds items[childStart]..items[childEnd-1], an inner node holds nodes childStart..childEnd-1. <br>
+ * Answers rectangle queries and nearest-neighbour queries (best-first search, exact item distance given by the caller).
+ *      Immutable once built, so queries may run on any thread.
+ */
+public final class RTree {
+    /** Maximum number of children of a node */
+    public static final int NODE_CAPACITY = 16;
+
+    /**
+     * Exact distance between an item and a point, used by {@link #nearest}. <br>
+     * Must not be smaller than the distance between the point and the bounds of the item.
+     */
+    @FunctionalInterface
+    public interface ItemDistance {
+        double distance(int item, double x, double y);
+    }
+
+    /** Item bounds, by item index */
+    private final double[] itemMinX;
+    private final double[] itemMinY;
+    private final double[] itemMaxX;
+    private final double[] itemMaxY;
+    /** Items in leaf order */
+    private final int[] items;
+
+    /** Node bounds and children, leaves first (nodes 0..leafCount-1), root last */
+    private final double[] nodeMinX;
+    private final double[] nodeMinY;
+    private final double[] nodeMaxX;
+    private final double[] nodeMaxY;
+    private final int[] childStart;
+    private final int[] childEnd;
+    private final int leafCount;
+    private final int height;
+
+    /**
+     * Pack the tree, the arrays are taken over
+     * @param minX smallest x of each item
+     * @param minY smallest y of each item
+     * @param maxX largest x of each item
+     * @param maxY largest y of each item
+     */
+    public RTree(double[] minX, double[] minY, double[] maxX, double[] maxY) {
+        int n = minX.length;
+        this.itemMinX = minX;
+        this.itemMinY = minY;
+        this.itemMaxX = maxX;
+        this.itemMaxY = maxY;
+
+        // Node count: every level holds ceil(previous / capacity) nodes, down to one root
+        int nodes = 0;
+        int levels = 0;
+        for (int count = Math.max(n, 1); ; count = ceilDiv(count, NODE_CAPACITY)) {
+            int parents = ceilDiv(count, NODE_CAPACITY);
+            nodes += parents;
+            levels++;
+            if (parents == 1) {
+                break;
+            }
+        }
+        this.nodeMinX = new double[nodes];
+        this.nodeMinY = new double[nodes];
+        this.nodeMaxX = new double[nodes];
+        this.nodeMaxY = new double[nodes];
+        this.childStart = new int[nodes];
+        this.childEnd = new int[nodes];
+        this.height = levels;
+
+        // Leaves over the items
+        this.items = new int[n];
+        for (int i = 0; i < n; i++) {
+            items[i] = i;
+        }
+        double[] centerX = new double[n];
+        double[] centerY = new double[n];
+        for (int i = 0; i < n; i++) {
+            centerX[i] = (minX[i] + maxX[i]) / 2;
+            centerY[i] = (minY[i] + maxY[i]) / 2;
+        }
+        sortTileRecursive(items, n, centerX, centerY);
+        int levelCount = ceilDiv(Math.max(n, 1), NODE_CAPACITY);
+        for (int node = 0; node < levelCount; node++) {
+            int from = node * NODE_CAPACITY;
+            int to = Math.min(n, from + NODE_CAPACITY);
+            childStart[node] = from;
+            childEnd[node] = to;
+            setBounds(node, minX, minY, maxX, maxY, items, from, to);
+        }
+        this.leafCount = levelCount;
+
+        // Inner levels over the level below: nodes of the level below are reordered in place before being grouped
+        int levelStart = 0;
+        while (levelCount > 1) {
+            int[] order = new int[levelCount];
+            double[] nodeCenterX = new double[levelCount];
+            double[] nodeCenterY = new double[levelCount];
+            for (int k = 0; k < levelCount; k++) {
+                order[k] = k;
+                nodeCenterX[k] = (nodeMinX[levelStart + k] + nodeMaxX[levelStart + k]) / 2;
+                nodeCenterY[k] = (nodeMinY[levelStart + k] + nodeMaxY[levelStart + k]) / 2;
+            }
+            sortTileRecursive(order, levelCount, nodeCenterX, nodeCenterY);
+            permute(levelStart, order);
+
+            int parentStart = levelStart + levelCount;
+            int parentCount = ceilDiv(levelCount, NODE_CAPACITY);
+            for (int p = 0; p < parentCount; p++) {
+                int node = parentStart + p;
+                int from = levelStart + p * NODE_CAPACITY;
+                int to = Math.min(levelStart + levelCount, from + NODE_CAPACITY);
+                childStart[node] = from;
+                childEnd[node] = to;
+                setBounds(node, nodeMinX, nodeMinY, nodeMaxX, nodeMaxY, null, from, to);
+            }
+            levelStart = parentStart;
+            levelCount = parentCount;
+        }
+    }
+
+
+    /**
+     * Report every item whose bounds overlap the rectangle, each once
+     * @param x0 smallest x of the rectangle
+     * @param y0 smallest y of the rectangle
+     * @param x1 largest x of the rectangle
+     * @param y1 largest y of the rectangle
+     * @param consumer receiver of the item indices
+     * @return number of items reported
+     */
+    public int query(double x0, double y0, double x1, double y1, IntConsumer consumer) {
+        if (items.length == 0) {
+            return 0;
+        }
+        int reported = 0;
+        int[] stack = new int[height * NODE_CAPACITY + 1];
+        int top = 0;
+        stack[top++] = nodeMinX.length - 1;
+        while (top > 0) {
+            int node = stack[--top];
+            if (nodeMaxX[node] < x0 || nodeMinX[node] > x1 || nodeMaxY[node] < y0 || nodeMinY[node] > y1) {
+                continue;
+            }
+            if (node < leafCount) {
+                for (int k = childStart[node]; k < childEnd[node]; k++) {
+                    int i = items[k];
+                    if (itemMaxX[i] >= x0 && itemMinX[i] <= x1 && itemMaxY[i] >= y0 && itemMinY[i] <= y1) {
+                        consumer.accept(i);
+                        reported++;
+                    }
+                }
+            } else {
+                for (int child = childStart[node]; child < childEnd[node]; child++) {
+                    stack[top++] = child;
+                }
+            }
+        }
+        return reported;
+    }
+
+    /**
+     * Find the item closest to a point. <br>
+     * Best-first search: nodes and items are visited in order of their distance to the point,
+     *      the first item taken from the queue is the closest one.
+     * @param x x-coordinate of the point
+     * @param y y-coordinate of the point
+     * @param maxDistance items further than this are ignored
+     * @param distance exact distance of an item, null to use the distance to its bounds
+     * @return index of the closest item, -1 if no item is within maxDistance
+     */
+    public int nearest(double x, double y, double maxDistance, ItemDistance distance) {
+        if (items.length == 0) {
+            return -1;
+        }
+        // Min-heap of (distance, entry): entry >= 0 is a node, entry < 0 is item -entry-1
+        double[] keys = new double[64];
+        int[] entries = new int[64];
+        int size = 0;
+        int root = nodeMinX.length - 1;
+        keys[0] = boxDistance(x, y, nodeMinX[root], nodeMinY[root], nodeMaxX[root], nodeMaxY[root]);
+        entries[0] = root;
+        size = 1;
+        while (size > 0) {
+            double key = keys[0];
+            int entry = entries[0];
+            // Pop
+            size--;
+            double lastKey = keys[size];
+            int lastEntry = entries[size];
+            int hole = 0;
+            while (2 * hole + 1 < size) {
+                int child = 2 * hole + 1;
+                if (child + 1 < size && keys[child + 1] < keys[child]) {
+                    child++;
+                }
+                if (keys[child] >= lastKey) {
+                    break;
+                }
+                keys[hole] = keys[child];
+                entries[hole] = entries[child];
+                hole = child;
+            }
+            keys[hole] = lastKey;
+            entries[hole] = lastEntry;
+
+            if (key > maxDistance) {
+                return -1;
+            }
+            if (entry < 0) {
+                return -entry - 1;
+            }
+            boolean leaf = entry < leafCount;
+            for (int k = childStart[entry]; k < childEnd[entry]; k++) {
+                int child;
+                double childKey;
+                if (leaf) {
+                    int i = items[k];
+                    child = -i - 1;
+                    childKey = distance != null ? distance.distance(i, x, y)
+                                : boxDistance(x, y, itemMinX[i], itemMinY[i], itemMaxX[i], itemMaxY[i]);
+                } else {
+                    child = k;
+                    childKey = boxDistance(x, y, nodeMinX[k], nodeMinY[k], nodeMaxX[k], nodeMaxY[k]);
+                }
+                if (childKey > maxDistance) {
+                    continue;
+                }
+                // Push
+                if (size == keys.length) {
+                    keys = Arrays.copyOf(keys, size * 2);
+                    entries = Arrays.copyOf(entries, size * 2);
+                }
+                int slot = size++;
+                while (slot > 0 && keys[(slot - 1) / 2] > childKey) {
+                    keys[slot] = keys[(slot - 1) / 2];
+                    entries[slot] = entries[(slot - 1) / 2];
+                    slot = (slot - 1) / 2;
+                }
+                keys[slot] = childKey;
+                entries[slot] = child;
+            }
+        }
+        return -1;
+    }
+
+    /** Getter for number of items */
+    public int size() {
+        return items.length;
+    }
+
+    /** Getter for number of levels, leaves included */
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * Distance between a point and a rectangle, 0 inside
+     */
+    public static double boxDistance(double x, double y, double minX, double minY, double maxX, double maxY) {
+        double dx = Math.max(0, Math.max(minX - x, x - maxX));
+        double dy = Math.max(0, Math.max(minY - y, y - maxY));
+        return Math.sqrt(dx * dx + dy * dy);
+    }
+
+
+    // ----------------------------------------------------------------------------
+    // Private helper methods
+    // ----------------------------------------------------------------------------
+    /**
+     * Private helper method: Sort-Tile-Recursive order of entries, by center x into slices, then by center y in each slice
+     */
+    private static void sortTileRecursive(int[] entries, int n, double[] centerX, double[] centerY) {
+        int leaves = ceilDiv(Math.max(n, 1), NODE_CAPACITY);
+        int slices = (int) Math.ceil(Math.sqrt(leaves));
+        int sliceSize = slices * NODE_CAPACITY;
+        sortByKey(entries, 0, n, centerX);
+        for (int from = 0; from < n; from += sliceSize) {
+            sortByKey(entries, from, Math.min(n, from + sliceSize), centerY);
+        }
+    }
+
+    /**
+     * Private helper method: sort a range of entries by a key, on primitive longs (key order in the high bits)
+     */
+    private static void sortByKey(int[] entries, int from, int to, double[] key) {
+        long[] packed = new long[to - from];
+        for (int k = from; k < to; k++) {
+            int bits = Float.floatToIntBits((float) key[entries[k]]);
+            // Flip so that the signed int order is the float order
+            bits ^= (bits >> 31) & 0x7fffffff;
+            packed[k - from] = ((long) bits << 32) | (entries[k] & 0xffffffffL);
+        }
+        Arrays.sort(packed);
+        for (int k = from; k < to; k++) {
+            entries[k] = (int) packed[k - from];
+        }
+    }
+
+    /**
+     * Private helper method: reorder the nodes of a level, node levelStart+k takes the place of node levelStart+order[k]
+     */
+    private void permute(int levelStart, int[] order) {
+        int count = order.length;
+        double[] x0 = new double[count], y0 = new double[count], x1 = new double[count], y1 = new double[count];
+        int[] start = new int[count], end = new int[count];
+        for (int k = 0; k < count; k++) {
+            int node = levelStart + order[k];
+            x0[k] = nodeMinX[node];
+            y0[k] = nodeMinY[node];
+            x1[k] = nodeMaxX[node];
+            y1[k] = nodeMaxY[node];
+            start[k] = childStart[node];
+            end[k] = childEnd[node];
+        }
+        System.arraycopy(x0, 0, nodeMinX, levelStart, count);
+        System.arraycopy(y0, 0, nodeMinY, levelStart, count);
+        System.arraycopy(x1, 0, nodeMaxX, levelStart, count);
+        System.arraycopy(y1, 0, nodeMaxY, levelStart, count);
+        System.arraycopy(start, 0, childStart, levelStart, count);
+        System.arraycopy(end, 0, childEnd, levelStart, count);
+    }
+
+    /**
+     * Private helper method: bounds of a node, union of the children from..to-1 (through the index array if given)
+     */
+    private void setBounds(int node, double[] minX, double[] minY, double[] maxX, double[] maxY, int[] index, int from, int to) {
+        double x0 = Double.POSITIVE_INFINITY, y0 = Double.POSITIVE_INFINITY;
+        double x1 = Double.NEGATIVE_INFINITY, y1 = Double.NEGATIVE_INFINITY;
+        for (int k = from; k < to; k++) {
+            int i = index == null ? k : index[k];
+            x0 = Math.min(x0, minX[i]);
+            y0 = Math.min(y0, minY[i]);
+            x1 = Math.max(x1, maxX[i]);
+            y1 = Math.max(y1, maxY[i]);
+        }
+        nodeMinX[node] = x0;
+        nodeMinY[node] = y0;
+        nodeMaxX[node] = x1;
+        nodeMaxY[node] = y1;
+    }
+
+    /**
+     * Private helper method: ceil(a / b) for positive integers
+     */
+    private static int ceilDiv(int a, int b) {
+        return (a + b - 1) / b;
+    }
+}
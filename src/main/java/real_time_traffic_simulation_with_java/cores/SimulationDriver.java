@@ -0,0 +1,122 @@
+package real_time_traffic_simulation_with_java.cores;
+
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+
+/**
+ * Dedicated thread that steps the simulation at a fixed rate, independent of the GUI frame rate. <br>
+ * The driver thread is the only thread that advances SUMO: control actions from the GUI are handed over with
+ *      {@link SimulationEngine#runOnSimulationThread(Runnable)} and executed between two steps. <br>
+ * Every step publishes a new immutable {@link StepSnapshot} (see {@link SimulationEngine#getSnapshot()}):
+ *      the driver builds the next snapshot while the GUI keeps painting the previous one,
+ *      and the reference is swapped atomically once the step is complete.
+ */
+public class SimulationDriver {
+    private static final Logger LOGGER = Logger.getLogger(SimulationDriver.class.getName());
+
+    private final SimulationEngine simulationEngine;
+    /** Time between two steps (ms), 0 to step as fast as SUMO allows */
+    private final long stepIntervalMs;
+    /** Called on the driver thread after each step with the new snapshot */
+    private final Consumer<StepSnapshot> onStep;
+    /** Called on the driver thread once when SUMO connection is closed */
+    private final Runnable onClosed;
+
+    private Thread thread;
+    private volatile boolean running = false;
+
+    /**
+     * Dedicated thread that steps the simulation at a fixed rate, independent of the GUI frame rate.
+     * @param engine SimulationEngine instance to step
+     * @param stepIntervalMs Time between two steps (ms), 0 to step as fast as SUMO allows
+     * @param onStep Called on the driver thread after each step with the new snapshot (e.g. queue CSV export)
+     * @param onClosed Called on the driver thread once when SUMO connection is closed
+     */
+    public SimulationDriver(SimulationEngine engine, long stepIntervalMs, Consumer<StepSnapshot> onStep, Runnable onClosed) {
+        this.simulationEngine = engine;
+        this.stepIntervalMs = stepIntervalMs;
+        this.onStep = onStep;
+        this.onClosed = onClosed;
+    }
+
+
+    /**
+     * Start the driver thread, does nothing if already started
+     */
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        thread = new Thread(this::loop, "simulation-driver");
+        thread.setDaemon(true);
+        thread.start();
+        LOGGER.log(Level.INFO, "Simulation driver started, step interval: " + stepIntervalMs + " ms.");
+    }
+
+    /**
+     * Stop the driver thread and wait for the current step to finish
+     */
+    public synchronized void stop() {
+        running = false;
+        if (thread == null) {
+            return;
+        }
+        thread.interrupt();
+        try {
+            thread.join(5000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        thread = null;
+        LOGGER.log(Level.INFO, "Simulation driver stopped.");
+    }
+
+    /** Getter for running state of the driver */
+    public boolean isRunning() {
+        return running;
+    }
+
+
+    /**
+     * Private helper method: step, publish, then sleep until the next step is due. <br>
+     * Deadlines are advanced by a fixed interval so the rate does not drift with the step duration;
+     *      if a step overruns, the next one starts immediately instead of piling up.
+     */
+    private void loop() {
+        final long intervalNanos = stepIntervalMs * 1_000_000L;
+        long nextStep = System.nanoTime();
+        while (running) {
+            try {
+                simulationEngine.stepSimulation();
+                if (onStep != null) {
+                    onStep.accept(simulationEngine.getSnapshot());
+                }
+            } catch (IllegalStateException closed) {
+                running = false;
+                LOGGER.log(Level.WARNING, "Simulation connection closed. Simulation driver stopped.");
+                if (onClosed != null) {
+                    onClosed.run();
+                }
+                return;
+            } catch (Exception e) {
+                LOGGER.log(Level.SEVERE, "Error during simulation step: " + e.getMessage(), e);
+            }
+
+            nextStep += intervalNanos;
+            long wait = nextStep - System.nanoTime();
+            if (wait <= 0) {
+                nextStep = System.nanoTime();
+                continue;
+            }
+            try {
+                Thread.sleep(wait / 1_000_000L, (int) (wait % 1_000_000L));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+}
@@ -5,9 +5,17 @@ import java.util.List;
 import java.util.logging.Logger;
 import java.util.logging.Level; 
 import java.util.Collections;
+import java.util.Queue;
+import java.util.Random;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.function.IntConsumer;
 
 import real_time_traffic_simulation_with_java.wrapper.*;
 import real_time_traffic_simulation_with_java.alias.Color;
+import real_time_traffic_simulation_with_java.alias.Metrics;
+import real_time_traffic_simulation_with_java.tools.ReportData;
 
 
 /**
@@ -23,20 +31,79 @@ public class SimulationEngine {
     private RouteManager routeManager;
     private TrafficLightManager trafficLightManager;
     private JunctionManager junctionManager;
+    private SubscriptionManager subscriptionManager;
+    /** Static network, read once at startup */
+    private NetworkTopology topology;
+    /** State of the last performed step, shared by all consumers of that step */
+    private volatile StepSnapshot snapshot = StepSnapshot.EMPTY;
+    /** Per-edge metrics of the last performed step, computed once per step for the dashboard and the tooltips */
+    private volatile EdgeMetrics edgeMetrics = EdgeMetrics.EMPTY;
+    /** Length (m) and speed limit (km/h) by edge handle, from the topology */
+    private double[] edgeLength = new double[0];
+    private double[] edgeMaxSpeed = new double[0];
+    /** Spatial index of the static network, built once from the topology */
+    private NetworkIndex networkIndex = NetworkIndex.EMPTY;
+    /** Grid over the vehicle positions of the last performed step */
+    private volatile VehicleGrid vehicleIndex = VehicleGrid.EMPTY;
+    /** History of the per-edge and global metrics, one sample per step */
+    private TimeSeriesStore history = new TimeSeriesStore(0, 0);
+    /** Control actions waiting to be executed by the simulation thread before the next step */
+    private final Queue<Runnable> pendingTasks = new ConcurrentLinkedQueue<>();
 
     /**
      * Core to control the simulation, center of backend operations. <br>
-     * Manages all other manager classes.
+     * Manages all other manager classes. Sumo is reached through the transport selected by -Dsumo.transport.
      * @throws Exception
      */
     public SimulationEngine() throws Exception {
-        this.conn = new SumoTraasConnection();
+        this(SumoTransport.fromSpec(Metrics.SUMO_TRANSPORT));
+    }
+
+    /**
+     * Core to control the simulation, center of backend operations. <br>
+     * Manages all other manager classes.
+     * @param transport how the connection to Sumo is opened (local Sumo binary, remote Sumo, fake server)
+     * @throws Exception
+     */
+    public SimulationEngine(SumoTransport transport) throws Exception {
+        this.conn = new SumoTraasConnection(transport);
+        // Static network is parsed from the net file while Sumo is starting, managers read it from the cache instead of querying Sumo
+        String netFile = this.conn.getNetFile();
+        FutureTask<NetworkTopology> netFileTask = null;
+        if (netFile != null) {
+            netFileTask = new FutureTask<>(() -> NetFileLoader.load(netFile));
+            Thread netFileThread = new Thread(netFileTask, "net-file-loader");
+            netFileThread.setDaemon(true);
+            netFileThread.start();
+        }
+        // The connection only exists once started, managers are created after it
+        this.conn.startConnection();
+        LOGGER.log(Level.INFO, "Simulation connected through " + transport.describe());
         this.vehicleManager = new VehicleManager(this.conn.getConnection());
         this.edgeManager = new EdgeManager(this.conn.getConnection());
         this.routeManager = new RouteManager(this.conn.getConnection());
         this.trafficLightManager = new TrafficLightManager(this.conn.getConnection());
         this.junctionManager = new JunctionManager(this.conn.getConnection());
-        this.conn.startConnection();
+        this.subscriptionManager = new SubscriptionManager(this.conn.getConnection());
+        this.topology = awaitTopology(netFileTask);
+        this.edgeManager.setTopology(this.topology);
+        this.trafficLightManager.setTopology(this.topology);
+        this.junctionManager.setTopology(this.topology);
+        this.subscriptionManager.register(this.topology, this.vehicleManager.getIDList());
+        this.edgeLength = new double[this.topology.getEdgeCount()];
+        this.edgeMaxSpeed = new double[this.topology.getEdgeCount()];
+        for (int edge = 0; edge < this.edgeLength.length; edge++) {
+            this.edgeLength[edge] = this.topology.getLength(edge);
+            this.edgeMaxSpeed[edge] = this.topology.getMaxSpeed(edge);
+        }
+        long indexStart = System.nanoTime();
+        this.networkIndex = new NetworkIndex(this.topology);
+        LOGGER.log(Level.INFO, String.format("Network spatial index built in %.1f ms (%d edges, %d lanes).",
+                                                (System.nanoTime() - indexStart) / 1e6, this.topology.getEdgeCount(),
+                                                this.networkIndex.getLaneCount()));
+        this.history = new TimeSeriesStore(this.topology.getEdgeCount(), Metrics.HISTORY_MEMORY_BUDGET_MB * 1024L * 1024L);
+        LOGGER.log(Level.INFO, String.format("Metric history keeps %d steps (%d MB).",
+                                                this.history.getCapacity(), this.history.getMemoryBytes() >> 20));
     }
 
 
@@ -44,9 +111,13 @@ public class SimulationEngine {
     // Simulation Control Methods
     // ----------------------------------------------------------------------------
     /**
-     * Control simulation: advance simulation by one step & update edge congestion status and traffic light states
+     * Control simulation: run pending control actions, advance simulation by one step, 
+     *      collect the subscribed results into a new snapshot & update edge congestion status from it. <br>
+     * Only the simulation thread (see {@link SimulationDriver}) should call this method, 
+     *      the GUI paints the published snapshot with {@link #refreshMapState()}.
      */
     public void stepSimulation() throws IllegalStateException {
+        runPendingTasks();
         try {this.conn.nextStep();} catch(IllegalStateException e){
             LOGGER.log(Level.SEVERE, "Simulation has ended or connection lost: ", e);
             throw e;
@@ -54,13 +125,83 @@ public class SimulationEngine {
             LOGGER.log(Level.SEVERE, "Error advancing simulation step: ", e);
             return; // Stop method execution here if step fails
         }
-        try {this.edgeManager.updateEdgeDataList();}catch (Exception e) {
+        StepSnapshot next = this.subscriptionManager.collect();
+        EdgeMetrics metrics = new EdgeMetrics(next, this.edgeLength, this.edgeMaxSpeed);
+        try {this.edgeManager.updateEdgeDataList(next, metrics);}catch (Exception e) {
+            LOGGER.log(Level.WARNING, "Failed to update edge congestion status.", e);
+        }
+        // Publish the finished step, readers keep the previous snapshot until this point
+        this.history.append(next, metrics, getCongestedEdgeCount());
+        this.edgeMetrics = metrics;
+        this.vehicleIndex = new VehicleGrid(next);
+        this.snapshot = next;
+    }
+    /**
+     * Hand a control action (inject vehicles, toggle traffic lights, ...) over to the simulation thread. <br>
+     * The action runs right before the next step, so the GUI never waits for a TraCI round trip.
+     * @param task action to run on the simulation thread
+     */
+    public void runOnSimulationThread(Runnable task) {
+        this.pendingTasks.add(task);
+    }
+    /**
+     * Apply the published snapshot to map objects: edge colors and traffic light states. <br>
+     * Must be called on the JavaFX Application Thread.
+     */
+    public void refreshMapState() {
+        try {this.edgeManager.updateEdgeColors();}catch (Exception e) {
             LOGGER.log(Level.WARNING, "Failed to re-render edge.", e);
         }
-        try {this.trafficLightManager.updateTrafficLightDataList();} catch (Exception e) {
+        try {this.trafficLightManager.updateTrafficLightDataList(this.snapshot);} catch (Exception e) {
             LOGGER.log(Level.WARNING, "Failed to re-render traffic lights.", e);
         }
     }
+    /**
+     * Get the state of the last performed step
+     * @return immutable StepSnapshot, StepSnapshot.EMPTY before the first step
+     */
+    public StepSnapshot getSnapshot() {
+        return this.snapshot;
+    }
+    /**
+     * Get the per-edge metrics of the last performed step
+     * @return immutable EdgeMetrics, EdgeMetrics.EMPTY before the first step
+     */
+    public EdgeMetrics getEdgeMetrics() {
+        return this.edgeMetrics;
+    }
+    /**
+     * Get the history of the per-edge and global metrics, for trends
+     * @return TimeSeriesStore, appended by the simulation thread
+     */
+    public TimeSeriesStore getHistory() {
+        return this.history;
+    }
+    /**
+     * Get the spatial index of the static network (edges, lanes, junctions)
+     * @return immutable NetworkIndex, NetworkIndex.EMPTY before the topology is loaded
+     */
+    public NetworkIndex getNetworkIndex() {
+        return this.networkIndex;
+    }
+    /**
+     * Get the grid over the vehicle positions of a snapshot: the one built by the simulation thread
+     *      if the snapshot is the last performed step, a new one otherwise
+     * @param snapshot state of a step
+     * @return immutable VehicleGrid of the snapshot
+     */
+    public VehicleGrid getVehicleIndex(StepSnapshot snapshot) {
+        VehicleGrid grid = this.vehicleIndex;
+        return grid.getSnapshot() == snapshot ? grid : new VehicleGrid(snapshot);
+    }
+    /**
+     * Get the edge handle of an edge, its index in {@link EdgeMetrics} and {@link StepSnapshot}
+     * @param edgeID ID of the edge
+     * @return edge handle, -1 if the edge is unknown or a junction edge
+     */
+    public int getEdgeHandle(String edgeID) {
+        return this.topology.getEdgeIndex(edgeID);
+    }
     /**
      * Control simulation: stop
      */
@@ -134,10 +275,11 @@ public class SimulationEngine {
         // Generate a unique ID
         String routeID = (long) System.currentTimeMillis() + "";
         try {this.routeManager.add(routeID, start_edge_ID, end_edge_ID);} catch (Exception e) {return;}
+        List<VehicleManager.VehicleSpec> specs = new ArrayList<>(numVehicles);
         for (int i = 0; i < numVehicles; i++) {
-            String vehicleID = routeID + "_" + i;
-            this.vehicleManager.add(vehicleID, routeID, color, speed);
+            specs.add(new VehicleManager.VehicleSpec(routeID + "_" + i, routeID, color, speed));
         }
+        this.vehicleManager.addAll(specs);
         LOGGER.log(Level.INFO, String.format("Injected %d vehicles from %s to %s.", numVehicles, start_edge_ID, end_edge_ID));
     }
 
@@ -165,11 +307,13 @@ public class SimulationEngine {
         Collections.shuffle(edgeIDs);
         int number_of_random_routes;
         if(edgeIDs.size() < 10) {number_of_random_routes = edgeIDs.size();} else {number_of_random_routes = 10;}
+        if (number_of_random_routes == 0) {
+            LOGGER.log(Level.WARNING, "Stress test failed: no edge to route vehicles to.");
+            return;
+        }
         List<String> end_edge_IDs = edgeIDs.subList(0, number_of_random_routes);
         // Generate a unique ID
         String ID = (long) System.currentTimeMillis() + "";
-        //Generate color list to inject vehicles with random color
-        List<String> colorList = new ArrayList<>(Color.ListofAllColor);
         // Generate n random routes to inject vehicles
         for (int j = 0; j < number_of_random_routes; j++) {
             // If route creation fails, generate route of 1 edge (start_edge to start_edge)
@@ -177,19 +321,17 @@ public class SimulationEngine {
                 try{this.routeManager.add(ID + "_" + j, start_edge_ID, end_edge_IDs.get(j));} catch (Exception ex) {}
             }
         } 
-        // Inject vehicles
-        int i = 0;
-        while (i < number_of_vehicles) {
-            for (int j = 0; j < number_of_random_routes; j++) {
-                Collections.shuffle(colorList);
-                this.vehicleManager.add(ID + "_" + j + "_" + i, ID + "_" + j, colorList.get(0), "max");
-                i++;
-                if (i >= number_of_vehicles) {
-                    break;
-                }
-            }
+        // Inject vehicles round-robin over the routes with a random color, all in batches
+        List<String> colorList = Color.ListofAllColor;
+        Random random = new Random();
+        List<VehicleManager.VehicleSpec> specs = new ArrayList<>(number_of_vehicles);
+        for (int i = 0; i < number_of_vehicles; i++) {
+            int j = i % number_of_random_routes;
+            specs.add(new VehicleManager.VehicleSpec(ID + "_" + j + "_" + i, ID + "_" + j,
+                                                        colorList.get(random.nextInt(colorList.size())), "max"));
         }
-        LOGGER.log(Level.INFO, String.format("Stress test: Injected %d vehicles to edge: %s.", number_of_vehicles, start_edge_ID));
+        int injected = this.vehicleManager.addAll(specs);
+        LOGGER.log(Level.INFO, String.format("Stress test: Injected %d/%d vehicles to edge: %s.", injected, number_of_vehicles, start_edge_ID));
     }
 
 
@@ -253,14 +395,39 @@ public class SimulationEngine {
         }
     }
     /**
-     * Get mapping data: vehicles
-     * @return List of VehicleData representing vehicles shape to be rendered
+     * Get mapping data: whether a vehicle of the snapshot passes the vehicle filter
+     * @param snapshot state of the step to draw
+     * @param i index of the vehicle in the snapshot
+     * @return true if the vehicle should be drawn
      */
-    public List<VehicleData> getMapVehicles(){
-        try {return this.vehicleManager.getVehicleDataList();} catch (Exception e) {
-            LOGGER.log(Level.WARNING, "Failed to retrieve vehicle data for map rendering.", e);
-            return new ArrayList<>();
+    public boolean isVehicleShown(StepSnapshot snapshot, int i) {
+        return this.vehicleManager.isFiltered(snapshot, i);
+    }
+    /**
+     * Get mapping data: every vehicle of the snapshot inside a rectangle which passes the vehicle filter. <br>
+     * Vehicles are looked up in the vehicle grid, with the edge filter the rectangle is first narrowed
+     *      to the bounds of the edge, so only vehicles close to it are tested.
+     * @param snapshot state of the step to draw
+     * @param x0 smallest x of the rectangle
+     * @param y0 smallest y of the rectangle
+     * @param x1 largest x of the rectangle
+     * @param y1 largest y of the rectangle
+     * @param action receiver of the vehicle indices
+     */
+    public void forEachShownVehicle(StepSnapshot snapshot, double x0, double y0, double x1, double y1, IntConsumer action) {
+        int edge = this.topology == null ? -1 : this.topology.getEdgeIndex(this.vehicleManager.getFilterEdge());
+        if (edge != -1) {
+            double[] bounds = this.networkIndex.getEdgeBounds(edge);
+            x0 = Math.max(x0, bounds[0] - Metrics.DEFAULT_VEHICLE_LENGTH);
+            y0 = Math.max(y0, bounds[1] - Metrics.DEFAULT_VEHICLE_LENGTH);
+            x1 = Math.min(x1, bounds[2] + Metrics.DEFAULT_VEHICLE_LENGTH);
+            y1 = Math.min(y1, bounds[3] + Metrics.DEFAULT_VEHICLE_LENGTH);
         }
+        getVehicleIndex(snapshot).query(x0, y0, x1, y1, i -> {
+            if (this.vehicleManager.isFiltered(snapshot, i)) {
+                action.accept(i);
+            }
+        });
     }
     /**
      * Set mapping data: filter vehicles by color and edge
@@ -292,39 +459,43 @@ public class SimulationEngine {
      * @return Formatted tooltip string
      */
     public String getEdgeTooltip(String edgeID) {
-        int laneCount;
-        try {
-            laneCount = edgeManager.getLaneCount(edgeID);
-        } catch (Exception e) {
-            LOGGER.log(Level.WARNING, "Unable to get lane count for edge ID: " + edgeID, e);
-            laneCount = -1;
-        }
+        int laneCount = edgeManager.getLaneCount(edgeID);
+        StepSnapshot current = this.snapshot;
+        EdgeMetrics metrics = this.edgeMetrics;
+        int handle = getEdgeHandle(edgeID);
         return String.format(
 "Edge ID: %s (%d lane), Max speed: %.2f km/h, Length: %.2f m\n Vehicle Count: %d, Average Speed: %.2f km/h\nDensity: %.2f veh/km, Estimated Travel Time: %.2f s",  
                     edgeID, laneCount, 
                     edgeManager.getMaxSpeed(edgeID), edgeManager.getLength(edgeID),
-                    edgeManager.getVehicleCount(edgeID), edgeManager.getAverageSpeed(edgeID),
-                    edgeManager.getDensity(edgeID), edgeManager.getTravelTime(edgeID)
+                    current.getEdgeVehicleCount(handle), metrics.getAverageSpeed(handle),
+                    metrics.getDensity(handle), metrics.getTravelTime(handle)
                 );
     }
     /**
-     * Get tooltip: traffic lights
+     * Get tooltip: vehicles, read from a snapshot since vehicles are picked on the drawn step
+     * @param snapshot state of the drawn step
+     * @param i index of the vehicle in the snapshot
+     * @return Formatted tooltip string
+     */
+    public String getVehicleTooltip(StepSnapshot snapshot, int i) {
+        return String.format("Vehicle ID: %s, Color: %s\n Speed: %.2f km/h, Edge: %s",
+                    snapshot.getVehicleID(i), Color.colorToString(snapshot.getVehicleRGBA(i)),
+                    snapshot.getVehicleSpeed(i), snapshot.getVehicleEdgeID(i)
+                );
+    }
+    /**
+     * Get tooltip: traffic lights, read from the current snapshot and the static network,
+     *      so that the JavaFX Application Thread never queries Sumo
      * @param tlID ID of the traffic light
      * @return Formatted tooltip string
      */
     public String getTlTooltip(String tlID) {
-        int phaseCount;
-        try {
-            phaseCount = trafficLightManager.getPhaseCount(tlID);
-        } catch (Exception e) {
-            LOGGER.log(Level.WARNING, "Unable to get phase count for traffic light ID: " + tlID, e);
-            phaseCount = -1;
-        }
+        StepSnapshot current = this.snapshot;
         return String.format(
 "Traffic Light ID: %s (%d phase) controlled Junction: %s\n Currently at phase: %d (Total: %.0f seconds)\n Remain: %.0f seconds",  
-                    tlID, phaseCount, tlID,
-                    trafficLightManager.getPhaseID(tlID), trafficLightManager.getDuration(tlID),
-                    trafficLightManager.getNextSwitch(tlID)
+                    tlID, this.topology.getPhaseCount(tlID), tlID,
+                    trafficLightManager.getPhaseID(current, tlID), trafficLightManager.getDuration(current, tlID),
+                    trafficLightManager.getNextSwitch(current, tlID)
                 );
     }
 
@@ -337,13 +508,7 @@ public class SimulationEngine {
      * @return Formatted statistic string for Dashboard
      */
     public String getCurrentTimeStep() throws IllegalStateException{
-        try {return String.format("Current Time Step: %.1f", this.conn.getCurrentStep());
-        } catch(IllegalStateException e){
-            throw e;
-        } catch (Exception e) {
-            LOGGER.log(Level.WARNING, "Failed to retrieve current time step.", e);
-            return "Current Time Step: N/A";
-        }
+        return String.format("Current Time Step: %.1f", this.snapshot.getTime());
     }
     /**
      * Get statistics: number of entities in the simulation
@@ -351,11 +516,30 @@ public class SimulationEngine {
      */
     public String getBasicInfo() {
         return String.format("    Current number of vehicles in simulation: %d\n    Total edges: %d\n    Total traffic lights: %d",   
-                    vehicleManager.getCount(),
+                    this.snapshot.getVehicleCount(),
                     edgeManager.getCount(),
                     trafficLightManager.getCount()
                 );
     }
+    /**
+     * Get statistics: trends of the global metrics over the last {@link Metrics#DASHBOARD_TREND_WINDOW} seconds
+     * @return Formatted statistic string for Dashboard
+     */
+    public String getTrendInfo() {
+        double window = Metrics.DASHBOARD_TREND_WINDOW;
+        TimeSeriesStore.WindowStats vehicles = this.history.globalStats(TimeSeriesStore.GlobalMetric.VEHICLE_COUNT, window);
+        TimeSeriesStore.WindowStats speed = this.history.globalStats(TimeSeriesStore.GlobalMetric.MEAN_SPEED, window);
+        TimeSeriesStore.WindowStats congested = this.history.globalStats(TimeSeriesStore.GlobalMetric.CONGESTED_EDGE_COUNT, window);
+        if (vehicles.count() == 0) {
+            return "No history yet.";
+        }
+        return String.format("Last %.0f s:\n    Vehicles: mean %.1f (min %.0f, max %.0f)\n    Mean speed: %.1f km/h (p10 %.1f, p90 %.1f)\n    Congested edges: mean %.1f (max %.0f)",
+                    window,
+                    vehicles.mean(), vehicles.min(), vehicles.max(),
+                    speed.mean(), speed.percentile(10), speed.percentile(90),
+                    congested.mean(), congested.max()
+                );
+    }
     /**
      * Get statistics: congestion hotspots
      * @return Formatted statistic string of congested edge IDs for Dashboard
@@ -371,24 +555,32 @@ public class SimulationEngine {
                 );
     }
     /**
-     * Get statistics: chart values (average speed (km/h), density (veh/km), halting number (veh)) of a specific edge
-     * @param vehicleID ID of the vehicle
-     * @return Formatted statistic string for Dashboard
+     * Get statistics: number of congested edges in the last step
+     * @return number of congested edges, excluding junction edges
+     */
+    public int getCongestedEdgeCount() {
+        return this.edgeManager.getCongestedCount();
+    }
+    /**
+     * Subscribe to congestion start and clear events of the edges, instead of polling the congested edges
+     * @param listener receiver of the events, called on the simulation thread right after the step
+     */
+    public void addCongestionListener(CongestionEngine.Listener listener) {
+        this.edgeManager.getCongestionEngine().subscribe(listener);
+    }
+    /**
+     * Get statistics: chart values (average speed (km/h), density (veh/km), halting number (veh)) of a specific edge. <br>
+     * To read many edges, read {@link #getEdgeMetrics()} once and address it by edge handle.
+     * @param edgeID ID of the edge
+     * @return {average speed, density, halting number}, -1 values if the edge is unknown
      */
     public double[] getEdgeStats(String edgeID) throws IllegalStateException {
-        int haltingNumber;
-        try{
-            haltingNumber = edgeManager.getHaltingNumber(edgeID);
-        } catch(IllegalStateException e){
-            throw e;
-        } catch (Exception e) {
-            LOGGER.log(Level.WARNING, "Unable to get halting number for edge ID: " + edgeID, e);
-            haltingNumber = -1;
-        }
+        EdgeMetrics metrics = this.edgeMetrics;
+        int handle = getEdgeHandle(edgeID);
         return new double[] {
-            edgeManager.getAverageSpeed(edgeID),
-            edgeManager.getDensity(edgeID),
-            haltingNumber
+            metrics.getAverageSpeed(handle),
+            metrics.getDensity(handle),
+            metrics.getHaltingNumber(handle)
         };
     }
 
@@ -399,28 +591,21 @@ public class SimulationEngine {
     /**
      * Prepare data for CSV logging: "Simulation step", "vehicle id","vehicle color", "vehicle speed",
                                                 "vehicle is on edge", "edge congestion status", 
-                                                "edge average speed", "edge density"
-     * @return List of String arrays representing data rows
+                                                "edge average speed", "edge density" <br>
+     * The rows stay primitive columns (the step snapshot plus the congestion status of each edge),
+     *      they are turned into text by the export worker thread.
+     * @return ReportData of the current step
      */
-    public List<String[]> dataForCSV() throws IllegalStateException {
-        String currentTimeStep = this.getTimeStepForCSV();
-        List<String> vehicleIDs = this.getAllVehicleIDs();
-        // Return data
-        List<String[]> data = new ArrayList<>();
-        for (String vehicleID: vehicleIDs) {
-            String color = this.getVehicleColorForCSV(vehicleID);
-            String speed = this.vehicleManager.getSpeed(vehicleID) == -1? 
-                            "" : String.format("%.2f", this.vehicleManager.getSpeed(vehicleID));
-            String edgeID = this.getVehicleEdgeIDForCSV(vehicleID);
-            String edgeCongestionStatus = (edgeID.equals("") || edgeID.startsWith(":") ||edgeID.startsWith("J") || edgeID.startsWith("-J"))? 
-                            "" : String.valueOf(this.edgeManager.getCongestedStatus(edgeID));
-            String edgeAverageSpeed = this.getEdgeStatForCSV(edgeID, "average_speed");
-            String edgeDensity = this.getEdgeStatForCSV(edgeID, "density");
-            String[] row = {currentTimeStep, vehicleID, color, speed, 
-                            edgeID, edgeCongestionStatus, edgeAverageSpeed, edgeDensity};
-            data.add(row);
+    public ReportData dataForCSV() throws IllegalStateException {
+        StepSnapshot current = this.snapshot;
+        int edgeCount = this.topology.getEdgeCount();
+        byte[] edgeCongestion = new byte[edgeCount];
+        for (int edge = 0; edge < edgeCount; edge++) {
+            String edgeID = this.topology.getEdgeID(edge);
+            edgeCongestion[edge] = (edgeID.equals("") || edgeID.startsWith(":") ||edgeID.startsWith("J") || edgeID.startsWith("-J"))?
+                            ReportData.NO_STATUS : (byte) (this.edgeManager.getCongestedStatus(edge) ? 1 : 0);
         }
-        return data;
+        return new ReportData(current, edgeCongestion);
     }
 
 
@@ -446,14 +631,8 @@ public class SimulationEngine {
         // Next elements: {edgeID, laneCount, length}
         List<String> edgeIDs = this.getAllEdgeIDs();
         for (String edgeID : edgeIDs) {
-            String laneCount;
-            try{
-                laneCount = String.valueOf(this.edgeManager.getLaneCount(edgeID));
-            } catch (IllegalStateException e){
-                throw e;
-            } catch (Exception e) {
-                laneCount = "N/A";
-            }
+            String laneCount = this.edgeManager.getLaneCount(edgeID) == -1 ?
+                "N/A" : String.valueOf(this.edgeManager.getLaneCount(edgeID));
             String length = this.edgeManager.getLength(edgeID) == -1 ? 
                 "N/A" : String.format("%.2f", this.edgeManager.getLength(edgeID));
             data.add(new String[]{edgeID, laneCount, length});
@@ -465,53 +644,35 @@ public class SimulationEngine {
     // ---------------------------------------------------------------------------
     // Private helper functions for CSV data preparation
     // ---------------------------------------------------------------------------
-    /** Private helper function for CSV: Simulation step */
-    private String getTimeStepForCSV() throws IllegalStateException {
-        try {
-            return String.format("%.1f", this.conn.getCurrentStep());
-        } catch (IllegalStateException e) {
-            throw e;
-        } catch (Exception e) {
-            LOGGER.log(Level.WARNING, "Failed to retrieve current time step for CSV.", e);
-            return "";
-        }
+    /** Private helper function for CSV: Simulation step, time of the current snapshot (called from the JavaFX Application Thread, Sumo is not queried) */
+    private String getTimeStepForCSV() {
+        return String.format("%.1f", this.snapshot.getTime());
     }
-    /** Private helper function for CSV: vehicle color */
-    private String getVehicleColorForCSV(String vehicleID) throws IllegalStateException {
-        try{
-            return Color.colorToString(this.vehicleManager.getColor(vehicleID));
-        } catch(IllegalStateException e){
-            throw e; 
-        } catch (Exception e) {
-            LOGGER.log(Level.WARNING, "Unable to get vehicle color from SUMO for vehicle ID: " + vehicleID, e);
-            return "";
-        }
-    }
-    /** Private helper function for CSV: vehicle edge ID */
-    private String getVehicleEdgeIDForCSV(String vehicleID) throws IllegalStateException {
-        try{
-            return this.vehicleManager.getEdgeID(vehicleID);
-        } catch(IllegalStateException e){
-            throw e; 
-        } catch (Exception e) {
-            LOGGER.log(Level.WARNING, "Unable to get vehicle edge ID from SUMO for vehicle ID: " + vehicleID, e);
-            return "";
+    /** Private helper function: run control actions queued by the GUI, a failing action doesn't stop the others */
+    private void runPendingTasks() throws IllegalStateException {
+        Runnable task;
+        while ((task = this.pendingTasks.poll()) != null) {
+            try {task.run();} catch (IllegalStateException e) {
+                throw e;
+            } catch (Exception e) {
+                LOGGER.log(Level.WARNING, "Failed to run control action on simulation thread.", e);
+            }
         }
     }
-    /** Private helper function for CSV: edge congestion status */
-    private String getEdgeStatForCSV(String edgeID, String stat_type) throws IllegalStateException {
-        if(edgeID.equals("")) {
-            return "";
+    /**
+     * Private helper method: wait for the net file to be parsed, fall back to querying Sumo if parsing failed or there is no net file
+     */
+    private NetworkTopology awaitTopology(FutureTask<NetworkTopology> netFileTask) throws Exception {
+        if (netFileTask == null) {
+            LOGGER.log(Level.INFO, "No net file for this transport, reading network topology from Sumo.");
+            return NetworkTopology.load(this.conn.getConnection());
         }
-        double statValue;
-        if (stat_type.equals("average_speed")) {
-            statValue = this.edgeManager.getAverageSpeed(edgeID);
-        } else if (stat_type.equals("density")) {
-            statValue = this.edgeManager.getDensity(edgeID);
-        } else {
-            return "";
+        try {
+            return netFileTask.get();
+        } catch (ExecutionException e) {
+            LOGGER.log(Level.WARNING, "Failed to parse net file, reading network topology from Sumo instead.", e.getCause());
+            return NetworkTopology.load(this.conn.getConnection());
         }
-        return statValue == -1 ? "" : String.format("%.2f", statValue);
     }
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,265 @@
+package real_time_traffic_simulation_with_java.cores;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+
+/**
+ * Immutable state of the simulation after one step, decoded from TraCI subscription results. <br>
+ * Map, dashboard and CSV export of the same step all read this snapshot
+ *      instead of querying SUMO once per vehicle, edge or traffic light. <br>
+ * Vehicle values are stored in parallel primitive arrays (index i describes vehicle {@link #getVehicleID(int)}),
+ *      copied from the {@link VehicleStateStore} of the simulation thread. <br>
+ * Edge values are addressed by edge handle (see {@link VehicleStateStore#internEdge(String)}) or by edge ID.
+ *      Handles of observed edges are 0..edgeCount-1, junction edges have larger handles and no statistics.
+ *      Unknown edges return -1 (or null), like the wrapper getters.
+ */
+public final class StepSnapshot {
+    /** Snapshot used before the first step has been decoded */
+    public static final StepSnapshot EMPTY = new StepSnapshot(0,
+            new String[0], new double[0], new double[0], new double[0], new double[0],
+            new int[0], new int[0], new String[0],
+            Collections.emptyMap(), new int[0], new int[0], new double[0], new double[0],
+            Collections.emptyMap());
+
+    /** Simulation time of this step (s) */
+    private final double time;
+
+    /** Vehicle values, one entry per running vehicle */
+    private final String[] vehicleIDs;
+    private final double[] vehicleX;
+    private final double[] vehicleY;
+    private final double[] vehicleAngle;
+    /** Vehicle speed (km/h) */
+    private final double[] vehicleSpeed;
+    /** Vehicle color packed as 0xRRGGBBAA */
+    private final int[] vehicleRGBA;
+    /** Vehicle edge handle, VehicleStateStore.NO_HANDLE if unknown */
+    private final int[] vehicleEdge;
+    /** Edge handle -> edge ID (shared with the store, entries used by this snapshot never change) */
+    private final String[] edgeDictionary;
+
+    /** Edge ID -> edge handle of observed edges (shared between snapshots, never modified) */
+    private final Map<String, Integer> edgeIndex;
+    private final int[] edgeVehicleCount;
+    private final int[] edgeHaltingNumber;
+    /** Edge mean speed in the last step (km/h) */
+    private final double[] edgeAverageSpeed;
+    /** Edge density in the last step (vehicle/km) */
+    private final double[] edgeDensity;
+
+    /** Traffic light ID -> 'r', 'y', 'g' state string */
+    private final Map<String, String> tlsState;
+    /** Traffic light ID -> index in the traffic light arrays (shared between snapshots, never modified) */
+    private final Map<String, Integer> tlsIndex;
+    /** Current phase index of each traffic light, -1 if not received yet */
+    private final int[] tlsPhase;
+    /** Duration of the current phase (s), -1 if not received yet */
+    private final double[] tlsPhaseDuration;
+    /** Simulation time of the next phase switch (s), -1 if not received yet */
+    private final double[] tlsNextSwitch;
+
+    /**
+     * Immutable state of the simulation after one step, without traffic light phases. <br>
+     * Arrays and maps are taken over as they are: the caller must hand in fresh copies and not modify them afterwards.
+     */
+    public StepSnapshot(double time,
+                        String[] vehicleIDs, double[] vehicleX, double[] vehicleY, double[] vehicleAngle, double[] vehicleSpeed,
+                        int[] vehicleRGBA, int[] vehicleEdge, String[] edgeDictionary,
+                        Map<String, Integer> edgeIndex, int[] edgeVehicleCount, int[] edgeHaltingNumber,
+                        double[] edgeAverageSpeed, double[] edgeDensity,
+                        Map<String, String> tlsState) {
+        this(time, vehicleIDs, vehicleX, vehicleY, vehicleAngle, vehicleSpeed, vehicleRGBA, vehicleEdge, edgeDictionary,
+                edgeIndex, edgeVehicleCount, edgeHaltingNumber, edgeAverageSpeed, edgeDensity,
+                tlsState, Collections.emptyMap(), new int[0], new double[0], new double[0]);
+    }
+
+    /**
+     * Immutable state of the simulation after one step. <br>
+     * Arrays and maps are taken over as they are: the caller must hand in fresh copies and not modify them afterwards.
+     */
+    public StepSnapshot(double time,
+                        String[] vehicleIDs, double[] vehicleX, double[] vehicleY, double[] vehicleAngle, double[] vehicleSpeed,
+                        int[] vehicleRGBA, int[] vehicleEdge, String[] edgeDictionary,
+                        Map<String, Integer> edgeIndex, int[] edgeVehicleCount, int[] edgeHaltingNumber,
+                        double[] edgeAverageSpeed, double[] edgeDensity,
+                        Map<String, String> tlsState, Map<String, Integer> tlsIndex,
+                        int[] tlsPhase, double[] tlsPhaseDuration, double[] tlsNextSwitch) {
+        this.time = time;
+        this.vehicleIDs = vehicleIDs;
+        this.vehicleX = vehicleX;
+        this.vehicleY = vehicleY;
+        this.vehicleAngle = vehicleAngle;
+        this.vehicleSpeed = vehicleSpeed;
+        this.vehicleRGBA = vehicleRGBA;
+        this.vehicleEdge = vehicleEdge;
+        this.edgeDictionary = edgeDictionary;
+        this.edgeIndex = Collections.unmodifiableMap(edgeIndex);
+        this.edgeVehicleCount = edgeVehicleCount;
+        this.edgeHaltingNumber = edgeHaltingNumber;
+        this.edgeAverageSpeed = edgeAverageSpeed;
+        this.edgeDensity = edgeDensity;
+        this.tlsState = Collections.unmodifiableMap(tlsState);
+        this.tlsIndex = Collections.unmodifiableMap(tlsIndex);
+        this.tlsPhase = tlsPhase;
+        this.tlsPhaseDuration = tlsPhaseDuration;
+        this.tlsNextSwitch = tlsNextSwitch;
+    }
+
+
+    // ----------------------------------------------------------------------------
+    // Simulation
+    // ----------------------------------------------------------------------------
+    /** Getter for simulation time of this step (s) */
+    public double getTime() {
+        return time;
+    }
+
+
+    // ----------------------------------------------------------------------------
+    // Vehicles
+    // ----------------------------------------------------------------------------
+    /** Getter for number of running vehicles */
+    public int getVehicleCount() {
+        return vehicleIDs.length;
+    }
+
+    /** Getter for IDs of running vehicles, in index order */
+    public List<String> getVehicleIDs() {
+        return List.of(vehicleIDs);
+    }
+
+    /** Getter for ID of the i-th vehicle */
+    public String getVehicleID(int i) {
+        return vehicleIDs[i];
+    }
+
+    /** Getter for x-coordinate of the i-th vehicle */
+    public double getVehicleX(int i) {
+        return vehicleX[i];
+    }
+
+    /** Getter for y-coordinate of the i-th vehicle */
+    public double getVehicleY(int i) {
+        return vehicleY[i];
+    }
+
+    /** Getter for angle of the i-th vehicle (degree, clockwise from North) */
+    public double getVehicleAngle(int i) {
+        return vehicleAngle[i];
+    }
+
+    /** Getter for speed of the i-th vehicle (km/h) */
+    public double getVehicleSpeed(int i) {
+        return vehicleSpeed[i];
+    }
+
+    /** Getter for color of the i-th vehicle packed as 0xRRGGBBAA */
+    public int getVehicleRGBA(int i) {
+        return vehicleRGBA[i];
+    }
+
+    /** Getter for edge handle of the i-th vehicle, including junction edges */
+    public int getVehicleEdge(int i) {
+        return vehicleEdge[i];
+    }
+
+    /** Getter for edge ID of the i-th vehicle, including junction edges, empty if unknown */
+    public String getVehicleEdgeID(int i) {
+        return getEdgeID(vehicleEdge[i]);
+    }
+
+
+    // ----------------------------------------------------------------------------
+    // Edges
+    // ----------------------------------------------------------------------------
+    /** Getter for edge handle of an observed edge, -1 if the edge is unknown */
+    public int getEdgeHandle(String edgeID) {
+        Integer i = edgeIndex.get(edgeID);
+        return i == null ? -1 : i;
+    }
+
+    /** Getter for edge ID of an edge handle, empty if unknown */
+    public String getEdgeID(int handle) {
+        return handle < 0 ? "" : edgeDictionary[handle];
+    }
+
+    /** Getter for number of vehicles on the edge in this step, -1 if the edge is unknown */
+    public int getEdgeVehicleCount(String edgeID) {
+        return getEdgeVehicleCount(getEdgeHandle(edgeID));
+    }
+
+    /** Getter for number of vehicles on the edge handle in this step, -1 if the edge has no statistics */
+    public int getEdgeVehicleCount(int handle) {
+        return hasEdgeStats(handle) ? edgeVehicleCount[handle] : -1;
+    }
+
+    /** Getter for number of halting vehicles on the edge in this step, -1 if the edge is unknown */
+    public int getEdgeHaltingNumber(String edgeID) {
+        return getEdgeHaltingNumber(getEdgeHandle(edgeID));
+    }
+
+    /** Getter for number of halting vehicles on the edge handle in this step, -1 if the edge has no statistics */
+    public int getEdgeHaltingNumber(int handle) {
+        return hasEdgeStats(handle) ? edgeHaltingNumber[handle] : -1;
+    }
+
+    /** Getter for average speed on the edge in this step (km/h), -1 if the edge is unknown */
+    public double getEdgeAverageSpeed(String edgeID) {
+        return getEdgeAverageSpeed(getEdgeHandle(edgeID));
+    }
+
+    /** Getter for average speed on the edge handle in this step (km/h), -1 if the edge has no statistics */
+    public double getEdgeAverageSpeed(int handle) {
+        return hasEdgeStats(handle) ? edgeAverageSpeed[handle] : -1;
+    }
+
+    /** Getter for density on the edge in this step (vehicle/km), -1 if the edge is unknown */
+    public double getEdgeDensity(String edgeID) {
+        return getEdgeDensity(getEdgeHandle(edgeID));
+    }
+
+    /** Getter for density on the edge handle in this step (vehicle/km), -1 if the edge has no statistics */
+    public double getEdgeDensity(int handle) {
+        return hasEdgeStats(handle) ? edgeDensity[handle] : -1;
+    }
+
+    /** Private helper method: whether statistics are observed for the edge handle */
+    private boolean hasEdgeStats(int handle) {
+        return handle >= 0 && handle < edgeVehicleCount.length;
+    }
+
+
+    // ----------------------------------------------------------------------------
+    // Traffic lights
+    // ----------------------------------------------------------------------------
+    /** Getter for 'r', 'y', 'g' state string of the traffic light, null if not received yet */
+    public String getTlsState(String tlID) {
+        return tlsState.get(tlID);
+    }
+
+    /** Getter for current phase index of the traffic light, -1 if unknown */
+    public int getTlsPhase(String tlID) {
+        int t = getTlsIndex(tlID);
+        return t < 0 ? -1 : tlsPhase[t];
+    }
+
+    /** Getter for duration of the current phase of the traffic light (s), -1 if unknown */
+    public double getTlsPhaseDuration(String tlID) {
+        int t = getTlsIndex(tlID);
+        return t < 0 ? -1 : tlsPhaseDuration[t];
+    }
+
+    /** Getter for simulation time of the next phase switch of the traffic light (s), -1 if unknown */
+    public double getTlsNextSwitch(String tlID) {
+        int t = getTlsIndex(tlID);
+        return t < 0 ? -1 : tlsNextSwitch[t];
+    }
+
+    /** Private helper method: index of the traffic light in the phase arrays, -1 if its phases are not observed */
+    private int getTlsIndex(String tlID) {
+        Integer t = tlsIndex.get(tlID);
+        return t == null || t >= tlsPhase.length ? -1 : t;
+    }
+}
@@ -0,0 +1,317 @@
+package real_time_traffic_simulation_with_java.cores;
+
+import java.util.Arrays;
+
+import real_time_traffic_simulation_with_java.alias.Metrics;
+
+
+/**
+ * In-memory history of the live metrics, so that dashboards can show trends without reading the CSV back. <br>
+ * Fixed-size primitive ring buffers, all advancing together by one sample per step:
+ * <ul>
+ *  <li>per edge and per {@link EdgeMetric}: the values of {@link EdgeMetrics}</li>
+ *  <li>per {@link GlobalMetric}: vehicle count, congested edge count and mean vehicle speed</li>
+ *  <li>the simulation time of each sample</li>
+ * </ul>
+ * The number of samples kept follows from a memory budget (see {@link Metrics#HISTORY_MEMORY_BUDGET_MB}):
+ *      once full, each step overwrites the oldest sample. Values are stored as floats, samples of an edge are contiguous,
+ *      missing values (edges without statistics) are NaN and are left out of every query. <br>
+ * Queries cover a window of the last seconds of simulation time: min, max, mean and percentiles ({@link WindowStats}),
+ *      or a downsampled view for charting which keeps the minimum and maximum of each bucket ({@link SeriesView}). <br>
+ * Thread-safe: the simulation thread appends, the JavaFX Application Thread queries.
+ */
+public final class TimeSeriesStore {
+    /** Per-edge series */
+    public enum EdgeMetric { AVERAGE_SPEED, DENSITY, HALTING_NUMBER, TRAVEL_TIME }
+
+    /** Global series */
+    public enum GlobalMetric { VEHICLE_COUNT, CONGESTED_EDGE_COUNT, MEAN_SPEED }
+
+    /**
+     * Statistics of a series over a window
+     * @param count number of samples with a value
+     * @param min smallest value, NaN if no sample
+     * @param max largest value, NaN if no sample
+     * @param mean mean value, NaN if no sample
+     * @param sorted the values, sorted, for {@link #percentile(double)}
+     */
+    public record WindowStats(int count, double min, double max, double mean, float[] sorted) {
+        /**
+         * Percentile of the window, linear interpolation between the closest ranks
+         * @param p percentile, 0 to 100
+         * @return value, NaN if no sample
+         */
+        public double percentile(double p) {
+            if (count == 0) {
+                return Double.NaN;
+            }
+            double position = Math.max(0, Math.min(100, p)) / 100 * (count - 1);
+            int below = (int) Math.floor(position);
+            int above = Math.min(below + 1, count - 1);
+            return sorted[below] + (position - below) * (sorted[above] - sorted[below]);
+        }
+    }
+
+    /**
+     * Points of a series to draw, in time order
+     * @param times simulation time of each point (s)
+     * @param values value of each point
+     */
+    public record SeriesView(double[] times, double[] values) {
+        /** Getter for number of points */
+        public int size() {
+            return times.length;
+        }
+    }
+
+    private static final int EDGE_METRICS = EdgeMetric.values().length;
+    private static final int GLOBAL_METRICS = GlobalMetric.values().length;
+
+    private final int edgeCount;
+    private final int capacity;
+    /** Simulation time of each slot */
+    private final double[] times;
+    /** Metric -> values of edge e in slots e*capacity..(e+1)*capacity-1 */
+    private final float[][] edgeValues = new float[EDGE_METRICS][];
+    /** Metric -> values by slot */
+    private final float[][] globalValues = new float[GLOBAL_METRICS][];
+    /** Number of samples appended since the start, the next slot is appended % capacity */
+    private long appended = 0;
+
+    /**
+     * Create an empty store
+     * @param edgeCount number of edges (edge handles 0..edgeCount-1)
+     * @param memoryBudgetBytes most memory the buffers may use, at least two samples are kept
+     */
+    public TimeSeriesStore(int edgeCount, long memoryBudgetBytes) {
+        this.edgeCount = edgeCount;
+        long samples = memoryBudgetBytes / bytesPerSample(edgeCount);
+        long largestArray = (Integer.MAX_VALUE - 8) / Math.max(1, edgeCount);
+        this.capacity = (int) Math.max(2, Math.min(samples, largestArray));
+        this.times = new double[capacity];
+        for (int m = 0; m < EDGE_METRICS; m++) {
+            edgeValues[m] = new float[edgeCount * capacity];
+        }
+        for (int m = 0; m < GLOBAL_METRICS; m++) {
+            globalValues[m] = new float[capacity];
+        }
+    }
+
+    /**
+     * Memory used by one sample
+     * @param edgeCount number of edges
+     * @return bytes per sample
+     */
+    public static long bytesPerSample(int edgeCount) {
+        return Double.BYTES + (long) Float.BYTES * (EDGE_METRICS * (long) edgeCount + GLOBAL_METRICS);
+    }
+
+
+    // ---------------------------------------------------------
+    // Appending
+    // ---------------------------------------------------------
+    /**
+     * Add the sample of one step, overwriting the oldest sample once full
+     * @param snapshot state of the step, for the vehicle count and mean speed
+     * @param metrics per-edge metrics of the step
+     * @param congestedEdgeCount number of congested edges in the step
+     */
+    public synchronized void append(StepSnapshot snapshot, EdgeMetrics metrics, int congestedEdgeCount) {
+        int slot = (int) (appended % capacity);
+        times[slot] = snapshot.getTime();
+        for (int edge = 0; edge < edgeCount; edge++) {
+            int i = edge * capacity + slot;
+            edgeValues[EdgeMetric.AVERAGE_SPEED.ordinal()][i] = valueOf(metrics.getAverageSpeed(edge));
+            edgeValues[EdgeMetric.DENSITY.ordinal()][i] = valueOf(metrics.getDensity(edge));
+            edgeValues[EdgeMetric.HALTING_NUMBER.ordinal()][i] = valueOf(metrics.getHaltingNumber(edge));
+            edgeValues[EdgeMetric.TRAVEL_TIME.ordinal()][i] = valueOf(metrics.getTravelTime(edge));
+        }
+        int vehicles = snapshot.getVehicleCount();
+        double speedSum = 0;
+        for (int v = 0; v < vehicles; v++) {
+            speedSum += snapshot.getVehicleSpeed(v);
+        }
+        globalValues[GlobalMetric.VEHICLE_COUNT.ordinal()][slot] = vehicles;
+        globalValues[GlobalMetric.CONGESTED_EDGE_COUNT.ordinal()][slot] = congestedEdgeCount;
+        globalValues[GlobalMetric.MEAN_SPEED.ordinal()][slot] = vehicles == 0 ? Float.NaN : (float) (speedSum / vehicles);
+        appended++;
+    }
+
+
+    // ---------------------------------------------------------
+    // Queries
+    // ---------------------------------------------------------
+    /**
+     * Statistics of an edge series over the last seconds
+     * @param metric series
+     * @param edge edge handle
+     * @param windowSeconds length of the window (s), 0 or less for every sample kept
+     * @return statistics, with no sample if the edge is unknown
+     */
+    public synchronized WindowStats edgeStats(EdgeMetric metric, int edge, double windowSeconds) {
+        if (edge < 0 || edge >= edgeCount) {
+            return stats(new float[0], 0, 0);
+        }
+        return stats(edgeValues[metric.ordinal()], edge * capacity, windowSize(windowSeconds));
+    }
+
+    /**
+     * Statistics of a global series over the last seconds
+     * @param metric series
+     * @param windowSeconds length of the window (s), 0 or less for every sample kept
+     * @return statistics
+     */
+    public synchronized WindowStats globalStats(GlobalMetric metric, double windowSeconds) {
+        return stats(globalValues[metric.ordinal()], 0, windowSize(windowSeconds));
+    }
+
+    /**
+     * Downsampled view of an edge series over the last seconds
+     * @param metric series
+     * @param edge edge handle
+     * @param windowSeconds length of the window (s), 0 or less for every sample kept
+     * @param points most points wanted, at least 2: the minimum and maximum of points/2 buckets
+     * @return points in time order, empty if the edge is unknown
+     */
+    public synchronized SeriesView edgeView(EdgeMetric metric, int edge, double windowSeconds, int points) {
+        if (edge < 0 || edge >= edgeCount) {
+            return new SeriesView(new double[0], new double[0]);
+        }
+        return view(edgeValues[metric.ordinal()], edge * capacity, windowSize(windowSeconds), points);
+    }
+
+    /**
+     * Downsampled view of a global series over the last seconds
+     * @param metric series
+     * @param windowSeconds length of the window (s), 0 or less for every sample kept
+     * @param points most points wanted, at least 2: the minimum and maximum of points/2 buckets
+     * @return points in time order
+     */
+    public synchronized SeriesView globalView(GlobalMetric metric, double windowSeconds, int points) {
+        return view(globalValues[metric.ordinal()], 0, windowSize(windowSeconds), points);
+    }
+
+
+    // ---------------------------------------------------------
+    // Getters
+    // ---------------------------------------------------------
+    /** Getter for number of samples the store can keep */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /** Getter for number of samples kept */
+    public synchronized int getSize() {
+        return (int) Math.min(appended, capacity);
+    }
+
+    /** Getter for memory used by the buffers (bytes) */
+    public long getMemoryBytes() {
+        return bytesPerSample(edgeCount) * capacity;
+    }
+
+    /** Getter for simulation time of the newest sample (s), NaN if empty */
+    public synchronized double getLatestTime() {
+        return appended == 0 ? Double.NaN : times[slotOf(0)];
+    }
+
+
+    // ---------------------------------------------------------
+    // Private helper methods
+    // ---------------------------------------------------------
+    /**
+     * Private helper method: stored value, negative values mean no statistics
+     */
+    private static float valueOf(double value) {
+        return value < 0 ? Float.NaN : (float) value;
+    }
+
+    /**
+     * Private helper method: number of newest samples within the window
+     */
+    private int windowSize(double windowSeconds) {
+        int size = getSize();
+        if (windowSeconds <= 0 || size == 0) {
+            return size;
+        }
+        double from = times[slotOf(0)] - windowSeconds;
+        int n = 0;
+        while (n < size && times[slotOf(n)] > from) {
+            n++;
+        }
+        return n;
+    }
+
+    /**
+     * Private helper method: slot of the k-th newest sample (0 = newest)
+     */
+    private int slotOf(int k) {
+        return (int) ((appended - 1 - k) % capacity);
+    }
+
+    /**
+     * Private helper method: statistics of the n newest values of a series starting at offset
+     */
+    private WindowStats stats(float[] values, int offset, int n) {
+        float[] window = new float[n];
+        int count = 0;
+        double sum = 0;
+        for (int k = 0; k < n; k++) {
+            float value = values[offset + slotOf(k)];
+            if (!Float.isNaN(value)) {
+                window[count++] = value;
+                sum += value;
+            }
+        }
+        if (count == 0) {
+            return new WindowStats(0, Double.NaN, Double.NaN, Double.NaN, new float[0]);
+        }
+        float[] sorted = Arrays.copyOf(window, count);
+        Arrays.sort(sorted);
+        return new WindowStats(count, sorted[0], sorted[count - 1], sum / count, sorted);
+    }
+
+    /**
+     * Private helper method: the n newest values of a series starting at offset, oldest first,
+     *      reduced to the minimum and maximum of each bucket if there are more than the points wanted
+     */
+    private SeriesView view(float[] values, int offset, int n, int points) {
+        double[] outTimes = new double[Math.min(n, Math.max(2, points))];
+        double[] outValues = new double[outTimes.length];
+        int buckets = n <= outTimes.length ? n : outTimes.length / 2;
+        int count = 0;
+        for (int b = 0; b < buckets; b++) {
+            // Samples of the bucket, as age from oldest (n-1) to newest (0)
+            int first = (int) ((long) b * n / buckets);
+            int last = (int) ((long) (b + 1) * n / buckets);
+            int minK = -1;
+            int maxK = -1;
+            for (int j = first; j < last; j++) {
+                int k = n - 1 - j;
+                float value = values[offset + slotOf(k)];
+                if (Float.isNaN(value)) {
+                    continue;
+                }
+                if (minK < 0 || value < values[offset + slotOf(minK)]) {
+                    minK = k;
+                }
+                if (maxK < 0 || value > values[offset + slotOf(maxK)]) {
+                    maxK = k;
+                }
+            }
+            if (minK < 0) {
+                continue;
+            }
+            // Older sample first
+            int olderK = Math.max(minK, maxK);
+            int newerK = Math.min(minK, maxK);
+            outTimes[count] = times[slotOf(olderK)];
+            outValues[count++] = values[offset + slotOf(olderK)];
+            if (newerK != olderK) {
+                outTimes[count] = times[slotOf(newerK)];
+                outValues[count++] = values[offset + slotOf(newerK)];
+            }
+        }
+        return new SeriesView(Arrays.copyOf(outTimes, count), Arrays.copyOf(outValues, count));
+    }
+}
@@ -19,9 +19,10 @@ import javafx.scene.Group;
 public class TrafficLightData extends Group {
     /** 
      * List of durations for each phase of the traffic light <br>
-     * Should keep track by ourselves, since SUMO always return the initial durations set in the net file
+     * Should keep track by ourselves, since SUMO always return the initial durations set in the net file. <br>
+     * Replaced by the simulation thread, read by the GUI popup
      */
-    private List<Integer> phasesDuration = new ArrayList<>();
+    private volatile List<Integer> phasesDuration = new ArrayList<>();
 
     /**
      * Represents the visual data and keep track of phases durations of a traffic light in the simulation, 
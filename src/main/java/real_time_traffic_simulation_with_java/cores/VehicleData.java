@@ -1,6 +1,5 @@
 package real_time_traffic_simulation_with_java.cores;
 
-import de.tudresden.sumo.objects.SumoColor;
 import real_time_traffic_simulation_with_java.alias.Color;
 import real_time_traffic_simulation_with_java.alias.Metrics;
 
@@ -11,29 +10,50 @@ import javafx.scene.shape.Rectangle;
  * Represents the visual data of a vehicle in the simulation.
  */
 public class VehicleData extends Rectangle {
+    /** Color currently painted (0xRRGGBBAA), kept to skip re-parsing the fill when the color didn't change */
+    private int paintedRGBA;
+    private boolean painted = false;
+
     /**
      * Represents the visual data of a vehicle in the simulation.
      * @param vehicleID The unique identifier for the vehicle.
      * @param x The x-coordinate of the vehicle's position.
      * @param y The y-coordinate of the vehicle's position.
      * @param angle The orientation angle of the vehicle.
-     * @param color The color of the vehicle, represented as a SumoColor.
+     * @param rgba The color of the vehicle, packed as 0xRRGGBBAA.
      */
-    public VehicleData(String vehicleID, double x, double y, double angle, SumoColor color) {
-        String colorString =  Color.colorToString(color);
-
-        // Top-left corner of JavaFX Rectangle is bottom-left corner of SUMO vehicle
-        double translate_vec = Metrics.DEFAULT_VEHICLE_LENGTH/2 - Metrics.DEFAULT_VEHICLE_WIDTH/2;
-        this.setX(x - translate_vec);
-        this.setY(y - translate_vec);
+    public VehicleData(String vehicleID, double x, double y, double angle, int rgba) {
         this.setWidth(Metrics.DEFAULT_VEHICLE_LENGTH);
         this.setHeight(Metrics.DEFAULT_VEHICLE_WIDTH);
         this.setArcWidth(Metrics.DEFAULT_VEHICLE_ARC);
         this.setArcHeight(Metrics.DEFAULT_VEHICLE_ARC);
+        this.setId(vehicleID);
+        this.update(x, y, angle, rgba);
+    }
+
+
+    /**
+     * Move the vehicle shape to a new state, so the same node can be reused from step to step. <br>
+     * Properties are only set when their value changed, unchanged properties don't invalidate the scene graph.
+     * @param x The x-coordinate of the vehicle's position.
+     * @param y The y-coordinate of the vehicle's position.
+     * @param angle The orientation angle of the vehicle.
+     * @param rgba The color of the vehicle, packed as 0xRRGGBBAA.
+     */
+    public void update(double x, double y, double angle, int rgba) {
+        // Top-left corner of JavaFX Rectangle is bottom-left corner of SUMO vehicle
+        double translate_vec = Metrics.DEFAULT_VEHICLE_LENGTH/2 - Metrics.DEFAULT_VEHICLE_WIDTH/2;
+        if (this.getX() != x - translate_vec) this.setX(x - translate_vec);
+        if (this.getY() != y - translate_vec) this.setY(y - translate_vec);
 
         // JavaFX rotation is (anti-clockwise when show in cartesian coordinate), SUMO rotation is clockwise when show in cartesian coordinate
-        this.setRotate(-(angle + 90)); // JavaFx 0 degree is to the right, SUMO 0 degree is to the top
-        this.setFill(javafx.scene.paint.Paint.valueOf(colorString));
-        this.setId(vehicleID);                            
+        double rotate = -(angle + 90); // JavaFx 0 degree is to the right, SUMO 0 degree is to the top
+        if (this.getRotate() != rotate) this.setRotate(rotate);
+
+        if (!this.painted || this.paintedRGBA != rgba) {
+            this.setFill(javafx.scene.paint.Paint.valueOf(Color.colorToString(rgba)));
+            this.paintedRGBA = rgba;
+            this.painted = true;
+        }
     }
 }
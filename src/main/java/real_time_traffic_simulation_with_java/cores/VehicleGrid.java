@@ -0,0 +1,184 @@
+package real_time_traffic_simulation_with_java.cores;
+
+import java.util.function.IntConsumer;
+import java.util.function.IntPredicate;
+
+import real_time_traffic_simulation_with_java.alias.Metrics;
+
+
+/**
+ * Uniform grid over the vehicle positions of one {@link StepSnapshot}, rebuilt every step. <br>
+ * Built with a counting sort: vehicles of cell c are entries cellStart[c]..cellStart[c+1]-1, with their positions
+ *      copied next to them so a query reads contiguous memory. Cells are {@link Metrics#VEHICLE_GRID_CELL_SIZE} wide,
+ *      larger if the network is so large that there would be more cells than about 4 per vehicle. <br>
+ * Rectangle queries and nearest queries report vehicles by snapshot index. Immutable, queries may run on any thread.
+ */
+public final class VehicleGrid {
+    /** Grid of the empty snapshot */
+    public static final VehicleGrid EMPTY = new VehicleGrid(StepSnapshot.EMPTY);
+
+    private final StepSnapshot snapshot;
+    private final double originX;
+    private final double originY;
+    private final double cellSize;
+    private final int columns;
+    private final int rows;
+    private final int[] cellStart;
+    /** Vehicle index and position of each entry, in cell order */
+    private final int[] entries;
+    private final double[] entryX;
+    private final double[] entryY;
+
+    /**
+     * Build the grid of a snapshot
+     * @param snapshot state of the step
+     */
+    public VehicleGrid(StepSnapshot snapshot) {
+        this.snapshot = snapshot;
+        int n = snapshot.getVehicleCount();
+        double x0 = Double.POSITIVE_INFINITY, y0 = Double.POSITIVE_INFINITY;
+        double x1 = Double.NEGATIVE_INFINITY, y1 = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < n; i++) {
+            x0 = Math.min(x0, snapshot.getVehicleX(i));
+            y0 = Math.min(y0, snapshot.getVehicleY(i));
+            x1 = Math.max(x1, snapshot.getVehicleX(i));
+            y1 = Math.max(y1, snapshot.getVehicleY(i));
+        }
+        if (n == 0) {
+            x0 = y0 = x1 = y1 = 0;
+        }
+        double width = x1 - x0;
+        double height = y1 - y0;
+        double size = Math.max(Metrics.VEHICLE_GRID_CELL_SIZE, Math.sqrt(width * height / (4.0 * Math.max(n, 1))));
+        this.originX = x0;
+        this.originY = y0;
+        this.cellSize = size;
+        this.columns = (int) Math.min(Math.floor(width / size) + 1, 1 << 15);
+        this.rows = (int) Math.min(Math.floor(height / size) + 1, 1 << 15);
+
+        // Counting sort by cell
+        int cells = columns * rows;
+        int[] cellOf = new int[n];
+        this.cellStart = new int[cells + 1];
+        for (int i = 0; i < n; i++) {
+            cellOf[i] = row(snapshot.getVehicleY(i)) * columns + column(snapshot.getVehicleX(i));
+            cellStart[cellOf[i] + 1]++;
+        }
+        for (int c = 0; c < cells; c++) {
+            cellStart[c + 1] += cellStart[c];
+        }
+        this.entries = new int[n];
+        this.entryX = new double[n];
+        this.entryY = new double[n];
+        int[] fill = new int[cells];
+        for (int i = 0; i < n; i++) {
+            int k = cellStart[cellOf[i]] + fill[cellOf[i]]++;
+            entries[k] = i;
+            entryX[k] = snapshot.getVehicleX(i);
+            entryY[k] = snapshot.getVehicleY(i);
+        }
+    }
+
+
+    /**
+     * Report every vehicle whose position is inside the rectangle
+     * @param x0 smallest x of the rectangle
+     * @param y0 smallest y of the rectangle
+     * @param x1 largest x of the rectangle
+     * @param y1 largest y of the rectangle
+     * @param consumer receiver of the vehicle indices
+     * @return number of vehicles reported
+     */
+    public int query(double x0, double y0, double x1, double y1, IntConsumer consumer) {
+        if (entries.length == 0 || x1 < x0 || y1 < y0) {
+            return 0;
+        }
+        int reported = 0;
+        int r1 = row(y1);
+        int c0 = column(x0);
+        int c1 = column(x1);
+        for (int r = row(y0); r <= r1; r++) {
+            // Cells of a row are contiguous: one run of entries per row
+            for (int k = cellStart[r * columns + c0]; k < cellStart[r * columns + c1 + 1]; k++) {
+                if (entryX[k] >= x0 && entryX[k] <= x1 && entryY[k] >= y0 && entryY[k] <= y1) {
+                    consumer.accept(entries[k]);
+                    reported++;
+                }
+            }
+        }
+        return reported;
+    }
+
+    /**
+     * Find the vehicle closest to a point. <br>
+     * Rings of cells around the point are searched outwards, until the ring is further than the closest vehicle found.
+     * @param x x-coordinate of the point
+     * @param y y-coordinate of the point
+     * @param maxDistance vehicles further than this (m) are ignored
+     * @param filter vehicles to consider (e.g. those passing the vehicle filter), null for all
+     * @return index of the closest vehicle in the snapshot, -1 if no vehicle is within maxDistance
+     */
+    public int nearest(double x, double y, double maxDistance, IntPredicate filter) {
+        if (entries.length == 0) {
+            return -1;
+        }
+        int cx = (int) Math.floor((x - originX) / cellSize);
+        int cy = (int) Math.floor((y - originY) / cellSize);
+        int best = -1;
+        double bestSquared = maxDistance * maxDistance;
+        int maxRing = Math.max(columns, rows) + Math.max(Math.abs(cx), Math.abs(cy));
+        for (int ring = 0; ring <= maxRing; ring++) {
+            // Closest possible distance of a vehicle in this ring
+            double ringDistance = Math.max(0, (ring - 1) * cellSize);
+            if (ringDistance * ringDistance > bestSquared) {
+                break;
+            }
+            for (int r = cy - ring; r <= cy + ring; r++) {
+                if (r < 0 || r >= rows) {
+                    continue;
+                }
+                boolean edgeRow = r == cy - ring || r == cy + ring;
+                for (int c = cx - ring; c <= cx + ring; c += edgeRow ? 1 : 2 * ring) {
+                    if (c >= 0 && c < columns) {
+                        int cell = r * columns + c;
+                        for (int k = cellStart[cell]; k < cellStart[cell + 1]; k++) {
+                            double dx = entryX[k] - x;
+                            double dy = entryY[k] - y;
+                            double squared = dx * dx + dy * dy;
+                            if (squared <= bestSquared && (filter == null || filter.test(entries[k]))) {
+                                bestSquared = squared;
+                                best = entries[k];
+                            }
+                        }
+                    }
+                }
+            }
+        }
+        return best;
+    }
+
+    /** Getter for snapshot the grid was built from */
+    public StepSnapshot getSnapshot() {
+        return snapshot;
+    }
+
+    /** Getter for cell size (m) */
+    public double getCellSize() {
+        return cellSize;
+    }
+
+
+    /**
+     * Private helper method: column of an x-coordinate, clamped to the grid
+     */
+    private int column(double x) {
+        return (int) Math.max(0, Math.min(columns - 1, Math.floor((x - originX) / cellSize)));
+    }
+
+    /**
+     * Private helper method: row of a y-coordinate, clamped to the grid
+     */
+    private int row(double y) {
+        return (int) Math.max(0, Math.min(rows - 1, Math.floor((y - originY) / cellSize)));
+    }
+}
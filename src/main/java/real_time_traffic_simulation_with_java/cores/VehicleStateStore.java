@@ -0,0 +1,273 @@
+package real_time_traffic_simulation_with_java.cores;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+
+/**
+ * Live state of all running vehicles stored as struct-of-arrays: one primitive column per attribute. <br>
+ * Vehicle IDs are interned to dense int handles (slots). Slots of arrived vehicles are recycled for departing ones,
+ *      so columns stay compact and don't grow beyond the peak number of running vehicles. <br>
+ * Edge IDs are interned the same way, vehicles keep an int edge handle instead of a String. <br>
+ * The store is mutable and owned by the simulation thread. After each step its live rows are copied
+ *      into an immutable {@link StepSnapshot} (see {@link #copyLive}), which is what the GUI and exporters read.
+ */
+public final class VehicleStateStore {
+    /** Handle of unknown vehicles and edges */
+    public static final int NO_HANDLE = -1;
+    /** Initial number of slots, columns double when full */
+    private static final int INITIAL_CAPACITY = 256;
+
+    /** Vehicle ID -> slot */
+    private final Map<String, Integer> slotOf = new HashMap<>();
+    /** Columns, indexed by slot */
+    private String[] id = new String[INITIAL_CAPACITY];
+    private double[] x = new double[INITIAL_CAPACITY];
+    private double[] y = new double[INITIAL_CAPACITY];
+    private double[] angle = new double[INITIAL_CAPACITY];
+    /** Speed (km/h) */
+    private double[] speed = new double[INITIAL_CAPACITY];
+    /** Color packed as 0xRRGGBBAA */
+    private int[] rgba = new int[INITIAL_CAPACITY];
+    /** Edge handle, NO_HANDLE if not known yet */
+    private int[] edge = new int[INITIAL_CAPACITY];
+
+    /** Dense list of live slots, and position of each slot in it (-1 if the slot is free) */
+    private int[] live = new int[INITIAL_CAPACITY];
+    private int[] livePosition = new int[INITIAL_CAPACITY];
+    private int liveCount = 0;
+    /** Stack of free slots below the high-water mark */
+    private int[] freeSlots = new int[INITIAL_CAPACITY];
+    private int freeCount = 0;
+    /** Number of slots ever used */
+    private int highWater = 0;
+
+    /** Edge ID -> edge handle, and edge handle -> edge ID (append only, shared with snapshots) */
+    private final Map<String, Integer> edgeHandleOf = new HashMap<>();
+    private String[] edgeIDs = new String[INITIAL_CAPACITY];
+    private int edgeCount = 0;
+
+    /** Default color of a new vehicle until Sumo reports it, packed as 0xRRGGBBAA */
+    private final int defaultRGBA;
+
+    /**
+     * Live state of all running vehicles stored as struct-of-arrays
+     * @param defaultRGBA color given to a new vehicle until Sumo reports its color, packed as 0xRRGGBBAA
+     */
+    public VehicleStateStore(int defaultRGBA) {
+        this.defaultRGBA = defaultRGBA;
+        Arrays.fill(livePosition, -1);
+    }
+
+
+    // ----------------------------------------------------------------------------
+    // Vehicles
+    // ----------------------------------------------------------------------------
+    /**
+     * Get the slot of a vehicle, allocating (or recycling) one if the vehicle is new
+     * @param vehicleID ID of the vehicle
+     * @return slot of the vehicle
+     */
+    public int intern(String vehicleID) {
+        Integer existing = slotOf.get(vehicleID);
+        if (existing != null) {
+            return existing;
+        }
+        int slot;
+        if (freeCount > 0) {
+            slot = freeSlots[--freeCount];
+        } else {
+            if (highWater == id.length) {
+                grow(id.length * 2);
+            }
+            slot = highWater++;
+        }
+        id[slot] = vehicleID;
+        x[slot] = 0;
+        y[slot] = 0;
+        angle[slot] = 0;
+        speed[slot] = 0;
+        rgba[slot] = defaultRGBA;
+        edge[slot] = NO_HANDLE;
+        live[liveCount] = slot;
+        livePosition[slot] = liveCount++;
+        slotOf.put(vehicleID, slot);
+        return slot;
+    }
+
+    /**
+     * Remove an arrived vehicle, its slot is recycled by the next departing vehicle
+     * @param vehicleID ID of the vehicle
+     */
+    public void remove(String vehicleID) {
+        Integer slot = slotOf.remove(vehicleID);
+        if (slot == null) {
+            return;
+        }
+        // Swap-remove from the live list to keep it dense
+        int position = livePosition[slot];
+        int lastSlot = live[--liveCount];
+        live[position] = lastSlot;
+        livePosition[lastSlot] = position;
+        livePosition[slot] = -1;
+        id[slot] = null;
+        freeSlots[freeCount++] = slot;
+    }
+
+    /** Getter for slot of a vehicle, NO_HANDLE if the vehicle is not running */
+    public int slotOf(String vehicleID) {
+        Integer slot = slotOf.get(vehicleID);
+        return slot == null ? NO_HANDLE : slot;
+    }
+
+    /** Getter for number of running vehicles */
+    public int size() {
+        return liveCount;
+    }
+
+    /** Getter for slot of the k-th running vehicle, 0 <= k < size() */
+    public int liveSlot(int k) {
+        return live[k];
+    }
+
+    /** Setter for position of the vehicle in a slot */
+    public void setPosition(int slot, double x, double y) {
+        this.x[slot] = x;
+        this.y[slot] = y;
+    }
+
+    /** Setter for angle of the vehicle in a slot (degree, clockwise from North) */
+    public void setAngle(int slot, double angle) {
+        this.angle[slot] = angle;
+    }
+
+    /** Setter for speed of the vehicle in a slot (km/h) */
+    public void setSpeed(int slot, double speed) {
+        this.speed[slot] = speed;
+    }
+
+    /** Setter for color of the vehicle in a slot, packed as 0xRRGGBBAA */
+    public void setRGBA(int slot, int rgba) {
+        this.rgba[slot] = rgba;
+    }
+
+    /** Setter for edge of the vehicle in a slot, the edge ID is interned */
+    public void setEdge(int slot, String edgeID) {
+        this.edge[slot] = internEdge(edgeID);
+    }
+
+    /** Getter for ID of the vehicle in a slot */
+    public String getID(int slot) {
+        return id[slot];
+    }
+
+    /** Getter for x-coordinate of the vehicle in a slot */
+    public double getX(int slot) {
+        return x[slot];
+    }
+
+    /** Getter for y-coordinate of the vehicle in a slot */
+    public double getY(int slot) {
+        return y[slot];
+    }
+
+    /** Getter for angle of the vehicle in a slot */
+    public double getAngle(int slot) {
+        return angle[slot];
+    }
+
+    /** Getter for speed of the vehicle in a slot (km/h) */
+    public double getSpeed(int slot) {
+        return speed[slot];
+    }
+
+    /** Getter for color of the vehicle in a slot, packed as 0xRRGGBBAA */
+    public int getRGBA(int slot) {
+        return rgba[slot];
+    }
+
+    /** Getter for edge handle of the vehicle in a slot */
+    public int getEdge(int slot) {
+        return edge[slot];
+    }
+
+
+    // ----------------------------------------------------------------------------
+    // Edges
+    // ----------------------------------------------------------------------------
+    /**
+     * Get the handle of an edge, allocating one if the edge is new. Handles are never recycled.
+     * @param edgeID ID of the edge, including junction edges
+     * @return edge handle, NO_HANDLE for an empty ID
+     */
+    public int internEdge(String edgeID) {
+        if (edgeID == null || edgeID.isEmpty()) {
+            return NO_HANDLE;
+        }
+        Integer existing = edgeHandleOf.get(edgeID);
+        if (existing != null) {
+            return existing;
+        }
+        if (edgeCount == edgeIDs.length) {
+            // Snapshots keep the old array, which still holds every handle they refer to
+            edgeIDs = Arrays.copyOf(edgeIDs, edgeIDs.length * 2);
+        }
+        edgeIDs[edgeCount] = edgeID;
+        edgeHandleOf.put(edgeID, edgeCount);
+        return edgeCount++;
+    }
+
+    /** Getter for ID of an edge handle, empty String for NO_HANDLE */
+    public String getEdgeID(int handle) {
+        return handle == NO_HANDLE ? "" : edgeIDs[handle];
+    }
+
+
+    // ----------------------------------------------------------------------------
+    // Snapshot
+    // ----------------------------------------------------------------------------
+    /**
+     * Copy the live rows into compact arrays of length size(), row k is the k-th running vehicle
+     */
+    public void copyLive(String[] ids, double[] xs, double[] ys, double[] angles, double[] speeds, int[] colors, int[] edges) {
+        for (int k = 0; k < liveCount; k++) {
+            int slot = live[k];
+            ids[k] = id[slot];
+            xs[k] = x[slot];
+            ys[k] = y[slot];
+            angles[k] = angle[slot];
+            speeds[k] = speed[slot];
+            colors[k] = rgba[slot];
+            edges[k] = edge[slot];
+        }
+    }
+
+    /**
+     * Getter for the edge dictionary (handle -> edge ID). <br>
+     * The array is only appended to, entries below the current edge count never change,
+     *      so a snapshot can keep the reference instead of a copy.
+     */
+    public String[] getEdgeDictionary() {
+        return edgeIDs;
+    }
+
+
+    /**
+     * Private helper method: grow all slot columns to a new capacity
+     */
+    private void grow(int capacity) {
+        id = Arrays.copyOf(id, capacity);
+        x = Arrays.copyOf(x, capacity);
+        y = Arrays.copyOf(y, capacity);
+        angle = Arrays.copyOf(angle, capacity);
+        speed = Arrays.copyOf(speed, capacity);
+        rgba = Arrays.copyOf(rgba, capacity);
+        edge = Arrays.copyOf(edge, capacity);
+        live = Arrays.copyOf(live, capacity);
+        freeSlots = Arrays.copyOf(freeSlots, capacity);
+        int oldCapacity = livePosition.length;
+        livePosition = Arrays.copyOf(livePosition, capacity);
+        Arrays.fill(livePosition, oldCapacity, capacity, -1);
+    }
+}
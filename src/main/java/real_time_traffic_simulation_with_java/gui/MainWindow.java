@@ -1,6 +1,7 @@
 package real_time_traffic_simulation_with_java.gui;
 import real_time_traffic_simulation_with_java.alias.Metrics;
 import real_time_traffic_simulation_with_java.alias.Path;
+import real_time_traffic_simulation_with_java.cores.SimulationDriver;
 import real_time_traffic_simulation_with_java.cores.SimulationEngine;
 import real_time_traffic_simulation_with_java.tools.ExportingFiles;
 
@@ -16,10 +17,11 @@ import javafx.application.Platform;
 
 /** Main window class that sets up the primary GUI components and manages the animation timer */
 public class MainWindow extends Stage {
-    /** Calling simulation engine, map panel, animation timer, logger and exporting files */
+    /** Calling simulation engine, map panel, animation timer, simulation driver, logger and exporting files */
     private SimulationEngine simulationEngine;
     private MapPanel mapPanel;
     private AnimationTimer animationTimer;
+    private SimulationDriver simulationDriver;
     private static final java.util.logging.Logger LOGGER = java.util.logging.Logger.getLogger(MainWindow.class.getName());
     private ExportingFiles exportingFiles;
 
@@ -87,67 +89,60 @@ public class MainWindow extends Stage {
     }
     
     /**
-     * Start animation timer method to update simulation and refresh map panel at fixed interval definned in Metrics.CONNECT_SPEED_MS. <br>
-     * This method works by create a stepIntervalNanos variable to store the interval time in nanoseconds. <br>
-     * then create an AnimationTimer object and override its handle method. <br>
+     * Start the simulation driver and the animation timer. <br>
+     * Stepping and painting are decoupled: 
+     *      a {@link SimulationDriver} thread advances SUMO every Metrics.CONNECT_SPEED_MS and queues the CSV data of each step, 
+     *      while the AnimationTimer only paints the latest snapshot published by the driver. 
+     *      A slow TraCI round trip no longer freezes the GUI, and a slow frame no longer slows down the simulation.
      * <p>
      * class AnimationTimer allows us to create a timer, that is called in each frame while it is active. <br>
      * An extending class has to override the method handle(long) which will be called in every frame. <br>
      *                                                              -Oracle AnimationTimer Doc-
      * <p>
-     * Which is what we want because we need a method to update the simulation (call SimulationEngine and use it stepSimulation method)
-     * and call Map panel refresh methos to update the map in each frame. The method will be talk over the MapPanel.java
+     * Inside the handle method we call Map panel refresh method, which repaints only when a new step has been published
+     *      (more about it in MapPanel.java).
      * <p>
-     * the handle parameter "now" is the timestamp of the current frame given in nanoseconds. 
-     * This value will be the same for all AnimationTimers called during one frame. (Read more at the Oracle documentation! really recommended)
-     * <p>
-     * Inside the handle method, we check if the time between the current frame (now) 
-     * and the last time step is less than the stepIntervalNanos, if yes we simply return and do nothing.
-     * But if not, meaning the time has passesd more than the interval we set, 
-     * we call the stepSimulation method and refresh the map, then update the lastStepTime to the current time.
-     * <p>
-     * Incase Sumo connection gets closed, we catch the IllegalStateException and stop the animation timer.
+     * Incase Sumo connection gets closed, the driver stops itself and we close the window on the JavaFX Application Thread.
      */
     public void startAnimationTimer(){
-        final long stepIntervalNanos = Metrics.CONNECT_SPEED_MS * 1_000_000L;
+        // The simulation engine produces the vehicle data as a ReportData object, which is then passed to ExportingFiles.
+        // ExportingFiles places it into a BlockingQueue,
+        // allowing a background worker thread to process and export the data asynchronously.
+        simulationDriver = new SimulationDriver(this.simulationEngine, Metrics.CONNECT_SPEED_MS,
+                snapshot -> exportingFiles.queueCSV(simulationEngine.dataForCSV()),
+                () -> Platform.runLater(() -> {
+                    if (animationTimer != null) animationTimer.stop();
+                    MainWindow.this.close();
+                }));
         animationTimer = new AnimationTimer() {
-            private long lastStepTime = 0L;
             @Override
             public void handle(long now){
-                if (now - lastStepTime < stepIntervalNanos)return;
                 try{
-                    simulationEngine.stepSimulation();
                     mapPanel.refresh();
-                    LOGGER.log(Level.FINE, "Thread: " + Thread.currentThread().getName());
-
-                    // The simulation engine produces the vehicle data, which is then passed to ExportingFiles.
-                    // ExportingFiles wraps this data in a ReportData object and places it into a BlockingQueue,
-                    // allowing a background worker thread to process and export the data asynchronously.
-                    exportingFiles.queueCSV(simulationEngine.dataForCSV());
-                    lastStepTime = now;
-                    LOGGER.log(Level.FINE, "MainWindow AnimationTimer step executed at: " + now);
-
                 }catch(IllegalStateException closed){   
                     this.stop();
                     Platform.runLater(() -> MainWindow.this.close());
                     LOGGER.log(Level.WARNING, "Simulation connection closed. AnimationTimer stopped.");
                 }catch(Exception e){
-                    e.printStackTrace();
-                    LOGGER.log(Level.SEVERE, "Error during AnimationTimer step: " + e.getMessage(), e);
+                    LOGGER.log(Level.SEVERE, "Error during AnimationTimer frame: " + e.getMessage(), e);
                 }
             }
         };
+        simulationDriver.start(); //start stepping the simulation
         animationTimer.start(); //start the animation timer
     }                  
 
     /**
-     * Stop animation timer method to stop the animation timer and exporting files service when main window is closed
+     * Stop animation timer method to stop the animation timer, the simulation driver and exporting files service when main window is closed
     */
     public void stopAnimationTimer(){
         if(animationTimer != null){ //This means the animation timer is running, stop it
             animationTimer.stop();
             LOGGER.log(Level.INFO, "MainWindow AnimationTimer stopped.");
         }
+        if (simulationDriver != null) {
+            simulationDriver.stop();
+        }
         if (exportingFiles != null) {
             exportingFiles.shutdown();
             LOGGER.log(Level.INFO, "ExportingFiles service shut down initiated.");
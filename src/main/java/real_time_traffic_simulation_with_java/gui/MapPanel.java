@@ -9,6 +9,7 @@ import javafx.scene.transform.Scale;
 import javafx.scene.input.MouseEvent;
 import real_time_traffic_simulation_with_java.alias.Metrics;
 import real_time_traffic_simulation_with_java.cores.SimulationEngine;
+import real_time_traffic_simulation_with_java.cores.StepSnapshot;
 import real_time_traffic_simulation_with_java.gui.mapLayer.*;
 
 
@@ -27,6 +28,16 @@ public class MapPanel extends StackPane {
     private static final Logger LOGGER = Logger.getLogger(MapPanel.class.getName());
     /** Current zoom level of the map panel */
     private double currentZoomLevel = 1.0;
+    /** Snapshot shown on the map, only repaint when the simulation thread has published a newer one */
+    private StepSnapshot lastPaintedSnapshot = null;
+    /** Persistent vehicle layer, updated in place on every refresh (renderer "nodes") */
+    private vehicleLayer VehicleLayer;
+    /** Vehicle canvas drawn on top of the map group (renderer "canvas") */
+    private vehicleCanvasLayer VehicleCanvas;
+    /** Road layer, culled to the viewport of the map panel (renderer "nodes") */
+    private roadLayer RoadLayer;
+    /** Road layer drawn from cached image tiles of the viewport (renderer "tiles") */
+    private roadTileLayer RoadTiles;
 
     /**
      * Create map panel including 3 layers: road layer (bottom-most), vehicle layer, traffic light layer (top-most). <br>
@@ -56,13 +67,32 @@ public class MapPanel extends StackPane {
 
 
     /**
-     * Public method: Refresh map panel by redraw vehicle layer and set color of traffic light layer
+     * Public method: Refresh map panel by updating vehicle layer and set color of edges and traffic lights 
+     *      from the latest published snapshot. Does nothing if no new step was published since the last refresh.
      */
     public void refresh() throws IllegalStateException{
+        StepSnapshot current = this.simulationEngine.getSnapshot();
+        boolean newStep = current != this.lastPaintedSnapshot;
+        // The canvas also has to be redrawn when the map is zoomed, panned or rotated, it checks that by itself
+        if (!newStep && this.VehicleCanvas == null) {
+            return;
+        }
         try{
-            // Redraw vehicle layer
-            Group temp = (Group) this.getChildren().get(0);
-            temp.getChildren().set(1, new vehicleLayer(this.simulationEngine));
+            if (this.VehicleCanvas != null) {
+                this.VehicleCanvas.draw(current);
+            } else if (newStep) {
+                // Move vehicles to their new state, only departed/arrived vehicles change the scene graph
+                this.VehicleLayer.update(current);
+            }
+            if (newStep) {
+                this.simulationEngine.refreshMapState();
+                if (this.RoadTiles != null) {
+                    this.RoadTiles.refreshCongestion();
+                } else {
+                    this.RoadLayer.refreshCongestion();
+                }
+                this.lastPaintedSnapshot = current;
+            }
         } catch (IllegalStateException e) {
             LOGGER.severe("Simulation has ended or connection lost while refreshing MapPanel.");
             throw e;
@@ -75,17 +105,33 @@ public class MapPanel extends StackPane {
 
 
     /**
-     * Private helper method: Create map panel by grouping 3 layers: road layer, vehicle layer, traffic light layer than add the Group to MapPanel StackPane
+     * Private helper method: Create map panel by grouping 3 layers: road layer, vehicle layer, traffic light layer than add the Group to MapPanel StackPane. <br>
+     * With renderer "canvas" (Metrics.VEHICLE_RENDERER), the group only holds road and traffic light layers 
+     *      and vehicles are drawn on a canvas stacked on top of the group. <br>
+     * With renderer "tiles" (Metrics.ROAD_RENDERER), roads are drawn from image tiles instead of one node per edge and junction.
      */
     private void createMapPanel(SimulationEngine engine) {
         // Generate road layer for map panel
-        roadLayer RoadLayer = new roadLayer(engine);
-        vehicleLayer VehicleLayer = new vehicleLayer(engine);
+        boolean tileRenderer = "tiles".equalsIgnoreCase(Metrics.ROAD_RENDERER);
+        Group roads;
+        if (tileRenderer) {
+            this.RoadTiles = new roadTileLayer(engine);
+            roads = this.RoadTiles;
+        } else {
+            this.RoadLayer = new roadLayer(engine);
+            roads = this.RoadLayer;
+        }
         trafficlightLayer TrafficLightLayer = new trafficlightLayer(engine);
+        boolean canvasRenderer = "canvas".equalsIgnoreCase(Metrics.VEHICLE_RENDERER);
 
         // Group 3 layers together: road layer, vehicle layer, traffic light layer (top-most)
         Group mapPanel = new Group();
-        mapPanel.getChildren().addAll(RoadLayer, VehicleLayer, TrafficLightLayer);
+        if (canvasRenderer) {
+            mapPanel.getChildren().addAll(roads, TrafficLightLayer);
+        } else {
+            this.VehicleLayer = new vehicleLayer(engine);
+            mapPanel.getChildren().addAll(roads, VehicleLayer, TrafficLightLayer);
+        }
         // Flip vertically because the coordinate system of SUMO is different from JavaFX
         mapPanel.setScaleY(-1); 
 
@@ -94,6 +140,19 @@ public class MapPanel extends StackPane {
         mapPanel.setFocusTraversable(true);
 
         this.getChildren().add(mapPanel);
+        // Map group must stay the 1st child, zooming, panning and rotating look it up by index
+        if (canvasRenderer) {
+            this.VehicleCanvas = new vehicleCanvasLayer(engine, mapPanel,
+                    Metrics.WINDOW_WIDTH - Metrics.CONTROL_PANEL_WIDTH - Metrics.DASHBOARD_WIDTH, Metrics.WINDOW_HEIGHT);
+            this.getChildren().add(VehicleCanvas);
+        }
+        // Only roads in the viewport are shown, again on every zoom, pan and rotation
+        if (tileRenderer) {
+            this.RoadTiles.bindViewport(this);
+        } else {
+            this.RoadLayer.bindViewport(this);
+        }
+        LOGGER.info("Vehicle renderer: " + (canvasRenderer ? "canvas" : "nodes") + ", road renderer: " + (tileRenderer ? "tiles" : "nodes"));
     }
 
 
@@ -7,11 +7,13 @@ import java.util.logging.Logger;
 import javafx.scene.control.Button;
 import javafx.scene.control.CheckBox;
 import javafx.scene.control.ComboBox;
+import javafx.scene.control.Label;
 import javafx.scene.layout.VBox;
 import real_time_traffic_simulation_with_java.alias.Color;
 import real_time_traffic_simulation_with_java.cores.SimulationEngine;
+import real_time_traffic_simulation_with_java.tools.AggregateTracker;
 import real_time_traffic_simulation_with_java.tools.ExportingFiles;
-import real_time_traffic_simulation_with_java.tools.PDFExporter;
+import real_time_traffic_simulation_with_java.tools.PDFExportService;
 
 /**
  * Export component with CSV export button
@@ -22,6 +24,8 @@ public class ExportPane extends VBox {
     private final ComboBox<String> colorFilter;
     private final CheckBox congestedOnlyCheckBox;
     private final Button exportButton;
+    private final Label statusLabel;
+    private final PDFExportService exportService = new PDFExportService();
     private final SimulationEngine simulationEngine;
     private final ExportingFiles exportingFiles;
     
@@ -48,8 +52,13 @@ public class ExportPane extends VBox {
         exportButton = CustomElement.createButton("Export PDF", 220, 
             "Press to export current PDF log file.", "#6A6733");
         exportButton.setOnAction(e -> handleExport());
+
+        // Progress of the PDF exports
+        statusLabel = new Label();
+        statusLabel.setStyle("-fx-text-fill: white;");
+        statusLabel.setMaxWidth(220);
         
-        this.getChildren().addAll(colorFilter, congestedOnlyCheckBox, exportButton);
+        this.getChildren().addAll(colorFilter, congestedOnlyCheckBox, exportButton, statusLabel);
     }
     
     /**
@@ -65,28 +74,19 @@ public class ExportPane extends VBox {
      * <p>
      * The handleExport method handles the export button click event.
      * When the button is pressed, this method retrieves the selected filter options,
-     * disables the button, and starts a background thread to perform the PDF export.
-     * The background thread ensures that the JavaFX Application Thread is not blocked,
-     * keeping the UI responsive during the export process.
+     * takes a snapshot of the running aggregates (the PDF covers the steps exported up to now)
+     * and submits a job to the PDF export service, which builds the PDF on a background thread.
+     * Neither the JavaFX Application Thread nor the simulation waits for the export,
+     * and the button stays enabled: several exports may run at the same time.
      * </p>
      *
      * <p>
-     * Once the export is complete—or if an error occurs—the button state is updated
-     * back on the JavaFX Application Thread using Platform.runLater.
-     * This re-enables the button, resets its text to "Export PDF", and allows the
-     * background thread to finish cleanly.
+     * The progress of the jobs is reported on the export threads,
+     * it is moved back to the JavaFX Application Thread using Platform.runLater to update the status label.
      * </p>
      */
     private void handleExport() {
 
-        /**
-         * We want to disable the export button and change its text to "Exporting..."
-         * Thus the user knows that the export process has started and cannot click the button again
-        */
-        exportButton.setDisable(true);
-        exportButton.setText("Exporting...");
-
-
         /**
          * Retrieve filter options
          * If no color is selected or the user select the empty option, we set the color filter to an empty string
@@ -99,63 +99,53 @@ public class ExportPane extends VBox {
         boolean congestedOnly = congestedOnlyCheckBox.isSelected();
 
         /**
-         * Retrieve CSV file path and timestamp from ExportingFiles instance
-         * Also retrieve the simulation data for PDF export
-         * If an exception occurs during data retrieval, we re-enable the export button and reset its text
+         * Retrieve CSV timestamp and a snapshot of the running aggregates from ExportingFiles instance,
+         * the PDF is built from them without reading the log files
+         * Also retrieve the simulation data for PDF export, the exported step is the last step of the snapshot
+         * If an exception occurs during data retrieval, the export is not started
         */
-        String csvPath = exportingFiles.getCSVFilePath();
         String csvTimeStamp = exportingFiles.getCSVTimerstamp();
+        AggregateTracker aggregates = exportingFiles.getAggregates().snapshot();
 
         List<String[]> simulationData;
         try{
             simulationData = simulationEngine.dataForPDF();
         }catch(Exception ex){
-            exportButton.setDisable(false);
-            exportButton.setText("Export PDF");
             LOGGER.log(Level.WARNING, "Failed to retrieve simulation data for PDF export: " + ex.getMessage(), ex);
             return;
         }
-        
-        /**
-         * Make a local copy of the filter options for use in the background thread
-         * This is necessary because the variables need to be effectively final to be accessed from within the thread
-        */
-        final String finalSelectedColor = selectedColor;
-        final boolean finalCongestedOnly = congestedOnly;
-
+        if (aggregates.getStepCount() > 0) {
+            simulationData.set(1, new String[]{String.format("%.1f", aggregates.getLastStepTime())});
+        }
 
         /**
-         * Start a new background thread to perform the PDF export
-         * This prevents blocking the JavaFX Application Thread, keeping the UI responsive
+         * Submit the export job
+         * Each update of a job is posted to the JavaFX Application Thread with Platform.runLater,
+         * runnables are executed in the order they are posted, so the label shows the latest state.
         */
-        new Thread(() -> {
-           try{
-            PDFExporter.exportSummary(csvPath, csvTimeStamp, finalSelectedColor, finalCongestedOnly, simulationData);
-            
-            /**
-             * Update button state back on the JavaFX Application Thread after export completion
-             * javafx.application.Platform.runLater runs the specified Runnable on the JavaFX Application Thread at some unspecified time in the future. 
-             * This method, which may be called from any thread, will post the Runnable to an event queue and then return immediately to the caller. 
-             * The Runnables are executed in the order they are posted. 
-             * A runnable passed into the runLater method will be executed before any Runnable passed into a subsequent call to runLater. 
-             * If this method is called after the JavaFX runtime has been shutdown, the call will be ignored: the Runnable will not be executed and no exception will be thrown.
-             * -Official JavaFX Documentation-
-            */
-            
-            javafx.application.Platform.runLater(() -> {
-                exportButton.setDisable(false);
-                exportButton.setText("Export PDF");
-                LOGGER.log(Level.INFO, "PDF export completed successfully.");
+        exportService.submit(aggregates, aggregates.getLastStepTime(), csvTimeStamp, selectedColor, congestedOnly,
+                                simulationData, job -> javafx.application.Platform.runLater(() -> showProgress(job)));
+    }
 
-            });
-           } catch (Exception ex){
-            // Update button state back on the JavaFX Application Thread in case of error
-            javafx.application.Platform.runLater(() -> {
-                exportButton.setDisable(false);
-                exportButton.setText("Export PDF");
-                LOGGER.log(Level.WARNING, "Failed to export PDF: " + ex.getMessage(), ex);
-            });
-           }
-        }).start();
+    /**
+     * Private helper method: show the progress of a job in the status label, on the JavaFX Application Thread
+     */
+    private void showProgress(PDFExportService.Job job) {
+        int running = exportService.getActiveJobs().size();
+        String others = running > 1 ? String.format(" (+%d)", running - 1) : "";
+        switch (job.getState()) {
+            case DONE:
+                statusLabel.setText(String.format("PDF %d saved (t = %.0f s)%s", job.getId(), job.getStepTime(),
+                                    running > 0 ? String.format(", %d running", running) : ""));
+                LOGGER.log(Level.INFO, "PDF export completed successfully.");
+                break;
+            case FAILED:
+                statusLabel.setText(String.format("PDF %d failed", job.getId()));
+                LOGGER.log(Level.WARNING, "Failed to export PDF " + job.getId() + ".");
+                break;
+            default:
+                statusLabel.setText(String.format("PDF %d: %s %.0f%%%s", job.getId(), job.getStage(),
+                                    job.getProgress() * 100, others));
+        }
     }
-}
\ No newline at end of file
+}
@@ -63,7 +63,8 @@ public class StressTestPane extends VBox {
                 return;
             }
             
-            simulationEngine.stressTest(vNumber, stressEdge);
+            // Injection runs on the simulation thread between two steps, the GUI stays responsive
+            simulationEngine.runOnSimulationThread(() -> simulationEngine.stressTest(vNumber, stressEdge));
             
         } catch (NumberFormatException ex) {
             System.out.println("Error: Please enter a positive integer number.");
@@ -24,7 +24,7 @@ public class TrafficLightPane extends VBox {
     /** Handle toggle action */
     private void handleToggle() {
         try {
-            simulationEngine.toggleAllTls();
+            simulationEngine.runOnSimulationThread(simulationEngine::toggleAllTls);
         } catch (Exception e) {
             e.printStackTrace();
         }
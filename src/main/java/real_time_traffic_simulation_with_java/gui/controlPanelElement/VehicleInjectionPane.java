@@ -111,7 +111,9 @@ public class VehicleInjectionPane extends VBox {
                 return;
             }
             
-            simulationEngine.injectVehicle(vNumber, startE, endE, vColor, fSpeed);
+            // Injection runs on the simulation thread between two steps, the GUI stays responsive
+            final String injectColor = vColor;
+            simulationEngine.runOnSimulationThread(() -> simulationEngine.injectVehicle(vNumber, startE, endE, injectColor, fSpeed));
             
         } catch (NumberFormatException ex) {
             System.out.println("Error: Please enter a positive integer number.");
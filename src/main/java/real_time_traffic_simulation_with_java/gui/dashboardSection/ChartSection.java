@@ -1,6 +1,9 @@
 package real_time_traffic_simulation_with_java.gui.dashboardSection;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Supplier;
+import java.util.function.ToIntFunction;
 import java.util.logging.Logger;
 import java.util.logging.Level;
 
@@ -13,19 +16,29 @@ import javafx.animation.KeyFrame;
 import javafx.animation.Timeline;
 import javafx.scene.chart.BarChart;
 import real_time_traffic_simulation_with_java.alias.Metrics;
+import real_time_traffic_simulation_with_java.cores.EdgeMetrics;
 import real_time_traffic_simulation_with_java.cores.SimulationEngine;
 
 /**
  * ChartSection class represents a bar chart displaying live statistics of edges in the traffic simulation. <br>
- * It shows average speed, density, and halting number for each edge, updating periodically.
+ * It shows average speed, density, and halting number for each edge, updating periodically. <br>
+ * Each update reads the per-edge metrics of the last step once ({@link SimulationEngine#getEdgeMetrics()})
+ *      and sets the values of the existing bars in place: the data points are created once, and nothing is done
+ *      while no new step has been published.
  */
 public class ChartSection extends BarChart<Number, String> {
     private static final Logger logger = Logger.getLogger(ChartSection.class.getName());
 
     private NumberAxis xAxis;
     private CategoryAxis yAxis;
-    private SimulationEngine simulationEngine;
+    private Supplier<EdgeMetrics> edgeMetrics;
     private List<String> edgeIds;
+    /** Edge handle of each edge ID, in chart order */
+    private int[] edgeHandles;
+    /** Metrics drawn by the last update */
+    private EdgeMetrics shownMetrics;
+    /** Time spent on the JavaFX Application Thread by the last update (ns) */
+    private long lastUpdateNanos;
 
     private XYChart.Series<Number, String> avgSpeed;
     private XYChart.Series<Number, String> density;
@@ -38,36 +51,59 @@ public class ChartSection extends BarChart<Number, String> {
      * @param simulationEngine The simulation engine to fetch edge statistics from.
      */
     public ChartSection(SimulationEngine simulationEngine) {
+        this(edgeIDsOf(simulationEngine), simulationEngine::getEdgeMetrics, simulationEngine::getEdgeHandle);
+    }
+
+    /** 
+     * Constructor for ChartSection.
+     * @param edgeIds IDs of the edges to show
+     * @param edgeMetrics source of the per-edge metrics of the last step, read once per update
+     * @param edgeHandle edge ID -> edge handle in the metrics
+     */
+    public ChartSection(List<String> edgeIds, Supplier<EdgeMetrics> edgeMetrics,
+                        ToIntFunction<String> edgeHandle) {
         // Initialize self and fields
         super(new NumberAxis(), new CategoryAxis());
-        initializeCoreAttributes(simulationEngine);
+        initializeCoreAttributes(edgeIds, edgeMetrics, edgeHandle);
         setupChart();
         setupUpdateChart();
     }
 
 
     /**
-     * Private helper method: initialize attributes.
+     * Private helper method: edge IDs of the simulation, empty if they cannot be fetched.
      */
-    private void initializeCoreAttributes(SimulationEngine simulationEngine) {
-        this.xAxis = (NumberAxis) this.getXAxis();
-        this.yAxis = (CategoryAxis) this.getYAxis();
-        this.simulationEngine = simulationEngine;
+    private static List<String> edgeIDsOf(SimulationEngine simulationEngine) {
         try{
-            this.edgeIds = simulationEngine.getAllEdgeIDs();
+            return simulationEngine.getAllEdgeIDs();
         } catch (IllegalStateException e) {
             logger.log(Level.SEVERE, "Failed to fetch edge IDs from simulation engine.", e);
             logger.log(Level.SEVERE, "ChartSection was not fully initialized.");
-            return;
+            return new ArrayList<>();
         }
+    }
+
+    /**
+     * Private helper method: initialize attributes.
+     */
+    private void initializeCoreAttributes(List<String> edgeIds, Supplier<EdgeMetrics> edgeMetrics,
+                                            ToIntFunction<String> edgeHandle) {
+        this.xAxis = (NumberAxis) this.getXAxis();
+        this.yAxis = (CategoryAxis) this.getYAxis();
+        this.edgeMetrics = edgeMetrics;
+        this.edgeIds = new ArrayList<>(edgeIds);
         this.edgeIds.sort(String::compareTo);
+        this.edgeHandles = new int[this.edgeIds.size()];
+        for (int k = 0; k < this.edgeHandles.length; k++) {
+            this.edgeHandles[k] = edgeHandle.applyAsInt(this.edgeIds.get(k));
+        }
         // Chart series
         this.avgSpeed = new XYChart.Series<>();
         this.avgSpeed.setName("Average Speed (km/h)");
         this.density = new XYChart.Series<>();
         this.density.setName("Density (veh/km)");
         this.haltingNumber = new XYChart.Series<>();
-        this.haltingNumber.setName("Travel Time (s)");
+        this.haltingNumber.setName("Halting Number (veh)");
     }
 
     /**
@@ -83,6 +119,18 @@ public class ChartSection extends BarChart<Number, String> {
         xAxis.setLabel("Value");
         xAxis.setTickLabelRotation(90);
         yAxis.setLabel("Edge ID");
+        // Data points are created once, updates set their values
+        List<XYChart.Data<Number, String>> speedPoints = new ArrayList<>(edgeIds.size());
+        List<XYChart.Data<Number, String>> densityPoints = new ArrayList<>(edgeIds.size());
+        List<XYChart.Data<Number, String>> haltingPoints = new ArrayList<>(edgeIds.size());
+        for (String edgeId : edgeIds) {
+            speedPoints.add(new XYChart.Data<>(0, edgeId));
+            densityPoints.add(new XYChart.Data<>(0, edgeId));
+            haltingPoints.add(new XYChart.Data<>(0, edgeId));
+        }
+        avgSpeed.getData().setAll(speedPoints);
+        density.getData().setAll(densityPoints);
+        haltingNumber.getData().setAll(haltingPoints);
         // Add series to chart
         this.getData().add(avgSpeed);
         this.getData().add(density);
@@ -95,7 +143,7 @@ public class ChartSection extends BarChart<Number, String> {
     public void setupUpdateChart() {
         this.updateChart = new Timeline(new KeyFrame(Duration.ZERO, e -> {
             try{
-                setValue();
+                refresh();
             } catch(IllegalStateException ex) {
                 this.updateChart.stop();
             }catch (Exception ex) {
@@ -108,19 +156,32 @@ public class ChartSection extends BarChart<Number, String> {
     }
 
     /**
-     * Private helper method: update chart values.
+     * Update chart values in place from the metrics of the last step, nothing to do if no new step was published. <br>
+     * Must be called on the JavaFX Application Thread.
      */
-    private void setValue() {
-        avgSpeed.getData().clear();
-        density.getData().clear();
-        haltingNumber.getData().clear();
-        for (String edgeId : edgeIds) {
-            double[] edgeStats = simulationEngine.getEdgeStats(edgeId);
-            avgSpeed.getData().add(new XYChart.Data<>(edgeStats[0], edgeId));
-            density.getData().add(new XYChart.Data<>(edgeStats[1], edgeId));
-            haltingNumber.getData().add(new XYChart.Data<>(edgeStats[2], edgeId));
+    public void refresh() {
+        EdgeMetrics metrics = edgeMetrics.get();
+        if (metrics == shownMetrics) {
+            return;
+        }
+        long t0 = System.nanoTime();
+        List<XYChart.Data<Number, String>> speedPoints = avgSpeed.getData();
+        List<XYChart.Data<Number, String>> densityPoints = density.getData();
+        List<XYChart.Data<Number, String>> haltingPoints = haltingNumber.getData();
+        for (int k = 0; k < edgeHandles.length; k++) {
+            int handle = edgeHandles[k];
+            speedPoints.get(k).setXValue(metrics.getAverageSpeed(handle));
+            densityPoints.get(k).setXValue(metrics.getDensity(handle));
+            haltingPoints.get(k).setXValue(metrics.getHaltingNumber(handle));
         }
+        shownMetrics = metrics;
+        lastUpdateNanos = System.nanoTime() - t0;
     }
 
-
+    /**
+     * Getter for time spent on the JavaFX Application Thread by the last update (ms), layout of the chart excluded
+     */
+    public double getLastUpdateMs() {
+        return lastUpdateNanos / 1e6;
+    }
 }
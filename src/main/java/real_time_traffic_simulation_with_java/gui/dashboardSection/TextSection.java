@@ -13,7 +13,7 @@ import real_time_traffic_simulation_with_java.cores.SimulationEngine;
 
 /**
  * The text section of the dashboard
- * Display basic info and congestion hotspot info
+ * Display basic info, trends of the last seconds and congestion hotspot info
  */
 public class TextSection extends VBox {
     private Timeline update;
@@ -35,6 +35,12 @@ public class TextSection extends VBox {
         basicInfo.setPrefWidth(Metrics.DASHBOARD_WIDTH - 20);
         basicInfo.setText(simulationEngine.getBasicInfo());
 
+        // Trend label: history of the last seconds
+        Label trendInfo = new Label();
+        trendInfo.setWrapText(true);
+        trendInfo.setPrefWidth(Metrics.DASHBOARD_WIDTH - 20);
+        trendInfo.setText(simulationEngine.getTrendInfo());
+
         // Congestion hotspot labels
         Label congestedEdgeIDs = new Label();
         congestedEdgeIDs.setWrapText(true);
@@ -42,13 +48,14 @@ public class TextSection extends VBox {
         congestedEdgeIDs.setText(simulationEngine.getCongestionHotspots());
 
         // Create TextSection VBox
-        super(5, timeSteps, basicInfo, congestedEdgeIDs);
+        super(5, timeSteps, basicInfo, trendInfo, congestedEdgeIDs);
 
         // Add Timeline to update content with simulation speed
         this.update = new Timeline(new KeyFrame(Duration.ZERO, e -> {
             try{
                 timeSteps.setText(simulationEngine.getCurrentTimeStep());
                 basicInfo.setText(simulationEngine.getBasicInfo());
+                trendInfo.setText(simulationEngine.getTrendInfo());
                 congestedEdgeIDs.setText(simulationEngine.getCongestionHotspots());
             } catch (IllegalStateException ex) {
                 this.update.stop();
@@ -2,43 +2,144 @@ package real_time_traffic_simulation_with_java.gui.mapLayer;
 
 import real_time_traffic_simulation_with_java.cores.EdgeData;
 import real_time_traffic_simulation_with_java.cores.JunctionData;
+import real_time_traffic_simulation_with_java.cores.RTree;
 import real_time_traffic_simulation_with_java.cores.SimulationEngine;
+import real_time_traffic_simulation_with_java.alias.MapColor;
 import real_time_traffic_simulation_with_java.alias.Metrics;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.TreeMap;
+import java.util.function.Function;
 
 import javafx.scene.control.Label;
 import javafx.scene.control.Tooltip;
 import javafx.animation.Animation;
 import javafx.animation.KeyFrame;
 import javafx.animation.Timeline;
+import javafx.geometry.Bounds;
 import javafx.scene.Group;
+import javafx.scene.Node;
+import javafx.scene.shape.LineTo;
+import javafx.scene.shape.MoveTo;
+import javafx.scene.shape.Path;
 import javafx.scene.shape.Rectangle;
+import javafx.scene.shape.StrokeLineCap;
+import javafx.scene.transform.Transform;
 import javafx.util.Duration;
 
 
 /**
- * Create road layer including junctions and edges, 
+ * Create road layer including junctions and edges,
  *      with tooltips and mouse events on edges. <br>
- * Junction have no tooltips or mouse events, since they are just for visual purpose.
+ * Junction have no tooltips or mouse events, since they are just for visual purpose. <br>
+ * Once bound to the viewport ({@link #bindViewport(Node)}), only junctions and edges overlapping the viewport are visible,
+ *      found with an R-tree over their bounds each time the map is zoomed, panned or rotated, so JavaFX skips the others. <br>
+ * Level of detail, from the scale of the map (pixels per meter):
+ * <ul>
+ *  <li>at or above {@link Metrics#ROAD_LOD_DETAIL_SCALE}: edges with lane dividers</li>
+ *  <li>below: edges without lane dividers</li>
+ *  <li>below {@link Metrics#ROAD_LOD_MERGE_SCALE}: all edges merged into a few center line paths (one per lane count),
+ *      only congested edges stay visible on their own</li>
+ * </ul>
+ * An invisible rectangle over the whole network keeps the bounds of the layer (and so the pivot of the map transforms)
+ *      the same whatever is hidden.
  */
 public class roadLayer extends Group {
-    private SimulationEngine simulationEngine;
+    /** Level of detail of the road layer */
+    public enum Detail { DETAILED, SIMPLE, MERGED }
+
+    /** Viewport margin, as a part of the viewport size, so that panning does not uncover missing roads at once */
+    private static final double VIEWPORT_MARGIN = 0.25;
+
+    private final Function<String, String> edgeTooltip;
+    private final List<EdgeData> edges;
+    private final List<JunctionData> junctions;
+    /** Items of the tree: edges 0..edgeCount-1, then junctions */
+    private final RTree tree;
+    /** Merged center lines, one path per lane count */
+    private final Group mergedRoads = new Group();
+
+    /** Item -> currently visible, and the visible items (two buffers, swapped by each update) */
+    private final boolean[] shown;
+    private int[] shownItems;
+    private int[] nextShownItems;
+    private int shownCount = 0;
+    /** Item -> last update which found it in the viewport, and the items found */
+    private final int[] inView;
+    private final int[] viewItems;
+    private int viewCount = 0;
+    private int updateCount = 0;
+    private Detail detail = Detail.DETAILED;
+    private Node viewport;
 
     /**
-     * Create road layer including junctions and edges, 
+     * Create road layer including junctions and edges,
      *          with tooltips and mouse events on edges. <br>
      * Junction have no tooltips or mouse events, since they are just for visual purpose.
      * @param engine SimulationEngine instance
      */
     public roadLayer(SimulationEngine engine) {
-        this.simulationEngine = engine;
-        List<JunctionData> junctions = this.simulationEngine.getMapJunctions();
-        List<EdgeData> edges = this.simulationEngine.getMapEdges();
+        this(engine.getMapJunctions(), engine.getMapEdges(), engine::getEdgeTooltip);
+    }
+
+    /**
+     * Create road layer including junctions and edges,
+     *          with tooltips and mouse events on edges.
+     * @param junctions junction shapes
+     * @param edges edge shapes, in edge index order
+     * @param edgeTooltip edge ID -> tooltip text
+     */
+    public roadLayer(List<JunctionData> junctions, List<EdgeData> edges, Function<String, String> edgeTooltip) {
+        this.edgeTooltip = edgeTooltip;
+        this.edges = edges;
+        this.junctions = junctions;
 
         // Add tooltip and mouse events
         addToolTip(edges);
 
+        // R-tree over the bounds of edges and junctions
+        int items = edges.size() + junctions.size();
+        double[] minX = new double[items], minY = new double[items], maxX = new double[items], maxY = new double[items];
+        for (int i = 0; i < items; i++) {
+            Bounds bounds = itemNode(i).getBoundsInParent();
+            minX[i] = bounds.getMinX();
+            minY[i] = bounds.getMinY();
+            maxX[i] = bounds.getMaxX();
+            maxY[i] = bounds.getMaxY();
+        }
+        this.tree = new RTree(minX, minY, maxX, maxY);
+        this.shown = new boolean[items];
+        this.shownItems = new int[items];
+        this.nextShownItems = new int[items];
+        this.inView = new int[items];
+        this.viewItems = new int[items];
+        for (int i = 0; i < items; i++) {
+            shown[i] = true;
+            shownItems[shownCount++] = i;
+        }
+
+        // Invisible rectangle over the whole network: the bounds of the layer do not depend on what is shown
+        Rectangle boundsAnchor = new Rectangle();
+        if (items > 0) {
+            double x0 = Double.MAX_VALUE, y0 = Double.MAX_VALUE, x1 = -Double.MAX_VALUE, y1 = -Double.MAX_VALUE;
+            for (int i = 0; i < items; i++) {
+                x0 = Math.min(x0, minX[i]);
+                y0 = Math.min(y0, minY[i]);
+                x1 = Math.max(x1, maxX[i]);
+                y1 = Math.max(y1, maxY[i]);
+            }
+            boundsAnchor = new Rectangle(x0, y0, x1 - x0, y1 - y0);
+        }
+        boundsAnchor.setFill(javafx.scene.paint.Color.TRANSPARENT);
+        boundsAnchor.setMouseTransparent(true);
+
+        buildMergedRoads();
+        mergedRoads.setVisible(false);
+        mergedRoads.setMouseTransparent(true);
+
+        this.getChildren().add(boundsAnchor);
+        this.getChildren().add(mergedRoads);
         // Add junction shapes to the road layer
         this.getChildren().addAll(junctions);
         // Add edge shapes to the road layer
@@ -46,34 +147,92 @@ public class roadLayer extends Group {
     }
 
 
+    /**
+     * Cull and set the level of detail against a viewport, again each time the map transform or the viewport changes
+     * @param viewport node whose bounds are the visible part of the map (e.g. the clipped map panel)
+     */
+    public void bindViewport(Node viewport) {
+        this.viewport = viewport;
+        this.localToSceneTransformProperty().addListener((observable, oldValue, newValue) -> updateView());
+        viewport.layoutBoundsProperty().addListener((observable, oldValue, newValue) -> updateView());
+        updateView();
+    }
+
+    /**
+     * Show congested edges in the merged level of detail, after the congestion status of the edges has changed. <br>
+     * Nothing to do in the other levels of detail, where edges are colored in place.
+     */
+    public void refreshCongestion() {
+        if (detail == Detail.MERGED) {
+            applyView();
+        }
+    }
+
+    /**
+     * Find the edges and junctions in the viewport and show only them, with the level of detail of the current scale. <br>
+     * Must be called on the JavaFX Application Thread.
+     */
+    public void updateView() {
+        if (viewport == null) {
+            return;
+        }
+        // Level of detail from the scale (pixels per meter)
+        Transform toScene = this.getLocalToSceneTransform();
+        double scale = Math.sqrt(Math.abs(toScene.getMxx() * toScene.getMyy() - toScene.getMxy() * toScene.getMyx()));
+        Detail newDetail = scale < Metrics.ROAD_LOD_MERGE_SCALE ? Detail.MERGED
+                            : scale < Metrics.ROAD_LOD_DETAIL_SCALE ? Detail.SIMPLE : Detail.DETAILED;
+        boolean detailChanged = newDetail != detail;
+        detail = newDetail;
+        mergedRoads.setVisible(detail == Detail.MERGED);
+
+        // Viewport in local coordinates, with a margin
+        Bounds view = this.sceneToLocal(viewport.localToScene(viewport.getLayoutBounds()));
+        if (view == null) {
+            return;
+        }
+        double marginX = view.getWidth() * VIEWPORT_MARGIN;
+        double marginY = view.getHeight() * VIEWPORT_MARGIN;
+        int update = ++updateCount;
+        viewCount = 0;
+        tree.query(view.getMinX() - marginX, view.getMinY() - marginY, view.getMaxX() + marginX, view.getMaxY() + marginY,
+                    i -> {
+                        inView[i] = update;
+                        viewItems[viewCount++] = i;
+                    });
+        if (detailChanged) {
+            for (int k = 0; k < shownCount; k++) {
+                int i = shownItems[k];
+                if (i < edges.size()) {
+                    edges.get(i).setDetailed(detail == Detail.DETAILED);
+                }
+            }
+        }
+        applyView();
+    }
+
+    /** Getter for current level of detail */
+    public Detail getDetail() {
+        return detail;
+    }
+
+    /** Getter for number of edges and junctions currently visible */
+    public int getShownCount() {
+        return shownCount;
+    }
+
+
     /**
      * Private helper method: Add tooltip and mouse events to edges
      */
     private void addToolTip(List<EdgeData> edges) {
         for (EdgeData edge : edges){
-            Label tooltipLabel = new Label();
-            Tooltip tooltip = new Tooltip();
-            // Tooltip does not repaint when visible if setText, Label is a live node that can be updated dynamically
-            // Tooltip text is treated as static String, tooltip graphic is treated as Node that can be updated dynamically
-            tooltip.setGraphic(tooltipLabel);
-            // Add Timeline to update tooltip content with simulation speed
-            Timeline updateTooltip = new Timeline(new KeyFrame(Duration.ZERO, e -> {
-                tooltipLabel.setText(simulationEngine.getEdgeTooltip(edge.getId()));
-            }), new KeyFrame(Duration.millis(Metrics.CONNECT_SPEED_MS))); // Time line stop after this duration (or loop if setCycleCount)
-            // Ensure the timeline runs indefinitely
-            updateTooltip.setCycleCount(Animation.INDEFINITE);
-            // To prevent tooltip delay and automatical hide
-            tooltip.setShowDelay(Duration.ZERO);
-            tooltip.setShowDuration(Duration.INDEFINITE);
-            tooltip.setHideDelay(Duration.millis(Metrics.HIDE_DELAY));
-            // Update tooltip content when shown
-            tooltip.setOnShown(e->updateTooltip.play());
-            tooltip.setOnHidden(e->updateTooltip.stop());
-            Tooltip.install(edge, tooltip);
-            
             // Add mouse entered/exited to know hovering state
+            // The tooltip is only created the first time the edge is hovered, most edges of a large network never are
             // Since edge is a Group, we need to get the Rectangle inside it (1st child, see in cores/EdgeData.java)
             edge.setOnMouseEntered(e -> {
+                if (!edge.getProperties().containsKey(Tooltip.class)) {
+                    edge.getProperties().put(Tooltip.class, createToolTip(edge));
+                }
                 if (edge.getChildren().get(0) instanceof Rectangle rectangle) {
                     rectangle.setStroke(javafx.scene.paint.Color.AQUA);
                     rectangle.setStrokeWidth(0.5);
@@ -86,4 +245,101 @@ public class roadLayer extends Group {
             });
         }
     }
+
+    /**
+     * Private helper method: Create and install the tooltip of an edge
+     */
+    private Tooltip createToolTip(EdgeData edge) {
+        Label tooltipLabel = new Label();
+        Tooltip tooltip = new Tooltip();
+        // Tooltip does not repaint when visible if setText, Label is a live node that can be updated dynamically
+        // Tooltip text is treated as static String, tooltip graphic is treated as Node that can be updated dynamically
+        tooltip.setGraphic(tooltipLabel);
+        // Add Timeline to update tooltip content with simulation speed
+        Timeline updateTooltip = new Timeline(new KeyFrame(Duration.ZERO, e -> {
+            tooltipLabel.setText(edgeTooltip.apply(edge.getId()));
+        }), new KeyFrame(Duration.millis(Metrics.CONNECT_SPEED_MS))); // Time line stop after this duration (or loop if setCycleCount)
+        // Ensure the timeline runs indefinitely
+        updateTooltip.setCycleCount(Animation.INDEFINITE);
+        // To prevent tooltip delay and automatical hide
+        tooltip.setShowDelay(Duration.ZERO);
+        tooltip.setShowDuration(Duration.INDEFINITE);
+        tooltip.setHideDelay(Duration.millis(Metrics.HIDE_DELAY));
+        // Update tooltip content when shown
+        tooltip.setOnShown(e->updateTooltip.play());
+        tooltip.setOnHidden(e->updateTooltip.stop());
+        Tooltip.install(edge, tooltip);
+        return tooltip;
+    }
+
+    /**
+     * Private helper method: one path of center lines per lane count, as wide as the edges
+     */
+    private void buildMergedRoads() {
+        TreeMap<Integer, Path> byLaneCount = new TreeMap<>();
+        for (EdgeData edge : edges) {
+            Path path = byLaneCount.computeIfAbsent(edge.getLaneCount(), laneCount -> {
+                Path p = new Path();
+                p.setStroke(MapColor.ROAD);
+                p.setStrokeWidth(laneCount * Metrics.DEFAULT_LANE_WIDTH);
+                p.setStrokeLineCap(StrokeLineCap.ROUND);
+                return p;
+            });
+            double[] line = edge.getCenterLine();
+            path.getElements().add(new MoveTo(line[0], line[1]));
+            path.getElements().add(new LineTo(line[2], line[3]));
+        }
+        mergedRoads.getChildren().setAll(new ArrayList<>(byLaneCount.values()));
+    }
+
+    /**
+     * Private helper method: show the items of the viewport which the level of detail draws on their own, hide the others
+     */
+    private void applyView() {
+        int update = updateCount;
+        int[] next = nextShownItems;
+        int nextCount = 0;
+        // Items shown so far: keep or hide
+        for (int k = 0; k < shownCount; k++) {
+            int i = shownItems[k];
+            if (inView[i] == update && drawnOnItsOwn(i)) {
+                next[nextCount++] = i;
+            } else {
+                shown[i] = false;
+                itemNode(i).setVisible(false);
+            }
+        }
+        // Items of the viewport not shown yet
+        for (int k = 0; k < viewCount; k++) {
+            int i = viewItems[k];
+            if (!shown[i] && drawnOnItsOwn(i)) {
+                shown[i] = true;
+                if (i < edges.size()) {
+                    edges.get(i).setDetailed(detail == Detail.DETAILED);
+                }
+                itemNode(i).setVisible(true);
+                next[nextCount++] = i;
+            }
+        }
+        nextShownItems = shownItems;
+        shownItems = next;
+        shownCount = nextCount;
+    }
+
+    /**
+     * Private helper method: whether an item in the viewport is drawn as its own node at the current level of detail
+     */
+    private boolean drawnOnItsOwn(int i) {
+        if (detail != Detail.MERGED) {
+            return true;
+        }
+        return i < edges.size() && edges.get(i).isCongested();
+    }
+
+    /**
+     * Private helper method: node of a tree item
+     */
+    private Node itemNode(int i) {
+        return i < edges.size() ? edges.get(i) : junctions.get(i - edges.size());
+    }
 }
@@ -0,0 +1,699 @@
+package real_time_traffic_simulation_with_java.gui.mapLayer;
+
+import real_time_traffic_simulation_with_java.cores.EdgeData;
+import real_time_traffic_simulation_with_java.cores.JunctionData;
+import real_time_traffic_simulation_with_java.cores.RTree;
+import real_time_traffic_simulation_with_java.cores.SimulationEngine;
+import real_time_traffic_simulation_with_java.alias.MapColor;
+import real_time_traffic_simulation_with_java.alias.Metrics;
+
+import java.awt.BasicStroke;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.geom.Line2D;
+import java.awt.geom.Path2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javafx.animation.Animation;
+import javafx.animation.KeyFrame;
+import javafx.animation.Timeline;
+import javafx.application.Platform;
+import javafx.geometry.Bounds;
+import javafx.scene.Group;
+import javafx.scene.Node;
+import javafx.scene.control.Label;
+import javafx.scene.control.Tooltip;
+import javafx.scene.image.ImageView;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.WritableImage;
+import javafx.scene.input.MouseEvent;
+import javafx.scene.shape.Line;
+import javafx.scene.shape.Polygon;
+import javafx.scene.shape.Rectangle;
+import javafx.scene.transform.Transform;
+import javafx.util.Duration;
+
+
+/**
+ * Road layer drawn from pre-rendered image tiles instead of one node per edge and junction (renderer "tiles", see
+ *      {@link Metrics#ROAD_RENDERER}). <br>
+ * The static road network (junctions, edges, lane dividers) is rasterized into a pyramid of square tiles of
+ *      {@link Metrics#ROAD_TILE_SIZE} pixels: level 0 has {@link Metrics#ROAD_TILE_RESOLUTION} meters per pixel,
+ *      each coarser level doubles it, up to a level where one tile covers the whole network.
+ *      Edge borders and lane dividers are only drawn in levels of at least {@link Metrics#ROAD_LOD_DETAIL_SCALE} pixels per meter,
+ *      thinner than a pixel below. <br>
+ * Once bound to the viewport ({@link #bindViewport(Node)}), the layer shows the tiles of the viewport at the level
+ *      closest to the scale of the map (at least one tile pixel per screen pixel). Missing tiles are rendered on a
+ *      background thread with Java2D, meanwhile the closest cached coarser tile is shown stretched in their place. <br>
+ * Rendered tiles are kept in a least recently used cache capped to {@link Metrics#ROAD_TILE_CACHE_MB}. <br>
+ * Tiles never change: congested edges are drawn as an overlay of edge shapes on top of them ({@link #refreshCongestion()}),
+ *      and the edge under the cursor is found with an R-tree to highlight it and show its tooltip. <br>
+ * Vehicle and traffic light layers are drawn on top of this layer as with the node renderer.
+ */
+public class roadTileLayer extends Group {
+    private static final Logger LOGGER = Logger.getLogger(roadTileLayer.class.getName());
+
+    /** Viewport margin, as a part of the viewport size, so that panning finds tiles already rendered */
+    private static final double VIEWPORT_MARGIN = 0.25;
+    private static final int TILE_SIZE = Metrics.ROAD_TILE_SIZE;
+    /** Memory of one rendered tile (bytes), 4 bytes per pixel */
+    private static final long TILE_BYTES = 4L * TILE_SIZE * TILE_SIZE;
+    /** Cached in place of a tile without any road, never shown */
+    private static final WritableImage EMPTY_TILE = new WritableImage(1, 1);
+    /** Opacity of the congestion overlay, lane dividers of the tile stay visible through it */
+    private static final double CONGESTION_OPACITY = 0.8;
+
+    private final Function<String, String> edgeTooltip;
+    private final List<EdgeData> edges;
+    /** Shapes copied once from the nodes, read by the render threads: edge polygons, lane dividers, junction polygons */
+    private final double[][] edgeShapes;
+    private final double[][] dividers;
+    private final double[][] junctionShapes;
+    /** Items of the tree: edges 0..edgeCount-1, then junctions */
+    private final RTree tree;
+    /** Pyramid: origin of every level (smallest x and y of the network) and number of levels */
+    private final double originX;
+    private final double originY;
+    private final int levels;
+
+    /** Rendered tiles by key, in access order (FX thread only) */
+    private final LinkedHashMap<Long, WritableImage> cache = new LinkedHashMap<>(64, 0.75f, true);
+    private final long cacheCapacity;
+    private long cacheBytes = 0;
+    /** Tiles queued or being rendered, and the tiles the current view needs (read by the render threads) */
+    private final Set<Long> pending = ConcurrentHashMap.newKeySet();
+    private volatile Set<Long> wanted = Set.of();
+    private final ExecutorService renderer;
+    /** Runs the delivery of a rendered tile on the JavaFX Application Thread */
+    private final Consumer<Runnable> fxThread;
+
+    /** Tile views shown by key, coarser levels first (under finer ones) */
+    private final Group tileViews = new Group();
+    private final Map<Long, ImageView> shownTiles = new HashMap<>();
+    /** Congestion overlay: one shape per congested edge, created the first time the edge is congested */
+    private final Group congestionOverlay = new Group();
+    private final Polygon[] overlays;
+    private final Polygon highlight = new Polygon();
+    private int hoveredEdge = -1;
+    private Tooltip tooltip;
+    private Label tooltipLabel;
+    private Timeline updateTooltip;
+    private int level = 0;
+    private Node viewport;
+
+    /** Statistics: cache hits and misses of the views, tiles rendered and their total render time */
+    private long cacheHits = 0;
+    private long cacheMisses = 0;
+    private final AtomicInteger tilesRendered = new AtomicInteger();
+    private final AtomicLong renderNanos = new AtomicLong();
+
+    /**
+     * Create road layer including junctions and edges from image tiles,
+     *          with tooltips on edges.
+     * @param engine SimulationEngine instance
+     */
+    public roadTileLayer(SimulationEngine engine) {
+        this(engine.getMapJunctions(), engine.getMapEdges(), engine::getEdgeTooltip, Platform::runLater);
+    }
+
+    /**
+     * Create road layer including junctions and edges from image tiles,
+     *          with tooltips on edges.
+     * @param junctions junction shapes
+     * @param edges edge shapes, in edge index order
+     * @param edgeTooltip edge ID -> tooltip text
+     * @param fxThread runs a task on the JavaFX Application Thread (e.g. Platform::runLater)
+     */
+    public roadTileLayer(List<JunctionData> junctions, List<EdgeData> edges, Function<String, String> edgeTooltip,
+                            Consumer<Runnable> fxThread) {
+        this.edgeTooltip = edgeTooltip;
+        this.edges = edges;
+        this.fxThread = fxThread;
+        this.cacheCapacity = Math.max(1, Metrics.ROAD_TILE_CACHE_MB) * 1024L * 1024L;
+
+        // Copy the shapes out of the nodes: polygon of the edge (1st child), lane dividers (other children)
+        int edgeCount = edges.size();
+        this.edgeShapes = new double[edgeCount][];
+        this.dividers = new double[edgeCount][];
+        for (int i = 0; i < edgeCount; i++) {
+            EdgeData edge = edges.get(i);
+            edgeShapes[i] = toArray(((Polygon) edge.getChildren().get(0)).getPoints());
+            double[] lines = new double[4 * (edge.getChildren().size() - 1)];
+            for (int k = 1; k < edge.getChildren().size(); k++) {
+                Line line = (Line) edge.getChildren().get(k);
+                lines[4 * k - 4] = line.getStartX();
+                lines[4 * k - 3] = line.getStartY();
+                lines[4 * k - 2] = line.getEndX();
+                lines[4 * k - 1] = line.getEndY();
+            }
+            dividers[i] = lines;
+        }
+        this.junctionShapes = new double[junctions.size()][];
+        for (int j = 0; j < junctions.size(); j++) {
+            junctionShapes[j] = toArray(junctions.get(j).getPoints());
+        }
+
+        // R-tree over the bounds of edges and junctions, including the border stroke
+        int items = edgeCount + junctions.size();
+        double[] minX = new double[items], minY = new double[items], maxX = new double[items], maxY = new double[items];
+        double x0 = Double.MAX_VALUE, y0 = Double.MAX_VALUE, x1 = -Double.MAX_VALUE, y1 = -Double.MAX_VALUE;
+        for (int i = 0; i < items; i++) {
+            double[] shape = i < edgeCount ? edgeShapes[i] : junctionShapes[i - edgeCount];
+            minX[i] = minY[i] = Double.MAX_VALUE;
+            maxX[i] = maxY[i] = -Double.MAX_VALUE;
+            for (int p = 0; p + 1 < shape.length; p += 2) {
+                minX[i] = Math.min(minX[i], shape[p] - Metrics.EDGE_DIVIDER_WEIGHT);
+                minY[i] = Math.min(minY[i], shape[p + 1] - Metrics.EDGE_DIVIDER_WEIGHT);
+                maxX[i] = Math.max(maxX[i], shape[p] + Metrics.EDGE_DIVIDER_WEIGHT);
+                maxY[i] = Math.max(maxY[i], shape[p + 1] + Metrics.EDGE_DIVIDER_WEIGHT);
+            }
+            if (shape.length < 2) {
+                minX[i] = minY[i] = maxX[i] = maxY[i] = 0;
+            }
+            x0 = Math.min(x0, minX[i]);
+            y0 = Math.min(y0, minY[i]);
+            x1 = Math.max(x1, maxX[i]);
+            y1 = Math.max(y1, maxY[i]);
+        }
+        if (items == 0) {
+            x0 = y0 = x1 = y1 = 0;
+        }
+        this.tree = new RTree(minX, minY, maxX, maxY);
+        this.originX = x0;
+        this.originY = y0;
+        double extent = Math.max(x1 - x0, y1 - y0);
+        int topLevel = 0;
+        while (TILE_SIZE * resolution(topLevel) < extent && topLevel < 27) {
+            topLevel++;
+        }
+        this.levels = topLevel + 1;
+
+        AtomicInteger threadCount = new AtomicInteger();
+        this.renderer = Executors.newFixedThreadPool(Math.max(1, Math.min(2, Runtime.getRuntime().availableProcessors() - 1)), task -> {
+            Thread thread = new Thread(task, "road-tiles-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            thread.setPriority(Thread.NORM_PRIORITY - 1);
+            return thread;
+        });
+
+        // Invisible rectangle over the whole network: keeps the bounds of the layer (and so the pivot of the map
+        //      transforms) fixed, and receives the mouse moves over parts not rendered yet
+        Rectangle boundsAnchor = new Rectangle(x0, y0, x1 - x0, y1 - y0);
+        boundsAnchor.setFill(javafx.scene.paint.Color.TRANSPARENT);
+
+        this.overlays = new Polygon[edgeCount];
+        congestionOverlay.setMouseTransparent(true);
+        tileViews.setMouseTransparent(true);
+        highlight.setFill(null);
+        highlight.setStroke(javafx.scene.paint.Color.AQUA);
+        highlight.setStrokeWidth(0.5);
+        highlight.setMouseTransparent(true);
+        highlight.setVisible(false);
+
+        this.getChildren().addAll(boundsAnchor, tileViews, congestionOverlay, highlight);
+        this.addEventHandler(MouseEvent.MOUSE_MOVED, e -> hover(e));
+        this.addEventHandler(MouseEvent.MOUSE_EXITED, e -> setHoveredEdge(-1, e));
+        LOGGER.info(String.format("Road tiles: %d levels, %d items, cache capped to %d MB.", levels, items, Metrics.ROAD_TILE_CACHE_MB));
+    }
+
+
+    /**
+     * Show the tiles of a viewport, again each time the map transform or the viewport changes
+     * @param viewport node whose bounds are the visible part of the map (e.g. the clipped map panel)
+     */
+    public void bindViewport(Node viewport) {
+        this.viewport = viewport;
+        this.localToSceneTransformProperty().addListener((observable, oldValue, newValue) -> updateView());
+        viewport.layoutBoundsProperty().addListener((observable, oldValue, newValue) -> updateView());
+        updateView();
+    }
+
+    /**
+     * Update the congestion overlay after the congestion status of the edges has changed. <br>
+     * Must be called on the JavaFX Application Thread.
+     */
+    public void refreshCongestion() {
+        for (int i = 0; i < overlays.length; i++) {
+            boolean congested = edges.get(i).isCongested();
+            Polygon overlay = overlays[i];
+            if (congested && overlay == null) {
+                overlay = new Polygon(edgeShapes[i]);
+                overlay.setFill(MapColor.CONGESTED_ROAD);
+                overlay.setOpacity(CONGESTION_OPACITY);
+                overlays[i] = overlay;
+                congestionOverlay.getChildren().add(overlay);
+            } else if (overlay != null && overlay.isVisible() != congested) {
+                overlay.setVisible(congested);
+            }
+        }
+    }
+
+    /**
+     * Show the tiles covering the viewport at the level of the current scale: cached tiles at once,
+     *      missing ones are queued for rendering and stood in for by a cached coarser tile. <br>
+     * Must be called on the JavaFX Application Thread.
+     */
+    public void updateView() {
+        if (viewport == null) {
+            return;
+        }
+        // Level from the scale (pixels per meter): the coarsest level with at least one tile pixel per screen pixel
+        Transform toScene = this.getLocalToSceneTransform();
+        double scale = Math.sqrt(Math.abs(toScene.getMxx() * toScene.getMyy() - toScene.getMxy() * toScene.getMyx()));
+        this.level = levelOf(scale);
+
+        // Viewport in local coordinates, with a margin
+        Bounds view = this.sceneToLocal(viewport.localToScene(viewport.getLayoutBounds()));
+        if (view == null) {
+            return;
+        }
+        double marginX = view.getWidth() * VIEWPORT_MARGIN;
+        double marginY = view.getHeight() * VIEWPORT_MARGIN;
+        double span = TILE_SIZE * resolution(level);
+        int count = tileCount(level);
+        int tx0 = clamp((int) Math.floor((view.getMinX() - marginX - originX) / span), count);
+        int tx1 = clamp((int) Math.floor((view.getMaxX() + marginX - originX) / span), count);
+        int ty0 = clamp((int) Math.floor((view.getMinY() - marginY - originY) / span), count);
+        int ty1 = clamp((int) Math.floor((view.getMaxY() + marginY - originY) / span), count);
+
+        Set<Long> needed = new HashSet<>();
+        List<Long> shown = new ArrayList<>();
+        for (int ty = ty0; ty <= ty1; ty++) {
+            for (int tx = tx0; tx <= tx1; tx++) {
+                long key = key(level, tx, ty);
+                needed.add(key);
+                WritableImage image = cache.get(key);
+                if (image != null) {
+                    cacheHits++;
+                    shown.add(key);
+                    continue;
+                }
+                cacheMisses++;
+                request(key);
+                // Stand-in: the closest coarser tile already rendered
+                for (int up = level + 1; up < levels; up++) {
+                    int shift = up - level;
+                    long parent = key(up, tx >> shift, ty >> shift);
+                    if (cache.get(parent) != null) {
+                        if (!shown.contains(parent)) {
+                            shown.add(parent);
+                        }
+                        break;
+                    }
+                }
+            }
+        }
+        this.wanted = needed;
+        showTiles(shown);
+    }
+
+    /** Stop the render threads, queued tiles are dropped */
+    public void dispose() {
+        renderer.shutdownNow();
+    }
+
+
+    // ----------------------------------------------------------------------------
+    // Getters
+    // ----------------------------------------------------------------------------
+    /** Getter for level of the tiles currently shown, 0 is the finest */
+    public int getLevel() {
+        return level;
+    }
+
+    /** Getter for number of levels of the pyramid */
+    public int getLevelCount() {
+        return levels;
+    }
+
+    /** Getter for number of tile views shown, including coarser stand-ins */
+    public int getShownTileCount() {
+        return shownTiles.size();
+    }
+
+    /** Getter for number of tiles queued or being rendered */
+    public int getPendingTileCount() {
+        return pending.size();
+    }
+
+    /** Getter for number of tiles of the views found in the cache */
+    public long getCacheHits() {
+        return cacheHits;
+    }
+
+    /** Getter for number of tiles of the views missing from the cache */
+    public long getCacheMisses() {
+        return cacheMisses;
+    }
+
+    /** Getter for memory of the cached tiles (bytes) */
+    public long getCacheBytes() {
+        return cacheBytes;
+    }
+
+    /** Getter for number of tiles rendered so far */
+    public int getTilesRendered() {
+        return tilesRendered.get();
+    }
+
+    /** Getter for total time spent rendering tiles (ns), over all render threads */
+    public long getRenderNanos() {
+        return renderNanos.get();
+    }
+
+
+    // ----------------------------------------------------------------------------
+    // Private helper methods: tiles
+    // ----------------------------------------------------------------------------
+    /**
+     * Private helper method: queue a tile for rendering, unless already queued
+     */
+    private void request(long key) {
+        if (!pending.add(key)) {
+            return;
+        }
+        renderer.execute(() -> {
+            // The view moved on before the tile was rendered
+            if (!wanted.contains(key)) {
+                pending.remove(key);
+                return;
+            }
+            WritableImage image;
+            try {
+                image = renderTile(key);
+            } catch (RuntimeException e) {
+                LOGGER.log(Level.WARNING, "Failed to render road tile " + keyLevel(key) + "/" + keyX(key) + "/" + keyY(key) + ".", e);
+                pending.remove(key);
+                return;
+            }
+            fxThread.accept(() -> deliver(key, image));
+        });
+    }
+
+    /**
+     * Private helper method: cache a rendered tile, dropping the least recently used tiles beyond the cap,
+     *      and show it if the view still needs it (FX thread)
+     */
+    private void deliver(long key, WritableImage image) {
+        pending.remove(key);
+        if (cache.put(key, image) == null && image != EMPTY_TILE) {
+            cacheBytes += TILE_BYTES;
+        }
+        Iterator<Map.Entry<Long, WritableImage>> eldest = cache.entrySet().iterator();
+        while (cacheBytes > cacheCapacity && eldest.hasNext()) {
+            WritableImage dropped = eldest.next().getValue();
+            eldest.remove();
+            if (dropped != EMPTY_TILE) {
+                cacheBytes -= TILE_BYTES;
+            }
+        }
+        if (wanted.contains(key)) {
+            updateView();
+        }
+    }
+
+    /**
+     * Private helper method: show the given cached tiles, coarser levels under finer ones, and hide the others
+     */
+    private void showTiles(List<Long> keys) {
+        keys.sort((a, b) -> Integer.compare(keyLevel(b), keyLevel(a)));
+        List<Node> views = new ArrayList<>(keys.size());
+        Map<Long, ImageView> previous = new HashMap<>(shownTiles);
+        shownTiles.clear();
+        for (long key : keys) {
+            WritableImage image = cache.get(key);
+            if (image == EMPTY_TILE) {
+                continue;
+            }
+            ImageView view = previous.get(key);
+            if (view == null) {
+                double span = TILE_SIZE * resolution(keyLevel(key));
+                view = new ImageView(image);
+                view.setX(originX + keyX(key) * span);
+                view.setY(originY + keyY(key) * span);
+                view.setFitWidth(span);
+                view.setFitHeight(span);
+                view.setSmooth(true);
+            }
+            shownTiles.put(key, view);
+            views.add(view);
+        }
+        if (!views.equals(tileViews.getChildren())) {
+            tileViews.getChildren().setAll(views);
+        }
+    }
+
+    /**
+     * Private helper method: rasterize the junctions, edges and lane dividers of a tile (render thread)
+     */
+    private WritableImage renderTile(long key) {
+        long start = System.nanoTime();
+        int tileLevel = keyLevel(key);
+        double resolution = resolution(tileLevel);
+        double span = TILE_SIZE * resolution;
+        double x0 = originX + keyX(key) * span;
+        double y0 = originY + keyY(key) * span;
+
+        // Items of the tile, drawn like the node renderer: junctions under edges, in index order
+        int[][] found = {new int[64]};
+        int[] itemCount = {0};
+        int edgeCount = edgeShapes.length;
+        int junctionCount = junctionShapes.length;
+        tree.query(x0, y0, x0 + span, y0 + span, i -> {
+            if (itemCount[0] == found[0].length) {
+                found[0] = Arrays.copyOf(found[0], 2 * itemCount[0]);
+            }
+            // Junctions sort before edges: junction j -> j, edge i -> junctionCount + i
+            found[0][itemCount[0]++] = i >= edgeCount ? i - edgeCount : i + junctionCount;
+        });
+        if (itemCount[0] == 0) {
+            return EMPTY_TILE;
+        }
+        int[] order = Arrays.copyOf(found[0], itemCount[0]);
+        Arrays.sort(order);
+
+        BufferedImage tile = new BufferedImage(TILE_SIZE, TILE_SIZE, BufferedImage.TYPE_INT_ARGB_PRE);
+        Graphics2D g = tile.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        g.setRenderingHint(RenderingHints.KEY_STROKE_CONTROL, RenderingHints.VALUE_STROKE_PURE);
+        g.scale(1 / resolution, 1 / resolution);
+        g.translate(-x0, -y0);
+        java.awt.Color road = toAwt(MapColor.ROAD);
+        java.awt.Color border = toAwt(MapColor.ROAD_BORDER);
+        java.awt.Color divider = toAwt(MapColor.LANE_DIVIDER);
+        BasicStroke borderStroke = new BasicStroke((float) Metrics.EDGE_DIVIDER_WEIGHT, BasicStroke.CAP_SQUARE, BasicStroke.JOIN_MITER);
+        boolean detailed = 1 / resolution >= Metrics.ROAD_LOD_DETAIL_SCALE;
+        BasicStroke dividerStroke = new BasicStroke((float) Metrics.LANE_DIVIDER_WEIGHT, BasicStroke.CAP_SQUARE, BasicStroke.JOIN_MITER,
+                                        10f, new float[]{(float) Metrics.LANE_DASHED_LENGTH, (float) Metrics.LANE_DASHED_GAP}, 0f);
+        Line2D.Double line = new Line2D.Double();
+        for (int item : order) {
+            if (item < junctionCount) {
+                g.setColor(road);
+                g.fill(toPath(junctionShapes[item]));
+                continue;
+            }
+            int edge = item - junctionCount;
+            Path2D.Double shape = toPath(edgeShapes[edge]);
+            g.setColor(road);
+            g.fill(shape);
+            if (detailed) {
+                g.setColor(border);
+                g.setStroke(borderStroke);
+                g.draw(shape);
+                g.setColor(divider);
+                g.setStroke(dividerStroke);
+                double[] lines = dividers[edge];
+                for (int p = 0; p + 3 < lines.length; p += 4) {
+                    line.setLine(lines[p], lines[p + 1], lines[p + 2], lines[p + 3]);
+                    g.draw(line);
+                }
+            }
+        }
+        g.dispose();
+
+        int[] pixels = ((DataBufferInt) tile.getRaster().getDataBuffer()).getData();
+        WritableImage image = new WritableImage(TILE_SIZE, TILE_SIZE);
+        image.getPixelWriter().setPixels(0, 0, TILE_SIZE, TILE_SIZE, PixelFormat.getIntArgbPreInstance(), pixels, 0, TILE_SIZE);
+        tilesRendered.incrementAndGet();
+        renderNanos.addAndGet(System.nanoTime() - start);
+        return image;
+    }
+
+    /**
+     * Private helper method: coarsest level with at least one tile pixel per screen pixel at a scale (pixels per meter)
+     */
+    private int levelOf(double scale) {
+        if (!(scale > 0)) {
+            return levels - 1;
+        }
+        int found = (int) Math.floor(Math.log(1 / (scale * Metrics.ROAD_TILE_RESOLUTION)) / Math.log(2));
+        return Math.max(0, Math.min(levels - 1, found));
+    }
+
+    /**
+     * Private helper method: meters per pixel of a level
+     */
+    private static double resolution(int level) {
+        return Metrics.ROAD_TILE_RESOLUTION * (1L << level);
+    }
+
+    /**
+     * Private helper method: number of tiles per row and per column of a level
+     */
+    private int tileCount(int level) {
+        return 1 << (levels - 1 - level);
+    }
+
+    /**
+     * Private helper method: clamp a tile index to [0, count - 1]
+     */
+    private static int clamp(int index, int count) {
+        return Math.max(0, Math.min(count - 1, index));
+    }
+
+    /**
+     * Private helper method: key of a tile, level in the top bits, then column and row
+     */
+    private static long key(int level, int tx, int ty) {
+        return ((long) level << 56) | ((long) tx << 28) | ty;
+    }
+
+    private static int keyLevel(long key) {
+        return (int) (key >>> 56);
+    }
+
+    private static int keyX(long key) {
+        return (int) ((key >>> 28) & 0xFFFFFFF);
+    }
+
+    private static int keyY(long key) {
+        return (int) (key & 0xFFFFFFF);
+    }
+
+
+    // ----------------------------------------------------------------------------
+    // Private helper methods: hovering
+    // ----------------------------------------------------------------------------
+    /**
+     * Private helper method: find the edge under the cursor (local coordinates are map coordinates)
+     */
+    private void hover(MouseEvent event) {
+        double x = event.getX();
+        double y = event.getY();
+        int edgeCount = edgeShapes.length;
+        int edge = tree.nearest(x, y, 0, (item, px, py) ->
+                        item < edgeCount && insidePolygon(edgeShapes[item], px, py) ? 0 : Double.POSITIVE_INFINITY);
+        setHoveredEdge(edge, event);
+    }
+
+    /**
+     * Private helper method: highlight an edge and show its tooltip, -1 to hide them
+     */
+    private void setHoveredEdge(int edge, MouseEvent event) {
+        if (edge == hoveredEdge) {
+            return;
+        }
+        hoveredEdge = edge;
+        if (edge < 0) {
+            highlight.setVisible(false);
+            if (tooltip != null) {
+                tooltip.hide();
+                updateTooltip.stop();
+            }
+            return;
+        }
+        highlight.getPoints().setAll(Arrays.stream(edgeShapes[edge]).boxed().toList());
+        highlight.setVisible(true);
+        if (tooltip == null) {
+            createToolTip();
+        }
+        String edgeID = edges.get(edge).getId();
+        updateTooltip.stop();
+        updateTooltip.getKeyFrames().set(0, new KeyFrame(Duration.ZERO, e -> tooltipLabel.setText(edgeTooltip.apply(edgeID))));
+        tooltipLabel.setText(edgeTooltip.apply(edgeID));
+        tooltip.show(this, event.getScreenX() + 12, event.getScreenY() + 12);
+        updateTooltip.play();
+    }
+
+    /**
+     * Private helper method: Create the tooltip shared by all edges, the first time an edge is hovered
+     */
+    private void createToolTip() {
+        tooltipLabel = new Label();
+        tooltip = new Tooltip();
+        // Tooltip text is treated as static String, tooltip graphic is treated as Node that can be updated dynamically
+        tooltip.setGraphic(tooltipLabel);
+        // Timeline to update tooltip content with simulation speed, its 1st key frame is set to the hovered edge
+        updateTooltip = new Timeline(new KeyFrame(Duration.ZERO), new KeyFrame(Duration.millis(Metrics.CONNECT_SPEED_MS)));
+        updateTooltip.setCycleCount(Animation.INDEFINITE);
+    }
+
+    /**
+     * Private helper method: whether a point is inside a polygon {x0, y0, x1, y1, ...} (even-odd rule)
+     */
+    private static boolean insidePolygon(double[] shape, double x, double y) {
+        boolean inside = false;
+        int n = shape.length / 2;
+        for (int p = 0, q = n - 1; p < n; q = p++) {
+            double px = shape[2 * p], py = shape[2 * p + 1];
+            double qx = shape[2 * q], qy = shape[2 * q + 1];
+            if ((py > y) != (qy > y) && x < (qx - px) * (y - py) / (qy - py) + px) {
+                inside = !inside;
+            }
+        }
+        return inside;
+    }
+
+    /**
+     * Private helper method: closed Java2D path of a polygon {x0, y0, x1, y1, ...}
+     */
+    private static Path2D.Double toPath(double[] shape) {
+        Path2D.Double path = new Path2D.Double();
+        for (int p = 0; p + 1 < shape.length; p += 2) {
+            if (p == 0) {
+                path.moveTo(shape[p], shape[p + 1]);
+            } else {
+                path.lineTo(shape[p], shape[p + 1]);
+            }
+        }
+        path.closePath();
+        return path;
+    }
+
+    /**
+     * Private helper method: Java2D color of a JavaFX color
+     */
+    private static java.awt.Color toAwt(javafx.scene.paint.Color color) {
+        return new java.awt.Color((float) color.getRed(), (float) color.getGreen(), (float) color.getBlue(), (float) color.getOpacity());
+    }
+
+    /**
+     * Private helper method: coordinates of a JavaFX point list
+     */
+    private static double[] toArray(List<Double> points) {
+        double[] array = new double[points.size()];
+        for (int i = 0; i < array.length; i++) {
+            array[i] = points.get(i);
+        }
+        return array;
+    }
+}
@@ -85,7 +85,7 @@ public class trafficlightLayer extends Group {
             Tl.addEventHandler(MouseEvent.MOUSE_CLICKED, event -> {
                 // event.isPrimaryButtonDown() not working because mouse button has been released at this time
                 if (event.getClickCount() == 2 && event.getButton() == MouseButton.PRIMARY) {
-                    simulationEngine.toggleSingleTl(Tl.getId());
+                    simulationEngine.runOnSimulationThread(() -> simulationEngine.toggleSingleTl(Tl.getId()));
                 }
             });
         }
@@ -106,7 +106,7 @@ public class trafficlightLayer extends Group {
                     Optional<List<Integer>> result = popup.showAndWait();
                     // If result is not null, set new phase durations to the simulation engine
                     result.ifPresent(phaseDurations -> {
-                            simulationEngine.setTlPhaseDurations(Tl.getId(), phaseDurations);
+                            simulationEngine.runOnSimulationThread(() -> simulationEngine.setTlPhaseDurations(Tl.getId(), phaseDurations));
                     });
                 }
             });
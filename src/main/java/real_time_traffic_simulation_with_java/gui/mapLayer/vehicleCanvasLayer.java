@@ -0,0 +1,239 @@
+package real_time_traffic_simulation_with_java.gui.mapLayer;
+
+import real_time_traffic_simulation_with_java.alias.Color;
+import real_time_traffic_simulation_with_java.alias.Metrics;
+import real_time_traffic_simulation_with_java.cores.SimulationEngine;
+import real_time_traffic_simulation_with_java.cores.StepSnapshot;
+import real_time_traffic_simulation_with_java.cores.VehicleGrid;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javafx.geometry.BoundingBox;
+import javafx.geometry.Bounds;
+import javafx.scene.Group;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.control.Label;
+import javafx.scene.control.Tooltip;
+import javafx.scene.input.MouseEvent;
+import javafx.scene.paint.Paint;
+import javafx.scene.transform.Affine;
+import javafx.scene.transform.NonInvertibleTransformException;
+import javafx.scene.transform.Transform;
+
+
+/**
+ * Create vehicle layer drawn on a single Canvas, alternative to {@link vehicleLayer} for large number of vehicles. <br>
+ * All vehicles are drawn in one pass from the primitive arrays of the snapshot (x, y, angle, packed RGBA),
+ *      no scene graph node is created per vehicle. <br>
+ * The canvas covers the map panel viewport and is drawn with the current transform of the map group
+ *      (zoom, pan, rotate and vertical flip maintained by MapPanel), so vehicles stay sharp at any zoom level. <br>
+ * Only vehicles inside the viewport are drawn, found in the vehicle grid of the step ({@link VehicleGrid}). <br>
+ * The canvas is mouse transparent: tooltips are served by a nearest query on the same grid
+ *      from mouse events of the map group instead of node hit-testing.
+ */
+public class vehicleCanvasLayer extends Canvas {
+    private static final Logger LOGGER = Logger.getLogger(vehicleCanvasLayer.class.getName());
+    /** Center of a drawn vehicle rectangle relative to the vehicle position, same geometry as VehicleData */
+    private static final double CENTER_OFFSET_X = Metrics.DEFAULT_VEHICLE_WIDTH / 2;
+    private static final double CENTER_OFFSET_Y = Metrics.DEFAULT_VEHICLE_WIDTH - Metrics.DEFAULT_VEHICLE_LENGTH / 2;
+    /** Offset of the tooltip from the cursor (in pixels) */
+    private static final double TOOLTIP_OFFSET = 12;
+
+    private SimulationEngine simulationEngine;
+    /** Map group whose local coordinates are SUMO coordinates */
+    private final Group mapGroup;
+
+    /** Last drawn snapshot, its vehicle grid and transform, nothing to draw if snapshot and transform are unchanged */
+    private StepSnapshot drawnSnapshot = null;
+    private VehicleGrid drawnIndex = null;
+    private final double[] drawnTransform = new double[6];
+
+    /** Fill of each packed RGBA color, parsed once per distinct color, and the fill of the last drawn vehicle */
+    private final Map<Integer, Paint> paintCache = new HashMap<>();
+    private int lastRGBA = 0;
+    private Paint lastPaint = null;
+    /** Reusable corner buffers */
+    private final double[] cornerX = new double[4];
+    private final double[] cornerY = new double[4];
+
+    /** Tooltip of the hovered vehicle */
+    private final Label tooltipLabel = new Label();
+    private final Tooltip tooltip = new Tooltip();
+    /** Last cursor position, in map coordinates and screen coordinates */
+    private double mouseX, mouseY, mouseScreenX, mouseScreenY;
+
+    /**
+     * Create vehicle layer drawn on a single Canvas.
+     * @param engine SimulationEngine instance
+     * @param mapGroup Group holding the other map layers, its transform is applied when drawing
+     * @param width width of the map panel viewport (in pixels)
+     * @param height height of the map panel viewport (in pixels)
+     */
+    public vehicleCanvasLayer(SimulationEngine engine, Group mapGroup, double width, double height) {
+        super(width, height);
+        this.simulationEngine = engine;
+        this.mapGroup = mapGroup;
+        // Let mouse events through to the map group (zoom, pan, rotate, traffic light events)
+        this.setMouseTransparent(true);
+        setupTooltip();
+    }
+
+
+    /**
+     * Draw all shown vehicles of the snapshot with the current map transform. <br>
+     * Does nothing if neither the snapshot nor the map transform changed since the last draw.
+     *      Must be called on the JavaFX Application Thread.
+     * @param snapshot state of the step to draw
+     */
+    public void draw(StepSnapshot snapshot) {
+        Transform toCanvas;
+        try {
+            toCanvas = this.getLocalToSceneTransform().createInverse().createConcatenation(mapGroup.getLocalToSceneTransform());
+        } catch (NonInvertibleTransformException e) {
+            LOGGER.log(Level.WARNING, "Vehicle canvas transform is not invertible, skip drawing.");
+            return;
+        }
+        if (snapshot == drawnSnapshot && sameTransform(toCanvas)) {
+            return;
+        }
+        GraphicsContext gc = this.getGraphicsContext2D();
+        gc.setTransform(new Affine());
+        gc.clearRect(0, 0, this.getWidth(), this.getHeight());
+        gc.setTransform(new Affine(toCanvas));
+
+        // Viewport in map coordinates, widened by a vehicle length so that vehicles across the border are drawn
+        Bounds view;
+        try {
+            view = toCanvas.inverseTransform(new BoundingBox(0, 0, this.getWidth(), this.getHeight()));
+        } catch (NonInvertibleTransformException e) {
+            LOGGER.log(Level.WARNING, "Vehicle canvas transform is not invertible, skip drawing.");
+            return;
+        }
+        double margin = Metrics.DEFAULT_VEHICLE_LENGTH;
+        lastPaint = null;
+        this.simulationEngine.forEachShownVehicle(snapshot, view.getMinX() - margin, view.getMinY() - margin,
+                                                    view.getMaxX() + margin, view.getMaxY() + margin,
+                                                    i -> drawVehicle(gc, snapshot, i));
+        drawnIndex = this.simulationEngine.getVehicleIndex(snapshot);
+        drawnSnapshot = snapshot;
+        storeTransform(toCanvas);
+
+        // Keep the tooltip content in sync with the moving vehicles
+        if (tooltip.isShowing()) {
+            updateTooltip();
+        }
+    }
+
+
+    /**
+     * Find the vehicle drawn under a point of the map
+     * @param x x-coordinate in map (SUMO) coordinates
+     * @param y y-coordinate in map (SUMO) coordinates
+     * @return index of the closest vehicle in the drawn snapshot, -1 if no vehicle is within pick radius
+     */
+    public int pick(double x, double y) {
+        if (drawnSnapshot == null) {
+            return -1;
+        }
+        // Centers are at a fixed offset from the positions held by the grid
+        StepSnapshot snapshot = drawnSnapshot;
+        return drawnIndex.nearest(x - CENTER_OFFSET_X, y - CENTER_OFFSET_Y, Metrics.PICK_RADIUS,
+                                    i -> this.simulationEngine.isVehicleShown(snapshot, i));
+    }
+
+
+    // ---------------------------------------------------------
+    // Private helper methods
+    // ---------------------------------------------------------
+    /**
+     * Private helper method: draw one vehicle of the snapshot, the fill is only changed when the color changes
+     */
+    private void drawVehicle(GraphicsContext gc, StepSnapshot snapshot, int i) {
+        int rgba = snapshot.getVehicleRGBA(i);
+        if (lastPaint == null || rgba != lastRGBA) {
+            lastPaint = paintCache.computeIfAbsent(rgba, key -> Paint.valueOf(Color.colorToString(key)));
+            lastRGBA = rgba;
+            gc.setFill(lastPaint);
+        }
+        computeCorners(snapshot.getVehicleX(i), snapshot.getVehicleY(i), snapshot.getVehicleAngle(i));
+        gc.fillPolygon(cornerX, cornerY, 4);
+    }
+
+    /**
+     * Private helper method: corners of the vehicle rectangle, same geometry as {@link real_time_traffic_simulation_with_java.cores.VehicleData}
+     */
+    private void computeCorners(double x, double y, double angle) {
+        double length = Metrics.DEFAULT_VEHICLE_LENGTH;
+        double width = Metrics.DEFAULT_VEHICLE_WIDTH;
+        // Top-left corner of the rectangle is shifted like VehicleData, rotation is around the rectangle center
+        double translate_vec = length/2 - width/2;
+        double cx = x - translate_vec + length/2;
+        double cy = y - translate_vec + width/2;
+        double rad = Math.toRadians(-(angle + 90));
+        double cos = Math.cos(rad);
+        double sin = Math.sin(rad);
+        double hl = length/2;
+        double hw = width/2;
+        cornerX[0] = cx - hl*cos + hw*sin;  cornerY[0] = cy - hl*sin - hw*cos;
+        cornerX[1] = cx + hl*cos + hw*sin;  cornerY[1] = cy + hl*sin - hw*cos;
+        cornerX[2] = cx + hl*cos - hw*sin;  cornerY[2] = cy + hl*sin + hw*cos;
+        cornerX[3] = cx - hl*cos - hw*sin;  cornerY[3] = cy - hl*sin + hw*cos;
+    }
+
+    /**
+     * Private helper method: compare a transform with the one of the last draw
+     */
+    private boolean sameTransform(Transform t) {
+        return t.getMxx() == drawnTransform[0] && t.getMxy() == drawnTransform[1] && t.getTx() == drawnTransform[2]
+            && t.getMyx() == drawnTransform[3] && t.getMyy() == drawnTransform[4] && t.getTy() == drawnTransform[5];
+    }
+
+    /**
+     * Private helper method: remember the transform of the last draw
+     */
+    private void storeTransform(Transform t) {
+        drawnTransform[0] = t.getMxx();
+        drawnTransform[1] = t.getMxy();
+        drawnTransform[2] = t.getTx();
+        drawnTransform[3] = t.getMyx();
+        drawnTransform[4] = t.getMyy();
+        drawnTransform[5] = t.getTy();
+    }
+
+    /**
+     * Private helper method: show the tooltip of the vehicle under the cursor, using mouse events of the map group
+     */
+    private void setupTooltip() {
+        // Tooltip does not repaint when visible if setText, Label is a live node that can be updated dynamically
+        tooltip.setGraphic(tooltipLabel);
+        mapGroup.addEventHandler(MouseEvent.MOUSE_MOVED, event -> {
+            // Handler of the map group receives coordinates in map (SUMO) coordinates
+            mouseX = event.getX();
+            mouseY = event.getY();
+            mouseScreenX = event.getScreenX();
+            mouseScreenY = event.getScreenY();
+            updateTooltip();
+        });
+        mapGroup.addEventHandler(MouseEvent.MOUSE_EXITED, event -> tooltip.hide());
+        mapGroup.addEventHandler(MouseEvent.MOUSE_PRESSED, event -> tooltip.hide());
+    }
+
+    /**
+     * Private helper method: pick the vehicle under the last cursor position and show or hide the tooltip
+     */
+    private void updateTooltip() {
+        int i = pick(mouseX, mouseY);
+        if (i == -1) {
+            tooltip.hide();
+            return;
+        }
+        tooltipLabel.setText(simulationEngine.getVehicleTooltip(drawnSnapshot, i));
+        if (!tooltip.isShowing() && this.getScene() != null) {
+            tooltip.show(this.getScene().getWindow(), mouseScreenX + TOOLTIP_OFFSET, mouseScreenY + TOOLTIP_OFFSET);
+        }
+    }
+}
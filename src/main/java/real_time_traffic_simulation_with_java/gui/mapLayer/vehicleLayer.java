@@ -1,19 +1,44 @@
 package real_time_traffic_simulation_with_java.gui.mapLayer;
 
 import real_time_traffic_simulation_with_java.cores.SimulationEngine;
+import real_time_traffic_simulation_with_java.cores.StepSnapshot;
 import real_time_traffic_simulation_with_java.cores.VehicleData;
 
-import java.util.List;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 import javafx.scene.Group;
 
 
 /**
  * Create vehicle layer including vehicles. <br>
- * No tooltip or mouse events needed, vehicle run too fast to interact.
+ * No tooltip or mouse events needed, vehicle run too fast to interact. <br>
+ * The layer is persistent: vehicle shapes are kept by vehicle ID and only moved/recolored from step to step.
+ *      Shapes of arrived (or filtered out) vehicles are hidden and parked in a pool,
+ *      newly departed vehicles take a shape from the pool before a new one is allocated,
+ *      so the children list stops changing once the pool has grown to the peak number of vehicles.
  */
 public class vehicleLayer extends Group {
+    private static final Logger LOGGER = Logger.getLogger(vehicleLayer.class.getName());
+    /** Log allocation statistics every n updates */
+    private static final int STATS_LOG_INTERVAL = 100;
+
     private SimulationEngine simulationEngine;
+    /** Visible vehicle shapes of the last update, by vehicle ID */
+    private Map<String, VehicleData> visible = new HashMap<>();
+    /** Visible vehicle shapes being collected during an update, swapped with visible afterwards */
+    private Map<String, VehicleData> nextVisible = new HashMap<>();
+    /** Hidden shapes ready to be reused */
+    private final ArrayDeque<VehicleData> pool = new ArrayDeque<>();
+
+    /** Allocation statistics: nodes allocated by the last update & in total, and vehicles drawn in total */
+    private int nodesAllocatedLastUpdate = 0;
+    private long nodesAllocatedTotal = 0;
+    private long vehiclesDrawnTotal = 0;
+    private long updateCount = 0;
 
     /**
      * Create vehicle layer including vehicles. <br>
@@ -22,8 +47,80 @@ public class vehicleLayer extends Group {
      */
     public vehicleLayer(SimulationEngine engine) {
         this.simulationEngine = engine;
-        List<VehicleData> vehicles = this.simulationEngine.getMapVehicles();
-        // Add vehicle shapes to the vehicle layer
-        this.getChildren().addAll(vehicles);
+        this.update(this.simulationEngine.getSnapshot());
+    }
+
+
+    /**
+     * Bring the layer up to date with a snapshot:
+     *      move shapes of known vehicles, show a (pooled) shape for new vehicles, hide shapes of vehicles that are gone.
+     *      Must be called on the JavaFX Application Thread.
+     * @param snapshot state of the step to draw
+     */
+    public void update(StepSnapshot snapshot) {
+        int allocated = 0;
+        int drawn = 0;
+        for (int i = 0; i < snapshot.getVehicleCount(); i++) {
+            if (!this.simulationEngine.isVehicleShown(snapshot, i)) {
+                continue;
+            }
+            String vehicleID = snapshot.getVehicleID(i);
+            VehicleData vehicle = visible.remove(vehicleID);
+            if (vehicle == null) {
+                vehicle = pool.poll();
+                if (vehicle == null) {
+                    vehicle = new VehicleData(vehicleID, snapshot.getVehicleX(i), snapshot.getVehicleY(i),
+                                                snapshot.getVehicleAngle(i), snapshot.getVehicleRGBA(i));
+                    this.getChildren().add(vehicle);
+                    allocated++;
+                } else {
+                    vehicle.setId(vehicleID);
+                    vehicle.setVisible(true);
+                }
+            }
+            vehicle.update(snapshot.getVehicleX(i), snapshot.getVehicleY(i),
+                            snapshot.getVehicleAngle(i), snapshot.getVehicleRGBA(i));
+            nextVisible.put(vehicleID, vehicle);
+            drawn++;
+        }
+        // Whatever is left has arrived or is filtered out
+        for (VehicleData gone : visible.values()) {
+            gone.setVisible(false);
+            pool.push(gone);
+        }
+        visible.clear();
+        Map<String, VehicleData> swap = visible;
+        visible = nextVisible;
+        nextVisible = swap;
+
+        logStatistics(allocated, drawn);
+    }
+
+
+    /** Getter for number of vehicle nodes allocated by the last update */
+    public int getNodesAllocatedLastUpdate() {
+        return nodesAllocatedLastUpdate;
+    }
+
+
+    /**
+     * Private helper method: keep allocation statistics. <br>
+     * Rebuilding the layer allocates one node per drawn vehicle and step, compare with the nodes allocated here.
+     */
+    private void logStatistics(int allocated, int drawn) {
+        nodesAllocatedLastUpdate = allocated;
+        nodesAllocatedTotal += allocated;
+        vehiclesDrawnTotal += drawn;
+        updateCount++;
+        if (LOGGER.isLoggable(Level.FINE)) {
+            LOGGER.log(Level.FINE, String.format("Vehicle layer: %d nodes allocated for %d vehicles (full rebuild: %d).",
+                                                    allocated, drawn, drawn));
+        }
+        if (updateCount % STATS_LOG_INTERVAL == 0) {
+            LOGGER.log(Level.INFO, String.format(
+                "Vehicle layer after %d updates: %.2f nodes allocated/step (full rebuild: %.2f), %d pooled, %d nodes total.",
+                updateCount, (double) nodesAllocatedTotal / updateCount, (double) vehiclesDrawnTotal / updateCount,
+                pool.size(), this.getChildren().size()));
+        }
     }
 }
@@ -0,0 +1,298 @@
+package real_time_traffic_simulation_with_java.tools;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import real_time_traffic_simulation_with_java.alias.Color;
+
+
+/**
+ * Running aggregates of the PDF summary, fed by the export with each step as it happens:
+ *      the PDF is built from them at any point of the run without reading any log file. <br>
+ * Kept in primitive arrays and bitsets:
+ * <ul>
+ *  <li>vehicle count per color and per step</li>
+ *  <li>vehicles seen per color: one bit per vehicle code (codes are given in order of first appearance)</li>
+ *  <li>edges ever congested: one bit per edge handle</li>
+ *  <li>congested edge count per step</li>
+ * </ul>
+ * Colors are grouped by name ({@link Color#colorToString(int)}) in order of first appearance, like {@link TraceSummary},
+ *      and the results are the same as those of the trace summary, see {@link ReportSummary}. <br>
+ * Unique vehicle counts are exact, hence the one part that is not bounded: the code of each vehicle ID is kept in a map
+ *      for the whole run, about 85-115 bytes per vehicle ever seen (8-11 MB for 100k vehicles, 108 MB for a million,
+ *      measured by TraceBenchmark). A HyperLogLog per color would bound it, but with approximate counts
+ *      that no longer match the trace summary. <br>
+ * Thread-safe: the export sink thread appends, other threads read. A report should read a {@link #snapshot()},
+ *      so that all its parts cover the same steps.
+ */
+public final class AggregateTracker implements ExportSink, ReportSummary {
+    private final List<String> colorNames = new ArrayList<>();
+    /** Color codes seen and the index of their name, a run uses a handful of colors */
+    private int[] knownRGBA = new int[8];
+    private int[] knownColor = new int[8];
+    private int knownCount = 0;
+
+    // Unique vehicles: vehicle code per ID (grows with every vehicle of the run), color name index -> vehicle codes seen
+    private final Map<String, Integer> vehicleCodes = new HashMap<>();
+    private final List<BitSet> vehiclesByColor = new ArrayList<>();
+
+    // Congested edges: edge handles ever congested and their IDs, edge handle -> last step counted
+    private final BitSet congestedEdges = new BitSet();
+    private String[] edgeIDs = new String[256];
+    private int[] congestedStamp = new int[256];
+
+    // Per step values
+    private int stepCount = 0;
+    private double lastStepTime = 0;
+    private int[] stepTimes = new int[1024];
+    private int[] vehicleCount = new int[1024];
+    private int[] congestedEdgeCount = new int[1024];
+    /** Color name index -> vehicle count per step */
+    private final List<int[]> vehicleCountByColor = new ArrayList<>();
+
+    /** Create empty aggregates */
+    public AggregateTracker() {
+    }
+
+    /**
+     * Private helper method: copy of the aggregates (see {@link #snapshot()}), the per step arrays are trimmed
+     */
+    private AggregateTracker(AggregateTracker source) {
+        this.colorNames.addAll(source.colorNames);
+        for (BitSet vehicles : source.vehiclesByColor) {
+            this.vehiclesByColor.add((BitSet) vehicles.clone());
+        }
+        this.congestedEdges.or(source.congestedEdges);
+        this.edgeIDs = Arrays.copyOf(source.edgeIDs, source.edgeIDs.length);
+        this.stepCount = source.stepCount;
+        this.lastStepTime = source.lastStepTime;
+        this.stepTimes = Arrays.copyOf(source.stepTimes, source.stepCount);
+        this.vehicleCount = Arrays.copyOf(source.vehicleCount, source.stepCount);
+        this.congestedEdgeCount = Arrays.copyOf(source.congestedEdgeCount, source.stepCount);
+        for (int[] counts : source.vehicleCountByColor) {
+            this.vehicleCountByColor.add(Arrays.copyOf(counts, source.stepCount));
+        }
+    }
+
+
+    /**
+     * Copy of the aggregates of the steps seen so far, which the export no longer changes: O(steps x colors)
+     * @return frozen aggregates, for a report
+     */
+    public synchronized AggregateTracker snapshot() {
+        return new AggregateTracker(this);
+    }
+
+
+    // ---------------------------------------------------------
+    // Export sink
+    // ---------------------------------------------------------
+    /** Name of the sink */
+    @Override
+    public String getName() {
+        return "aggregates";
+    }
+
+    /**
+     * Add one step
+     * @param data rows of one simulation step
+     */
+    @Override
+    public synchronized void append(ReportData data) {
+        ensureSteps(stepCount + 1);
+        int step = stepCount;
+        int stamp = step + 1;
+        stepTimes[step] = (int) data.getTime();
+        lastStepTime = data.getTime();
+        int rows = data.getRowCount();
+        int congested = 0;
+        for (int i = 0; i < rows; i++) {
+            int color = colorIndex(data.getVehicleColor(i));
+            vehicleCountByColor.get(color)[step]++;
+            String vehicleID = data.getVehicleID(i);
+            Integer code = vehicleCodes.get(vehicleID);
+            if (code == null) {
+                code = vehicleCodes.size();
+                vehicleCodes.put(vehicleID, code);
+            }
+            vehiclesByColor.get(color).set(code);
+
+            // Congested edges of the rows, each counted once per step
+            int edge = data.getVehicleEdge(i);
+            if (edge >= 0 && data.getEdgeCongestion(edge) == 1) {
+                ensureEdges(edge + 1);
+                if (congestedStamp[edge] != stamp) {
+                    congestedStamp[edge] = stamp;
+                    congested++;
+                    if (!congestedEdges.get(edge)) {
+                        congestedEdges.set(edge);
+                        edgeIDs[edge] = data.getEdgeID(edge);
+                    }
+                }
+            }
+        }
+        vehicleCount[step] = rows;
+        congestedEdgeCount[step] = congested;
+        stepCount++;
+    }
+
+    /** Nothing is buffered */
+    @Override
+    public void flush() {
+    }
+
+    /** Nothing to release */
+    @Override
+    public void close() {
+    }
+
+
+    // ---------------------------------------------------------
+    // Getters
+    // ---------------------------------------------------------
+    /** Getter for color names, in order of first appearance */
+    @Override
+    public synchronized List<String> getColorNames() {
+        return Collections.unmodifiableList(new ArrayList<>(colorNames));
+    }
+
+    /** Getter for number of distinct (vehicle, color) pairs */
+    @Override
+    public synchronized int getUniqueVehicleCount() {
+        int count = 0;
+        for (BitSet vehicles : vehiclesByColor) {
+            count += vehicles.cardinality();
+        }
+        return count;
+    }
+
+    /** Getter for number of distinct vehicles with this color, 0 if the color never appears */
+    @Override
+    public synchronized int getUniqueVehicleCount(String colorName) {
+        int c = colorNames.indexOf(colorName);
+        return c < 0 ? 0 : vehiclesByColor.get(c).cardinality();
+    }
+
+    /** Getter for IDs of the edges congested at least once, sorted */
+    @Override
+    public synchronized List<String> getCongestedEdgeIDs() {
+        List<String> ids = new ArrayList<>(congestedEdges.cardinality());
+        for (int e = congestedEdges.nextSetBit(0); e >= 0; e = congestedEdges.nextSetBit(e + 1)) {
+            ids.add(edgeIDs[e]);
+        }
+        Collections.sort(ids);
+        return Collections.unmodifiableList(ids);
+    }
+
+    /** Getter for number of steps */
+    @Override
+    public synchronized int getStepCount() {
+        return stepCount;
+    }
+
+    /** Getter for simulation time (s) of the last step, 0 before the first step */
+    public synchronized double getLastStepTime() {
+        return lastStepTime;
+    }
+
+    /**
+     * Vehicle count per step of one color, or of all colors
+     * @param colorName color name, null for all colors
+     * @return {steps, counts}, steps without vehicles are left out
+     */
+    @Override
+    public synchronized List<List<Integer>> getVehicleCountSeries(String colorName) {
+        if (colorName == null) {
+            return series(vehicleCount);
+        }
+        int c = colorNames.indexOf(colorName);
+        return series(c < 0 ? new int[stepCount] : vehicleCountByColor.get(c));
+    }
+
+    /**
+     * Congested edge count per step
+     * @return {steps, counts}, steps without congested edges are left out
+     */
+    @Override
+    public synchronized List<List<Integer>> getCongestedEdgeCountSeries() {
+        return series(congestedEdgeCount);
+    }
+
+
+    // ---------------------------------------------------------
+    // Private helper methods
+    // ---------------------------------------------------------
+    /**
+     * Private helper method: index of the name of a color, added on first appearance
+     */
+    private int colorIndex(int rgba) {
+        for (int k = 0; k < knownCount; k++) {
+            if (knownRGBA[k] == rgba) {
+                return knownColor[k];
+            }
+        }
+        String name = Color.colorToString(rgba);
+        int index = colorNames.indexOf(name);
+        if (index < 0) {
+            index = colorNames.size();
+            colorNames.add(name);
+            vehiclesByColor.add(new BitSet());
+            vehicleCountByColor.add(new int[stepTimes.length]);
+        }
+        if (knownCount == knownRGBA.length) {
+            knownRGBA = Arrays.copyOf(knownRGBA, knownCount * 2);
+            knownColor = Arrays.copyOf(knownColor, knownCount * 2);
+        }
+        knownRGBA[knownCount] = rgba;
+        knownColor[knownCount++] = index;
+        return index;
+    }
+
+    /**
+     * Private helper method: grow the per step arrays
+     */
+    private void ensureSteps(int steps) {
+        if (steps <= stepTimes.length) {
+            return;
+        }
+        int capacity = Math.max(steps, stepTimes.length * 2);
+        stepTimes = Arrays.copyOf(stepTimes, capacity);
+        vehicleCount = Arrays.copyOf(vehicleCount, capacity);
+        congestedEdgeCount = Arrays.copyOf(congestedEdgeCount, capacity);
+        for (int c = 0; c < vehicleCountByColor.size(); c++) {
+            vehicleCountByColor.set(c, Arrays.copyOf(vehicleCountByColor.get(c), capacity));
+        }
+    }
+
+    /**
+     * Private helper method: grow the per edge arrays
+     */
+    private void ensureEdges(int edges) {
+        if (edges <= edgeIDs.length) {
+            return;
+        }
+        int capacity = Math.max(edges, edgeIDs.length * 2);
+        edgeIDs = Arrays.copyOf(edgeIDs, capacity);
+        congestedStamp = Arrays.copyOf(congestedStamp, capacity);
+    }
+
+    /**
+     * Private helper method: {steps, values} of the steps with a non-zero value
+     */
+    private List<List<Integer>> series(int[] values) {
+        List<Integer> steps = new ArrayList<>();
+        List<Integer> counts = new ArrayList<>();
+        for (int i = 0; i < stepCount; i++) {
+            if (values[i] != 0) {
+                steps.add(stepTimes[i]);
+                counts.add(values[i]);
+            }
+        }
+        return List.of(steps, counts);
+    }
+}
@@ -0,0 +1,17 @@
+package real_time_traffic_simulation_with_java.tools;
+
+/**
+ * What {@link ExportingFiles#queueCSV(ReportData)} does when the export queue is full,
+ *      i.e. when the simulation produces steps faster than the export worker writes them. <br>
+ * Every outcome is counted, see {@link ExportingFiles#getCounters()}.
+ */
+public enum BackpressurePolicy {
+    /** Drop the new step: the stepper never waits, the log misses steps (counted as dropped) */
+    DROP,
+    /** Wait for room in the queue: no step is lost, the stepper runs at the speed of the export */
+    BLOCK,
+    /** Write the new step to a disk overflow segment, read back by the worker in order: no loss, no wait */
+    SPILL,
+    /** Replace the newest queued step with the new one: the log keeps the latest state but thins out (counted as coalesced) */
+    COALESCE
+}
@@ -1,13 +1,10 @@
 package real_time_traffic_simulation_with_java.tools;
 
+import real_time_traffic_simulation_with_java.alias.Color;
 import real_time_traffic_simulation_with_java.alias.Path;
 import real_time_traffic_simulation_with_java.alias.Metrics;
 
-import com.opencsv.CSVWriter;
-
-import java.util.List;
 import java.util.logging.Level;
-import java.io.FileWriter;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Paths;
@@ -15,38 +12,71 @@ import java.time.LocalDateTime;
 
 /**
  * Manages CSV log files for the traffic simulation.
- * It creates a new CSV file with a timestamped name upon instantiation (format: YYYY-MM-DD HH_MM_SS).
+ * It creates a new CSV file with a timestamped name upon instantiation (format: YYYY-MM-DD HH_MM_SS). <br>
+ * Rows are encoded from the primitive columns of {@link ReportData} into the buffer of a {@link LogWriter}
+ *      and reach the file in large batches (see {@link Metrics#CSV_BUFFER_SIZE}, {@link Metrics#LOG_FLUSH_INTERVAL_MS}),
+ *      not once per step. The text format is unchanged: comma separated, no quotes, "\n" line end,
+ *      time with 1 decimal, speeds and densities with 2 decimals ('.' as decimal separator).
  */
 public class CSVManager {
     private static final java.util.logging.Logger LOGGER = java.util.logging.Logger.getLogger(CSVManager.class.getName());
 
     private String timeStamp;
     private String filePath;
-    private CSVWriter writer;
+    private LogWriter writer;
     private static final String[] headers = Metrics.HEADERS;
+    private long rowCount = 0;
 
     /**
      * Manages CSV log files for the traffic simulation.
      * It creates a new CSV file with a timestamped name upon instantiation (format: YYYY-MM-DD HH_MM_SS).
      */
     public CSVManager() {
-        this.timeStamp = LocalDateTime.now().toString().substring(0, 19).replace("T", " ");
-        this.timeStamp = this.timeStamp.replaceAll(":", "_");
-        this.filePath = Path.CsvLogFolder + this.timeStamp + ".csv";
+        this(Path.CsvLogFolder);
+    }
+
+    /**
+     * Manages CSV log files in the given folder
+     * @param folder folder of the CSV file, ending with a separator
+     */
+    public CSVManager(String folder) {
+        this(folder, newTimeStamp());
+    }
+
+    /**
+     * Manages the CSV log file {folder}{timeStamp}.csv, rows are appended if it already exists
+     * @param folder folder of the CSV file, ending with a separator
+     * @param timeStamp name of the CSV file, see {@link #newTimeStamp()}
+     */
+    public CSVManager(String folder, String timeStamp) {
+        this.timeStamp = timeStamp;
+        this.filePath = folder + this.timeStamp + ".csv";
         try {
             // Make sure the directory exists
-            Files.createDirectories(Paths.get(Path.CsvLogFolder));
-            this.writer = new CSVWriter(new FileWriter(this.filePath, true), CSVWriter.DEFAULT_SEPARATOR,
-                                        CSVWriter.NO_QUOTE_CHARACTER,
-                                        CSVWriter.DEFAULT_ESCAPE_CHARACTER,
-                                        CSVWriter.DEFAULT_LINE_END);
-            this.writer.writeNext(headers);
+            Files.createDirectories(Paths.get(folder));
+            this.writer = new LogWriter(this.filePath, Metrics.CSV_BUFFER_SIZE, Metrics.LOG_FLUSH_INTERVAL_MS);
+            for (int i = 0; i < headers.length; i++) {
+                if (i > 0) {
+                    this.writer.putByte(',');
+                }
+                this.writer.putString(headers[i]);
+            }
+            this.writer.putByte('\n');
             this.writer.flush();
         } catch (IOException e) {
             LOGGER.log(Level.WARNING, "Failed to write headers to CSV file: " + e.getMessage());
         }
     }
 
+    /**
+     * Timestamp of a new log file name (format: YYYY-MM-DD HH_MM_SS)
+     * @return current local time as file name
+     */
+    public static String newTimeStamp() {
+        String timeStamp = LocalDateTime.now().toString().substring(0, 19).replace("T", " ");
+        return timeStamp.replaceAll(":", "_");
+    }
+
     /** Getter to retrieve the file path of the CSV log */
     public String getFilePath() {
         return this.filePath;
@@ -55,35 +85,112 @@ public class CSVManager {
     public String getTimeStamp() {
         return this.timeStamp;
     }
+    /** Getter for number of rows appended so far */
+    public long getRowCount() {
+        return this.rowCount;
+    }
 
-    /** 
-     * Appends new rows of data to the CSV file.
-     * @param data A list of string arrays representing the data rows to be added.
-     * @exception IllegalArgumentException if the length of any data row does not match the number of headers.
+    /**
+     * Appends the rows of one step to the CSV file. They are buffered, see {@link #flush()}.
+     * @param data rows of one simulation step
      */
-    public void updateCSV(List<String[]> data) {
-        for (String[] row : data) {
-            if (row.length != headers.length) {
-                throw new IllegalArgumentException("Data length does not match headers length.");
+    public void updateCSV(ReportData data) {
+        if (this.writer == null) {
+            return;
+        }
+        try {
+            double time = data.getTime();
+            for (int i = 0; i < data.getRowCount(); i++) {
+                int edge = data.getVehicleEdge(i);
+                this.putRow(time, data.getVehicleID(i), data.getVehicleColor(i), data.getVehicleSpeed(i), data.getEdgeID(edge),
+                            data.getEdgeCongestion(edge), data.getEdgeAverageSpeed(edge), data.getEdgeDensity(edge));
             }
+            this.writer.endBatch();
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Failed to write data to CSV file: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Appends one row to the CSV file, e.g. when converting a binary trace. It is buffered, see {@link #flush()}.
+     * @param time simulation time (s)
+     * @param vehicleID vehicle ID
+     * @param color vehicle color packed as 0xRRGGBBAA
+     * @param speed vehicle speed (km/h)
+     * @param edgeID edge ID, empty if unknown
+     * @param congestion 1 congested, 0 not congested, ReportData.NO_STATUS
+     * @param edgeAverageSpeed average speed on the edge (km/h), -1 if the edge has no statistics
+     * @param edgeDensity density on the edge (vehicle/km), -1 if the edge has no statistics
+     */
+    public void appendRow(double time, String vehicleID, int color, double speed, String edgeID,
+                            byte congestion, double edgeAverageSpeed, double edgeDensity) {
+        if (this.writer == null) {
+            return;
         }
         try {
-            this.writer.writeAll(data);
-            this.writer.flush();
+            this.putRow(time, vehicleID, color, speed, edgeID, congestion, edgeAverageSpeed, edgeDensity);
+            this.writer.endBatch();
         } catch (IOException e) {
             LOGGER.log(Level.WARNING, "Failed to write data to CSV file: " + e.getMessage(), e);
         }
     }
 
-    /** Closes the CSV writer to release file resources. Currently Beta testing*/
+    /** Writes the buffered rows to the file, e.g. when no step is coming or before the file is read */
+    public void flush() {
+        try {
+            if (this.writer != null) {
+                this.writer.flush();
+            }
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Failed to flush CSV file: " + e.getMessage(), e);
+        }
+    }
+
+    /** Closes the CSV writer to release file resources, the buffered rows are written first */
     public void closeCSV() {
         try {
             if (writer != null) {
                 writer.close();
-                LOGGER.log(Level.INFO, "CSV file closed successfully.");
+                LOGGER.log(Level.INFO, String.format("CSV file closed successfully: %d rows, %d bytes in %d writes.",
+                                                    rowCount, writer.getBytesWritten(), writer.getFlushCount()));
             }
         } catch (IOException e) {
             LOGGER.log(Level.WARNING, "Failed to close CSV file: " + e.getMessage(), e);
         }
     }
+
+    /**
+     * Private helper method: encode one row into the write buffer
+     */
+    private void putRow(double time, String vehicleID, int color, double speed, String edgeID,
+                        byte congestion, double edgeAverageSpeed, double edgeDensity) throws IOException {
+        this.writer.putFixed(time, 1);
+        this.writer.putByte(',');
+        this.writer.putString(vehicleID);
+        this.writer.putByte(',');
+        this.writer.putString(Color.colorToString(color));
+        this.writer.putByte(',');
+        this.writer.putFixed(speed, 2);
+        this.writer.putByte(',');
+        this.writer.putString(edgeID);
+        this.writer.putByte(',');
+        if (congestion != ReportData.NO_STATUS) {
+            this.writer.putString(congestion == 1 ? "true" : "false");
+        }
+        this.writer.putByte(',');
+        this.putEdgeStat(edgeAverageSpeed);
+        this.writer.putByte(',');
+        this.putEdgeStat(edgeDensity);
+        this.writer.putByte('\n');
+        this.rowCount++;
+    }
+
+    /**
+     * Private helper method: edge statistic with 2 decimals, empty if the edge has no statistics (-1)
+     */
+    private void putEdgeStat(double value) throws IOException {
+        if (value != -1) {
+            this.writer.putFixed(value, 2);
+        }
+    }
 }
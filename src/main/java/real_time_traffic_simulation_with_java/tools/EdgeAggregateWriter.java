@@ -0,0 +1,203 @@
+package real_time_traffic_simulation_with_java.tools;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import real_time_traffic_simulation_with_java.alias.Metrics;
+
+
+/**
+ * Export sink writing rolling per-edge aggregates to a CSV file ({timestamp}_edges.csv in the CSV log folder). <br>
+ * Simulation time is cut into windows of {@link Metrics#EDGE_AGGREGATE_WINDOW} seconds. Over each window the sink
+ *      accumulates, per edge with statistics, the number of steps, the vehicles on the edge, the average speed,
+ *      the density and the number of congested steps, then writes one row per edge when the first step of the next
+ *      window arrives ({@link Metrics#EDGE_AGGREGATE_HEADERS}, means with 2 decimals). <br>
+ * Accumulators are primitive arrays indexed by edge handle, nothing is allocated per step. <br>
+ * Thread-safe: the export sink thread appends, other threads may flush.
+ */
+public final class EdgeAggregateWriter implements ExportSink {
+    /** File name suffix of the per-edge aggregates, after the timestamp */
+    public static final String SUFFIX = "_edges.csv";
+
+    private final String filePath;
+    private final LogWriter writer;
+    private final double window;
+
+    // Current window, accumulators by edge handle
+    private double windowStart = Double.NaN;
+    private String[] edgeIDs = new String[256];
+    private int[] steps = new int[256];
+    private long[] vehicles = new long[256];
+    private double[] speedSum = new double[256];
+    private double[] densitySum = new double[256];
+    private int[] congestedSteps = new int[256];
+    /** Vehicles per edge handle in the current step */
+    private int[] stepVehicles = new int[256];
+    private int edgeLimit = 0;
+
+    private long rowCount = 0;
+
+    /**
+     * Create the aggregate file, an existing file is appended to
+     * @param filePath path to the CSV file
+     * @throws IOException if the file cannot be created
+     */
+    public EdgeAggregateWriter(String filePath) throws IOException {
+        this(filePath, Metrics.EDGE_AGGREGATE_WINDOW);
+    }
+
+    /**
+     * Create the aggregate file, an existing file is appended to
+     * @param filePath path to the CSV file
+     * @param window window length (s of simulation time)
+     * @throws IOException if the file cannot be created
+     */
+    public EdgeAggregateWriter(String filePath, double window) throws IOException {
+        this.filePath = filePath;
+        this.window = window;
+        this.writer = new LogWriter(filePath, Metrics.CSV_BUFFER_SIZE, Metrics.LOG_FLUSH_INTERVAL_MS);
+        for (int i = 0; i < Metrics.EDGE_AGGREGATE_HEADERS.length; i++) {
+            if (i > 0) {
+                this.writer.putByte(',');
+            }
+            this.writer.putString(Metrics.EDGE_AGGREGATE_HEADERS[i]);
+        }
+        this.writer.putByte('\n');
+        this.writer.flush();
+    }
+
+
+    /** Name of the sink */
+    @Override
+    public String getName() {
+        return "edge aggregates";
+    }
+
+    /**
+     * Add one step to the current window, the previous window is written first if the step starts a new one
+     * @param data rows of one simulation step
+     * @throws IOException if a window cannot be written
+     */
+    @Override
+    public synchronized void append(ReportData data) throws IOException {
+        double start = Math.floor(data.getTime() / window) * window;
+        if (start != windowStart) {
+            writeWindow();
+            windowStart = start;
+        }
+        int edges = data.getEdgeCount();
+        ensureEdges(edges);
+        for (int i = 0; i < data.getRowCount(); i++) {
+            int edge = data.getVehicleEdge(i);
+            if (edge >= 0 && edge < edges) {
+                stepVehicles[edge]++;
+            }
+        }
+        for (int edge = 0; edge < edges; edge++) {
+            double speed = data.getEdgeAverageSpeed(edge);
+            if (speed != -1) {
+                if (edgeIDs[edge] == null) {
+                    edgeIDs[edge] = data.getEdgeID(edge);
+                }
+                steps[edge]++;
+                vehicles[edge] += stepVehicles[edge];
+                speedSum[edge] += speed;
+                densitySum[edge] += Math.max(0, data.getEdgeDensity(edge));
+                if (data.getEdgeCongestion(edge) == 1) {
+                    congestedSteps[edge]++;
+                }
+            }
+            stepVehicles[edge] = 0;
+        }
+        edgeLimit = Math.max(edgeLimit, edges);
+        writer.endBatch();
+    }
+
+    /**
+     * Write the buffered rows, the current window stays open
+     * @throws IOException if the write fails
+     */
+    @Override
+    public synchronized void flush() throws IOException {
+        writer.flush();
+    }
+
+    /** Write the current window and close the file */
+    @Override
+    public synchronized void close() throws IOException {
+        try {
+            writeWindow();
+        } finally {
+            writer.close();
+        }
+    }
+
+    /** Getter for path to the CSV file */
+    public String getFilePath() {
+        return filePath;
+    }
+
+    /** Getter for number of rows written so far */
+    public synchronized long getRowCount() {
+        return rowCount;
+    }
+
+
+    // ---------------------------------------------------------
+    // Private helper methods
+    // ---------------------------------------------------------
+    /**
+     * Private helper method: one row per edge of the current window, then reset the accumulators
+     */
+    private void writeWindow() throws IOException {
+        if (Double.isNaN(windowStart)) {
+            return;
+        }
+        for (int edge = 0; edge < edgeLimit; edge++) {
+            int n = steps[edge];
+            if (n == 0) {
+                continue;
+            }
+            writer.putFixed(windowStart, 1);
+            writer.putByte(',');
+            writer.putFixed(windowStart + window, 1);
+            writer.putByte(',');
+            writer.putString(edgeIDs[edge]);
+            writer.putByte(',');
+            writer.putLong(n);
+            writer.putByte(',');
+            writer.putFixed((double) vehicles[edge] / n, 2);
+            writer.putByte(',');
+            writer.putFixed(speedSum[edge] / n, 2);
+            writer.putByte(',');
+            writer.putFixed(densitySum[edge] / n, 2);
+            writer.putByte(',');
+            writer.putLong(congestedSteps[edge]);
+            writer.putByte('\n');
+            rowCount++;
+        }
+        Arrays.fill(steps, 0, edgeLimit, 0);
+        Arrays.fill(vehicles, 0, edgeLimit, 0);
+        Arrays.fill(speedSum, 0, edgeLimit, 0);
+        Arrays.fill(densitySum, 0, edgeLimit, 0);
+        Arrays.fill(congestedSteps, 0, edgeLimit, 0);
+        writer.endBatch();
+    }
+
+    /**
+     * Private helper method: grow the accumulators to hold this number of edge handles
+     */
+    private void ensureEdges(int edges) {
+        if (edges <= steps.length) {
+            return;
+        }
+        int capacity = Math.max(edges, steps.length * 2);
+        edgeIDs = Arrays.copyOf(edgeIDs, capacity);
+        steps = Arrays.copyOf(steps, capacity);
+        vehicles = Arrays.copyOf(vehicles, capacity);
+        speedSum = Arrays.copyOf(speedSum, capacity);
+        densitySum = Arrays.copyOf(densitySum, capacity);
+        congestedSteps = Arrays.copyOf(congestedSteps, capacity);
+        stepVehicles = Arrays.copyOf(stepVehicles, capacity);
+    }
+}
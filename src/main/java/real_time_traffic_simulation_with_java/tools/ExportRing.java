@@ -0,0 +1,119 @@
+package real_time_traffic_simulation_with_java.tools;
+
+
+/**
+ * Ring buffer between the export dispatcher and the export sinks: each step is published once
+ *      and read by every sink through its own cursor. <br>
+ * A slot is reused only once every sink has released it, so a sink can lag up to the capacity of the ring
+ *      behind the newest step without holding back the others; past that the publisher waits for the slowest sink. <br>
+ * Sequences count the published steps from 0: the lag of a sink is the number of published steps it has not released yet. <br>
+ * Thread-safe: one publisher thread, one thread per sink.
+ */
+final class ExportRing {
+    private final ReportData[] slots;
+    /** Sink -> sequence of the next step to read */
+    private final long[] cursors;
+    /** Sink -> largest lag seen */
+    private final long[] maxLags;
+    /** Number of published steps */
+    private long published = 0;
+    private boolean closed = false;
+
+    /**
+     * Create an empty ring
+     * @param capacity number of steps the ring holds
+     * @param sinks number of reading sinks
+     */
+    ExportRing(int capacity, int sinks) {
+        this.slots = new ReportData[Math.max(1, capacity)];
+        this.cursors = new long[sinks];
+        this.maxLags = new long[sinks];
+    }
+
+
+    /**
+     * Publish a step to every sink, waiting while the slowest sink lags a whole ring behind
+     * @param data rows of one step
+     * @throws InterruptedException if interrupted while waiting
+     */
+    synchronized void publish(ReportData data) throws InterruptedException {
+        while (published - minCursor() >= slots.length) {
+            wait();
+        }
+        slots[(int) (published % slots.length)] = data;
+        published++;
+        for (int sink = 0; sink < cursors.length; sink++) {
+            maxLags[sink] = Math.max(maxLags[sink], published - cursors[sink]);
+        }
+        notifyAll();
+    }
+
+    /**
+     * Next step of a sink, without releasing it: the slot is kept until {@link #release(int)}
+     * @param sink index of the sink
+     * @param timeoutMs longest wait (ms) for a step to be published
+     * @return next step, null if none was published in time or the ring is closed and drained
+     * @throws InterruptedException if interrupted while waiting
+     */
+    synchronized ReportData next(int sink, long timeoutMs) throws InterruptedException {
+        if (cursors[sink] == published && !closed) {
+            wait(timeoutMs);
+        }
+        return cursors[sink] < published ? slots[(int) (cursors[sink] % slots.length)] : null;
+    }
+
+    /**
+     * Release the step returned by {@link #next(int, long)}: the sink moves to the following step.
+     *      The slot is cleared once the slowest sink has released it.
+     * @param sink index of the sink
+     */
+    synchronized void release(int sink) {
+        long sequence = cursors[sink]++;
+        if (sequence < minCursor()) {
+            slots[(int) (sequence % slots.length)] = null;
+        }
+        notifyAll();
+    }
+
+    /** No step is published anymore, sinks drain what is left */
+    synchronized void close() {
+        closed = true;
+        notifyAll();
+    }
+
+    /** Whether the ring is closed and this sink has read every step */
+    synchronized boolean isDrained(int sink) {
+        return closed && cursors[sink] == published;
+    }
+
+    /** Getter for number of published steps */
+    synchronized long getPublished() {
+        return published;
+    }
+
+    /** Getter for number of steps released by a sink */
+    synchronized long getReleased(int sink) {
+        return cursors[sink];
+    }
+
+    /** Getter for number of published steps not released yet by a sink */
+    synchronized long getLag(int sink) {
+        return published - cursors[sink];
+    }
+
+    /** Getter for largest lag of a sink */
+    synchronized long getMaxLag(int sink) {
+        return maxLags[sink];
+    }
+
+    /**
+     * Private helper method: cursor of the slowest sink, the published count when there is no sink
+     */
+    private long minCursor() {
+        long min = published;
+        for (long cursor : cursors) {
+            min = Math.min(min, cursor);
+        }
+        return min;
+    }
+}
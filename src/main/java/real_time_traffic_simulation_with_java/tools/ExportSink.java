@@ -0,0 +1,33 @@
+package real_time_traffic_simulation_with_java.tools;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+
+/**
+ * Consumer of the exported steps, fed by its own thread of {@link ExportingFiles}. <br>
+ * Every sink sees every published step once and in order, at its own pace: a slow sink only holds back
+ *      the others once it lags a whole ring behind (see {@link ExportRing}). <br>
+ * A sink is only called from its own thread, except for {@link #flush()} which other threads may call
+ *      (e.g. before a report is built from the file), so a sink which writes a file must synchronize flush.
+ */
+public interface ExportSink extends Closeable {
+    /**
+     * Name of the sink, in logs and lag counters
+     * @return short name
+     */
+    String getName();
+
+    /**
+     * Take the rows of one step
+     * @param data rows of one simulation step, shared with the other sinks: read only
+     * @throws IOException if the sink cannot write the step
+     */
+    void append(ReportData data) throws IOException;
+
+    /**
+     * Write what is buffered, called when no step is coming
+     * @throws IOException if the write fails
+     */
+    void flush() throws IOException;
+}
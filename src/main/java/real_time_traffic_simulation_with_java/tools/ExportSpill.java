@@ -0,0 +1,178 @@
+package real_time_traffic_simulation_with_java.tools;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collections;
+
+import real_time_traffic_simulation_with_java.cores.StepSnapshot;
+
+
+/**
+ * Disk-backed overflow of the export queue, used by the SPILL backpressure policy. <br>
+ * Once a batch has been spilled, every following batch is spilled too until the export worker has read them all back,
+ *      so batches are written in step order. The producer appends to the open segment,
+ *      the worker seals it ({@link #seal()}), reads it back and deletes it, the producer then starts a new segment. <br>
+ * A segment holds the rows of each batch with their original edge handles (the trace writer caches edges by handle),
+ *      and the status and statistics of the edges which have some. <br>
+ * Thread-safe: the simulation thread appends, the export worker seals.
+ */
+final class ExportSpill {
+    /** Receiver of the batches read back from a segment */
+    interface BatchConsumer {
+        void accept(ReportData data) throws IOException, InterruptedException;
+    }
+
+    private final String pathPrefix;
+    private DataOutputStream out = null;
+    private String currentPath = null;
+    private int segmentIndex = 0;
+    /** Whether batches must be spilled: set by the first spilled batch, cleared once every segment has been read back */
+    private boolean active = false;
+    private long bytesSpilled = 0;
+
+    /**
+     * Overflow segments named {pathPrefix}.spill-{n}
+     * @param pathPrefix path of the log file without extension
+     */
+    ExportSpill(String pathPrefix) {
+        this.pathPrefix = pathPrefix;
+    }
+
+
+    /** Whether batches are currently diverted to disk */
+    synchronized boolean isActive() {
+        return active;
+    }
+
+    /** Getter for number of bytes spilled so far */
+    synchronized long getBytesSpilled() {
+        return bytesSpilled;
+    }
+
+    /**
+     * Append a batch to the open segment, a new segment is started if needed
+     * @param data rows of one step
+     * @throws IOException if the segment cannot be written
+     */
+    synchronized void append(ReportData data) throws IOException {
+        if (out == null) {
+            currentPath = pathPrefix + ".spill-" + (segmentIndex++);
+            out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(Paths.get(currentPath)), 1 << 16));
+        }
+        active = true;
+        int before = out.size();
+        int rows = data.getRowCount();
+        out.writeDouble(data.getTime());
+        out.writeInt(rows);
+        int maxHandle = -1;
+        for (int i = 0; i < rows; i++) {
+            out.writeUTF(data.getVehicleID(i));
+            out.writeInt(data.getVehicleColor(i));
+            out.writeDouble(data.getVehicleSpeed(i));
+            out.writeInt(data.getVehicleEdge(i));
+            maxHandle = Math.max(maxHandle, data.getVehicleEdge(i));
+        }
+        // Edges used by the rows or with a status or statistics
+        maxHandle = Math.max(maxHandle, data.getEdgeCount() - 1);
+        boolean[] used = new boolean[maxHandle + 1];
+        for (int i = 0; i < rows; i++) {
+            int handle = data.getVehicleEdge(i);
+            if (handle >= 0) {
+                used[handle] = true;
+            }
+        }
+        int usedCount = 0;
+        for (int handle = 0; handle <= maxHandle; handle++) {
+            used[handle] |= data.getEdgeCongestion(handle) != ReportData.NO_STATUS || data.getEdgeAverageSpeed(handle) >= 0;
+            usedCount += used[handle] ? 1 : 0;
+        }
+        out.writeInt(maxHandle);
+        out.writeInt(usedCount);
+        for (int handle = 0; handle <= maxHandle; handle++) {
+            if (used[handle]) {
+                out.writeInt(handle);
+                out.writeUTF(data.getEdgeID(handle));
+                out.writeByte(data.getEdgeCongestion(handle));
+                out.writeDouble(data.getEdgeAverageSpeed(handle));
+                out.writeDouble(data.getEdgeDensity(handle));
+            }
+        }
+        bytesSpilled += out.size() - before;
+    }
+
+    /**
+     * Close the open segment for reading, the next spilled batch starts a new one. <br>
+     * When there is no open segment, every spilled batch has been read back: spilling stops.
+     * @return path of the sealed segment, null if there is none
+     * @throws IOException if the segment cannot be closed
+     */
+    synchronized String seal() throws IOException {
+        if (out == null) {
+            active = false;
+            return null;
+        }
+        out.close();
+        out = null;
+        return currentPath;
+    }
+
+    /**
+     * Read back the batches of a sealed segment in order, then delete it
+     * @param path sealed segment
+     * @param consumer receives each batch
+     * @throws IOException if the segment cannot be read or the consumer fails
+     * @throws InterruptedException if the consumer is interrupted
+     */
+    static void read(String path, BatchConsumer consumer) throws IOException, InterruptedException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(Paths.get(path)), 1 << 16))) {
+            while (true) {
+                double time;
+                try {
+                    time = in.readDouble();
+                } catch (EOFException e) {
+                    break;
+                }
+                int rows = in.readInt();
+                String[] ids = new String[rows];
+                int[] rgba = new int[rows];
+                double[] speed = new double[rows];
+                int[] vehicleEdge = new int[rows];
+                for (int i = 0; i < rows; i++) {
+                    ids[i] = in.readUTF();
+                    rgba[i] = in.readInt();
+                    speed[i] = in.readDouble();
+                    vehicleEdge[i] = in.readInt();
+                }
+                int edges = in.readInt() + 1;
+                String[] dictionary = new String[edges];
+                byte[] congestion = new byte[edges];
+                double[] edgeAverageSpeed = new double[edges];
+                double[] edgeDensity = new double[edges];
+                int usedCount = in.readInt();
+                Arrays.fill(congestion, ReportData.NO_STATUS);
+                Arrays.fill(edgeAverageSpeed, -1);
+                Arrays.fill(edgeDensity, -1);
+                for (int e = 0; e < usedCount; e++) {
+                    int handle = in.readInt();
+                    dictionary[handle] = in.readUTF();
+                    congestion[handle] = in.readByte();
+                    edgeAverageSpeed[handle] = in.readDouble();
+                    edgeDensity[handle] = in.readDouble();
+                }
+                StepSnapshot snapshot = new StepSnapshot(time, ids, new double[rows], new double[rows], new double[rows], speed,
+                                                        rgba, vehicleEdge, dictionary, Collections.emptyMap(),
+                                                        new int[edges], new int[edges], edgeAverageSpeed, edgeDensity,
+                                                        Collections.emptyMap());
+                consumer.accept(new ReportData(snapshot, congestion));
+            }
+        }
+        Files.deleteIfExists(Paths.get(path));
+    }
+}
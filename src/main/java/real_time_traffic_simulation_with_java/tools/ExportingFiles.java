@@ -1,14 +1,24 @@
 package real_time_traffic_simulation_with_java.tools;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
-import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.BlockingDeque;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.LinkedBlockingDeque;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import real_time_traffic_simulation_with_java.alias.Metrics;
+import real_time_traffic_simulation_with_java.alias.Path;
+
 /**
  * Handles CSV export on a background thread.
  *
@@ -18,6 +28,23 @@ import java.util.logging.Logger;
  * </p>
  *
  * <p>
+ * The worker publishes each step once into a ring buffer ({@link ExportRing}) read by independent sinks ({@link ExportSink}),
+ * each on its own thread and at its own pace:
+ * the binary columnar trace ({@link TraceWriter}, {timestamp}.trace in the CSV log folder, several times smaller than the CSV text),
+ * the rolling per-edge aggregates ({@link EdgeAggregateWriter}, {timestamp}_edges.csv)
+ * and the PDF summary pre-aggregation ({@link AggregateTracker}).
+ * A slow sink does not hold back the others until it lags {@link Metrics#EXPORT_RING_CAPACITY} steps behind,
+ * the lag of every sink is counted, see {@link #getSinkCounters()}.
+ * The CSV log is produced on demand from the trace by {@link #exportCSV()}.
+ * </p>
+ *
+ * <p>
+ * When the queue is full, the {@link BackpressurePolicy} decides: drop the step, block the stepper,
+ * spill the step to a disk overflow segment ({@link ExportSpill}) or coalesce it with the newest queued step.
+ * Enqueued, written, dropped, spilled and coalesced batches and the queue depth are counted, see {@link #getCounters()}.
+ * </p>
+ *
+ * <p>
  * ExecutionService is an Executor that provides methods to manage termination
  * and methods that can produce a Future for tracking progress of one or more
  * asynchronous tasks.
@@ -86,12 +113,55 @@ import java.util.logging.Logger;
 public class ExportingFiles {
     private static final Logger LOGGER = Logger.getLogger(ExportingFiles.class.getName());
 
+    /**
+     * Export counters, in batches (one batch = the rows of one step)
+     * @param enqueued batches handed to queueCSV
+     * @param written batches published to the sinks
+     * @param dropped batches lost (DROP policy, or spill/wait failures)
+     * @param spilled batches written to the disk overflow (SPILL policy)
+     * @param coalesced batches replaced by a newer one (COALESCE policy)
+     * @param queueDepth batches waiting in the queue now
+     * @param maxQueueDepth largest queue depth seen
+     * @param spilledBytes bytes written to the disk overflow
+     */
+    public record ExportCounters(long enqueued, long written, long dropped, long spilled, long coalesced,
+                                    int queueDepth, int maxQueueDepth, long spilledBytes) {
+    }
+
+    /**
+     * Progress of one sink, in batches
+     * @param name sink name
+     * @param consumed batches taken by the sink
+     * @param lag batches published but not taken yet
+     * @param maxLag largest lag seen
+     * @param busyMs time spent in the sink (ms)
+     */
+    public record SinkCounters(String name, long consumed, long lag, long maxLag, long busyMs) {
+    }
+
     private final ExecutorService executor;
-    private final BlockingQueue<ReportData> queue;
+    private final BlockingDeque<ReportData> queue;
     private volatile boolean running;
+    private final BackpressurePolicy policy;
+    private final ExportSpill spill;
+    private final List<ExportSink> sinks;
+    private final ExportRing ring;
+    private final AtomicLong[] sinkBusyNs;
 
-    // The CSV manager to handle CSV file operations
-    private final CSVManager csvManager; 
+    // Counters
+    private final AtomicLong enqueued = new AtomicLong();
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong spilled = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+    private final AtomicInteger maxQueueDepth = new AtomicInteger();
+
+    // Timestamp of the log files, sinks
+    private final String folder;
+    private final String timeStamp;
+    private final TraceWriter traceWriter;
+    private final EdgeAggregateWriter edgeAggregates;
+    private final AggregateTracker aggregates = new AggregateTracker();
 
     /**
      * <p>
@@ -100,20 +170,22 @@ public class ExportingFiles {
      * </p>
      * 
      * <p>
-     * We use a LinkedBlockingQueue with a capacity of 1000 to buffer data between the main thread and the worker thread.
+     * We use a LinkedBlockingDeque with a capacity of {@link Metrics#EXPORT_QUEUE_CAPACITY} to buffer data between the main thread and the worker thread.
      * This allows the main thread to queue data quickly without blocking, while the worker thread processes the data at its own pace.
-     * LinkedBlockingQueue is an optionally-bounded blocking queue based on linked nodes. This queue orders elements FIFO. 
+     * LinkedBlockingDeque is an optionally-bounded blocking deque based on linked nodes, used here in FIFO order. 
+     * The newest element can also be taken back, which the COALESCE policy needs.
+     * The default backpressure policy is {@link Metrics#EXPORT_BACKPRESSURE}.
      * </p>
      * 
      * <p>
-     * newSingleThreadExecutor is Executor method that Creates an Executor that uses a single worker thread operating off an unbounded queue, 
-     * and uses the provided ThreadFactory to create a new thread when needed. 
+     * newFixedThreadPool is Executor method that creates an Executor that reuses a fixed number of threads operating off an unbounded queue.
+     * We use one thread for the worker and one per sink.
      * </p>
      * 
      * <p>
-     * We use a single-threaded executor to ensure that CSV writes are performed sequentially, preventing potential data corruption from concurrent writes.
+     * Each file is written by one thread only, so writes are performed sequentially, preventing potential data corruption from concurrent writes.
      * For example, if multiple threads tried to write to the CSV file at the same time, it could lead to interleaved data and an invalid file format.
-     * Furthermore, because this is a background thread, it won't block the main simulation thread, ensuring smooth performance and take less system resources.
+     * Furthermore, because these are background threads, they won't block the main simulation thread, ensuring smooth performance.
      * </p>
      * 
      * <p>
@@ -132,16 +204,57 @@ public class ExportingFiles {
      *  </a>
     */
     public ExportingFiles() {
-        // Initialize CSV manager and thread components
-        this.csvManager = new CSVManager();
+        this(Metrics.EXPORT_BACKPRESSURE);
+    }
+
+    /**
+     * Create ExportingFiles writing to the CSV log folder
+     * @param policy what to do when the queue is full
+     */
+    public ExportingFiles(BackpressurePolicy policy) {
+        this(policy, Path.CsvLogFolder, Metrics.EXPORT_QUEUE_CAPACITY);
+    }
 
-        this.queue = new LinkedBlockingQueue<>(1000);
-        this.executor = Executors.newSingleThreadExecutor();
+    /**
+     * Create ExportingFiles
+     * @param policy what to do when the queue is full
+     * @param folder folder of the log files, ending with a separator
+     * @param queueCapacity number of batches the queue holds
+     */
+    public ExportingFiles(BackpressurePolicy policy, String folder, int queueCapacity) {
+        // Initialize trace writer and thread components
+        this.policy = policy;
+        this.folder = folder;
+        this.timeStamp = CSVManager.newTimeStamp();
+        this.traceWriter = openTrace(folder, folder + this.timeStamp + TraceWriter.EXTENSION);
+        this.edgeAggregates = openEdgeAggregates(folder + this.timeStamp + EdgeAggregateWriter.SUFFIX);
+        this.spill = new ExportSpill(folder + this.timeStamp);
+
+        List<ExportSink> sinkList = new ArrayList<>();
+        if (this.traceWriter != null) {
+            sinkList.add(this.traceWriter);
+        }
+        if (this.edgeAggregates != null) {
+            sinkList.add(this.edgeAggregates);
+        }
+        sinkList.add(this.aggregates);
+        this.sinks = Collections.unmodifiableList(sinkList);
+        this.sinkBusyNs = new AtomicLong[sinks.size()];
+        for (int k = 0; k < sinks.size(); k++) {
+            this.sinkBusyNs[k] = new AtomicLong();
+        }
+        this.ring = new ExportRing(Metrics.EXPORT_RING_CAPACITY, sinks.size());
+
+        this.queue = new LinkedBlockingDeque<>(queueCapacity);
+        this.executor = Executors.newFixedThreadPool(1 + sinks.size());
         this.running = true;
 
-        // Start background worker thread
+        // Start background worker and sink threads
         startWorker();
-        LOGGER.log(Level.INFO, "ExportingFiles started. CSV: " + csvManager.getFilePath());
+        for (int k = 0; k < sinks.size(); k++) {
+            startSink(k);
+        }
+        LOGGER.log(Level.INFO, "ExportingFiles started. Trace: " + getTraceFilePath() + ", backpressure: " + policy);
     }
 
     /**
@@ -157,6 +270,8 @@ public class ExportingFiles {
      * This ensures that the worker thread continues running as long as it is supposed to (running is true) or there is still data in the queue to process.
      * Meaning if running is set to false (indicating shutdown), the loop will continue processing any remaining data in the queue before exiting.
      * Or if the queue is empty but running is still true, it will keep waiting for new data to arrive.
+     * Spilled batches come after the queued ones: once the queue is empty, the worker seals the overflow segment
+     * and writes its batches, until no segment is left.
      * If the queue is empty and running is false, the loop will exit, allowing the thread to terminate gracefully.
      * </p>
      * 
@@ -164,31 +279,35 @@ public class ExportingFiles {
      * Within the loop, the worker thread apttempts to poll the queue for new data using queue.poll().
      * We choose poll() and not take() because we want to wait for new data, but only for a limited time (in this case, 500 milliseconds or 0.5 seconds).
      * If the poll times out becuase no new data is available within that time frame, it returns null (data = null).
-     * The loop then continues to the next iteration, allowing it to check the running flag again.
+     * The buffered rows are then flushed to the file (e.g. while the simulation is paused),
+     * and the loop continues to the next iteration, allowing it to check the running flag again.
      * </p>
      * 
      * <p>
-     * If there is new data, the worker thread process it by calling csvManager.updateCSV() to write the data to the CSV file.
-     * It also logs the number of rows exported for debugging purposes.
-     * </p>
-     * 
-     * <p>
-     * We put data.getVehicleData() as parameter to updateCSV().
-     * GetVehicleData() is a method from ReportData that returns a List<String[]> representing the vehicle data to be exported.
-     * 
-     * 
+     * If there is new data, the worker thread publishes it to the ring, where every sink reads it.
+     * The worker waits there while the slowest sink lags a whole ring behind, the queue then fills up and the backpressure policy applies.
+     * Once the worker stops, the ring is closed and the sinks finish the steps left in it.
      * </p>
     */
     private void startWorker() {
         executor.submit(() -> {
             LOGGER.log(Level.INFO, "Export worker thread started.");
 
-            while (running || !queue.isEmpty()) {
+            while (running || !queue.isEmpty() || spill.isActive()) {
                 try {
-                    ReportData data = queue.poll(500, TimeUnit.MILLISECONDS);
-                    if (data != null && data.getVehicleData() != null) {
-                        csvManager.updateCSV(data.getVehicleData());
-                        LOGGER.log(Level.FINE, "Thread: " + Thread.currentThread().getName() + " exported " + data.getVehicleData().size() + " rows.");
+                    ReportData data = queue.poll();
+                    if (data == null && spill.isActive()) {
+                        String segment = spill.seal();
+                        if (segment != null) {
+                            ExportSpill.read(segment, this::write);
+                        }
+                        continue;
+                    }
+                    if (data == null) {
+                        data = queue.poll(500, TimeUnit.MILLISECONDS);
+                    }
+                    if (data != null) {
+                        write(data);
                     }
                 } catch (InterruptedException e) {
                     Thread.currentThread().interrupt();
@@ -198,36 +317,177 @@ public class ExportingFiles {
                     LOGGER.log(Level.SEVERE, "Export error: " + e.getMessage(), e);
                 }
             }
+            ring.close();
             LOGGER.log(Level.INFO, "Export worker thread stopped.");
         });
     }
 
+    /**
+     * Method to start the thread of a sink
+     * 
+     * <p>
+     * The thread takes the steps of the ring in order and hands them to the sink, until the ring is closed and drained.
+     * A step is released only once the sink is done with it, so its slot cannot be reused in between.
+     * If a sink fails on a step, the error is logged and the sink goes on with the next step: the other sinks are not affected.
+     * When no step arrives for 500 milliseconds, the sink is flushed (e.g. while the simulation is paused).
+     * Finally the sink is closed.
+     * </p>
+     * @param k index of the sink
+    */
+    private void startSink(int k) {
+        ExportSink sink = sinks.get(k);
+        executor.submit(() -> {
+            LOGGER.log(Level.INFO, "Export sink thread started: " + sink.getName());
+
+            while (!ring.isDrained(k)) {
+                try {
+                    ReportData data = ring.next(k, 500);
+                    if (data == null) {
+                        sink.flush();
+                        continue;
+                    }
+                    long start = System.nanoTime();
+                    try {
+                        sink.append(data);
+                    } finally {
+                        sinkBusyNs[k].addAndGet(System.nanoTime() - start);
+                        ring.release(k);
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    LOGGER.log(Level.WARNING, "Export sink interrupted: " + sink.getName());
+                    break;
+                } catch (Exception e) {
+                    LOGGER.log(Level.SEVERE, "Export error in " + sink.getName() + ": " + e.getMessage(), e);
+                }
+            }
+            try {
+                sink.close();
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "Failed to close export sink " + sink.getName() + ": " + e.getMessage(), e);
+            }
+            LOGGER.log(Level.INFO, "Export sink thread stopped: " + sink.getName());
+        });
+    }
+
     /**
      * <p>
      * Queue vehicle data for CSV export (non-blocking).
-     * The data is from the simulation engine (called in the main window), then put into the queue for background export
-     * ReportData object is created and added to the queue. 
+     * The data is from the simulation engine (called in the main window), then put into the queue for background export.
      * </p>
      * 
      * <p>
-     * If the queue is full, a warning is logged and the data is dropped.
-     * If not we use offer() method to add data to the queue because it is non-blocking.
+     * We use offer() method to add data to the queue because it is non-blocking.
      * This means that if the queue is full, the method will return false immediately instead of blocking the calling thread until space becomes available.
+     * The backpressure policy then decides what happens to the data (see {@link BackpressurePolicy}),
+     * only the BLOCK policy waits for space.
      * </p>
      * @param vehicleData Data to write to CSV
      */
-    public void queueCSV(List<String[]> vehicleData) {
-        if (!queue.offer(new ReportData(vehicleData))) {
-            LOGGER.log(Level.WARNING, "Export queue full. Data dropped.");
+    public void queueCSV(ReportData vehicleData) {
+        enqueued.incrementAndGet();
+        switch (policy) {
+            case DROP:
+                if (!queue.offer(vehicleData)) {
+                    // Log the first drop and then every 1000th, not every step of a saturated run
+                    if (dropped.incrementAndGet() % 1000 == 1) {
+                        LOGGER.log(Level.WARNING, "Export queue full. Data dropped (" + dropped.get() + " batches so far).");
+                    }
+                }
+                break;
+            case BLOCK:
+                try {
+                    queue.put(vehicleData);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    dropped.incrementAndGet();
+                }
+                break;
+            case SPILL:
+                // Once spilling, later batches are spilled too so that they are written in order
+                synchronized (spill) {
+                    if (spill.isActive() || !queue.offer(vehicleData)) {
+                        try {
+                            spill.append(vehicleData);
+                            spilled.incrementAndGet();
+                        } catch (IOException e) {
+                            dropped.incrementAndGet();
+                            LOGGER.log(Level.WARNING, "Failed to spill export data, data dropped: " + e.getMessage());
+                        }
+                    }
+                }
+                break;
+            case COALESCE:
+                while (!queue.offer(vehicleData)) {
+                    if (queue.pollLast() != null) {
+                        coalesced.incrementAndGet();
+                    }
+                }
+                break;
+        }
+        maxQueueDepth.accumulateAndGet(queue.size(), Math::max);
+    }
+
+    /**
+     * Get the export counters
+     * @return counters since the export started
+     */
+    public ExportCounters getCounters() {
+        return new ExportCounters(enqueued.get(), written.get(), dropped.get(), spilled.get(), coalesced.get(),
+                                    queue.size(), maxQueueDepth.get(), spill.getBytesSpilled());
+    }
+
+    /**
+     * Get the progress of each sink
+     * @return one entry per sink, in publishing order
+     */
+    public List<SinkCounters> getSinkCounters() {
+        List<SinkCounters> counters = new ArrayList<>();
+        for (int k = 0; k < sinks.size(); k++) {
+            counters.add(new SinkCounters(sinks.get(k).getName(), ring.getReleased(k), ring.getLag(k),
+                                            ring.getMaxLag(k), sinkBusyNs[k].get() / 1_000_000));
         }
+        return counters;
+    }
+
+    /**
+     * Get the PDF summary pre-aggregation, fed while the simulation runs
+     * @return aggregate tracker
+     */
+    public AggregateTracker getAggregates() {
+        return aggregates;
     }
 
     /**
-     * Get the file path of the current CSV file.
+     * Get the file path of the rolling per-edge aggregates.
+     * @return per-edge aggregate CSV file path
+     */
+    public String getEdgeAggregateFilePath() {
+        return folder + timeStamp + EdgeAggregateWriter.SUFFIX;
+    }
+
+    /**
+     * Get the backpressure policy
+     * @return policy applied when the queue is full
+     */
+    public BackpressurePolicy getPolicy() {
+        return policy;
+    }
+
+    /**
+     * Get the file path of the current CSV file, it is written by {@link #exportCSV()}.
      * @return CSV file path
      */
     public String getCSVFilePath() {
-        return csvManager.getFilePath();
+        return folder + timeStamp + ".csv";
+    }
+
+    /**
+     * Get the file path of the binary trace written by the worker.
+     * @return trace file path
+     */
+    public String getTraceFilePath() {
+        return folder + timeStamp + TraceWriter.EXTENSION;
     }
 
     /**
@@ -235,11 +495,37 @@ public class ExportingFiles {
      * @return CSV timestamp
      */
     public String getCSVTimerstamp() {
-        return csvManager.getTimeStamp();
+        return timeStamp;
+    }
+
+    /**
+     * Write the current chunk of the trace, so that a report sees the rows exported so far. <br>
+     * Rows still waiting in the queue or the ring are not included.
+     * @return trace file path, see {@link #getTraceFilePath()}
+     * @throws IOException if the trace cannot be written
+     */
+    public String flushTrace() throws IOException {
+        if (traceWriter == null) {
+            throw new IOException("No trace file.");
+        }
+        traceWriter.flush();
+        return getTraceFilePath();
     }
 
     /**
-     * Shutdown the export service. Waits for queued data to be written.
+     * Write the CSV log of the rows exported so far, converted from the trace. <br>
+     * The current chunk of the trace is written first, rows still waiting in the queue or the ring are not included.
+     * @return CSV file path, see {@link #getCSVFilePath()}
+     * @throws IOException if the trace cannot be read or the CSV file cannot be written
+     */
+    public String exportCSV() throws IOException {
+        try (TraceReader reader = TraceReader.open(flushTrace())) {
+            return reader.toCSV(folder, timeStamp);
+        }
+    }
+
+    /**
+     * Shutdown the export service. Waits for queued data to be written by every sink, the sinks are then closed.
      */
     public void shutdown() {
         LOGGER.log(Level.INFO, "Shutting down ExportingFiles...");
@@ -250,11 +536,49 @@ public class ExportingFiles {
                 executor.shutdownNow();
                 LOGGER.log(Level.WARNING, "Forced shutdown.");
             }
-            csvManager.closeCSV();
-            LOGGER.log(Level.INFO, "ExportingFiles shut down. File: " + csvManager.getFilePath());
+            if (traceWriter != null) {
+                LOGGER.log(Level.INFO, String.format("ExportingFiles shut down. Trace: %s (%d rows, %d chunks, %d bytes).",
+                                                    getTraceFilePath(), traceWriter.getRowCount(),
+                                                    traceWriter.getChunkCount(), traceWriter.getBytesWritten()));
+            }
+            LOGGER.log(Level.INFO, "Export counters: " + getCounters() + ", sinks: " + getSinkCounters());
         } catch (InterruptedException e) {
             executor.shutdownNow();
             Thread.currentThread().interrupt();
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Private helper method: publish one batch to the sinks, on the worker thread
+     */
+    private void write(ReportData data) throws InterruptedException {
+        ring.publish(data);
+        written.incrementAndGet();
+        LOGGER.log(Level.FINE, "Thread: " + Thread.currentThread().getName() + " published " + data.getRowCount() + " rows.");
+    }
+
+    /**
+     * Private helper method: create the trace file, null (nothing is exported) if it cannot be created
+     */
+    private static TraceWriter openTrace(String folder, String filePath) {
+        try {
+            Files.createDirectories(Paths.get(folder));
+            return new TraceWriter(filePath);
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Failed to create trace file: " + e.getMessage(), e);
+            return null;
+        }
+    }
+
+    /**
+     * Private helper method: create the per-edge aggregate file, null (no aggregates) if it cannot be created
+     */
+    private static EdgeAggregateWriter openEdgeAggregates(String filePath) {
+        try {
+            return new EdgeAggregateWriter(filePath);
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Failed to create per-edge aggregate file: " + e.getMessage(), e);
+            return null;
+        }
+    }
+}
@@ -0,0 +1,226 @@
+package real_time_traffic_simulation_with_java.tools;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Locale;
+
+
+/**
+ * Buffered append-only writer for the log files of the export. <br>
+ * Text and numbers are encoded straight into one reusable byte array (no String per value, no char to byte conversion
+ *      of whole lines) and the array is written through a FileChannel in large batches. <br>
+ * The buffer is flushed to the file when it is full, or by {@link #endBatch()} when the flush interval has elapsed:
+ *      a log written every step reaches the file at most once per interval instead of once per step. <br>
+ * Flushing hands the bytes to the operating system, it does not force them to the disk. <br>
+ * Not thread-safe: used by the single export worker thread.
+ */
+public final class LogWriter implements Closeable {
+    /** Powers of ten for the fixed-point number encoding */
+    private static final long[] POW10 = {1L, 10L, 100L, 1_000L, 10_000L, 100_000L, 1_000_000L};
+    /** Above this magnitude the scaled value may not fit in a long, such numbers go through String.format */
+    private static final double MAX_FAST_VALUE = 1e12;
+
+    private final FileChannel channel;
+    private final byte[] buffer;
+    private final ByteBuffer view;
+    private final long flushIntervalNs;
+    /** Scratch space for the digits of a number, written backwards */
+    private final byte[] digits = new byte[20];
+
+    private int position = 0;
+    private long lastFlush = System.nanoTime();
+    private long bytesWritten = 0;
+    private long flushCount = 0;
+
+    /**
+     * Open a log file for appending, the file is created if it doesn't exist
+     * @param filePath path to the log file
+     * @param bufferSize buffer size (bytes), the buffer is flushed when full
+     * @param flushIntervalMs maximum time (ms) between two flushes while batches keep coming
+     * @throws IOException if the file cannot be opened
+     */
+    public LogWriter(String filePath, int bufferSize, long flushIntervalMs) throws IOException {
+        this.channel = FileChannel.open(Paths.get(filePath),
+                                        StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        this.buffer = new byte[Math.max(bufferSize, 256)];
+        this.view = ByteBuffer.wrap(this.buffer);
+        this.flushIntervalNs = flushIntervalMs * 1_000_000L;
+    }
+
+
+    // ---------------------------------------------------------
+    // Encoding
+    // ---------------------------------------------------------
+    /** Append one byte (ASCII character) */
+    public void putByte(int b) throws IOException {
+        ensure(1);
+        buffer[position++] = (byte) b;
+    }
+
+    /** Append raw bytes */
+    public void putBytes(byte[] bytes) throws IOException {
+        if (bytes.length > buffer.length) {
+            flush();
+            write(ByteBuffer.wrap(bytes));
+            return;
+        }
+        ensure(bytes.length);
+        System.arraycopy(bytes, 0, buffer, position, bytes.length);
+        position += bytes.length;
+    }
+
+    /** Append a String as UTF-8, ASCII characters are copied without an intermediate byte array */
+    public void putString(String value) throws IOException {
+        int n = value.length();
+        if (n > buffer.length) {
+            putBytes(value.getBytes(StandardCharsets.UTF_8));
+            return;
+        }
+        ensure(n);
+        int start = position;
+        for (int i = 0; i < n; i++) {
+            char c = value.charAt(i);
+            if (c >= 0x80) {
+                position = start;
+                putBytes(value.getBytes(StandardCharsets.UTF_8));
+                return;
+            }
+            buffer[position++] = (byte) c;
+        }
+    }
+
+    /** Append a whole number in decimal */
+    public void putLong(long value) throws IOException {
+        if (value == Long.MIN_VALUE) {
+            putString(Long.toString(value));
+            return;
+        }
+        ensure(20);
+        if (value < 0) {
+            buffer[position++] = '-';
+            value = -value;
+        }
+        putDigits(value, 0);
+    }
+
+    /**
+     * Append a number with a fixed number of decimals, rounded half up like String.format("%.nf") but always with '.'
+     *      as decimal separator
+     * @param value number to write
+     * @param decimals number of decimals, 0 to 6
+     */
+    public void putFixed(double value, int decimals) throws IOException {
+        if (Double.isNaN(value) || Double.isInfinite(value) || Math.abs(value) >= MAX_FAST_VALUE) {
+            putString(String.format(Locale.ROOT, "%." + decimals + "f", value));
+            return;
+        }
+        ensure(22);
+        if (value < 0 || (value == 0 && 1 / value < 0)) {
+            buffer[position++] = '-';
+            value = -value;
+        }
+        putDigits(Math.round(value * POW10[decimals]), decimals);
+    }
+
+    /**
+     * Mark the end of a batch (e.g. the rows of one step): the buffer is flushed if the flush interval has elapsed
+     * @throws IOException if the write fails
+     */
+    public void endBatch() throws IOException {
+        if (position > 0 && System.nanoTime() - lastFlush >= flushIntervalNs) {
+            flush();
+        }
+    }
+
+
+    // ---------------------------------------------------------
+    // File
+    // ---------------------------------------------------------
+    /**
+     * Write the buffered bytes to the file
+     * @throws IOException if the write fails
+     */
+    public void flush() throws IOException {
+        lastFlush = System.nanoTime();
+        if (position == 0) {
+            return;
+        }
+        view.clear().limit(position);
+        write(view);
+        position = 0;
+        flushCount++;
+    }
+
+    /** Flush the buffer and close the file */
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            channel.close();
+        }
+    }
+
+    /** Getter for number of bytes written to the file so far, buffered bytes excluded */
+    public long getBytesWritten() {
+        return bytesWritten;
+    }
+
+    /** Getter for number of buffer flushes (file writes) so far */
+    public long getFlushCount() {
+        return flushCount;
+    }
+
+    /** Getter for number of bytes waiting in the buffer */
+    public int getBufferedBytes() {
+        return position;
+    }
+
+
+    // ---------------------------------------------------------
+    // Private helper methods
+    // ---------------------------------------------------------
+    /**
+     * Private helper method: make room for n bytes, flushing the buffer if needed
+     */
+    private void ensure(int n) throws IOException {
+        if (position + n > buffer.length) {
+            flush();
+        }
+    }
+
+    /**
+     * Private helper method: write a non-negative scaled number, with a '.' before the last `decimals` digits
+     */
+    private void putDigits(long value, int decimals) {
+        int i = digits.length;
+        for (int d = 0; d < decimals; d++) {
+            digits[--i] = (byte) ('0' + value % 10);
+            value /= 10;
+        }
+        if (decimals > 0) {
+            digits[--i] = '.';
+        }
+        do {
+            digits[--i] = (byte) ('0' + value % 10);
+            value /= 10;
+        } while (value != 0);
+        int n = digits.length - i;
+        System.arraycopy(digits, i, buffer, position, n);
+        position += n;
+    }
+
+    /**
+     * Private helper method: write the whole byte buffer to the channel
+     */
+    private void write(ByteBuffer bytes) throws IOException {
+        while (bytes.hasRemaining()) {
+            bytesWritten += channel.write(bytes);
+        }
+    }
+}
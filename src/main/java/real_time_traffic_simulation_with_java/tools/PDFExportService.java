@@ -0,0 +1,176 @@
+package real_time_traffic_simulation_with_java.tools;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import real_time_traffic_simulation_with_java.alias.Metrics;
+
+
+/**
+ * Runs PDF exports as background jobs, several at a time, and reports their progress. <br>
+ * A job is built from a report summary which no longer changes, e.g. a snapshot of the running aggregates
+ *      ({@link AggregateTracker#snapshot()}) taken when the export is requested: the PDF covers the steps up to that moment,
+ *      while the simulation keeps stepping and the export keeps feeding the aggregates. <br>
+ * Up to {@link Metrics#PDF_EXPORT_THREADS} jobs run at the same time on daemon threads, later jobs wait in line.
+ *      Neither the simulation thread nor the JavaFX Application Thread waits for a job:
+ *      progress is pushed to a listener on the export thread, the caller moves it to its own thread (e.g. Platform.runLater).
+ */
+public final class PDFExportService {
+    private static final Logger LOGGER = Logger.getLogger(PDFExportService.class.getName());
+
+    /** State of a job */
+    public enum State { QUEUED, RUNNING, DONE, FAILED }
+
+    /** Receiver of the progress of the jobs, called on the export thread */
+    @FunctionalInterface
+    public interface JobListener {
+        /**
+         * A job changed state or reached a stage
+         * @param job the job, read its state, stage and progress
+         */
+        void onUpdate(Job job);
+    }
+
+    /** One PDF export */
+    public static final class Job {
+        private final int id;
+        private final double stepTime;
+        private final CompletableFuture<String> result = new CompletableFuture<>();
+        private volatile State state = State.QUEUED;
+        private volatile String stage = "Queued";
+        private volatile double progress = 0;
+
+        private Job(int id, double stepTime) {
+            this.id = id;
+            this.stepTime = stepTime;
+        }
+
+        /** Getter for job number, from 1 */
+        public int getId() {
+            return id;
+        }
+
+        /** Getter for simulation time (s) of the last step covered by the PDF */
+        public double getStepTime() {
+            return stepTime;
+        }
+
+        /** Getter for state */
+        public State getState() {
+            return state;
+        }
+
+        /** Getter for name of the current stage */
+        public String getStage() {
+            return stage;
+        }
+
+        /** Getter for part of the export done, 0 to 1 */
+        public double getProgress() {
+            return progress;
+        }
+
+        /** Path of the PDF file once done, null if the export failed */
+        public CompletableFuture<String> getResult() {
+            return result;
+        }
+    }
+
+    private final ExecutorService executor;
+    private final AtomicInteger jobCount = new AtomicInteger();
+    private final List<Job> activeJobs = new ArrayList<>();
+
+    /** Create the service with {@link Metrics#PDF_EXPORT_THREADS} export threads */
+    public PDFExportService() {
+        this(Metrics.PDF_EXPORT_THREADS);
+    }
+
+    /**
+     * Create the service
+     * @param threads number of exports which may run at the same time
+     */
+    public PDFExportService(int threads) {
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(Math.max(1, threads), task -> {
+            Thread thread = new Thread(task, "pdf-export-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+
+    /**
+     * Queue a PDF export
+     * @param summary report data which no longer changes, e.g. {@link AggregateTracker#snapshot()}
+     * @param stepTime simulation time (s) of the last step covered by the summary
+     * @param csv_timestamp Timestamp when the simulation started (used in the file name)
+     * @param filter_veh_color Color of vehicle to filter, empty string for no filter
+     * @param filter_congested_edges Whether to filter only congested edges
+     * @param data_from_simulation_engine see {@link PDFExporter#exportSummary(ReportSummary, String, String, boolean, List)}
+     * @param listener Receiver of the progress, called on the export thread
+     * @return the job, already queued
+     */
+    public Job submit(ReportSummary summary, double stepTime, String csv_timestamp,
+                        String filter_veh_color, boolean filter_congested_edges,
+                        List<String[]> data_from_simulation_engine, JobListener listener) {
+        Job job = new Job(jobCount.incrementAndGet(), stepTime);
+        synchronized (activeJobs) {
+            activeJobs.add(job);
+        }
+        listener.onUpdate(job);
+        executor.submit(() -> {
+            job.state = State.RUNNING;
+            String filePath = null;
+            try {
+                filePath = PDFExporter.exportSummary(summary, csv_timestamp, filter_veh_color, filter_congested_edges,
+                                                    data_from_simulation_engine, (stage, fraction) -> {
+                                                        job.stage = stage;
+                                                        job.progress = fraction;
+                                                        listener.onUpdate(job);
+                                                    });
+            } catch (Exception e) {
+                LOGGER.log(Level.WARNING, "PDF export " + job.id + " failed: " + e.getMessage(), e);
+            }
+            synchronized (activeJobs) {
+                activeJobs.remove(job);
+            }
+            job.state = filePath != null ? State.DONE : State.FAILED;
+            job.stage = filePath != null ? "Done" : "Failed";
+            job.result.complete(filePath);
+            listener.onUpdate(job);
+        });
+        return job;
+    }
+
+    /**
+     * Jobs queued or running
+     * @return copy of the active jobs, in submission order
+     */
+    public List<Job> getActiveJobs() {
+        synchronized (activeJobs) {
+            return new ArrayList<>(activeJobs);
+        }
+    }
+
+    /**
+     * Stop accepting jobs and wait for the queued ones
+     * @param timeoutSeconds longest wait (s)
+     */
+    public void shutdown(long timeoutSeconds) {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(timeoutSeconds, TimeUnit.SECONDS)) {
+                LOGGER.log(Level.WARNING, "PDF exports still running: " + getActiveJobs().size());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -3,10 +3,10 @@ package real_time_traffic_simulation_with_java.tools;
 import com.lowagie.text.*;
 import com.lowagie.text.pdf.*;
 
-import tech.tablesaw.api.Table;
-
 import java.io.FileOutputStream;
+import java.io.IOException;
 import java.nio.file.Files;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Logger;
 import java.util.List;
 import java.nio.file.Paths;
@@ -22,31 +22,91 @@ public final class PDFExporter {
      * Represent number of PDF files has been generated in current simulation <br>
      * Since multiple PDF files may be generated in one simulation,
      *      but when simulation stop, index is reset to 0. <br>
-     * PDF file name format: {csv_timestamp} Summary {index}.pdf (index starts from 1)
+     * PDF file name format: {csv_timestamp} Summary {index}.pdf (index starts from 1) <br>
+     * Atomic: several exports may run at the same time (see {@link PDFExportService})
      */
-    private static int index = 0;
+    private static final AtomicInteger index = new AtomicInteger();
+
+    /** Receiver of the progress of an export, called on the exporting thread */
+    @FunctionalInterface
+    public interface ProgressListener {
+        /**
+         * The export reached a stage
+         * @param stage name of the stage
+         * @param fraction part of the export done, 0 to 1
+         */
+        void onProgress(String stage, double fraction);
+    }
 
     private PDFExporter() {
         // Private constructor to prevent instantiation
     }
 
     /**
-     * Export summary PDF file from data from SUMO and CSV log file, 
+     * Export summary PDF file from data from SUMO and the trace log file, 
+     *      allow filtering options: vehicle color and congested edges only <br>
+     * Only the summary footers of the trace are read (see {@link TraceSummary}), not its rows. <br>
+     * @param trace_path Path to the trace log file of current simulation
+     * @param csv_timestamp Timestamp when the simulation started (used in CSV file name)
+     * @param filter_veh_color Color of vehicle to filter, empty string for no filter
+     * @param filter_congested_edges Whether to filter only congested edges
+     * @param data_from_simulation_engine List<String[]>, 1st element is {edgeCount, tlsCount}, 2nd element is {exportedSimulationStep}, each next are {edgeID, laneCount, length}
+     * @return path of the PDF file, null if it could not be created
+     */
+    public static String exportSummary(String trace_path, String csv_timestamp, 
+                                    String filter_veh_color, 
+                                    boolean filter_congested_edges,
+                                    List<String[]> data_from_simulation_engine) {
+        // Preparing data from trace file
+        TraceSummary summary;
+        try (TraceReader reader = TraceReader.open(trace_path)) {
+            summary = TraceSummary.read(reader);
+        } catch (IOException e) {
+            LOGGER.severe("Failed to read trace summary: " + e.getMessage());
+            return null;
+        }
+        return exportSummary(summary, csv_timestamp, filter_veh_color, filter_congested_edges, data_from_simulation_engine);
+    }
+
+    /**
+     * Export summary PDF file from data from SUMO and a report summary, 
      *      allow filtering options: vehicle color and congested edges only <br>
-     * @param csv_path Path to the CSV log file of current simulation
+     * With the running aggregates of the export ({@link AggregateTracker#snapshot()}) no log file is read at all. <br>
+     * @param summary Report data: trace footers or running aggregates
      * @param csv_timestamp Timestamp when the simulation started (used in CSV file name)
      * @param filter_veh_color Color of vehicle to filter, empty string for no filter
      * @param filter_congested_edges Whether to filter only congested edges
      * @param data_from_simulation_engine List<String[]>, 1st element is {edgeCount, tlsCount}, 2nd element is {exportedSimulationStep}, each next are {edgeID, laneCount, length}
+     * @return path of the PDF file, null if it could not be created
      */
-    public static void exportSummary(String csv_path, String csv_timestamp, 
+    public static String exportSummary(ReportSummary summary, String csv_timestamp, 
                                     String filter_veh_color, 
                                     boolean filter_congested_edges,
                                     List<String[]> data_from_simulation_engine) {
-        // Preparing data from CSV file
+        return exportSummary(summary, csv_timestamp, filter_veh_color, filter_congested_edges, data_from_simulation_engine,
+                                (stage, fraction) -> { });
+    }
+
+    /**
+     * Export summary PDF file from data from SUMO and a report summary, reporting the progress of each stage <br>
+     * Thread-safe: the summary must not change during the export (e.g. a snapshot), each export writes its own file.
+     * @param summary Report data: trace footers or running aggregates
+     * @param csv_timestamp Timestamp when the simulation started (used in CSV file name)
+     * @param filter_veh_color Color of vehicle to filter, empty string for no filter
+     * @param filter_congested_edges Whether to filter only congested edges
+     * @param data_from_simulation_engine List<String[]>, 1st element is {edgeCount, tlsCount}, 2nd element is {exportedSimulationStep}, each next are {edgeID, laneCount, length}
+     * @param progress Receiver of the progress
+     * @return path of the PDF file, null if it could not be created
+     */
+    public static String exportSummary(ReportSummary summary, String csv_timestamp, 
+                                    String filter_veh_color, 
+                                    boolean filter_congested_edges,
+                                    List<String[]> data_from_simulation_engine,
+                                    ProgressListener progress) {
+        long start = System.nanoTime();
+        progress.onProgress("Preparing data", 0.0);
         // Overall data: {totalVehicleCount, [color], [count by color], [congested edges]}
-        Table csv_table = Table.read().csv(csv_path);
-        List<String[]> csv_overall_data = OverallFromCSV.retrieveOverallDataFromCSV(csv_table);
+        List<String[]> csv_overall_data = OverallFromSummary.retrieveOverallData(summary);
         
         // Preparing data from simulation engine
         // 1st element: {edgeCount, tlsCount}, 2nd element: {exportedSimulationStep}, next elements: {edgeID, laneCount, length}
@@ -56,27 +116,37 @@ public final class PDFExporter {
         try{
             Document document = new Document(PageSize.A4);
             Files.createDirectories(Paths.get(Path.PdfLogFolder));
-            PdfWriter writer = PdfWriter.getInstance(document, new FileOutputStream(generatePath(csv_timestamp)));
+            String filePath = generatePath(csv_timestamp);
+            PdfWriter writer = PdfWriter.getInstance(document, new FileOutputStream(filePath));
             document.open();
 
             // Write PDF content
+            progress.onProgress("Writing overview", 0.1);
             addTitle(document);
             Heading.addHeading(document, filter_veh_color, filter_congested_edges, csv_timestamp, data_from_simulation_engine.get(1)[0]);
             ObjectCount.addObjectCount(document, filter_veh_color, filter_congested_edges, edge_tls_count[0], edge_tls_count[1], csv_overall_data);
+            progress.onProgress("Writing edge table", 0.2);
             EdgeTable.addEdgeTable(document, edge_table_data, filter_congested_edges, csv_overall_data.get(3));
 
             // Add chart image
-            if(csv_table.rowCount() > 0) {
-                PDFChart.addVehicleCountChart(csv_table, document, writer, filter_veh_color);
-                PDFChart.addCongestedEdgeCountChart(csv_table, document, writer, data_from_simulation_engine.get(1)[0]);
+            if(summary.getStepCount() > 0 && !summary.getColorNames().isEmpty()) {
+                progress.onProgress("Drawing vehicle chart", 0.4);
+                PDFChart.addVehicleCountChart(summary, document, writer, filter_veh_color);
+                progress.onProgress("Drawing congestion chart", 0.7);
+                PDFChart.addCongestedEdgeCountChart(summary, document, writer, data_from_simulation_engine.get(1)[0]);
             }
             
+            progress.onProgress("Saving", 0.9);
             document.close();
-            LOGGER.info(String.format("PDF summary {%s [%d]} created successfully.", csv_timestamp, index));
+            progress.onProgress("Done", 1.0);
+            LOGGER.info(String.format("PDF summary {%s} created successfully in %.1f ms.", filePath,
+                                        (System.nanoTime() - start) / 1e6));
+            return filePath;
         } catch (Exception e) {
             LOGGER.severe("Failed to create PDF summary: " + e.getMessage());
             e.printStackTrace();
         }
+        return null;
     }
 
 
@@ -86,8 +156,7 @@ public final class PDFExporter {
      * @param csv_timestamp Timestamp when the simulation started (used in CSV file name)
      */
     private static String generatePath(String csv_timestamp) {
-        index += 1;
-        String filePath = Path.PdfLogFolder + csv_timestamp + " Summary " + index + ".pdf";
+        String filePath = Path.PdfLogFolder + csv_timestamp + " Summary " + index.incrementAndGet() + ".pdf";
         return filePath;
     }
 
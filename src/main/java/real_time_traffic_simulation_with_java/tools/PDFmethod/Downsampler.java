@@ -0,0 +1,109 @@
+package real_time_traffic_simulation_with_java.tools.PDFmethod;
+
+import java.util.Arrays;
+
+
+/**
+ * Decimation of long chart series before they are drawn: a chart a few hundred points wide
+ *      gains nothing from ten thousand vertices, but the PDF pays for each of them. <br>
+ * Largest-Triangle-Three-Buckets (LTTB): the first and last points are kept, the points between are cut into buckets
+ *      and from each bucket the point forming the largest triangle with the previously kept point and the average of
+ *      the next bucket is kept, which favours peaks and dips. On top of that the minimum and maximum of the whole series
+ *      are always kept, so the drawn range is the true range.
+ * @see <a href="https://skemman.is/bitstream/1946/15343/3/SS_MSthesis.pdf">
+ *  Steinarsson – Downsampling Time Series for Visual Representation
+ *    </a>
+ */
+public final class Downsampler {
+    private Downsampler() {
+        // Private constructor to prevent instantiation
+    }
+
+    /**
+     * Indices of the points to draw
+     * @param x x values, increasing
+     * @param y y values
+     * @param threshold number of points wanted, at least 3 (the minimum and maximum may add two)
+     * @return increasing indices into x and y, all of them if the series is not longer than the threshold
+     */
+    public static int[] lttb(int[] x, int[] y, int threshold) {
+        int n = x.length;
+        if (threshold < 3 || n <= threshold) {
+            int[] all = new int[n];
+            for (int i = 0; i < n; i++) {
+                all[i] = i;
+            }
+            return all;
+        }
+        int[] kept = new int[threshold + 2];
+        int count = 0;
+        kept[count++] = 0;
+        double bucketSize = (double) (n - 2) / (threshold - 2);
+        int a = 0;
+        for (int bucket = 0; bucket < threshold - 2; bucket++) {
+            // Average of the next bucket (the last point for the last bucket)
+            int nextStart = (int) Math.floor((bucket + 1) * bucketSize) + 1;
+            int nextEnd = Math.min((int) Math.floor((bucket + 2) * bucketSize) + 1, n);
+            double avgX = 0;
+            double avgY = 0;
+            for (int i = nextStart; i < nextEnd; i++) {
+                avgX += x[i];
+                avgY += y[i];
+            }
+            int nextCount = Math.max(1, nextEnd - nextStart);
+            if (nextEnd <= nextStart) {
+                avgX = x[n - 1];
+                avgY = y[n - 1];
+            } else {
+                avgX /= nextCount;
+                avgY /= nextCount;
+            }
+
+            // Point of this bucket with the largest triangle
+            int start = (int) Math.floor(bucket * bucketSize) + 1;
+            int end = Math.min((int) Math.floor((bucket + 1) * bucketSize) + 1, n - 1);
+            double maxArea = -1;
+            int chosen = start;
+            for (int i = start; i < end; i++) {
+                double area = Math.abs((x[a] - avgX) * ((double) y[i] - y[a]) - ((double) x[a] - x[i]) * (avgY - y[a]));
+                if (area > maxArea) {
+                    maxArea = area;
+                    chosen = i;
+                }
+            }
+            kept[count++] = chosen;
+            a = chosen;
+        }
+        kept[count++] = n - 1;
+
+        // Keep the extremes of the whole series
+        int min = 0;
+        int max = 0;
+        for (int i = 1; i < n; i++) {
+            if (y[i] < y[min]) {
+                min = i;
+            }
+            if (y[i] > y[max]) {
+                max = i;
+            }
+        }
+        count = insert(kept, count, min);
+        count = insert(kept, count, max);
+        return Arrays.copyOf(kept, count);
+    }
+
+
+    /**
+     * Private helper method: insert an index into the sorted kept indices if it is missing, return the new count
+     */
+    private static int insert(int[] kept, int count, int index) {
+        int position = Arrays.binarySearch(kept, 0, count, index);
+        if (position >= 0) {
+            return count;
+        }
+        position = -position - 1;
+        System.arraycopy(kept, position, kept, position + 1, count - position);
+        kept[position] = index;
+        return count + 1;
+    }
+}
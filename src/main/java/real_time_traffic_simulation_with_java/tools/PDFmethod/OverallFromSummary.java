@@ -0,0 +1,55 @@
+package real_time_traffic_simulation_with_java.tools.PDFmethod;
+
+import java.util.List;
+
+import real_time_traffic_simulation_with_java.tools.ReportSummary;
+
+
+// ----------------------------------------------------
+// RETRIEVE PDF CONTENT FROM REPORT SUMMARY
+// ----------------------------------------------------
+/**
+ * Retrieve overall data from the report summary (trace footers or running aggregates) for summary
+ * @param summary
+ * @return List<String[]> {totalVehicleCount, [color], [count by color], [congested edges]}
+ */
+public final class OverallFromSummary {
+    private OverallFromSummary() {
+        // private constructor to prevent instantiation
+    }
+
+    /**
+     * Retrieve overall data from the report summary for summary
+     * @param summary summary footers of the trace, or running aggregates
+     * @return List<String[]> {totalVehicleCount, [color], [count by color], [congested edges]}
+     */
+    public static final List<String[]> retrieveOverallData(ReportSummary summary) {
+        // If no vehicle was injected (empty trace or no step yet)
+        if(summary.getStepCount() == 0 || summary.getColorNames().isEmpty()) {
+            return List.of(
+                new String[]{"0"}, // totalVehicleCount
+                new String[]{},    // [color]
+                new String[]{},    // [count by color]
+                new String[]{}     // [congested edges]
+            );
+        }
+
+        List<String[]> data = new java.util.ArrayList<>();
+
+        // Total number of vehicles injected, one per (vehicle, color) pair
+        data.add(new String[]{String.valueOf(summary.getUniqueVehicleCount())});
+
+        // Total number of vehicles injected by color
+        String[] colors = summary.getColorNames().toArray(new String[0]);
+        String[] counts_as_str = summary.getColorNames().stream()
+                        .map(color -> String.format("%d", summary.getUniqueVehicleCount(color)))
+                        .toArray(String[]::new);
+        data.add(colors);
+        data.add(counts_as_str);
+
+        // Edge id of edges congested at least once (sorted)
+        data.add(summary.getCongestedEdgeIDs().toArray(new String[0]));
+        
+        return data;
+    }
+}
@@ -3,29 +3,32 @@ package real_time_traffic_simulation_with_java.tools.PDFmethod;
 import com.lowagie.text.*;
 import com.lowagie.text.pdf.*;
 
-import tech.tablesaw.api.Table;
-
 import java.util.logging.Logger;
 import java.util.List;
 import java.util.Arrays;
-import java.awt.image.BufferedImage;
-
-import org.knowm.xchart.BitmapEncoder;
-import org.knowm.xchart.XYChart;
-import org.knowm.xchart.XYChartBuilder;
-import org.knowm.xchart.style.markers.SeriesMarkers;
 
 import real_time_traffic_simulation_with_java.alias.Metrics;
+import real_time_traffic_simulation_with_java.tools.ReportSummary;
 
 
 /**
- * Provides methods to add charts to a PDF document using data from a CSV log file.
+ * Provides methods to add charts to a PDF document using the report summary (trace footers or running aggregates).
+ * Charts are drawn as vector graphics in the PDF, long series are decimated first.
  * Charts supported: 
  * - Vehicle Count Over Time (with optional color filtering)
  * - Congested Edge Count Over Time
  */
 public final class PDFChart {
     private static final Logger LOGGER = Logger.getLogger(PDFChart.class.getName());
+    private static final float TITLE_SIZE = 11;
+    private static final float LABEL_SIZE = 8;
+    private static final java.awt.Color GRID_COLOR = new java.awt.Color(215, 215, 215);
+    /** Series colors, in order */
+    private static final java.awt.Color[] SERIES_COLORS = {
+        new java.awt.Color(0, 55, 255), new java.awt.Color(255, 172, 0), new java.awt.Color(128, 0, 255),
+        new java.awt.Color(0, 205, 0), new java.awt.Color(205, 0, 0), new java.awt.Color(0, 205, 205),
+        new java.awt.Color(255, 0, 255), new java.awt.Color(128, 128, 0), new java.awt.Color(96, 96, 96)
+    };
 
     private PDFChart() {
         // Private constructor to prevent instantiation
@@ -34,12 +37,12 @@ public final class PDFChart {
 
     /**
      * Add Vehicle Count Over Time chart to PDF document
-     * @param csv_table
+     * @param summary
      * @param document
      * @param writer
      * @param filter_veh_color If empty string, include all colors + total;
      */
-    public static void addVehicleCountChart(Table csv_table, Document document, PdfWriter writer, String filter_veh_color) {
+    public static void addVehicleCountChart(ReportSummary summary, Document document, PdfWriter writer, String filter_veh_color) {
         List<String> series_names = new java.util.ArrayList<>();
         List<List<Integer>> series = new java.util.ArrayList<>();
         List<List<Integer>> simulationStep = new java.util.ArrayList<>();
@@ -47,7 +50,7 @@ public final class PDFChart {
 
         // Series names (vehicle colors in simulation) & show legend
         if(filter_veh_color.equals("")) { // Without filtering (all colors + total number) [color1, color2, ..., total]
-            series_names = csv_table.stringColumn("vehicle color").unique().asList();
+            series_names = new java.util.ArrayList<>(summary.getColorNames());
             show_series_names = true;
         } else {
             series_names.add(filter_veh_color);
@@ -56,18 +59,17 @@ public final class PDFChart {
 
         // Vehicles count by color and simulation step
         for (String color : series_names) {
-            Table vehicle_by_color_by_time = csv_table.where(csv_table.stringColumn("vehicle color").isEqualTo(color))
-                                                        .countBy("simulation step");
-            simulationStep.add(vehicle_by_color_by_time.intColumn("simulation step").asList());
-            series.add(vehicle_by_color_by_time.intColumn("Count").asList());
+            List<List<Integer>> vehicle_by_color_by_time = summary.getVehicleCountSeries(color);
+            simulationStep.add(vehicle_by_color_by_time.get(0));
+            series.add(vehicle_by_color_by_time.get(1));
         }
 
         // Data for total number of vehicles (only when no filter applied)
         if(filter_veh_color.equals("")) {
             series_names.add("All");
-            Table vehicle_per_step = csv_table.countBy("simulation step");
-            simulationStep.add(vehicle_per_step.intColumn("simulation step").asList());
-            series.add(vehicle_per_step.intColumn("Count").asList());
+            List<List<Integer>> vehicle_per_step = summary.getVehicleCountSeries(null);
+            simulationStep.add(vehicle_per_step.get(0));
+            series.add(vehicle_per_step.get(1));
         }
         
         addChart(document, writer,
@@ -82,18 +84,16 @@ public final class PDFChart {
 
     /**
      * Add Congested Edge Count Over Time chart to PDF document
-     * @param csv_table
+     * @param summary
      * @param document
      * @param writer
      * @param exported_simulation_step Used to fill data if no data available (no edges has been congested)
      */
-    public static void addCongestedEdgeCountChart(Table csv_table, Document document, PdfWriter writer, String exported_simulation_step) {
+    public static void addCongestedEdgeCountChart(ReportSummary summary, Document document, PdfWriter writer, String exported_simulation_step) {
         // Prepare data: simulation step vs congested edge count
-        Table edge_congested = csv_table.where(csv_table.booleanColumn("edge congestion status").isTrue());
-        edge_congested = edge_congested.selectColumns("simulation step", "vehicle is on edge")
-                                                .dropDuplicateRows().countBy("simulation step");
-        List<Integer> simulationStep = edge_congested.intColumn("simulation step").asList();
-        List<Integer> congestedEdgeCount = edge_congested.intColumn("Count").asList();
+        List<List<Integer>> edge_congested = summary.getCongestedEdgeCountSeries();
+        List<Integer> simulationStep = edge_congested.get(0);
+        List<Integer> congestedEdgeCount = edge_congested.get(1);
 
         // If no data available, fill with 0 up to exported_simulation_step
         if(simulationStep.size() == 0) {
@@ -116,8 +116,14 @@ public final class PDFChart {
 
     /**
      * Private helper method to add chart to PDF document
+     * <p>
+     * The chart is drawn as vector paths and text into a PdfTemplate of the page content (no bitmap):
+     * the PDF stays small and sharp at any zoom, and drawing costs one path operator per point.
+     * Series longer than the plot is wide are first decimated with LTTB ({@link Downsampler}),
+     * keeping at most {@link Metrics#PDF_CHART_POINTS_PER_UNIT} points per unit of plot width.
+     * </p>
      * @param document PDF document to add the chart to
-     * @param writer PDF writer associated with the document to write buffered image without saving to file
+     * @param writer PDF writer associated with the document, owner of the template
      * @param chart_title title of the chart
      * @param y_title title for y axis
      * @param series_names List<String> representing the names of each series
@@ -143,7 +149,7 @@ public final class PDFChart {
         }
 
         // Calculate chart width and height, 
-        //     height of image that is not chart is estimated to be 88.75 when scaled to this width.
+        //     height of the chart that is not plot area is estimated to be 88.75 at this width.
         // Preferred height is based on max y value to avoid excessive white space,
         //     but capped to usable height in case of too many y units.
         float usable_width = PageSize.A4.getWidth() - document.leftMargin() - document.rightMargin();
@@ -157,28 +163,174 @@ public final class PDFChart {
         float preferred_chart_height = Metrics.SIZE_PER_Y_UNIT * max_y_value + 88.75 > usable_height ? 
                     (int)(usable_height) : (int)(Metrics.SIZE_PER_Y_UNIT * max_y_value + 88.75);
 
-        // Create chart using XChart
-        XYChart chart = new XYChartBuilder().width((int)usable_width).height((int)preferred_chart_height)
-                                .title(chart_title)
-                                .xAxisTitle("Simulation Step")
-                                .yAxisTitle(y_title)
-                                .build();
-        for (int i = 0; i < series_names.size(); i++) {
-            chart.addSeries(series_names.get(i), simulationStep.get(i), series.get(i)).setMarker(SeriesMarkers.NONE);
+        try {
+            PdfTemplate chart = writer.getDirectContent().createTemplate(usable_width, preferred_chart_height);
+            drawChart(chart, usable_width, preferred_chart_height, chart_title, y_title,
+                        series_names, simulationStep, series, show_series_names);
+            document.add(Image.getInstance(chart));
+        } catch (Exception e) {
+            LOGGER.severe("Failed to draw chart for PDF: " + e.getMessage());
         }
-        chart.getStyler().setLegendVisible(show_series_names);
+    }
 
-        // Convert to BufferedImage (not saving to file) and add to PDF
-        BufferedImage chartBuffer = BitmapEncoder.getBufferedImage(chart);
-        Image chartImage;
-        try{
-            // 1.0f, no compress, max quality
-            chartImage = Image.getInstance(writer, chartBuffer, 1.0f);
-        } catch (Exception e) {
-            LOGGER.severe("Failed to create chart image for PDF: " + e.getMessage());
-            return;
+    /**
+     * Private helper method: draw title, grid, axes, series and legend of a chart into a template
+     */
+    private static void drawChart(PdfTemplate canvas, float width, float height, String chart_title, String y_title,
+                                    List<String> series_names, List<List<Integer>> simulationStep, List<List<Integer>> series,
+                                    boolean show_series_names) throws DocumentException, java.io.IOException {
+        BaseFont font = BaseFont.createFont(BaseFont.TIMES_ROMAN, BaseFont.CP1252, BaseFont.NOT_EMBEDDED);
+        BaseFont bold = BaseFont.createFont(BaseFont.TIMES_BOLD, BaseFont.CP1252, BaseFont.NOT_EMBEDDED);
+
+        // Data ranges
+        int[][] xs = new int[series.size()][];
+        int[][] ys = new int[series.size()][];
+        int min_x = Integer.MAX_VALUE;
+        int max_x = Integer.MIN_VALUE;
+        int max_y = 0;
+        for (int s = 0; s < series.size(); s++) {
+            xs[s] = toArray(simulationStep.get(s));
+            ys[s] = toArray(series.get(s));
+            for (int i = 0; i < xs[s].length; i++) {
+                min_x = Math.min(min_x, xs[s][i]);
+                max_x = Math.max(max_x, xs[s][i]);
+                max_y = Math.max(max_y, ys[s][i]);
+            }
         }
+        if (min_x > max_x) {
+            min_x = 0;
+            max_x = 1;
+        }
+        double x_step = tickStep(Math.max(1, max_x - min_x), 8);
+        double x_from = Math.floor(min_x / x_step) * x_step;
+        double x_to = Math.max(Math.ceil(max_x / x_step) * x_step, x_from + x_step);
+        double y_step = tickStep(Math.max(1, max_y), 6);
+        double y_to = Math.max(Math.ceil(max_y / y_step) * y_step, y_step);
+
+        // Layout: title on top, y labels on the left, x labels at the bottom, legend on the right
+        float label_width = font.getWidthPoint(formatTick(y_to), LABEL_SIZE);
+        float legend_width = 0;
+        if (show_series_names) {
+            for (String name : series_names) {
+                legend_width = Math.max(legend_width, font.getWidthPoint(name, LABEL_SIZE));
+            }
+            legend_width += 30;
+        }
+        float left = 14 + label_width + 8;
+        float bottom = 30;
+        float right = width - 8 - legend_width;
+        float top = height - 24;
+        float plot_width = right - left;
+        float plot_height = top - bottom;
+
+        // Title and axis titles
+        canvas.beginText();
+        canvas.setFontAndSize(bold, TITLE_SIZE);
+        canvas.showTextAligned(Element.ALIGN_CENTER, chart_title, width / 2, height - 14, 0);
+        canvas.setFontAndSize(font, LABEL_SIZE);
+        canvas.showTextAligned(Element.ALIGN_CENTER, "Simulation Step", left + plot_width / 2, 4, 0);
+        canvas.showTextAligned(Element.ALIGN_CENTER, y_title, 8, bottom + plot_height / 2, 90);
+        canvas.endText();
 
-        document.add(chartImage);
+        // Grid, stroked before the tick labels: no path operator may appear inside a text object
+        canvas.setLineWidth(0.3f);
+        canvas.setColorStroke(GRID_COLOR);
+        for (double y = 0; y <= y_to + y_step / 2; y += y_step) {
+            float py = bottom + (float) (y / y_to) * plot_height;
+            canvas.moveTo(left, py);
+            canvas.lineTo(right, py);
+        }
+        for (double x = x_from; x <= x_to + x_step / 2; x += x_step) {
+            float px = left + (float) ((x - x_from) / (x_to - x_from)) * plot_width;
+            canvas.moveTo(px, bottom);
+            canvas.lineTo(px, top);
+        }
+        canvas.stroke();
+
+        // Tick labels
+        canvas.beginText();
+        canvas.setFontAndSize(font, LABEL_SIZE);
+        for (double y = 0; y <= y_to + y_step / 2; y += y_step) {
+            float py = bottom + (float) (y / y_to) * plot_height;
+            canvas.showTextAligned(Element.ALIGN_RIGHT, formatTick(y), left - 4, py - 2.5f, 0);
+        }
+        for (double x = x_from; x <= x_to + x_step / 2; x += x_step) {
+            float px = left + (float) ((x - x_from) / (x_to - x_from)) * plot_width;
+            canvas.showTextAligned(Element.ALIGN_CENTER, formatTick(x), px, bottom - 10, 0);
+        }
+        canvas.endText();
+        canvas.setLineWidth(0.6f);
+        canvas.setColorStroke(java.awt.Color.DARK_GRAY);
+        canvas.rectangle(left, bottom, plot_width, plot_height);
+        canvas.stroke();
+
+        // Series, decimated to the plot width
+        int threshold = Math.max(3, (int) (plot_width * Metrics.PDF_CHART_POINTS_PER_UNIT));
+        canvas.setLineWidth(0.8f);
+        canvas.setLineJoin(PdfContentByte.LINE_JOIN_ROUND);
+        for (int s = 0; s < series.size(); s++) {
+            if (xs[s].length == 0) {
+                continue;
+            }
+            canvas.setColorStroke(SERIES_COLORS[s % SERIES_COLORS.length]);
+            int[] kept = Downsampler.lttb(xs[s], ys[s], threshold);
+            for (int k = 0; k < kept.length; k++) {
+                int i = kept[k];
+                float px = left + (float) ((xs[s][i] - x_from) / (x_to - x_from)) * plot_width;
+                float py = bottom + (float) (ys[s][i] / y_to) * plot_height;
+                if (k == 0) {
+                    canvas.moveTo(px, py);
+                } else {
+                    canvas.lineTo(px, py);
+                }
+            }
+            canvas.stroke();
+        }
+
+        // Legend
+        if (show_series_names) {
+            float ly = top - 8;
+            for (int s = 0; s < series_names.size(); s++) {
+                canvas.setColorStroke(SERIES_COLORS[s % SERIES_COLORS.length]);
+                canvas.setLineWidth(1.5f);
+                canvas.moveTo(right + 8, ly + 2.5f);
+                canvas.lineTo(right + 20, ly + 2.5f);
+                canvas.stroke();
+                canvas.beginText();
+                canvas.setFontAndSize(font, LABEL_SIZE);
+                canvas.showTextAligned(Element.ALIGN_LEFT, series_names.get(s), right + 24, ly, 0);
+                canvas.endText();
+                ly -= 11;
+            }
+        }
+    }
+
+    /**
+     * Private helper method: a "nice" tick step (1, 2 or 5 times a power of ten) giving about this number of ticks
+     */
+    private static double tickStep(double range, int ticks) {
+        double raw = range / ticks;
+        double magnitude = Math.pow(10, Math.floor(Math.log10(raw)));
+        double fraction = raw / magnitude;
+        double nice = fraction <= 1 ? 1 : fraction <= 2 ? 2 : fraction <= 5 ? 5 : 10;
+        return Math.max(1, nice * magnitude);
+    }
+
+    /**
+     * Private helper method: tick label, ticks are whole numbers
+     */
+    private static String formatTick(double value) {
+        return String.valueOf(Math.round(value));
+    }
+
+    /**
+     * Private helper method: values of a series as primitives
+     */
+    private static int[] toArray(List<Integer> values) {
+        int[] array = new int[values.size()];
+        for (int i = 0; i < array.length; i++) {
+            array[i] = values.get(i);
+        }
+        return array;
     }
 }
@@ -1,30 +1,84 @@
 package real_time_traffic_simulation_with_java.tools;
 
-import java.util.List;
+import real_time_traffic_simulation_with_java.cores.StepSnapshot;
 
 /**
  * This class represents the data structure for report data used in exporting vehicle information.
- * It encapsulates a list of string arrays, where each array contains details about a vehicle.
- * Techically speaking, this is a wrapper class for passing vehicle data to the ExportingFiles class.
+ * It holds the rows of one simulation step in columns of primitives instead of one String array per vehicle:
+ *      row i is vehicle i of the step snapshot (ID, color code, speed, edge handle),
+ *      the edge columns (congestion status, average speed, density) are addressed by edge handle. <br>
+ * Techically speaking, this is a wrapper class for passing vehicle data to the ExportingFiles class,
+ *      the numbers are only turned into text by the writer thread.
  */
 public class ReportData {
-    private final List<String[]> vehicleData;
+    /** Congestion status of an edge which has none (junction edges, unknown edges) */
+    public static final byte NO_STATUS = -1;
+
+    private final StepSnapshot snapshot;
+    private final byte[] edgeCongestion;
 
     /**
      * ReportData constructor, use to initialize vehicle data.
-     * We are assigning the parameter vehicleData to the class variable vehicleData. 
-     * We are using this constructor to create an instance of ReportData with the provided vehicle data.
-     * @param vehicleData the list of string arrays containing vehicle information
+     * @param snapshot immutable state of the step, source of the vehicle and edge columns
+     * @param edgeCongestion congestion status per edge handle (1 congested, 0 not congested, NO_STATUS), not copied
      */
-    public ReportData(List<String[]> vehicleData) {
-        this.vehicleData = vehicleData;
+    public ReportData(StepSnapshot snapshot, byte[] edgeCongestion) {
+        this.snapshot = snapshot;
+        this.edgeCongestion = edgeCongestion;
     }
 
-    /**
-     * Getter for vehicle data
-     * @return the list of string arrays containing vehicle information
-    */
-    public List<String[]> getVehicleData() {
-        return vehicleData;
+    /** Getter for simulation time of the step (s) */
+    public double getTime() {
+        return snapshot.getTime();
+    }
+
+    /** Getter for number of rows (one per vehicle) */
+    public int getRowCount() {
+        return snapshot.getVehicleCount();
+    }
+
+    /** Getter for vehicle ID of row i */
+    public String getVehicleID(int i) {
+        return snapshot.getVehicleID(i);
+    }
+
+    /** Getter for vehicle color of row i packed as 0xRRGGBBAA */
+    public int getVehicleColor(int i) {
+        return snapshot.getVehicleRGBA(i);
+    }
+
+    /** Getter for vehicle speed of row i (km/h) */
+    public double getVehicleSpeed(int i) {
+        return snapshot.getVehicleSpeed(i);
+    }
+
+    /** Getter for edge handle of row i */
+    public int getVehicleEdge(int i) {
+        return snapshot.getVehicleEdge(i);
+    }
+
+    /** Getter for number of edge handles with a congestion status (the edges of the network) */
+    public int getEdgeCount() {
+        return edgeCongestion.length;
+    }
+
+    /** Getter for edge ID of an edge handle, empty if unknown */
+    public String getEdgeID(int edge) {
+        return snapshot.getEdgeID(edge);
+    }
+
+    /** Getter for congestion status of an edge handle: 1 congested, 0 not congested, NO_STATUS */
+    public byte getEdgeCongestion(int edge) {
+        return edge >= 0 && edge < edgeCongestion.length ? edgeCongestion[edge] : NO_STATUS;
+    }
+
+    /** Getter for average speed on an edge handle (km/h), -1 if the edge has no statistics */
+    public double getEdgeAverageSpeed(int edge) {
+        return snapshot.getEdgeAverageSpeed(edge);
+    }
+
+    /** Getter for density on an edge handle (vehicle/km), -1 if the edge has no statistics */
+    public double getEdgeDensity(int edge) {
+        return snapshot.getEdgeDensity(edge);
     }
-}
\ No newline at end of file
+}
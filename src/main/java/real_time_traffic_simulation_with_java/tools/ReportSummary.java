@@ -0,0 +1,44 @@
+package real_time_traffic_simulation_with_java.tools;
+
+import java.util.List;
+
+
+/**
+ * Data of the PDF summary: vehicles by color, congested edges and their series per step. <br>
+ * Built after the run from the trace footers ({@link TraceSummary}) or while it runs ({@link AggregateTracker}),
+ *      both give the same results as the former Tablesaw queries on the CSV log:
+ * <ul>
+ *  <li>vehicles by color: distinct (vehicle, color) pairs, colors by name in order of first appearance</li>
+ *  <li>congested edges: edges with a congested status in at least one row</li>
+ *  <li>series per step: only the steps with a non-zero value, the x value is the simulation time (s) truncated to an int</li>
+ * </ul>
+ */
+public interface ReportSummary {
+    /** Getter for color names, in order of first appearance */
+    List<String> getColorNames();
+
+    /** Getter for number of distinct (vehicle, color) pairs */
+    int getUniqueVehicleCount();
+
+    /** Getter for number of distinct vehicles with this color, 0 if the color never appears */
+    int getUniqueVehicleCount(String colorName);
+
+    /** Getter for IDs of the edges congested at least once, sorted */
+    List<String> getCongestedEdgeIDs();
+
+    /** Getter for number of steps */
+    int getStepCount();
+
+    /**
+     * Vehicle count per step of one color, or of all colors
+     * @param colorName color name, null for all colors
+     * @return {steps, counts}, steps without vehicles are left out
+     */
+    List<List<Integer>> getVehicleCountSeries(String colorName);
+
+    /**
+     * Congested edge count per step
+     * @return {steps, counts}, steps without congested edges are left out
+     */
+    List<List<Integer>> getCongestedEdgeCountSeries();
+}
@@ -0,0 +1,420 @@
+package real_time_traffic_simulation_with_java.tools;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+
+/**
+ * Memory-mapped reader of a binary trace written by {@link TraceWriter}. <br>
+ * Opening the trace maps the chunks one after the other and only decodes their dictionary section,
+ *      the column sections are decoded on demand by {@link #readChunk(int)}. <br>
+ * The chunks present when the trace is opened are visible, an incomplete last chunk (trace still being written) is ignored. <br>
+ * Reports don't need the rows: {@link TraceSummary} only reads the steps and summary sections of each chunk. <br>
+ * {@link #toCSV(String, String)} converts a trace to the CSV log format, also from the command line:
+ *      TraceReader &lt;file.trace&gt; [folder]
+ */
+public final class TraceReader implements Closeable {
+    private static final Logger LOGGER = Logger.getLogger(TraceReader.class.getName());
+
+    /**
+     * Decoded columns of one chunk, one entry per row unless noted otherwise. <br>
+     * Codes are resolved with {@link TraceReader#getVehicleID(int)}, {@link TraceReader#getEdgeID(int)},
+     *      {@link TraceReader#getColor(int)}. Edge code -1 and edge statistics -1 mean unknown, like the step snapshot.
+     * @param stepTimes simulation time of each step of the chunk (s), one entry per step
+     * @param stepRows number of rows of each step of the chunk, one entry per step
+     * @param vehicles vehicle code
+     * @param colors color code
+     * @param speeds vehicle speed (km/h)
+     * @param edges edge code, -1 if unknown
+     * @param congestion edge congestion status: 1, 0 or ReportData.NO_STATUS
+     * @param edgeSpeeds average speed on the edge (km/h), -1 if the edge has no statistics
+     * @param edgeDensities density on the edge (vehicle/km), -1 if the edge has no statistics
+     */
+    public record Chunk(double[] stepTimes, int[] stepRows, int[] vehicles, int[] colors, double[] speeds,
+                        int[] edges, byte[] congestion, double[] edgeSpeeds, double[] edgeDensities) {
+        /** Getter for number of rows of the chunk */
+        public int rowCount() {
+            return vehicles.length;
+        }
+    }
+
+    private final FileChannel channel;
+    private final List<String> columnNames;
+    private final List<Long> chunkOffsets = new ArrayList<>();
+    private long rowCount = 0;
+
+    // Dictionaries of the whole trace
+    private final List<String> vehicleIDs = new ArrayList<>();
+    private final List<String> edgeIDs = new ArrayList<>();
+    private int[] colors = new int[8];
+    private int colorCount = 0;
+
+    /**
+     * Private constructor: use {@link #open(String)}
+     */
+    private TraceReader(FileChannel channel, List<String> columnNames) {
+        this.channel = channel;
+        this.columnNames = columnNames;
+    }
+
+
+    /**
+     * Open a trace and read its chunk index and dictionaries
+     * @param filePath path to the trace file
+     * @return TraceReader of the complete chunks of the trace
+     * @throws IOException if the file cannot be read or is not a trace
+     */
+    public static TraceReader open(String filePath) throws IOException {
+        FileChannel channel = FileChannel.open(Paths.get(filePath), StandardOpenOption.READ);
+        try {
+            long size = channel.size();
+            ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(size, 1 << 16));
+            byte[] magic = new byte[TraceWriter.MAGIC.length];
+            if (header.remaining() < magic.length + 6) {
+                throw new IOException("Not a trace file: " + filePath);
+            }
+            header.get(magic);
+            if (!Arrays.equals(magic, TraceWriter.MAGIC)) {
+                throw new IOException("Not a trace file: " + filePath);
+            }
+            int version = header.getInt();
+            if (version != TraceWriter.VERSION) {
+                throw new IOException("Unsupported trace version " + version + ": " + filePath);
+            }
+            List<String> columnNames = new ArrayList<>();
+            int columns = header.getShort();
+            for (int c = 0; c < columns; c++) {
+                byte[] name = new byte[header.getShort()];
+                header.get(name);
+                columnNames.add(new String(name, StandardCharsets.UTF_8));
+            }
+            TraceReader reader = new TraceReader(channel, Collections.unmodifiableList(columnNames));
+            reader.scan(header.position(), size);
+            return reader;
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+
+    // ---------------------------------------------------------
+    // Getters
+    // ---------------------------------------------------------
+    /** Getter for column names of the schema header (the CSV log headers) */
+    public List<String> getColumnNames() {
+        return columnNames;
+    }
+
+    /** Getter for number of complete chunks */
+    public int getChunkCount() {
+        return chunkOffsets.size();
+    }
+
+    /** Getter for number of rows in the complete chunks */
+    public long getRowCount() {
+        return rowCount;
+    }
+
+    /** Getter for vehicle ID of a vehicle code */
+    public String getVehicleID(int code) {
+        return vehicleIDs.get(code);
+    }
+
+    /** Getter for number of distinct vehicles */
+    public int getVehicleCount() {
+        return vehicleIDs.size();
+    }
+
+    /** Getter for edge ID of an edge code, empty if unknown (-1) */
+    public String getEdgeID(int code) {
+        return code < 0 ? "" : edgeIDs.get(code);
+    }
+
+    /** Getter for color packed as 0xRRGGBBAA of a color code */
+    public int getColor(int code) {
+        return colors[code];
+    }
+
+
+    // ---------------------------------------------------------
+    // Reading
+    // ---------------------------------------------------------
+    /**
+     * Decode the columns of one chunk
+     * @param index chunk index, 0 to getChunkCount() - 1
+     * @return decoded Chunk
+     * @throws IOException if the chunk cannot be mapped
+     */
+    public Chunk readChunk(int index) throws IOException {
+        ByteBuffer chunk = mapChunk(chunkOffsets.get(index));
+        int rows = chunk.getInt();
+        int steps = chunk.getInt();
+        int sections = chunk.getShort();
+        double[] stepTimes = new double[steps];
+        int[] stepRows = new int[steps];
+        int[] vehicles = new int[rows];
+        int[] colorCodes = new int[rows];
+        double[] speeds = new double[rows];
+        int[] edges = new int[rows];
+        byte[] congestion = new byte[rows];
+        double[] edgeSpeeds = new double[rows];
+        double[] edgeDensities = new double[rows];
+
+        for (int s = 0; s < sections; s++) {
+            byte id = chunk.get();
+            int length = chunk.getInt();
+            int end = chunk.position() + length;
+            switch (id) {
+                case TraceWriter.SECTION_STEPS:
+                    long tenths = 0;
+                    for (int i = 0; i < steps; i++) {
+                        tenths = i == 0 ? getSigned(chunk) : tenths + getSigned(chunk);
+                        stepTimes[i] = tenths / 10.0;
+                        stepRows[i] = (int) getVarint(chunk);
+                    }
+                    break;
+                case TraceWriter.SECTION_VEHICLE:
+                    for (int i = 0; i < rows; i++) {
+                        vehicles[i] = (int) getVarint(chunk);
+                    }
+                    break;
+                case TraceWriter.SECTION_COLOR:
+                    for (int i = 0; i < rows; i++) {
+                        colorCodes[i] = (int) getVarint(chunk);
+                    }
+                    break;
+                case TraceWriter.SECTION_SPEED:
+                    for (int i = 0; i < rows; i++) {
+                        speeds[i] = getSigned(chunk) / 100.0;
+                    }
+                    break;
+                case TraceWriter.SECTION_EDGE:
+                    for (int i = 0; i < rows; i++) {
+                        edges[i] = (int) getVarint(chunk) - 1;
+                    }
+                    break;
+                case TraceWriter.SECTION_CONGESTION:
+                    chunk.get(congestion);
+                    break;
+                case TraceWriter.SECTION_EDGE_SPEED:
+                    getStats(chunk, edgeSpeeds);
+                    break;
+                case TraceWriter.SECTION_EDGE_DENSITY:
+                    getStats(chunk, edgeDensities);
+                    break;
+                default:
+                    // Dictionary (read by scan) or unknown section
+                    break;
+            }
+            chunk.position(end);
+        }
+        return new Chunk(stepTimes, stepRows, vehicles, colorCodes, speeds, edges, congestion, edgeSpeeds, edgeDensities);
+    }
+
+    /**
+     * Map one section of a chunk, the other sections are skipped without being read
+     * @param index chunk index
+     * @param sectionID section ID, see TraceWriter
+     * @return buffer limited to the section, null if the chunk has no such section
+     * @throws IOException if the chunk cannot be mapped
+     */
+    ByteBuffer readSection(int index, byte sectionID) throws IOException {
+        ByteBuffer chunk = mapChunk(chunkOffsets.get(index));
+        chunk.position(8);
+        int sections = chunk.getShort();
+        for (int s = 0; s < sections; s++) {
+            byte id = chunk.get();
+            int length = chunk.getInt();
+            if (id == sectionID) {
+                return chunk.slice(chunk.position(), length);
+            }
+            chunk.position(chunk.position() + length);
+        }
+        return null;
+    }
+
+    /**
+     * Number of steps of a chunk
+     * @param index chunk index
+     * @return number of steps
+     * @throws IOException if the chunk cannot be mapped
+     */
+    int readStepCount(int index) throws IOException {
+        return mapChunk(chunkOffsets.get(index)).getInt(4);
+    }
+
+    /**
+     * Convert the trace to the CSV log format
+     * @param folder folder of the CSV file, ending with a separator
+     * @param timeStamp name of the CSV file (without extension), an existing file is replaced
+     * @return path to the CSV file
+     * @throws IOException if the trace cannot be read or the CSV file cannot be replaced
+     */
+    public String toCSV(String folder, String timeStamp) throws IOException {
+        long start = System.nanoTime();
+        Files.deleteIfExists(Paths.get(folder + timeStamp + ".csv"));
+        CSVManager csvManager = new CSVManager(folder, timeStamp);
+        for (int c = 0; c < getChunkCount(); c++) {
+            Chunk chunk = readChunk(c);
+            int row = 0;
+            for (int step = 0; step < chunk.stepTimes().length; step++) {
+                double time = chunk.stepTimes()[step];
+                for (int end = row + chunk.stepRows()[step]; row < end; row++) {
+                    csvManager.appendRow(time, getVehicleID(chunk.vehicles()[row]), getColor(chunk.colors()[row]),
+                                        chunk.speeds()[row], getEdgeID(chunk.edges()[row]), chunk.congestion()[row],
+                                        chunk.edgeSpeeds()[row], chunk.edgeDensities()[row]);
+                }
+            }
+        }
+        csvManager.closeCSV();
+        LOGGER.log(Level.INFO, String.format("Trace converted to CSV: %d rows, %d chunks in %.1f ms (%s).",
+                                            rowCount, getChunkCount(), (System.nanoTime() - start) / 1e6, csvManager.getFilePath()));
+        return csvManager.getFilePath();
+    }
+
+    /** Close the trace file */
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Offline conversion of a trace to CSV, the CSV file is written next to the trace unless a folder is given
+     * @param args path to the trace file, optional output folder
+     * @throws IOException if the conversion fails
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("Usage: TraceReader <file.trace> [folder]");
+            System.exit(2);
+        }
+        File trace = new File(args[0]);
+        String name = trace.getName().endsWith(TraceWriter.EXTENSION)
+                        ? trace.getName().substring(0, trace.getName().length() - TraceWriter.EXTENSION.length()) : trace.getName();
+        String folder = args.length > 1 ? args[1] : trace.getAbsoluteFile().getParent();
+        if (!folder.endsWith(File.separator)) {
+            folder += File.separator;
+        }
+        try (TraceReader reader = TraceReader.open(args[0])) {
+            System.out.println(reader.toCSV(folder, name));
+        }
+    }
+
+
+    // ---------------------------------------------------------
+    // Private helper methods
+    // ---------------------------------------------------------
+    /**
+     * Private helper method: walk the chunks from the end of the header, keep their offsets and read their dictionaries
+     */
+    private void scan(long offset, long size) throws IOException {
+        while (offset + 8 <= size) {
+            ByteBuffer prefix = channel.map(FileChannel.MapMode.READ_ONLY, offset, 8);
+            int magic = prefix.getInt();
+            long length = prefix.getInt() & 0xFFFFFFFFL;
+            if (magic != TraceWriter.CHUNK_MAGIC || offset + 8 + length > size) {
+                break;
+            }
+            ByteBuffer chunk = mapChunk(offset);
+            rowCount += chunk.getInt();
+            chunk.getInt();
+            int sections = chunk.getShort();
+            for (int s = 0; s < sections; s++) {
+                byte id = chunk.get();
+                int sectionLength = chunk.getInt();
+                int end = chunk.position() + sectionLength;
+                if (id == TraceWriter.SECTION_DICTIONARY) {
+                    readDictionary(chunk);
+                }
+                chunk.position(end);
+            }
+            chunkOffsets.add(offset);
+            offset += 8 + length;
+        }
+    }
+
+    /**
+     * Private helper method: map a chunk, positioned after its magic number and length
+     */
+    private ByteBuffer mapChunk(long offset) throws IOException {
+        ByteBuffer prefix = channel.map(FileChannel.MapMode.READ_ONLY, offset + 4, 4);
+        long length = prefix.getInt() & 0xFFFFFFFFL;
+        MappedByteBuffer chunk = channel.map(FileChannel.MapMode.READ_ONLY, offset + 8, length);
+        return chunk;
+    }
+
+    /**
+     * Private helper method: append the dictionary entries of a chunk
+     */
+    private void readDictionary(ByteBuffer chunk) {
+        int vehicles = (int) getVarint(chunk);
+        for (int i = 0; i < vehicles; i++) {
+            vehicleIDs.add(getString(chunk));
+        }
+        int edges = (int) getVarint(chunk);
+        for (int i = 0; i < edges; i++) {
+            edgeIDs.add(getString(chunk));
+        }
+        int newColors = (int) getVarint(chunk);
+        for (int i = 0; i < newColors; i++) {
+            if (colorCount == colors.length) {
+                colors = Arrays.copyOf(colors, colorCount * 2);
+            }
+            colors[colorCount++] = chunk.getInt();
+        }
+    }
+
+    /**
+     * Package-private helper method: read an unsigned varint
+     */
+    static long getVarint(ByteBuffer buffer) {
+        long value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = buffer.get();
+            value |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while (b < 0);
+        return value;
+    }
+
+    /**
+     * Package-private helper method: read a zigzag encoded varint
+     */
+    static long getSigned(ByteBuffer buffer) {
+        return unzigzag(getVarint(buffer));
+    }
+
+    private static void getStats(ByteBuffer chunk, double[] values) {
+        for (int i = 0; i < values.length; i++) {
+            long code = getVarint(chunk);
+            values[i] = code == 0 ? -1 : unzigzag(code - 1) / 100.0;
+        }
+    }
+
+    private static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static String getString(ByteBuffer buffer) {
+        byte[] bytes = new byte[(int) getVarint(buffer)];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,240 @@
+package real_time_traffic_simulation_with_java.tools;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import real_time_traffic_simulation_with_java.alias.Color;
+
+
+/**
+ * Report data of a trace, built from the summary footers of its chunks without decoding any row. <br>
+ * Reading costs one mapped steps section and one mapped footer per chunk, the memory is one int per step and series
+ *      plus one bit per vehicle and color: the PDF summary no longer loads the whole log into a table. <br>
+ * Colors are grouped by name ({@link Color#colorToString(int)}) in order of first appearance, like the CSV columns. <br>
+ * Same results as the former Tablesaw queries on the CSV log, see {@link ReportSummary}.
+ */
+public final class TraceSummary implements ReportSummary {
+    private static final Logger LOGGER = Logger.getLogger(TraceSummary.class.getName());
+
+    private final List<String> colorNames = new ArrayList<>();
+    /** Color name index -> bitmap words of the vehicle codes */
+    private final List<long[]> vehiclesByColor = new ArrayList<>();
+    private final BitSet congestedEdges = new BitSet();
+    private final List<String> congestedEdgeIDs = new ArrayList<>();
+
+    // Per step values
+    private int stepCount = 0;
+    private int[] stepTimes = new int[1024];
+    private int[] vehicleCount = new int[1024];
+    private int[] congestedEdgeCount = new int[1024];
+    /** Color name index -> vehicle count per step */
+    private final List<int[]> vehicleCountByColor = new ArrayList<>();
+
+    private TraceSummary() {
+    }
+
+
+    /**
+     * Read the summary footers of all complete chunks of a trace
+     * @param reader opened trace
+     * @return TraceSummary
+     * @throws IOException if a chunk cannot be read
+     */
+    public static TraceSummary read(TraceReader reader) throws IOException {
+        long start = System.nanoTime();
+        TraceSummary summary = new TraceSummary();
+        for (int c = 0; c < reader.getChunkCount(); c++) {
+            summary.readChunk(reader, c);
+        }
+        for (int e = summary.congestedEdges.nextSetBit(0); e >= 0; e = summary.congestedEdges.nextSetBit(e + 1)) {
+            summary.congestedEdgeIDs.add(reader.getEdgeID(e));
+        }
+        Collections.sort(summary.congestedEdgeIDs);
+        LOGGER.log(Level.INFO, String.format("Trace summary: %d chunks, %d steps, %d rows read in %.1f ms.",
+                                            reader.getChunkCount(), summary.stepCount, reader.getRowCount(),
+                                            (System.nanoTime() - start) / 1e6));
+        return summary;
+    }
+
+
+    // ---------------------------------------------------------
+    // Getters
+    // ---------------------------------------------------------
+    /** Getter for color names, in order of first appearance */
+    @Override
+    public List<String> getColorNames() {
+        return Collections.unmodifiableList(colorNames);
+    }
+
+    /** Getter for number of distinct (vehicle, color) pairs */
+    @Override
+    public int getUniqueVehicleCount() {
+        int count = 0;
+        for (int c = 0; c < colorNames.size(); c++) {
+            count += getUniqueVehicleCount(colorNames.get(c));
+        }
+        return count;
+    }
+
+    /** Getter for number of distinct vehicles with this color, 0 if the color never appears */
+    @Override
+    public int getUniqueVehicleCount(String colorName) {
+        int c = colorNames.indexOf(colorName);
+        if (c < 0) {
+            return 0;
+        }
+        int count = 0;
+        for (long word : vehiclesByColor.get(c)) {
+            count += Long.bitCount(word);
+        }
+        return count;
+    }
+
+    /** Getter for IDs of the edges congested at least once, sorted */
+    @Override
+    public List<String> getCongestedEdgeIDs() {
+        return Collections.unmodifiableList(congestedEdgeIDs);
+    }
+
+    /** Getter for number of steps */
+    @Override
+    public int getStepCount() {
+        return stepCount;
+    }
+
+    /**
+     * Vehicle count per step of one color, or of all colors
+     * @param colorName color name, null for all colors
+     * @return {steps, counts}, steps without vehicles are left out
+     */
+    @Override
+    public List<List<Integer>> getVehicleCountSeries(String colorName) {
+        if (colorName == null) {
+            return series(vehicleCount);
+        }
+        int c = colorNames.indexOf(colorName);
+        return series(c < 0 ? new int[stepCount] : vehicleCountByColor.get(c));
+    }
+
+    /**
+     * Congested edge count per step
+     * @return {steps, counts}, steps without congested edges are left out
+     */
+    @Override
+    public List<List<Integer>> getCongestedEdgeCountSeries() {
+        return series(congestedEdgeCount);
+    }
+
+
+    // ---------------------------------------------------------
+    // Private helper methods
+    // ---------------------------------------------------------
+    /**
+     * Private helper method: add the steps and footer of one chunk
+     */
+    private void readChunk(TraceReader reader, int index) throws IOException {
+        int steps = reader.readStepCount(index);
+        ByteBuffer stepSection = reader.readSection(index, TraceWriter.SECTION_STEPS);
+        ByteBuffer footer = reader.readSection(index, TraceWriter.SECTION_SUMMARY);
+        if (stepSection == null || footer == null) {
+            return;
+        }
+        ensureSteps(stepCount + steps);
+
+        long tenths = 0;
+        for (int i = 0; i < steps; i++) {
+            tenths = i == 0 ? TraceReader.getSigned(stepSection) : tenths + TraceReader.getSigned(stepSection);
+            TraceReader.getVarint(stepSection);
+            stepTimes[stepCount + i] = (int) (tenths / 10);
+        }
+        // Vehicle count by color code per step
+        for (int i = 0; i < steps; i++) {
+            int entries = (int) TraceReader.getVarint(footer);
+            for (int e = 0; e < entries; e++) {
+                int name = colorName(reader.getColor((int) TraceReader.getVarint(footer)));
+                int count = (int) TraceReader.getVarint(footer);
+                vehicleCountByColor.get(name)[stepCount + i] += count;
+                vehicleCount[stepCount + i] += count;
+            }
+        }
+        // Congested edges per step
+        for (int i = 0; i < steps; i++) {
+            int entries = (int) TraceReader.getVarint(footer);
+            int edge = 0;
+            for (int e = 0; e < entries; e++) {
+                edge += (int) TraceReader.getVarint(footer);
+                congestedEdges.set(edge);
+            }
+            congestedEdgeCount[stepCount + i] = entries;
+        }
+        // Vehicle bitmaps by color code
+        int bitmaps = (int) TraceReader.getVarint(footer);
+        for (int b = 0; b < bitmaps; b++) {
+            int name = colorName(reader.getColor((int) TraceReader.getVarint(footer)));
+            int first = (int) TraceReader.getVarint(footer);
+            int words = (int) TraceReader.getVarint(footer);
+            long[] target = vehiclesByColor.get(name);
+            if (target.length < first + words) {
+                target = Arrays.copyOf(target, Math.max(first + words, target.length * 2));
+                vehiclesByColor.set(name, target);
+            }
+            for (int w = 0; w < words; w++) {
+                target[first + w] |= footer.getLong();
+            }
+        }
+        stepCount += steps;
+    }
+
+    /**
+     * Private helper method: index of the name of a color, added on first appearance
+     */
+    private int colorName(int rgba) {
+        String name = Color.colorToString(rgba);
+        int index = colorNames.indexOf(name);
+        if (index < 0) {
+            index = colorNames.size();
+            colorNames.add(name);
+            vehiclesByColor.add(new long[0]);
+            vehicleCountByColor.add(new int[stepTimes.length]);
+        }
+        return index;
+    }
+
+    /**
+     * Private helper method: grow the per step arrays
+     */
+    private void ensureSteps(int steps) {
+        if (steps <= stepTimes.length) {
+            return;
+        }
+        int capacity = Math.max(steps, stepTimes.length * 2);
+        stepTimes = Arrays.copyOf(stepTimes, capacity);
+        vehicleCount = Arrays.copyOf(vehicleCount, capacity);
+        congestedEdgeCount = Arrays.copyOf(congestedEdgeCount, capacity);
+        for (int c = 0; c < vehicleCountByColor.size(); c++) {
+            vehicleCountByColor.set(c, Arrays.copyOf(vehicleCountByColor.get(c), capacity));
+        }
+    }
+
+    /**
+     * Private helper method: {steps, values} of the steps with a non-zero value
+     */
+    private List<List<Integer>> series(int[] values) {
+        List<Integer> steps = new ArrayList<>();
+        List<Integer> counts = new ArrayList<>();
+        for (int i = 0; i < stepCount; i++) {
+            if (values[i] != 0) {
+                steps.add(stepTimes[i]);
+                counts.add(values[i]);
+            }
+        }
+        return List.of(steps, counts);
+    }
+}
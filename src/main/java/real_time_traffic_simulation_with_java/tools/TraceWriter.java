@@ -0,0 +1,499 @@
+package real_time_traffic_simulation_with_java.tools;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import real_time_traffic_simulation_with_java.alias.Metrics;
+
+
+/**
+ * Writer of the binary columnar trace of the simulation, the compact replacement of the CSV log. <br>
+ * The file holds the same rows as the CSV log ({@link Metrics#HEADERS}), grouped in chunks of whole steps
+ *      and stored column by column:
+ * <pre>
+ * header  "SUMOTRC1", int version, short column count, per column: short name length, UTF-8 name
+ * chunk   int CHUNK_MAGIC, int chunk length (bytes after this field), int row count, int step count,
+ *         short section count, per section: byte section ID, int section length, section bytes
+ * </pre>
+ * Sections of a chunk:
+ * <ul>
+ *  <li>DICTIONARY: vehicle IDs, edge IDs and colors first used in this chunk (codes continue from the previous chunk)</li>
+ *  <li>STEPS: per step the time in tenths of a second (delta to the previous step, the first one absolute)
+ *          and the number of rows, steps are not repeated per row</li>
+ *  <li>one section per column: vehicle code, color code, speed, edge code, congestion status, edge speed, edge density</li>
+ *  <li>SUMMARY (footer): per step the vehicle count of each color code and the sorted codes of the congested edges,
+ *          then per color code the bitmap of the vehicle codes seen in the chunk (first word index, word count, words).
+ *          Reports are built from the footers (see {@link TraceSummary}) without decoding the rows.</li>
+ * </ul>
+ * Numbers are varints: codes as they are, times and values in hundredths (zigzag encoded),
+ *      edge statistics shifted by one so that 0 means "no statistics". Values are rounded like the CSV columns,
+ *      so a trace converts to the same CSV text. <br>
+ * A chunk is written when it holds {@link Metrics#TRACE_CHUNK_ROWS} rows or when {@link Metrics#LOG_FLUSH_INTERVAL_MS}
+ *      has elapsed since it was started. Readers ignore an incomplete last chunk, so the file can be read while it is written. <br>
+ * Thread-safe: the export sink thread appends, other threads may flush (e.g. before a report is built from the file).
+ * @see TraceReader
+ */
+public final class TraceWriter implements ExportSink {
+    /** File name extension of traces */
+    public static final String EXTENSION = ".trace";
+
+    static final byte[] MAGIC = "SUMOTRC1".getBytes(StandardCharsets.US_ASCII);
+    static final int VERSION = 2;
+    static final int CHUNK_MAGIC = 0x43484E4B; // "CHNK"
+
+    // Section IDs
+    static final byte SECTION_DICTIONARY = 0;
+    static final byte SECTION_STEPS = 1;
+    static final byte SECTION_VEHICLE = 2;
+    static final byte SECTION_COLOR = 3;
+    static final byte SECTION_SPEED = 4;
+    static final byte SECTION_EDGE = 5;
+    static final byte SECTION_CONGESTION = 6;
+    static final byte SECTION_EDGE_SPEED = 7;
+    static final byte SECTION_EDGE_DENSITY = 8;
+    static final byte SECTION_SUMMARY = 9;
+
+    private final String filePath;
+    private final FileChannel channel;
+    private final int chunkRows;
+    private final long flushIntervalNs;
+
+    // Dictionaries, codes are dense and never change
+    private final Map<String, Integer> vehicleCodes = new HashMap<>();
+    private final Map<String, Integer> edgeCodes = new HashMap<>();
+    /** Snapshot edge handle -> edge code + 1 (0 when not coded yet), handles are stable within a run */
+    private int[] edgeCodeByHandle = new int[256];
+    private int[] colors = new int[8];
+    private int colorCount = 0;
+
+    // Current chunk
+    private final List<String> newVehicleIDs = new ArrayList<>();
+    private final List<String> newEdgeIDs = new ArrayList<>();
+    private int newColorStart = 0;
+    private final Column steps = new Column();
+    private final Column vehicle = new Column();
+    private final Column color = new Column();
+    private final Column speed = new Column();
+    private final Column edge = new Column();
+    private final Column congestion = new Column();
+    private final Column edgeSpeed = new Column();
+    private final Column edgeDensity = new Column();
+    // Current chunk summary: per step color counts and congested edges, vehicle bitmap per color code
+    private final Column stepColors = new Column();
+    private final Column stepCongested = new Column();
+    private BitSet[] vehiclesByColor = new BitSet[8];
+    private int[] colorCounts = new int[8];
+    /** Edge code -> last step (stepSerial) in which the edge was counted as congested */
+    private long[] congestedStamp = new long[256];
+    private int[] congestedEdges = new int[64];
+    private long stepSerial = 0;
+    private int rowCount = 0;
+    private int stepCount = 0;
+    private long lastStepTenths = 0;
+    private long chunkStart = 0;
+
+    // Statistics
+    private long totalRows = 0;
+    private long chunkCount = 0;
+    private long bytesWritten = 0;
+
+    /**
+     * Create a trace file, an existing file is replaced
+     * @param filePath path to the trace file
+     * @throws IOException if the file cannot be created
+     */
+    public TraceWriter(String filePath) throws IOException {
+        this(filePath, Metrics.TRACE_CHUNK_ROWS, Metrics.LOG_FLUSH_INTERVAL_MS);
+    }
+
+    /**
+     * Create a trace file, an existing file is replaced
+     * @param filePath path to the trace file
+     * @param chunkRows rows after which a chunk is written
+     * @param flushIntervalMs time (ms) after which a started chunk is written
+     * @throws IOException if the file cannot be created
+     */
+    public TraceWriter(String filePath, int chunkRows, long flushIntervalMs) throws IOException {
+        this.filePath = filePath;
+        this.channel = FileChannel.open(Paths.get(filePath), StandardOpenOption.CREATE,
+                                        StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        this.chunkRows = chunkRows;
+        this.flushIntervalNs = flushIntervalMs * 1_000_000L;
+        this.writeHeader();
+    }
+
+
+    /** Name of the sink */
+    @Override
+    public String getName() {
+        return "trace";
+    }
+
+    /**
+     * Append the rows of one step
+     * @param data rows of one simulation step
+     * @throws IOException if a chunk cannot be written
+     */
+    @Override
+    public synchronized void append(ReportData data) throws IOException {
+        if (stepCount == 0) {
+            chunkStart = System.nanoTime();
+        }
+        int rows = data.getRowCount();
+        long tenths = Math.round(data.getTime() * 10);
+        steps.putSigned(stepCount == 0 ? tenths : tenths - lastStepTenths);
+        steps.putVarint(rows);
+        lastStepTenths = tenths;
+        stepCount++;
+
+        stepSerial++;
+        int congestedCount = 0;
+        for (int i = 0; i < rows; i++) {
+            int handle = data.getVehicleEdge(i);
+            int vehicleCode = vehicleCode(data.getVehicleID(i));
+            int colorCode = colorCode(data.getVehicleColor(i));
+            int edgeCode = handle < 0 ? -1 : edgeCode(handle, data.getEdgeID(handle));
+            byte status = data.getEdgeCongestion(handle);
+            vehicle.putVarint(vehicleCode);
+            color.putVarint(colorCode);
+            speed.putSigned(Math.round(data.getVehicleSpeed(i) * 100));
+            edge.putVarint(edgeCode + 1);
+            congestion.putByte(status);
+            putStat(edgeSpeed, data.getEdgeAverageSpeed(handle));
+            putStat(edgeDensity, data.getEdgeDensity(handle));
+
+            // Summary
+            colorCounts[colorCode]++;
+            vehiclesByColor[colorCode].set(vehicleCode);
+            if (status == 1 && edgeCode >= 0 && congestedStamp[edgeCode] != stepSerial) {
+                congestedStamp[edgeCode] = stepSerial;
+                if (congestedCount == congestedEdges.length) {
+                    congestedEdges = Arrays.copyOf(congestedEdges, congestedCount * 2);
+                }
+                congestedEdges[congestedCount++] = edgeCode;
+            }
+        }
+        putStepSummary(congestedCount);
+        rowCount += rows;
+        totalRows += rows;
+
+        if (rowCount >= chunkRows || System.nanoTime() - chunkStart >= flushIntervalNs) {
+            flush();
+        }
+    }
+
+    /**
+     * Write the current chunk, if it holds any step
+     * @throws IOException if the write fails
+     */
+    @Override
+    public synchronized void flush() throws IOException {
+        if (stepCount == 0) {
+            return;
+        }
+        // Dictionary section
+        Column dictionary = new Column();
+        dictionary.putVarint(newVehicleIDs.size());
+        for (String id : newVehicleIDs) {
+            dictionary.putString(id);
+        }
+        dictionary.putVarint(newEdgeIDs.size());
+        for (String id : newEdgeIDs) {
+            dictionary.putString(id);
+        }
+        dictionary.putVarint(colorCount - newColorStart);
+        for (int c = newColorStart; c < colorCount; c++) {
+            dictionary.putInt(colors[c]);
+        }
+        Column summary = summary();
+
+        Column[] sections = {dictionary, steps, vehicle, color, speed, edge, congestion, edgeSpeed, edgeDensity, summary};
+        byte[] sectionIDs = {SECTION_DICTIONARY, SECTION_STEPS, SECTION_VEHICLE, SECTION_COLOR, SECTION_SPEED,
+                                SECTION_EDGE, SECTION_CONGESTION, SECTION_EDGE_SPEED, SECTION_EDGE_DENSITY, SECTION_SUMMARY};
+        int length = 4 + 4 + 2;
+        for (Column section : sections) {
+            length += 1 + 4 + section.size;
+        }
+        ByteBuffer chunk = ByteBuffer.allocate(8 + length);
+        chunk.putInt(CHUNK_MAGIC).putInt(length).putInt(rowCount).putInt(stepCount).putShort((short) sections.length);
+        for (int s = 0; s < sections.length; s++) {
+            chunk.put(sectionIDs[s]).putInt(sections[s].size).put(sections[s].bytes, 0, sections[s].size);
+        }
+        chunk.flip();
+        write(chunk);
+
+        chunkCount++;
+        newVehicleIDs.clear();
+        newEdgeIDs.clear();
+        newColorStart = colorCount;
+        for (Column column : sections) {
+            column.size = 0;
+        }
+        stepColors.size = 0;
+        stepCongested.size = 0;
+        for (int c = 0; c < colorCount; c++) {
+            vehiclesByColor[c].clear();
+        }
+        rowCount = 0;
+        stepCount = 0;
+    }
+
+    /** Write the current chunk and close the file */
+    @Override
+    public synchronized void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            channel.close();
+        }
+    }
+
+    /** Getter for path to the trace file */
+    public String getFilePath() {
+        return filePath;
+    }
+
+    /** Getter for number of rows appended so far */
+    public synchronized long getRowCount() {
+        return totalRows;
+    }
+
+    /** Getter for number of chunks written so far */
+    public synchronized long getChunkCount() {
+        return chunkCount;
+    }
+
+    /** Getter for number of bytes written so far */
+    public synchronized long getBytesWritten() {
+        return bytesWritten;
+    }
+
+
+    // ---------------------------------------------------------
+    // Private helper methods
+    // ---------------------------------------------------------
+    /**
+     * Private helper method: schema header, the column names of the CSV log
+     */
+    private void writeHeader() throws IOException {
+        Column header = new Column();
+        header.putBytes(MAGIC, MAGIC.length);
+        header.putInt(VERSION);
+        header.putShort(Metrics.HEADERS.length);
+        for (String name : Metrics.HEADERS) {
+            byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+            header.putShort(bytes.length);
+            header.putBytes(bytes, bytes.length);
+        }
+        write(ByteBuffer.wrap(header.bytes, 0, header.size));
+    }
+
+    /**
+     * Private helper method: summary of the step just appended, the color counts are reset for the next step
+     */
+    private void putStepSummary(int congestedCount) {
+        int colorsInStep = 0;
+        for (int c = 0; c < colorCount; c++) {
+            if (colorCounts[c] > 0) {
+                colorsInStep++;
+            }
+        }
+        stepColors.putVarint(colorsInStep);
+        for (int c = 0; c < colorCount; c++) {
+            if (colorCounts[c] > 0) {
+                stepColors.putVarint(c);
+                stepColors.putVarint(colorCounts[c]);
+                colorCounts[c] = 0;
+            }
+        }
+        Arrays.sort(congestedEdges, 0, congestedCount);
+        stepCongested.putVarint(congestedCount);
+        int previous = 0;
+        for (int e = 0; e < congestedCount; e++) {
+            stepCongested.putVarint(congestedEdges[e] - previous);
+            previous = congestedEdges[e];
+        }
+    }
+
+    /**
+     * Private helper method: footer of the current chunk, step summaries then vehicle bitmaps
+     */
+    private Column summary() {
+        Column summary = new Column();
+        summary.putBytes(stepColors.bytes, stepColors.size);
+        summary.putBytes(stepCongested.bytes, stepCongested.size);
+        int colorsInChunk = 0;
+        for (int c = 0; c < colorCount; c++) {
+            if (!vehiclesByColor[c].isEmpty()) {
+                colorsInChunk++;
+            }
+        }
+        summary.putVarint(colorsInChunk);
+        for (int c = 0; c < colorCount; c++) {
+            if (vehiclesByColor[c].isEmpty()) {
+                continue;
+            }
+            long[] words = vehiclesByColor[c].toLongArray();
+            int first = vehiclesByColor[c].nextSetBit(0) >>> 6;
+            summary.putVarint(c);
+            summary.putVarint(first);
+            summary.putVarint(words.length - first);
+            for (int w = first; w < words.length; w++) {
+                summary.putInt((int) (words[w] >>> 32));
+                summary.putInt((int) words[w]);
+            }
+        }
+        return summary;
+    }
+
+    /**
+     * Private helper method: code of a vehicle ID, added to the dictionary on first use
+     */
+    private int vehicleCode(String vehicleID) {
+        Integer code = vehicleCodes.get(vehicleID);
+        if (code == null) {
+            code = vehicleCodes.size();
+            vehicleCodes.put(vehicleID, code);
+            newVehicleIDs.add(vehicleID);
+        }
+        return code;
+    }
+
+    /**
+     * Private helper method: code of an edge, looked up by handle first
+     */
+    private int edgeCode(int handle, String edgeID) {
+        if (handle >= edgeCodeByHandle.length) {
+            edgeCodeByHandle = Arrays.copyOf(edgeCodeByHandle, Math.max(handle + 1, edgeCodeByHandle.length * 2));
+        }
+        int code = edgeCodeByHandle[handle] - 1;
+        if (code < 0) {
+            Integer known = edgeCodes.get(edgeID);
+            if (known == null) {
+                known = edgeCodes.size();
+                edgeCodes.put(edgeID, known);
+                newEdgeIDs.add(edgeID);
+            }
+            code = known;
+            edgeCodeByHandle[handle] = code + 1;
+            if (code >= congestedStamp.length) {
+                congestedStamp = Arrays.copyOf(congestedStamp, Math.max(code + 1, congestedStamp.length * 2));
+            }
+        }
+        return code;
+    }
+
+    /**
+     * Private helper method: code of a color, a handful of colors are used so a linear search is enough
+     */
+    private int colorCode(int rgba) {
+        for (int c = 0; c < colorCount; c++) {
+            if (colors[c] == rgba) {
+                return c;
+            }
+        }
+        if (colorCount == colors.length) {
+            colors = Arrays.copyOf(colors, colorCount * 2);
+            colorCounts = Arrays.copyOf(colorCounts, colorCount * 2);
+            vehiclesByColor = Arrays.copyOf(vehiclesByColor, colorCount * 2);
+        }
+        colors[colorCount] = rgba;
+        vehiclesByColor[colorCount] = new BitSet();
+        return colorCount++;
+    }
+
+    /**
+     * Private helper method: edge statistic in hundredths, 0 when the edge has no statistics (-1)
+     */
+    private static void putStat(Column column, double value) {
+        if (value == -1) {
+            column.putVarint(0);
+        } else {
+            column.putVarint(zigzag(Math.round(value * 100)) + 1);
+        }
+    }
+
+    private static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    /**
+     * Private helper method: write the whole byte buffer to the channel
+     */
+    private void write(ByteBuffer bytes) throws IOException {
+        while (bytes.hasRemaining()) {
+            bytesWritten += channel.write(bytes);
+        }
+    }
+
+
+    /**
+     * Growable byte array of one section of the current chunk, reused from chunk to chunk
+     */
+    private static final class Column {
+        private byte[] bytes = new byte[1024];
+        private int size = 0;
+
+        private void ensure(int n) {
+            if (size + n > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(size + n, bytes.length * 2));
+            }
+        }
+
+        void putByte(int b) {
+            ensure(1);
+            bytes[size++] = (byte) b;
+        }
+
+        void putBytes(byte[] b, int n) {
+            ensure(n);
+            System.arraycopy(b, 0, bytes, size, n);
+            size += n;
+        }
+
+        void putShort(int value) {
+            ensure(2);
+            bytes[size++] = (byte) (value >>> 8);
+            bytes[size++] = (byte) value;
+        }
+
+        void putInt(int value) {
+            ensure(4);
+            bytes[size++] = (byte) (value >>> 24);
+            bytes[size++] = (byte) (value >>> 16);
+            bytes[size++] = (byte) (value >>> 8);
+            bytes[size++] = (byte) value;
+        }
+
+        /** Unsigned LEB128 varint */
+        void putVarint(long value) {
+            ensure(10);
+            while ((value & ~0x7FL) != 0) {
+                bytes[size++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            bytes[size++] = (byte) value;
+        }
+
+        /** Zigzag encoded varint, small negative numbers stay short */
+        void putSigned(long value) {
+            putVarint(zigzag(value));
+        }
+
+        void putString(String value) {
+            byte[] b = value.getBytes(StandardCharsets.UTF_8);
+            putVarint(b.length);
+            putBytes(b, b.length);
+        }
+    }
+}
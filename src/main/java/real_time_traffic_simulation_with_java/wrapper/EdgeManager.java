@@ -2,18 +2,31 @@ package real_time_traffic_simulation_with_java.wrapper;
 
 import it.polito.appeal.traci.SumoTraciConnection;
 import de.tudresden.sumo.cmd.Edge;
-import de.tudresden.sumo.cmd.Lane;
 import de.tudresden.sumo.objects.SumoGeometry;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.logging.Logger;
 import java.util.logging.Level;
+import real_time_traffic_simulation_with_java.alias.Metrics;
+import real_time_traffic_simulation_with_java.cores.CongestionDetector;
+import real_time_traffic_simulation_with_java.cores.CongestionEngine;
 import real_time_traffic_simulation_with_java.cores.EdgeData;
+import real_time_traffic_simulation_with_java.cores.EdgeMetrics;
+import real_time_traffic_simulation_with_java.cores.NetworkTopology;
+import real_time_traffic_simulation_with_java.cores.StepSnapshot;
 
 
 /**
- * Wrapper class for TraaS to manage edges in the simulation
+ * Wrapper class for TraaS to manage edges in the simulation. <br>
+ * Static values (IDs, lane count, shapes, length, speed limit) are read from the {@link NetworkTopology} cache,
+ *      only per-step values are queried from SUMO. <br>
+ * Congestion state is held by a {@link CongestionEngine} in arrays addressed by edge index (the topology index,
+ *      which is also the snapshot edge handle), so lookups by edge are O(1) instead of a scan of the EdgeData list.
+ *      The detectors are selected with {@link Metrics#CONGESTION_DETECTORS}. <br>
+ * EdgeData objects follow the congestion events, only edges whose status changed are recolored.
  */
 public class EdgeManager {
     private static final Logger LOGGER = Logger.getLogger(EdgeManager.class.getName());
@@ -22,6 +35,18 @@ public class EdgeManager {
     private final SumoTraciConnection conn;
     /** Stores List of visualization objects for edges */
     private List<EdgeData> edgeDataList = new ArrayList<>();
+    /** Visualization objects by edge index, published once the list is complete, null until then (headless runs never build it) */
+    private volatile EdgeData[] edgeDataByIndex = null;
+    /** Static network, read once at startup */
+    private NetworkTopology topology;
+
+    /** Congestion state by edge index, updated by the simulation thread */
+    private CongestionEngine congestion;
+    /** Length (m) and speed limit (km/h) by edge index, to compute the metrics of a bare snapshot */
+    private double[] edgeLength = new double[0];
+    private double[] edgeMaxSpeed = new double[0];
+    /** Edge indices whose congestion status changed since the last recoloring */
+    private final Queue<Integer> recolor = new ConcurrentLinkedQueue<>();
 
     /**
      * Wrapper class for TraaS to manage edges in the simulation
@@ -32,21 +57,48 @@ public class EdgeManager {
     }
 
 
+    /**
+     * Set the static network cache, must be called once after Sumo has started
+     * @param topology NetworkTopology loaded at startup
+     */
+    public void setTopology(NetworkTopology topology) {
+        this.topology = topology;
+        int edgeCount = topology.getEdgeCount();
+        this.edgeLength = new double[edgeCount];
+        this.edgeMaxSpeed = new double[edgeCount];
+        for (int i = 0; i < edgeCount; i++) {
+            this.edgeLength[i] = topology.getLength(i);
+            this.edgeMaxSpeed[i] = topology.getMaxSpeed(i);
+        }
+        this.congestion = new CongestionEngine(topology, CongestionDetector.parse(Metrics.CONGESTION_DETECTORS, topology),
+                                                Metrics.HIGH_HALTING_DURATION_THRESHOLD);
+        // Visualization objects follow the events, once they exist
+        this.congestion.subscribe(event -> {
+            EdgeData[] edges = this.edgeDataByIndex;
+            if (edges != null) {
+                edges[event.edge()].setCongested(event.type() == CongestionEngine.EventType.START);
+                this.recolor.add(event.edge());
+            }
+        });
+        LOGGER.log(Level.INFO, "Congestion detectors: " + String.join(", ", this.congestion.getDetectorNames()));
+    }
+
+
+    /**
+     * Getter for congestion engine, to subscribe to congestion start and clear events
+     * @return CongestionEngine of the edges
+     */
+    public CongestionEngine getCongestionEngine() {
+        return this.congestion;
+    }
+
+
     /**
      * Get list of edge IDs, excluding junction edges
-     * @return a List type String of edge IDs, excluding junction edges
+     * @return a new List type String of edge IDs, excluding junction edges
     */ 
     public List<String> getIDList() throws Exception {
-        List<String> IDs = new ArrayList<>();
-        @SuppressWarnings("unchecked")
-        List<String> allEdgeIDList = (List<String>) conn.do_job_get(Edge.getIDList());
-        for (String ID : allEdgeIDList) {
-            if (ID.startsWith(":J")) {
-                continue;
-            }
-            IDs.add(ID);
-        }
-        return IDs;
+        return topology.getEdgeIDList();
     }
 
     
@@ -56,28 +108,37 @@ public class EdgeManager {
      */
     public List<String> getCongestedEdgeIDList() {
         List<String> congestedEdgeIDs = new ArrayList<>();
-        for (EdgeData edge : this.edgeDataList) {
-            if (edge.isCongested()) {
-                congestedEdgeIDs.add(edge.getId());
-            }
-        }
+        this.congestion.forEachCongested(i -> congestedEdgeIDs.add(topology.getEdgeID(i)));
         return congestedEdgeIDs;
     }
 
 
+    /**
+     * Get number of congested edges
+     * @return an int number of congested edges, excluding junction edges
+     */
+    public int getCongestedCount() {
+        return this.congestion.getCongestedCount();
+    }
+
+
     /**
      * Get congested status of the edge
      * @param edgeID the ID of the edge
-     * @return boolean congested status of the edge
+     * @return boolean congested status of the edge, false if the edge is unknown
      */
     public boolean getCongestedStatus(String edgeID) {
-        for (EdgeData edge : this.edgeDataList) {
-            if (edge.getId().equals(edgeID)) {
-                return edge.isCongested();
-            }
-        }
-        // LOGGER.log(Level.WARNING, "Edge ID: " + edgeID + " not found in EdgeDataList.");
-        return false;
+        return this.getCongestedStatus(topology.getEdgeIndex(edgeID));
+    }
+
+
+    /**
+     * Get congested status of the edge by edge index (= snapshot edge handle)
+     * @param edgeIndex index of the edge in the topology
+     * @return boolean congested status of the edge, false if the index is not a cached edge (e.g. a junction edge)
+     */
+    public boolean getCongestedStatus(int edgeIndex) {
+        return this.congestion.isCongested(edgeIndex);
     }
 
 
@@ -86,22 +147,18 @@ public class EdgeManager {
      * @return an int number of edges, excluding junction edges
     */
     public int getCount() {
-        try{
-            return this.getIDList().size();
-        } catch (Exception e) {
-            LOGGER.log(Level.WARNING, "Failed to get number of edges.", e);
-            return -1;
-        }
+        return topology.getEdgeCount();
     }
 
 
     /**
      * Get number of lanes on the edge
      * @param edgeID the ID of the edge
-     * @return an int number of lanes on the edge
+     * @return an int number of lanes on the edge, -1 if the edge is unknown
     */ 
-    public int getLaneCount(String edgeID) throws Exception {
-        return (int) conn.do_job_get(Edge.getLaneNumber(edgeID));
+    public int getLaneCount(String edgeID) {
+        int i = topology.getEdgeIndex(edgeID);
+        return i == -1 ? -1 : topology.getLaneCount(i);
     }
 
 
@@ -125,12 +182,11 @@ public class EdgeManager {
      * @return a List of SumoGeometry type coordinations of the lanes on the edge
     */
     public List<SumoGeometry> getLanesCoordinate(String edgeID) throws Exception {
-        List<SumoGeometry> laneCoords = new ArrayList<>();
-        for(String laneID : getLaneIDList(edgeID)){
-            SumoGeometry coords = (SumoGeometry) conn.do_job_get(Lane.getShape(laneID));
-            laneCoords.add(coords);
+        int i = topology.getEdgeIndex(edgeID);
+        if (i == -1) {
+            throw new IllegalArgumentException("Unknown edge ID: " + edgeID);
         }
-        return laneCoords;
+        return topology.getLaneShapes(i);
     }
 
 
@@ -140,12 +196,8 @@ public class EdgeManager {
      * @return a double max speed allowed on the edge (km/h)
     */ 
     public double getMaxSpeed(String edgeID) {
-        try{
-            return (double) conn.do_job_get(Lane.getMaxSpeed(edgeID + "_0")) * 3.6;
-        } catch (Exception e) {
-            LOGGER.log(Level.WARNING, "Unable to get edge max speed from SUMO for edge ID: " + edgeID, e);
-            return -1;
-        }
+        int i = topology.getEdgeIndex(edgeID);
+        return i == -1 ? -1 : topology.getMaxSpeed(i);
     }
 
 
@@ -155,12 +207,8 @@ public class EdgeManager {
      * @return a double length of the edge (m)
     */ 
     public double getLength(String edgeID) {
-        try{
-            return (double) conn.do_job_get(Lane.getLength(edgeID + "_0"));
-        } catch (Exception e) {
-            LOGGER.log(Level.WARNING, "Unable to get edge length from SUMO for edge ID: " + edgeID, e);
-            return -1;
-        }
+        int i = topology.getEdgeIndex(edgeID);
+        return i == -1 ? -1 : topology.getLength(i);
     }
 
     
@@ -236,36 +284,65 @@ public class EdgeManager {
 
 
     /**
-     * Create and get a List of EdgeData for all edges
+     * Create and get a List of EdgeData for all edges, in edge index order
      * @return a List of EdgeData for all edges
      * @throws Exception
     */
     public List<EdgeData> getEdgeDataList() throws Exception {
         if(edgeDataList.isEmpty()){
-            List<String> IDs = this.getIDList();
-            for (String id : IDs) {
+            EdgeData[] byIndex = new EdgeData[topology.getEdgeCount()];
+            for (int i = 0; i < topology.getEdgeCount(); i++) {
                 EdgeData edgedata = new EdgeData(
-                        id,
-                        this.getLaneCount(id),
-                        this.getLanesCoordinate(id)
+                        topology.getEdgeID(i),
+                        topology.getLaneCount(i),
+                        topology.getLaneShapes(i)
                 );
+                if (this.congestion.isCongested(i)) {
+                    edgedata.setCongested(true);
+                    this.recolor.add(i);
+                }
                 edgeDataList.add(edgedata);
+                byIndex[i] = edgedata;
             }
+            this.edgeDataByIndex = byIndex;
         }
         return edgeDataList;
     }
 
 
     /**
-     * Update congestion status for all edges based on TTI and set edge colors
-     * @throws Exception
+     * Update congestion status for all edges, called by the simulation thread after each step. <br>
+     * An edge is considered congested if a congestion detector (e.g. halting vehicles/lane)
+     *      flags it for a certain duration, see {@link CongestionEngine}.
+     * @param snapshot state of the current step, read by edge handle instead of querying Sumo per edge
      */
-    public void updateEdgeDataList() throws Exception {
-        for (EdgeData edge : this.edgeDataList) {
-            // Halting rate = halting vehicles / number of lanes
-            edge.updateCongestedStatus(this.getHaltingNumber(edge.getId())/this.getLaneCount(edge.getId()));
-            edge.setColor();
-        }
+    public void updateEdgeDataList(StepSnapshot snapshot) {
+        this.updateEdgeDataList(snapshot, new EdgeMetrics(snapshot, this.edgeLength, this.edgeMaxSpeed));
+    }
+
+
+    /**
+     * Update congestion status for all edges from the metrics already computed for the step,
+     *      called by the simulation thread after each step
+     * @param snapshot state of the current step
+     * @param metrics per-edge metrics of the current step
+     */
+    public void updateEdgeDataList(StepSnapshot snapshot, EdgeMetrics metrics) {
+        this.congestion.update(snapshot, metrics);
     }
 
-}
\ No newline at end of file
+
+    /**
+     * Set edge colors from the current congestion status, must be called on the JavaFX Application Thread
+     */
+    public void updateEdgeColors() {
+        EdgeData[] edges = this.edgeDataByIndex;
+        if (edges == null) {
+            this.recolor.clear();
+            return;
+        }
+        for (Integer i = this.recolor.poll(); i != null; i = this.recolor.poll()) {
+            edges[i].setColor();
+        }
+    }
+}
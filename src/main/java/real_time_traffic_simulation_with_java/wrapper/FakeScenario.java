@@ -0,0 +1,975 @@
+package real_time_traffic_simulation_with_java.wrapper;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+
+/**
+ * Synthesized traffic served by the {@link FakeTraciServer}: a square grid city and vehicles roaming through it. <br>
+ * Network: gridSize x gridSize junctions 100 m apart, a one-way edge of 1 to 3 lanes in each direction between neighbours,
+ *      a traffic light on every junction with 4 neighbours (one link per incoming lane, north-south and east-west phases,
+ *      programs offset at random). It can be written as a SUMO net file, so that the net file loader reads the same network. <br>
+ * Vehicles: up to vehicleTarget vehicles depart over the first steps (at most departuresPerStep per step),
+ *      drive at the speed limit of their edge, stop at red lights and in front of full edges,
+ *      queue behind each other (one vehicle leaves a lane per step) and take a random turn at each junction.
+ *      Each trip lasts a random number of steps, an arrived vehicle is replaced by a new one, so vehicles depart
+ *      and arrive every step. Injected vehicles (route + add) depart on the next step. <br>
+ * The model is not a traffic simulation, only a repeatable load with the shape of SUMO's answers:
+ *      same seed, same settings and same commands give the same steps. <br>
+ * Everything is kept in primitive arrays by index (junction, edge, global lane, traffic light, vehicle slot),
+ *      one step costs one pass over the vehicles. Not thread safe: the server calls it from its connection thread only.
+ */
+public final class FakeScenario {
+    private static final Logger LOGGER = Logger.getLogger(FakeScenario.class.getName());
+
+    /** Distance between neighbour junctions (m) */
+    private static final double SPACING = 100;
+    /** Half size of a junction (m), edges start and end at the junction border */
+    private static final double JUNCTION_HALF_SIZE = 8;
+    private static final double LANE_WIDTH = 3.2;
+    /** Space taken by a vehicle in a queue (m) */
+    private static final double VEHICLE_GAP = 7.5;
+    /** Speed gain per step (m/s) */
+    private static final double ACCELERATION = 2.6;
+    /** Speed limits of the edges (m/s): 30, 50 and 70 km/h */
+    private static final double[] SPEED_LIMITS = {30 / 3.6, 50 / 3.6, 70 / 3.6};
+    /** Trip length (steps) */
+    private static final int MIN_TRIP_STEPS = 300;
+    private static final int MAX_TRIP_STEPS = 900;
+    /** Traffic light program: green and yellow time (s) of each direction */
+    private static final double GREEN_DURATION = 31;
+    private static final double YELLOW_DURATION = 4;
+    /** Vehicle colors (0xRRGGBBAA), the colors of the vehicle filter */
+    private static final int[] COLORS = {0xFF0000FF, 0x00FF00FF, 0x0000FFFF, 0xFFFFFFFF};
+
+    private static final byte FREE = 0;
+    private static final byte PENDING = 1;
+    private static final byte RUNNING = 2;
+
+    private final SplittableRandom random;
+    private final int vehicleTarget;
+    private final int departuresPerStep;
+    private double time = 0;
+
+    // ---- Network ----
+    private final int gridSize;
+    private final String[] junctionIDs;
+    private final Map<String, Integer> junctionIndex = new HashMap<>();
+    /** Traffic light of each junction, -1 if none */
+    private final int[] junctionTls;
+    /** Outgoing edges of each junction: junctionOut[junctionOutStart[j]..junctionOutStart[j+1]-1] */
+    private final int[] junctionOutStart;
+    private final int[] junctionOut;
+
+    private final String[] edgeIDs;
+    private final Map<String, Integer> edgeIndex = new HashMap<>();
+    private final int[] edgeFrom;
+    private final int[] edgeTo;
+    /** Lanes of each edge: global lanes edgeLaneStart[e]..edgeLaneStart[e+1]-1 */
+    private final int[] edgeLaneStart;
+    private final double[] edgeLength;
+    /** Speed limit (m/s) */
+    private final double[] edgeSpeed;
+    /** Unit direction of travel and SUMO angle (degrees, 0 = north, clockwise) */
+    private final double[] edgeDx;
+    private final double[] edgeDy;
+    private final double[] edgeAngle;
+    /** Vehicles an edge can hold */
+    private final int[] edgeCapacity;
+
+    /** Edge of each global lane and start point of its shape */
+    private final int[] laneEdge;
+    private final double[] laneX0;
+    private final double[] laneY0;
+    /** Link index of each lane in the traffic light at its end, -1 if the lane is not controlled */
+    private final int[] laneLink;
+
+    private final String[] tlsIDs;
+    private final Map<String, Integer> tlsIndex = new HashMap<>();
+    /** Controlled links: incoming and outgoing global lane, tlsLinkStart[t]..tlsLinkStart[t+1]-1 */
+    private final int[] tlsLinkStart;
+    private final int[] linkFromLane;
+    private final int[] linkToLane;
+    /** Program of each traffic light (may be replaced by a client), current phase and time of its end (s) */
+    private final String[][] tlsStates;
+    private final double[][] tlsDurations;
+    private final int[] tlsPhase;
+    private final double[] tlsNextSwitch;
+
+    // ---- Vehicles, by slot ----
+    private String[] vehicleIDs = new String[0];
+    private byte[] vehicleState = new byte[0];
+    private int[] vehicleEdge = new int[0];
+    private int[] vehicleLane = new int[0];
+    private double[] vehiclePos = new double[0];
+    private double[] vehicleSpeed = new double[0];
+    /** Share of the speed limit the vehicle drives at */
+    private double[] vehicleFactor = new double[0];
+    private int[] vehicleRGBA = new int[0];
+    private int[] vehicleTripSteps = new int[0];
+    private final Map<String, Integer> vehicleSlot = new HashMap<>();
+    private int[] freeSlots = new int[0];
+    private int freeCount = 0;
+    private int slotCount = 0;
+    private int runningCount = 0;
+    private long departedTotal = 0;
+    /** Vehicles created by the scenario, numbers their IDs */
+    private long generatedTotal = 0;
+
+    /** Vehicles departed and arrived in the last step, slots of the arrived vehicles */
+    private final List<String> departed = new ArrayList<>();
+    private final List<String> arrived = new ArrayList<>();
+    private int[] arrivedSlots = new int[16];
+    private int arrivedSlotCount = 0;
+    /** Injected vehicles waiting for the next step */
+    private final List<Integer> pending = new ArrayList<>();
+    /** Routes added by clients: route ID -> edges */
+    private final Map<String, int[]> routes = new HashMap<>();
+
+    // ---- Per-step state ----
+    private final int[] edgeVehicles;
+    private final int[] edgeHalting;
+    private final double[] edgeSpeedSum;
+    /** Vehicles queued at the end of each lane, and vehicles which left the lane, in this step */
+    private final int[] laneQueue;
+    private final int[] laneDischarged;
+
+    /**
+     * Build the network and prepare the vehicles, no vehicle has departed yet
+     * @param gridSize junctions per side of the grid, at least 2
+     * @param vehicleTarget vehicles running once all have departed
+     * @param departuresPerStep most vehicles departing in one step, at least 1
+     * @param seed seed of the random choices
+     */
+    public FakeScenario(int gridSize, int vehicleTarget, int departuresPerStep, long seed) {
+        this.gridSize = Math.max(2, gridSize);
+        this.vehicleTarget = Math.max(0, vehicleTarget);
+        this.departuresPerStep = Math.max(1, departuresPerStep);
+        this.random = new SplittableRandom(seed);
+        int size = this.gridSize;
+
+        // Junctions, row by row, a traffic light where 4 edges come in
+        int junctions = size * size;
+        this.junctionIDs = new String[junctions];
+        this.junctionTls = new int[junctions];
+        List<String> tls = new ArrayList<>();
+        for (int j = 0; j < junctions; j++) {
+            int row = j / size;
+            int column = j % size;
+            junctionIDs[j] = "n" + row + "_" + column;
+            junctionIndex.put(junctionIDs[j], j);
+            boolean inner = row > 0 && column > 0 && row < size - 1 && column < size - 1;
+            junctionTls[j] = inner ? tls.size() : -1;
+            if (inner) {
+                tls.add(junctionIDs[j]);
+            }
+        }
+
+        // Edges: both directions between horizontal and vertical neighbours
+        int edges = 4 * size * (size - 1);
+        this.edgeIDs = new String[edges];
+        this.edgeFrom = new int[edges];
+        this.edgeTo = new int[edges];
+        this.edgeLaneStart = new int[edges + 1];
+        this.edgeLength = new double[edges];
+        this.edgeSpeed = new double[edges];
+        this.edgeDx = new double[edges];
+        this.edgeDy = new double[edges];
+        this.edgeAngle = new double[edges];
+        this.edgeCapacity = new int[edges];
+        int e = 0;
+        int lanes = 0;
+        for (int j = 0; j < junctions; j++) {
+            int row = j / size;
+            int column = j % size;
+            int[] neighbours = {column + 1 < size ? j + 1 : -1, row + 1 < size ? j + size : -1};
+            for (int k : neighbours) {
+                if (k == -1) {
+                    continue;
+                }
+                for (int direction = 0; direction < 2; direction++) {
+                    int from = direction == 0 ? j : k;
+                    int to = direction == 0 ? k : j;
+                    edgeIDs[e] = junctionIDs[from] + "to" + junctionIDs[to];
+                    edgeIndex.put(edgeIDs[e], e);
+                    edgeFrom[e] = from;
+                    edgeTo[e] = to;
+                    edgeDx[e] = Integer.signum(to % size - from % size);
+                    edgeDy[e] = Integer.signum(to / size - from / size);
+                    edgeAngle[e] = (Math.toDegrees(Math.atan2(edgeDx[e], edgeDy[e])) + 360) % 360;
+                    edgeLength[e] = SPACING - 2 * JUNCTION_HALF_SIZE;
+                    edgeSpeed[e] = SPEED_LIMITS[random.nextInt(SPEED_LIMITS.length)];
+                    int laneCount = 1 + random.nextInt(3);
+                    edgeCapacity[e] = (int) (laneCount * edgeLength[e] / VEHICLE_GAP);
+                    edgeLaneStart[e] = lanes;
+                    lanes += laneCount;
+                    e++;
+                }
+            }
+        }
+        edgeLaneStart[edges] = lanes;
+
+        // Lanes: right of the center line in the direction of travel, lane 0 outermost
+        this.laneEdge = new int[lanes];
+        this.laneX0 = new double[lanes];
+        this.laneY0 = new double[lanes];
+        this.laneLink = new int[lanes];
+        Arrays.fill(laneLink, -1);
+        for (e = 0; e < edges; e++) {
+            int laneCount = edgeLaneStart[e + 1] - edgeLaneStart[e];
+            for (int l = edgeLaneStart[e]; l < edgeLaneStart[e + 1]; l++) {
+                double offset = (laneCount - (l - edgeLaneStart[e]) - 0.5) * LANE_WIDTH;
+                laneEdge[l] = e;
+                laneX0[l] = junctionX(edgeFrom[e]) + edgeDx[e] * JUNCTION_HALF_SIZE + edgeDy[e] * offset;
+                laneY0[l] = junctionY(edgeFrom[e]) + edgeDy[e] * JUNCTION_HALF_SIZE - edgeDx[e] * offset;
+            }
+        }
+
+        // Outgoing edges of each junction
+        this.junctionOutStart = new int[junctions + 1];
+        for (e = 0; e < edges; e++) {
+            junctionOutStart[edgeFrom[e] + 1]++;
+        }
+        for (int j = 0; j < junctions; j++) {
+            junctionOutStart[j + 1] += junctionOutStart[j];
+        }
+        this.junctionOut = new int[edges];
+        int[] fill = Arrays.copyOf(junctionOutStart, junctions);
+        for (e = 0; e < edges; e++) {
+            junctionOut[fill[edgeFrom[e]]++] = e;
+        }
+
+        // Traffic lights: one link per incoming lane, straight on, north-south links first
+        int tlsCount = tls.size();
+        this.tlsIDs = tls.toArray(new String[0]);
+        this.tlsLinkStart = new int[tlsCount + 1];
+        List<int[]> links = new ArrayList<>();
+        this.tlsStates = new String[tlsCount][];
+        this.tlsDurations = new double[tlsCount][];
+        this.tlsPhase = new int[tlsCount];
+        this.tlsNextSwitch = new double[tlsCount];
+        for (int t = 0; t < tlsCount; t++) {
+            tlsIndex.put(tlsIDs[t], t);
+            int junction = junctionIndex.get(tlsIDs[t]);
+            tlsLinkStart[t] = links.size();
+            StringBuilder northSouth = new StringBuilder();
+            for (int vertical = 1; vertical >= 0; vertical--) {
+                for (int in = 0; in < edges; in++) {
+                    if (edgeTo[in] != junction || (edgeDy[in] != 0) != (vertical == 1)) {
+                        continue;
+                    }
+                    int out = straightOn(in);
+                    for (int l = edgeLaneStart[in]; l < edgeLaneStart[in + 1]; l++) {
+                        int outLanes = edgeLaneStart[out + 1] - edgeLaneStart[out];
+                        laneLink[l] = links.size() - tlsLinkStart[t];
+                        links.add(new int[]{l, edgeLaneStart[out] + Math.min(l - edgeLaneStart[in], outLanes - 1)});
+                        northSouth.append(vertical == 1 ? 'G' : 'r');
+                    }
+                }
+            }
+            String ns = northSouth.toString();
+            tlsStates[t] = new String[]{ns, ns.replace('G', 'y'),
+                                        swap(ns, 'G', 'r'), swap(ns, 'G', 'r').replace('G', 'y')};
+            tlsDurations[t] = new double[]{GREEN_DURATION, YELLOW_DURATION, GREEN_DURATION, YELLOW_DURATION};
+            tlsPhase[t] = random.nextInt(4);
+            tlsNextSwitch[t] = 1 + random.nextInt((int) tlsDurations[t][tlsPhase[t]]);
+        }
+        tlsLinkStart[tlsCount] = links.size();
+        this.linkFromLane = new int[links.size()];
+        this.linkToLane = new int[links.size()];
+        for (int k = 0; k < links.size(); k++) {
+            linkFromLane[k] = links.get(k)[0];
+            linkToLane[k] = links.get(k)[1];
+        }
+
+        this.edgeVehicles = new int[edges];
+        this.edgeHalting = new int[edges];
+        this.edgeSpeedSum = new double[edges];
+        this.laneQueue = new int[lanes];
+        this.laneDischarged = new int[lanes];
+        LOGGER.log(Level.INFO, String.format("Fake scenario: %dx%d grid, %d edges, %d lanes, %d traffic lights, %d vehicles.",
+                                                size, size, edges, lanes, tlsCount, vehicleTarget));
+    }
+
+
+    /**
+     * Advance the simulation by one second: switch traffic lights, move, arrive and depart vehicles
+     */
+    public void step() {
+        time += 1;
+        departed.clear();
+        arrived.clear();
+        // Slots of the vehicles arrived in the last step are released now, so that a slot is not reused in the step it is freed
+        for (int k = 0; k < arrivedSlotCount; k++) {
+            freeSlots[freeCount++] = arrivedSlots[k];
+        }
+        arrivedSlotCount = 0;
+
+        for (int t = 0; t < tlsIDs.length; t++) {
+            while (time >= tlsNextSwitch[t]) {
+                tlsPhase[t] = (tlsPhase[t] + 1) % tlsStates[t].length;
+                tlsNextSwitch[t] += Math.max(1, tlsDurations[t][tlsPhase[t]]);
+            }
+        }
+
+        Arrays.fill(laneQueue, 0);
+        Arrays.fill(laneDischarged, 0);
+        Arrays.fill(edgeHalting, 0);
+        Arrays.fill(edgeSpeedSum, 0);
+        for (int v = 0; v < slotCount; v++) {
+            if (vehicleState[v] != RUNNING) {
+                continue;
+            }
+            if (--vehicleTripSteps[v] <= 0 && vehicleSpeed[v] > 0) {
+                arrive(v);
+                continue;
+            }
+            move(v);
+            int edge = vehicleEdge[v];
+            edgeSpeedSum[edge] += vehicleSpeed[v];
+            if (vehicleSpeed[v] < 0.1) {
+                edgeHalting[edge]++;
+            }
+        }
+
+        // Injected vehicles first, then new vehicles up to the target
+        for (int v : pending) {
+            if (vehicleState[v] == PENDING) {
+                depart(v, vehicleEdge[v]);
+            }
+        }
+        pending.clear();
+        for (int n = 0; n < departuresPerStep && runningCount < vehicleTarget; n++) {
+            int edge = random.nextInt(edgeIDs.length);
+            if (edgeVehicles[edge] >= edgeCapacity[edge]) {
+                continue;
+            }
+            int v = allocate("f" + generatedTotal++);
+            vehicleRGBA[v] = COLORS[random.nextInt(COLORS.length)];
+            depart(v, edge);
+        }
+    }
+
+
+    // ----------------------------------------------------------------------------
+    // Client commands
+    // ----------------------------------------------------------------------------
+    /**
+     * Add a route
+     * @param routeID ID of the route
+     * @param edges edge IDs of the route, only the first one is used (vehicles take random turns)
+     * @return false if an edge is unknown
+     */
+    public boolean addRoute(String routeID, List<String> edges) {
+        int[] route = new int[edges.size()];
+        for (int i = 0; i < route.length; i++) {
+            route[i] = getEdgeIndex(edges.get(i));
+            if (route[i] == -1) {
+                return false;
+            }
+        }
+        if (route.length == 0) {
+            return false;
+        }
+        routes.put(routeID, route);
+        return true;
+    }
+
+    /**
+     * Add a vehicle, it departs on the first edge of its route in the next step
+     * @param vehicleID ID of the vehicle, must be new
+     * @param routeID ID of a route added before
+     * @param departSpeed "max", "random" or a speed (m/s), other values depart at speed 0
+     * @return false if the vehicle exists or the route is unknown
+     */
+    public boolean addVehicle(String vehicleID, String routeID, String departSpeed) {
+        int[] route = routes.get(routeID);
+        if (route == null || vehicleSlot.containsKey(vehicleID)) {
+            return false;
+        }
+        int v = allocate(vehicleID);
+        vehicleState[v] = PENDING;
+        vehicleEdge[v] = route[0];
+        vehicleRGBA[v] = 0xFFFF00FF;
+        double speed = 0;
+        if ("max".equals(departSpeed)) {
+            speed = edgeSpeed[route[0]];
+        } else if ("random".equals(departSpeed)) {
+            speed = random.nextDouble() * edgeSpeed[route[0]];
+        } else {
+            try {
+                speed = Double.parseDouble(departSpeed);
+            } catch (NumberFormatException e) {
+                speed = 0;
+            }
+        }
+        vehicleSpeed[v] = speed;
+        pending.add(v);
+        return true;
+    }
+
+    /**
+     * Set the color of a vehicle
+     * @param slot vehicle slot
+     * @param rgba packed color 0xRRGGBBAA
+     */
+    public void setColor(int slot, int rgba) {
+        vehicleRGBA[slot] = rgba;
+    }
+
+    /**
+     * Switch a traffic light to a phase, it lasts the full phase duration
+     * @param tls traffic light index
+     * @param phase phase index
+     * @return false if the phase does not exist
+     */
+    public boolean setPhase(int tls, int phase) {
+        if (phase < 0 || phase >= tlsStates[tls].length) {
+            return false;
+        }
+        tlsPhase[tls] = phase;
+        tlsNextSwitch[tls] = time + tlsDurations[tls][phase];
+        return true;
+    }
+
+    /**
+     * Replace the program of a traffic light, the current phase index is kept if it still exists
+     * @param tls traffic light index
+     * @param states state string of each phase, one character per link
+     * @param durations duration of each phase (s)
+     * @return false if the program is empty or a state does not have one character per link
+     */
+    public boolean setProgram(int tls, String[] states, double[] durations) {
+        int links = tlsLinkStart[tls + 1] - tlsLinkStart[tls];
+        if (states.length == 0 || states.length != durations.length) {
+            return false;
+        }
+        for (String state : states) {
+            if (state.length() != links) {
+                return false;
+            }
+        }
+        tlsStates[tls] = states.clone();
+        tlsDurations[tls] = durations.clone();
+        if (tlsPhase[tls] >= states.length) {
+            setPhase(tls, 0);
+        }
+        return true;
+    }
+
+
+    // ----------------------------------------------------------------------------
+    // Getters: simulation
+    // ----------------------------------------------------------------------------
+    /** Getter for simulation time (s) */
+    public double getTime() {
+        return time;
+    }
+
+    /** Getter for IDs of the vehicles departed in the last step */
+    public List<String> getDeparted() {
+        return departed;
+    }
+
+    /** Getter for IDs of the vehicles arrived in the last step */
+    public List<String> getArrived() {
+        return arrived;
+    }
+
+    /** Getter for number of vehicles arrived in the last step, their slots are {@link #getArrivedSlot(int)} */
+    public int getArrivedSlotCount() {
+        return arrivedSlotCount;
+    }
+
+    /** Getter for slot of the k-th vehicle arrived in the last step */
+    public int getArrivedSlot(int k) {
+        return arrivedSlots[k];
+    }
+
+
+    // ----------------------------------------------------------------------------
+    // Getters: vehicles, by slot
+    // ----------------------------------------------------------------------------
+    /** Getter for number of vehicle slots, running vehicles have slots 0..getSlotCount()-1 */
+    public int getSlotCount() {
+        return slotCount;
+    }
+
+    /** Getter for number of vehicles running once all have departed */
+    public int getVehicleTarget() {
+        return vehicleTarget;
+    }
+
+    /** Getter for number of running vehicles */
+    public int getRunningCount() {
+        return runningCount;
+    }
+
+    /** Getter for slot of a vehicle, running or about to depart, -1 if unknown */
+    public int getSlot(String vehicleID) {
+        Integer slot = vehicleSlot.get(vehicleID);
+        return slot == null ? -1 : slot;
+    }
+
+    /** Getter for running status of the vehicle in a slot */
+    public boolean isRunning(int slot) {
+        return slot >= 0 && slot < slotCount && vehicleState[slot] == RUNNING;
+    }
+
+    /** Getter for IDs of the running vehicles, in slot order */
+    public List<String> getVehicleIDList() {
+        List<String> IDs = new ArrayList<>(runningCount);
+        for (int v = 0; v < slotCount; v++) {
+            if (vehicleState[v] == RUNNING) {
+                IDs.add(vehicleIDs[v]);
+            }
+        }
+        return IDs;
+    }
+
+    public String getVehicleID(int slot) {
+        return vehicleIDs[slot];
+    }
+
+    public double getX(int slot) {
+        return laneX0[vehicleLane[slot]] + edgeDx[vehicleEdge[slot]] * vehiclePos[slot];
+    }
+
+    public double getY(int slot) {
+        return laneY0[vehicleLane[slot]] + edgeDy[vehicleEdge[slot]] * vehiclePos[slot];
+    }
+
+    /** Getter for angle of a vehicle (degrees, 0 = north, clockwise) */
+    public double getAngle(int slot) {
+        return edgeAngle[vehicleEdge[slot]];
+    }
+
+    /** Getter for speed of a vehicle (m/s) */
+    public double getSpeed(int slot) {
+        return vehicleSpeed[slot];
+    }
+
+    /** Getter for color of a vehicle, packed 0xRRGGBBAA */
+    public int getRGBA(int slot) {
+        return vehicleRGBA[slot];
+    }
+
+    /** Getter for edge index of a vehicle */
+    public int getVehicleEdge(int slot) {
+        return vehicleEdge[slot];
+    }
+
+    /** Getter for global lane index of a vehicle */
+    public int getVehicleLane(int slot) {
+        return vehicleLane[slot];
+    }
+
+
+    // ----------------------------------------------------------------------------
+    // Getters: network
+    // ----------------------------------------------------------------------------
+    public int getEdgeCount() {
+        return edgeIDs.length;
+    }
+
+    /** Getter for index of an edge, -1 if unknown */
+    public int getEdgeIndex(String edgeID) {
+        Integer e = edgeIndex.get(edgeID);
+        return e == null ? -1 : e;
+    }
+
+    public String getEdgeID(int edge) {
+        return edgeIDs[edge];
+    }
+
+    public List<String> getEdgeIDList() {
+        return Arrays.asList(edgeIDs);
+    }
+
+    public int getLaneCount(int edge) {
+        return edgeLaneStart[edge + 1] - edgeLaneStart[edge];
+    }
+
+    /** Getter for number of vehicles on an edge */
+    public int getEdgeVehicleCount(int edge) {
+        return edgeVehicles[edge];
+    }
+
+    /** Getter for number of vehicles slower than 0.1 m/s on an edge in the last step */
+    public int getEdgeHaltingCount(int edge) {
+        return edgeHalting[edge];
+    }
+
+    /** Getter for mean speed on an edge in the last step (m/s), the speed limit if the edge is empty (like SUMO) */
+    public double getEdgeMeanSpeed(int edge) {
+        return edgeVehicles[edge] == 0 ? edgeSpeed[edge] : edgeSpeedSum[edge] / edgeVehicles[edge];
+    }
+
+    /** Getter for travel time of an edge at the mean speed of the last step (s) */
+    public double getEdgeTravelTime(int edge) {
+        return edgeLength[edge] / Math.max(getEdgeMeanSpeed(edge), 0.1);
+    }
+
+    /** Getter for occupancy of an edge (vehicle lengths / lane lengths, 0..1) */
+    public double getEdgeOccupancy(int edge) {
+        return Math.min(1, edgeVehicles[edge] / (double) Math.max(1, edgeCapacity[edge]));
+    }
+
+    /** Getter for global index of a lane ID ("edgeID_index"), -1 if unknown */
+    public int getLaneIndex(String laneID) {
+        int separator = laneID.lastIndexOf('_');
+        if (separator == -1) {
+            return -1;
+        }
+        int edge = getEdgeIndex(laneID.substring(0, separator));
+        if (edge == -1) {
+            return -1;
+        }
+        try {
+            int index = Integer.parseInt(laneID.substring(separator + 1));
+            return index >= 0 && index < getLaneCount(edge) ? edgeLaneStart[edge] + index : -1;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    public String getLaneID(int lane) {
+        int edge = laneEdge[lane];
+        return edgeIDs[edge] + "_" + (lane - edgeLaneStart[edge]);
+    }
+
+    public int getLaneEdge(int lane) {
+        return laneEdge[lane];
+    }
+
+    public double getLaneLength(int lane) {
+        return edgeLength[laneEdge[lane]];
+    }
+
+    /** Getter for speed limit of a lane (m/s) */
+    public double getLaneMaxSpeed(int lane) {
+        return edgeSpeed[laneEdge[lane]];
+    }
+
+    /** Getter for shape of a lane: x0, y0, x1, y1 */
+    public double[] getLaneShape(int lane) {
+        double length = getLaneLength(lane);
+        int edge = laneEdge[lane];
+        return new double[]{laneX0[lane], laneY0[lane], laneX0[lane] + edgeDx[edge] * length, laneY0[lane] + edgeDy[edge] * length};
+    }
+
+    public int getJunctionCount() {
+        return junctionIDs.length;
+    }
+
+    /** Getter for index of a junction, -1 if unknown */
+    public int getJunctionIndex(String junctionID) {
+        Integer j = junctionIndex.get(junctionID);
+        return j == null ? -1 : j;
+    }
+
+    public List<String> getJunctionIDList() {
+        return Arrays.asList(junctionIDs);
+    }
+
+    /** Getter for shape of a junction: x0, y0, x1, y1, ... (square, counter-clockwise) */
+    public double[] getJunctionShape(int junction) {
+        double x = junctionX(junction);
+        double y = junctionY(junction);
+        double h = JUNCTION_HALF_SIZE;
+        return new double[]{x - h, y - h, x + h, y - h, x + h, y + h, x - h, y + h};
+    }
+
+
+    // ----------------------------------------------------------------------------
+    // Getters: traffic lights
+    // ----------------------------------------------------------------------------
+    public int getTlsCount() {
+        return tlsIDs.length;
+    }
+
+    /** Getter for index of a traffic light, -1 if unknown */
+    public int getTlsIndex(String tlsID) {
+        Integer t = tlsIndex.get(tlsID);
+        return t == null ? -1 : t;
+    }
+
+    public String getTlsID(int tls) {
+        return tlsIDs[tls];
+    }
+
+    public List<String> getTlsIDList() {
+        return Arrays.asList(tlsIDs);
+    }
+
+    public String getTlsState(int tls) {
+        return tlsStates[tls][tlsPhase[tls]];
+    }
+
+    public int getTlsPhase(int tls) {
+        return tlsPhase[tls];
+    }
+
+    /** Getter for duration of the current phase (s) */
+    public double getTlsPhaseDuration(int tls) {
+        return tlsDurations[tls][tlsPhase[tls]];
+    }
+
+    /** Getter for simulation time of the next switch (s) */
+    public double getTlsNextSwitch(int tls) {
+        return tlsNextSwitch[tls];
+    }
+
+    /** Getter for state strings of the program, by phase */
+    public String[] getTlsStates(int tls) {
+        return tlsStates[tls].clone();
+    }
+
+    /** Getter for phase durations of the program (s) */
+    public double[] getTlsDurations(int tls) {
+        return tlsDurations[tls].clone();
+    }
+
+    /** Getter for number of links controlled by a traffic light */
+    public int getTlsLinkCount(int tls) {
+        return tlsLinkStart[tls + 1] - tlsLinkStart[tls];
+    }
+
+    /** Getter for incoming lane ID of the k-th link of a traffic light */
+    public String getLinkFromLane(int tls, int k) {
+        return getLaneID(linkFromLane[tlsLinkStart[tls] + k]);
+    }
+
+    /** Getter for outgoing lane ID of the k-th link of a traffic light */
+    public String getLinkToLane(int tls, int k) {
+        return getLaneID(linkToLane[tlsLinkStart[tls] + k]);
+    }
+
+
+    /**
+     * Write the network as a SUMO net file: edges and lanes, traffic light programs, junctions and controlled connections
+     * @param path file to write
+     * @throws IOException if the file cannot be written
+     */
+    public void writeNetFile(java.nio.file.Path path) throws IOException {
+        try (BufferedWriter out = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+            out.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<net version=\"1.9\">\n");
+            for (int e = 0; e < edgeIDs.length; e++) {
+                out.write(String.format(Locale.ROOT, "    <edge id=\"%s\" from=\"%s\" to=\"%s\" priority=\"1\">%n",
+                                        edgeIDs[e], junctionIDs[edgeFrom[e]], junctionIDs[edgeTo[e]]));
+                for (int l = edgeLaneStart[e]; l < edgeLaneStart[e + 1]; l++) {
+                    double[] shape = getLaneShape(l);
+                    out.write(String.format(Locale.ROOT,
+                                "        <lane id=\"%s\" index=\"%d\" speed=\"%.2f\" length=\"%.2f\" shape=\"%.2f,%.2f %.2f,%.2f\"/>%n",
+                                getLaneID(l), l - edgeLaneStart[e], edgeSpeed[e], edgeLength[e], shape[0], shape[1], shape[2], shape[3]));
+                }
+                out.write("    </edge>\n");
+            }
+            for (int t = 0; t < tlsIDs.length; t++) {
+                out.write(String.format("    <tlLogic id=\"%s\" type=\"static\" programID=\"0\" offset=\"0\">%n", tlsIDs[t]));
+                for (int p = 0; p < tlsStates[t].length; p++) {
+                    out.write(String.format(Locale.ROOT, "        <phase duration=\"%.0f\" state=\"%s\"/>%n",
+                                            tlsDurations[t][p], tlsStates[t][p]));
+                }
+                out.write("    </tlLogic>\n");
+            }
+            for (int j = 0; j < junctionIDs.length; j++) {
+                double[] shape = getJunctionShape(j);
+                StringBuilder points = new StringBuilder();
+                for (int k = 0; k < shape.length; k += 2) {
+                    points.append(k == 0 ? "" : " ").append(String.format(Locale.ROOT, "%.2f,%.2f", shape[k], shape[k + 1]));
+                }
+                out.write(String.format(Locale.ROOT, "    <junction id=\"%s\" type=\"%s\" x=\"%.2f\" y=\"%.2f\" shape=\"%s\"/>%n",
+                                        junctionIDs[j], junctionTls[j] == -1 ? "priority" : "traffic_light",
+                                        junctionX(j), junctionY(j), points));
+            }
+            for (int t = 0; t < tlsIDs.length; t++) {
+                for (int k = tlsLinkStart[t]; k < tlsLinkStart[t + 1]; k++) {
+                    int from = linkFromLane[k];
+                    int to = linkToLane[k];
+                    out.write(String.format("    <connection from=\"%s\" to=\"%s\" fromLane=\"%d\" toLane=\"%d\" tl=\"%s\" linkIndex=\"%d\"/>%n",
+                                            edgeIDs[laneEdge[from]], edgeIDs[laneEdge[to]], from - edgeLaneStart[laneEdge[from]],
+                                            to - edgeLaneStart[laneEdge[to]], tlsIDs[t], k - tlsLinkStart[t]));
+                }
+            }
+            out.write("</net>\n");
+        }
+    }
+
+
+    // ---------------------------------------------------------
+    // Private helper methods
+    // ---------------------------------------------------------
+    /**
+     * Private helper method: move a running vehicle for one step, into the next edge if it may leave its lane
+     */
+    private void move(int v) {
+        int edge = vehicleEdge[v];
+        int lane = vehicleLane[v];
+        double length = edgeLength[edge];
+        double speed = Math.min(edgeSpeed[edge] * vehicleFactor[v], vehicleSpeed[v] + ACCELERATION);
+        double pos = vehiclePos[v] + speed;
+        if (pos >= length && laneDischarged[lane] == 0 && isGreen(lane)) {
+            int next = nextEdge(edge);
+            if (next != -1) {
+                laneDischarged[lane]++;
+                edgeVehicles[edge]--;
+                edgeVehicles[next]++;
+                vehicleEdge[v] = next;
+                vehicleLane[v] = edgeLaneStart[next] + random.nextInt(getLaneCount(next));
+                vehiclePos[v] = Math.min(pos - length, edgeLength[next] - 1);
+                vehicleSpeed[v] = speed;
+                return;
+            }
+        }
+        // Stop behind the vehicles already queued at the end of the lane
+        double stopLine = length - laneQueue[lane] * VEHICLE_GAP;
+        if (pos >= stopLine) {
+            pos = Math.max(vehiclePos[v], stopLine);
+            speed = 0;
+            laneQueue[lane]++;
+        }
+        vehiclePos[v] = pos;
+        vehicleSpeed[v] = speed;
+    }
+
+    /**
+     * Private helper method: a vehicle may leave the lane (no traffic light, or a green one)
+     */
+    private boolean isGreen(int lane) {
+        int tls = junctionTls[edgeTo[laneEdge[lane]]];
+        if (tls == -1 || laneLink[lane] == -1) {
+            return true;
+        }
+        char signal = tlsStates[tls][tlsPhase[tls]].charAt(laneLink[lane]);
+        return signal == 'G' || signal == 'g';
+    }
+
+    /**
+     * Private helper method: random next edge with room left, no U-turn, -1 if none
+     */
+    private int nextEdge(int edge) {
+        int junction = edgeTo[edge];
+        int start = junctionOutStart[junction];
+        int count = junctionOutStart[junction + 1] - start;
+        int first = random.nextInt(count);
+        for (int k = 0; k < count; k++) {
+            int next = junctionOut[start + (first + k) % count];
+            if (edgeTo[next] != edgeFrom[edge] && edgeVehicles[next] < edgeCapacity[next]) {
+                return next;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Private helper method: edge continuing straight on after an incoming edge, any outgoing edge if there is none
+     */
+    private int straightOn(int in) {
+        int junction = edgeTo[in];
+        for (int k = junctionOutStart[junction]; k < junctionOutStart[junction + 1]; k++) {
+            int out = junctionOut[k];
+            if (edgeDx[out] == edgeDx[in] && edgeDy[out] == edgeDy[in]) {
+                return out;
+            }
+        }
+        return junctionOut[junctionOutStart[junction]];
+    }
+
+    /**
+     * Private helper method: put a vehicle on an edge, on a random lane, and report it as departed
+     */
+    private void depart(int v, int edge) {
+        vehicleState[v] = RUNNING;
+        vehicleEdge[v] = edge;
+        vehicleLane[v] = edgeLaneStart[edge] + random.nextInt(getLaneCount(edge));
+        vehiclePos[v] = random.nextDouble() * edgeLength[edge] / 2;
+        vehicleFactor[v] = 0.8 + random.nextDouble() / 5;
+        vehicleTripSteps[v] = MIN_TRIP_STEPS + random.nextInt(MAX_TRIP_STEPS - MIN_TRIP_STEPS);
+        edgeVehicles[edge]++;
+        runningCount++;
+        departedTotal++;
+        departed.add(vehicleIDs[v]);
+    }
+
+    /**
+     * Private helper method: remove a running vehicle, its slot is free from the next step on
+     */
+    private void arrive(int v) {
+        edgeVehicles[vehicleEdge[v]]--;
+        runningCount--;
+        arrived.add(vehicleIDs[v]);
+        vehicleSlot.remove(vehicleIDs[v]);
+        vehicleState[v] = FREE;
+        if (arrivedSlotCount == arrivedSlots.length) {
+            arrivedSlots = Arrays.copyOf(arrivedSlots, 2 * arrivedSlotCount);
+        }
+        arrivedSlots[arrivedSlotCount++] = v;
+    }
+
+    /**
+     * Private helper method: slot for a new vehicle, slots freed in earlier steps are reused, arrays grow if needed
+     */
+    private int allocate(String vehicleID) {
+        int v;
+        if (freeCount > 0) {
+            v = freeSlots[--freeCount];
+        } else {
+            if (slotCount == vehicleIDs.length) {
+                grow(Math.max(1024, 2 * slotCount));
+            }
+            v = slotCount++;
+        }
+        vehicleIDs[v] = vehicleID;
+        vehicleSlot.put(vehicleID, v);
+        vehicleSpeed[v] = 0;
+        vehicleRGBA[v] = 0xFFFF00FF;
+        return v;
+    }
+
+    /**
+     * Private helper method: grow the vehicle arrays
+     */
+    private void grow(int capacity) {
+        vehicleIDs = Arrays.copyOf(vehicleIDs, capacity);
+        vehicleState = Arrays.copyOf(vehicleState, capacity);
+        vehicleEdge = Arrays.copyOf(vehicleEdge, capacity);
+        vehicleLane = Arrays.copyOf(vehicleLane, capacity);
+        vehiclePos = Arrays.copyOf(vehiclePos, capacity);
+        vehicleSpeed = Arrays.copyOf(vehicleSpeed, capacity);
+        vehicleFactor = Arrays.copyOf(vehicleFactor, capacity);
+        vehicleRGBA = Arrays.copyOf(vehicleRGBA, capacity);
+        vehicleTripSteps = Arrays.copyOf(vehicleTripSteps, capacity);
+        freeSlots = Arrays.copyOf(freeSlots, capacity);
+    }
+
+    private double junctionX(int junction) {
+        return (junction % gridSize) * SPACING;
+    }
+
+    private double junctionY(int junction) {
+        return (junction / gridSize) * SPACING;
+    }
+
+    /**
+     * Private helper method: exchange two characters in a string
+     */
+    private static String swap(String s, char a, char b) {
+        char[] chars = s.toCharArray();
+        for (int i = 0; i < chars.length; i++) {
+            chars[i] = chars[i] == a ? b : chars[i] == b ? a : chars[i];
+        }
+        return new String(chars);
+    }
+}
@@ -0,0 +1,888 @@
+package real_time_traffic_simulation_with_java.wrapper;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import de.tudresden.sumo.config.Constants;
+import it.polito.appeal.traci.SumoTraciConnection;
+import real_time_traffic_simulation_with_java.alias.Metrics;
+
+
+/**
+ * In-process TraCI server answering like SUMO from a {@link FakeScenario}, so that the whole application
+ *      (managers, subscriptions, GUI and export) can be load tested at any scale, repeatably and without SUMO. <br>
+ * Speaks the TraCI wire protocol to one TraaS client at a time on a loopback port. Every command of a request message
+ *      is answered in one response message, like SUMO, so pipelined commands ({@link TraciBatch}) work too. Supported:
+ * <ul>
+ *  <li>get: the vehicle, edge, lane, junction, traffic light and simulation variables the managers read</li>
+ *  <li>set: add route, add vehicle, vehicle color, traffic light phase and program</li>
+ *  <li>variable subscriptions of vehicles, edges, traffic lights and the simulation, pushed with every step</li>
+ *  <li>simulation step, set order, get version and close</li>
+ * </ul>
+ * Other commands are answered "not implemented", unknown objects and variables with an error status, like SUMO. <br>
+ * Latency: latencyMicros is added before every response message (one round trip to a remote SUMO),
+ *      stepMillis to every simulation step (the time SUMO spends computing a step).
+ */
+public final class FakeTraciServer implements SumoTransport {
+    private static final Logger LOGGER = Logger.getLogger(FakeTraciServer.class.getName());
+
+    /** TraCI API version reported by get version */
+    private static final int API_VERSION = 21;
+
+    private final FakeScenario scenario;
+    private final long latencyNanos;
+    private final long stepNanos;
+
+    private ServerSocket serverSocket;
+    private volatile Socket client;
+    private String netFile;
+
+    // ---- Subscribed variables: null if not subscribed, accessed by the server thread only ----
+    private byte[] simulationVariables;
+    private final byte[][] edgeVariables;
+    private final byte[][] tlsVariables;
+    private byte[][] vehicleVariables = new byte[0][];
+    /** Error of the last value which could not be written */
+    private String error = "";
+    private final Message response = new Message();
+
+    /** Progress, written by the server thread after each step */
+    private volatile long steps = 0;
+    private volatile int runningVehicles = 0;
+    private volatile int departedVehicles = 0;
+
+    /**
+     * Fake server over a scenario, not started yet
+     * @param scenario synthesized network and traffic, used by the server thread only once started
+     * @param latencyMicros latency added to every response message (us)
+     * @param stepMillis time added to every simulation step (ms)
+     */
+    public FakeTraciServer(FakeScenario scenario, long latencyMicros, long stepMillis) {
+        this.scenario = scenario;
+        this.latencyNanos = Math.max(0, latencyMicros) * 1000;
+        this.stepNanos = Math.max(0, stepMillis) * 1000000;
+        this.edgeVariables = new byte[scenario.getEdgeCount()][];
+        this.tlsVariables = new byte[scenario.getTlsCount()][];
+    }
+
+    /**
+     * Fake server with the settings of {@link Metrics} (-Dfake.vehicles=..., -Dfake.latencyMicros=..., ...)
+     * @return fake server, not started yet
+     */
+    public static FakeTraciServer fromMetrics() {
+        return new FakeTraciServer(new FakeScenario(Metrics.FAKE_GRID_SIZE, Metrics.FAKE_VEHICLES,
+                                                    Metrics.FAKE_DEPARTURES_PER_STEP, Metrics.FAKE_SEED),
+                                    Metrics.FAKE_LATENCY_MICROS, Metrics.FAKE_STEP_MILLIS);
+    }
+
+
+    // ----------------------------------------------------------------------------
+    // Transport
+    // ----------------------------------------------------------------------------
+    /**
+     * Start the server and connect a TraaS client to it
+     * @return connection to the fake server
+     * @throws Exception if the server cannot be started or reached
+     */
+    @Override
+    public SumoTraciConnection connect() throws Exception {
+        int port = start();
+        SumoTraciConnection connection = new SumoTraciConnection(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+        LOGGER.log(Level.INFO, "Connected to " + describe() + " on port " + port);
+        return connection;
+    }
+
+    /**
+     * Write the network of the scenario to a temporary net file, once. <br>
+     * Must be called before the server is started: the traffic light programs may change afterwards.
+     * @return path of the net file, null if it cannot be written (the network is then read over TraCI)
+     */
+    @Override
+    public synchronized String getNetFile() {
+        if (this.netFile == null) {
+            try {
+                java.nio.file.Path path = Files.createTempFile("fake-traci-", ".net.xml");
+                path.toFile().deleteOnExit();
+                this.scenario.writeNetFile(path);
+                this.netFile = path.toString();
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "Unable to write the net file of the fake scenario.", e);
+            }
+        }
+        return this.netFile;
+    }
+
+    /** Stop the server, the connected client sees the connection closed */
+    @Override
+    public synchronized void close() {
+        try {
+            if (this.serverSocket != null) {
+                this.serverSocket.close();
+            }
+            Socket socket = this.client;
+            if (socket != null) {
+                socket.close();
+            }
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Error closing the fake TraCI server.", e);
+        }
+    }
+
+    @Override
+    public String describe() {
+        return String.format("fake TraCI server (%d edges, %d traffic lights, %d vehicles, %d us latency, %d ms per step)",
+                                scenario.getEdgeCount(), scenario.getTlsCount(), scenario.getVehicleTarget(),
+                                latencyNanos / 1000, stepNanos / 1000000);
+    }
+
+    /**
+     * Start listening on a free loopback port, once
+     * @return port of the server
+     * @throws IOException if no port can be opened
+     */
+    public synchronized int start() throws IOException {
+        if (this.serverSocket == null) {
+            this.serverSocket = new ServerSocket(0, 1, InetAddress.getLoopbackAddress());
+            Thread thread = new Thread(this::acceptLoop, "fake-traci-server");
+            thread.setDaemon(true);
+            thread.start();
+        }
+        return this.serverSocket.getLocalPort();
+    }
+
+    /** Getter for scenario served, must not be used by other threads while the server is running */
+    public FakeScenario getScenario() {
+        return this.scenario;
+    }
+
+    /** Getter for number of steps performed */
+    public long getStepCount() {
+        return this.steps;
+    }
+
+    /** Getter for number of running vehicles after the last step */
+    public int getRunningVehicleCount() {
+        return this.runningVehicles;
+    }
+
+    /** Getter for number of vehicles departed in the last step */
+    public int getDepartedVehicleCount() {
+        return this.departedVehicles;
+    }
+
+
+    // ---------------------------------------------------------
+    // Private helper methods: connection
+    // ---------------------------------------------------------
+    /**
+     * Private helper method: serve clients one after the other until the server is closed
+     */
+    private void acceptLoop() {
+        while (!serverSocket.isClosed()) {
+            try (Socket socket = serverSocket.accept()) {
+                socket.setTcpNoDelay(true);
+                this.client = socket;
+                serve(socket);
+            } catch (SocketException e) {
+                if (!serverSocket.isClosed()) {
+                    LOGGER.log(Level.WARNING, "Fake TraCI client connection lost.", e);
+                }
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "Fake TraCI client connection failed.", e);
+            } finally {
+                this.client = null;
+            }
+        }
+        LOGGER.log(Level.INFO, "Fake TraCI server stopped.");
+    }
+
+    /**
+     * Private helper method: answer the request messages of a client until it closes the connection
+     */
+    private void serve(Socket socket) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream(), 1 << 16));
+        OutputStream out = new BufferedOutputStream(socket.getOutputStream(), 1 << 16);
+        // A new client starts without subscriptions
+        this.simulationVariables = null;
+        Arrays.fill(this.edgeVariables, null);
+        Arrays.fill(this.tlsVariables, null);
+        Arrays.fill(this.vehicleVariables, null);
+        byte[] request = new byte[1 << 12];
+        boolean closed = false;
+        while (!closed) {
+            int length;
+            try {
+                length = in.readInt() - 4;
+            } catch (EOFException e) {
+                return;
+            }
+            if (length > request.length) {
+                request = new byte[Math.max(length, 2 * request.length)];
+            }
+            in.readFully(request, 0, length);
+            ByteBuffer message = ByteBuffer.wrap(request, 0, length);
+
+            // Message: total length, then every command: length (ubyte, or 0 and int), id, content
+            response.reset();
+            response.writeInt(0);
+            while (message.hasRemaining()) {
+                int commandLength = message.get() & 0xff;
+                int contentLength = commandLength == 0 ? message.getInt() - 6 : commandLength - 2;
+                int id = message.get() & 0xff;
+                ByteBuffer content = message.slice(message.position(), contentLength);
+                message.position(message.position() + contentLength);
+                closed |= execute(id, content);
+            }
+            response.putInt(0, response.size());
+            if (latencyNanos > 0) {
+                LockSupport.parkNanos(latencyNanos);
+            }
+            out.write(response.data, 0, response.size());
+            out.flush();
+        }
+    }
+
+    /**
+     * Private helper method: answer one command
+     * @return true if the client closes the connection
+     */
+    private boolean execute(int id, ByteBuffer content) {
+        int start = response.size();
+        try {
+            switch (id) {
+                case Constants.CMD_GETVERSION -> {
+                    status(id, Constants.RTYPE_OK, "");
+                    int command = response.beginCommand(id);
+                    response.writeInt(API_VERSION);
+                    response.writeString("fake TraCI server");
+                    response.endCommand(command);
+                }
+                case Constants.CMD_SIMSTEP -> simulationStep(content.getDouble());
+                case Constants.CMD_SETORDER -> status(id, Constants.RTYPE_OK, "");
+                case Constants.CMD_CLOSE -> {
+                    status(id, Constants.RTYPE_OK, "");
+                    return true;
+                }
+                case Constants.CMD_GET_VEHICLE_VARIABLE, Constants.CMD_GET_EDGE_VARIABLE, Constants.CMD_GET_LANE_VARIABLE,
+                     Constants.CMD_GET_JUNCTION_VARIABLE, Constants.CMD_GET_TL_VARIABLE, Constants.CMD_GET_SIM_VARIABLE ->
+                    get(id, content.get() & 0xff, readString(content));
+                case Constants.CMD_SET_VEHICLE_VARIABLE, Constants.CMD_SET_ROUTE_VARIABLE, Constants.CMD_SET_TL_VARIABLE ->
+                    set(id, content.get() & 0xff, readString(content), content);
+                case Constants.CMD_SUBSCRIBE_VEHICLE_VARIABLE, Constants.CMD_SUBSCRIBE_EDGE_VARIABLE,
+                     Constants.CMD_SUBSCRIBE_TL_VARIABLE, Constants.CMD_SUBSCRIBE_SIM_VARIABLE -> subscribe(id, content);
+                default -> status(id, Constants.RTYPE_NOTIMPLEMENTED, "Command " + id + " is not implemented by the fake server.");
+            }
+        } catch (RuntimeException e) {
+            // Malformed command: drop what was written for it, answer with an error
+            response.truncate(start);
+            status(id, Constants.RTYPE_ERR, "Malformed command " + id + ": " + e);
+        }
+        return false;
+    }
+
+
+    // ---------------------------------------------------------
+    // Private helper methods: commands
+    // ---------------------------------------------------------
+    /**
+     * Private helper method: perform steps up to the target time (one step if 0),
+     *      answer with the subscribed values of the simulation, running vehicles, edges and traffic lights
+     */
+    private void simulationStep(double targetTime) {
+        do {
+            scenario.step();
+            // SUMO drops the subscriptions of arrived vehicles, their slots are reused
+            for (int k = 0; k < scenario.getArrivedSlotCount(); k++) {
+                int slot = scenario.getArrivedSlot(k);
+                if (slot < vehicleVariables.length) {
+                    vehicleVariables[slot] = null;
+                }
+            }
+            if (stepNanos > 0) {
+                LockSupport.parkNanos(stepNanos);
+            }
+        } while (targetTime > 0 && scenario.getTime() < targetTime);
+        this.steps++;
+        this.runningVehicles = scenario.getRunningCount();
+        this.departedVehicles = scenario.getDeparted().size();
+
+        status(Constants.CMD_SIMSTEP, Constants.RTYPE_OK, "");
+        int countPosition = response.size();
+        response.writeInt(0);
+        int count = 0;
+        if (simulationVariables != null) {
+            writeSubscription(Constants.RESPONSE_SUBSCRIBE_SIM_VARIABLE, Constants.CMD_GET_SIM_VARIABLE, "", 0, simulationVariables);
+            count++;
+        }
+        int slots = Math.min(scenario.getSlotCount(), vehicleVariables.length);
+        for (int slot = 0; slot < slots; slot++) {
+            if (vehicleVariables[slot] != null && scenario.isRunning(slot)) {
+                writeSubscription(Constants.RESPONSE_SUBSCRIBE_VEHICLE_VARIABLE, Constants.CMD_GET_VEHICLE_VARIABLE,
+                                    scenario.getVehicleID(slot), slot, vehicleVariables[slot]);
+                count++;
+            }
+        }
+        for (int edge = 0; edge < edgeVariables.length; edge++) {
+            if (edgeVariables[edge] != null) {
+                writeSubscription(Constants.RESPONSE_SUBSCRIBE_EDGE_VARIABLE, Constants.CMD_GET_EDGE_VARIABLE,
+                                    scenario.getEdgeID(edge), edge, edgeVariables[edge]);
+                count++;
+            }
+        }
+        for (int tls = 0; tls < tlsVariables.length; tls++) {
+            if (tlsVariables[tls] != null) {
+                writeSubscription(Constants.RESPONSE_SUBSCRIBE_TL_VARIABLE, Constants.CMD_GET_TL_VARIABLE,
+                                    scenario.getTlsID(tls), tls, tlsVariables[tls]);
+                count++;
+            }
+        }
+        response.putInt(countPosition, count);
+    }
+
+    /**
+     * Private helper method: answer a get command with the value, or with an error status
+     */
+    private void get(int id, int variable, String objectID) {
+        int index = isList(id, variable) ? 0 : resolve(id, objectID);
+        int start = response.size();
+        status(id, Constants.RTYPE_OK, "");
+        int command = response.beginCommand(id + 0x10);
+        response.writeByte(variable);
+        response.writeString(objectID);
+        if (index == -1 || !writeValue(id, variable, index)) {
+            response.truncate(start);
+            status(id, Constants.RTYPE_ERR, index == -1 ? "Object '" + objectID + "' is not known." : error);
+            return;
+        }
+        response.endCommand(command);
+    }
+
+    /**
+     * Private helper method: apply a set command, answer with its status
+     */
+    private void set(int id, int variable, String objectID, ByteBuffer content) {
+        Object value = readTyped(content);
+        boolean done = false;
+        String message = "Variable " + variable + " cannot be set by the fake server.";
+        if (id == Constants.CMD_SET_ROUTE_VARIABLE && variable == Constants.ADD) {
+            @SuppressWarnings("unchecked")
+            List<String> edges = (List<String>) value;
+            done = scenario.addRoute(objectID, edges);
+            message = "Route '" + objectID + "' has an unknown edge.";
+        } else if (id == Constants.CMD_SET_VEHICLE_VARIABLE && variable == Constants.ADD_FULL) {
+            // route, type, depart, departLane, departPos, departSpeed, ...
+            List<?> parameters = (List<?>) value;
+            done = scenario.addVehicle(objectID, (String) parameters.get(0), (String) parameters.get(5));
+            message = "Vehicle '" + objectID + "' exists already or its route is not known.";
+        } else if (id == Constants.CMD_SET_VEHICLE_VARIABLE && variable == Constants.VAR_COLOR) {
+            int slot = scenario.getSlot(objectID);
+            int[] rgba = (int[]) value;
+            if (slot != -1) {
+                scenario.setColor(slot, rgba[0] << 24 | rgba[1] << 16 | rgba[2] << 8 | rgba[3]);
+                done = true;
+            }
+            message = "Vehicle '" + objectID + "' is not known.";
+        } else if (id == Constants.CMD_SET_TL_VARIABLE && variable == Constants.TL_PHASE_INDEX) {
+            int tls = scenario.getTlsIndex(objectID);
+            done = tls != -1 && scenario.setPhase(tls, (Integer) value);
+            message = "Traffic light '" + objectID + "' or its phase is not known.";
+        } else if (id == Constants.CMD_SET_TL_VARIABLE && variable == Constants.TL_COMPLETE_PROGRAM_RYG) {
+            // programID, type, currentPhase, phases (duration, state, minDur, maxDur, next, name), parameters
+            List<?> phases = (List<?>) ((List<?>) value).get(3);
+            String[] states = new String[phases.size()];
+            double[] durations = new double[phases.size()];
+            for (int p = 0; p < states.length; p++) {
+                List<?> phase = (List<?>) phases.get(p);
+                durations[p] = (Double) phase.get(0);
+                states[p] = (String) phase.get(1);
+            }
+            int tls = scenario.getTlsIndex(objectID);
+            done = tls != -1 && scenario.setProgram(tls, states, durations);
+            message = "Traffic light '" + objectID + "' is not known or the program does not match its links.";
+        }
+        status(id, done ? Constants.RTYPE_OK : Constants.RTYPE_ERR, done ? "" : message);
+    }
+
+    /**
+     * Private helper method: store the variables subscribed for an object, answer with their current values
+     */
+    private void subscribe(int id, ByteBuffer content) {
+        content.getDouble();
+        content.getDouble();
+        String objectID = readString(content);
+        byte[] variables = new byte[content.get() & 0xff];
+        content.get(variables);
+        int domain = id - 0x30;
+        int index = resolve(domain, objectID);
+        if (index == -1 || (domain == Constants.CMD_GET_VEHICLE_VARIABLE && !scenario.isRunning(index))) {
+            status(id, Constants.RTYPE_ERR, "Object '" + objectID + "' is not known.");
+            return;
+        }
+        // No variable: unsubscribe, like SUMO
+        byte[] stored = variables.length == 0 ? null : variables;
+        switch (domain) {
+            case Constants.CMD_GET_VEHICLE_VARIABLE -> {
+                if (index >= vehicleVariables.length) {
+                    vehicleVariables = Arrays.copyOf(vehicleVariables, Math.max(index + 1, 2 * vehicleVariables.length));
+                }
+                vehicleVariables[index] = stored;
+            }
+            case Constants.CMD_GET_EDGE_VARIABLE -> edgeVariables[index] = stored;
+            case Constants.CMD_GET_TL_VARIABLE -> tlsVariables[index] = stored;
+            default -> simulationVariables = stored;
+        }
+        status(id, Constants.RTYPE_OK, "");
+        writeSubscription(id + 0x10, domain, objectID, index, variables);
+    }
+
+
+    // ---------------------------------------------------------
+    // Private helper methods: values
+    // ---------------------------------------------------------
+    /**
+     * Private helper method: index of an object in the scenario (vehicle slot, edge, lane, junction, traffic light), -1 if unknown
+     */
+    private int resolve(int domain, String objectID) {
+        return switch (domain) {
+            case Constants.CMD_GET_VEHICLE_VARIABLE -> scenario.getSlot(objectID);
+            case Constants.CMD_GET_EDGE_VARIABLE -> scenario.getEdgeIndex(objectID);
+            case Constants.CMD_GET_LANE_VARIABLE -> scenario.getLaneIndex(objectID);
+            case Constants.CMD_GET_JUNCTION_VARIABLE -> scenario.getJunctionIndex(objectID);
+            case Constants.CMD_GET_TL_VARIABLE -> scenario.getTlsIndex(objectID);
+            case Constants.CMD_GET_SIM_VARIABLE -> 0;
+            default -> -1;
+        };
+    }
+
+    /**
+     * Private helper method: variable about all objects of a domain (ID list and count), the object ID is not used
+     */
+    private static boolean isList(int domain, int variable) {
+        return domain != Constants.CMD_GET_SIM_VARIABLE && (variable == Constants.TRACI_ID_LIST || variable == Constants.ID_COUNT);
+    }
+
+    /**
+     * Private helper method: write the subscription response of an object: its ID, then each variable with its status and value
+     */
+    private void writeSubscription(int responseID, int domain, String objectID, int index, byte[] variables) {
+        int command = response.beginCommand(responseID);
+        response.writeString(objectID);
+        response.writeByte(variables.length);
+        for (byte variable : variables) {
+            response.writeByte(variable);
+            int start = response.size();
+            response.writeByte(Constants.RTYPE_OK);
+            if (!writeValue(domain, variable & 0xff, index)) {
+                response.truncate(start);
+                response.writeByte(Constants.RTYPE_ERR);
+                response.writeByte(Constants.TYPE_STRING);
+                response.writeString(error);
+            }
+        }
+        response.endCommand(command);
+    }
+
+    /**
+     * Private helper method: write the type and value of a variable
+     * @param domain get command of the object kind
+     * @param variable variable ID
+     * @param index index of the object in the scenario
+     * @return false if the variable is not known, the reason is kept in error
+     */
+    private boolean writeValue(int domain, int variable, int index) {
+        Message out = response;
+        if (isList(domain, variable)) {
+            List<String> IDs = switch (domain) {
+                case Constants.CMD_GET_VEHICLE_VARIABLE -> scenario.getVehicleIDList();
+                case Constants.CMD_GET_EDGE_VARIABLE -> scenario.getEdgeIDList();
+                case Constants.CMD_GET_JUNCTION_VARIABLE -> scenario.getJunctionIDList();
+                case Constants.CMD_GET_TL_VARIABLE -> scenario.getTlsIDList();
+                default -> null;
+            };
+            if (IDs == null) {
+                error = "ID list of command " + domain + " is not implemented by the fake server.";
+                return false;
+            }
+            if (variable == Constants.ID_COUNT) {
+                out.writeTypedInt(IDs.size());
+            } else {
+                out.writeByte(Constants.TYPE_STRINGLIST);
+                out.writeStringList(IDs);
+            }
+            return true;
+        }
+        switch (domain) {
+            case Constants.CMD_GET_VEHICLE_VARIABLE -> {
+                if (!scenario.isRunning(index)) {
+                    error = "Vehicle '" + scenario.getVehicleID(index) + "' has not departed yet.";
+                    return false;
+                }
+                switch (variable) {
+                    case Constants.VAR_POSITION -> {
+                        out.writeByte(Constants.POSITION_2D);
+                        out.writeDouble(scenario.getX(index));
+                        out.writeDouble(scenario.getY(index));
+                    }
+                    case Constants.VAR_SPEED -> out.writeTypedDouble(scenario.getSpeed(index));
+                    case Constants.VAR_ANGLE -> out.writeTypedDouble(scenario.getAngle(index));
+                    case Constants.VAR_COLOR -> {
+                        int rgba = scenario.getRGBA(index);
+                        out.writeByte(Constants.TYPE_COLOR);
+                        out.writeByte(rgba >>> 24);
+                        out.writeByte(rgba >>> 16);
+                        out.writeByte(rgba >>> 8);
+                        out.writeByte(rgba);
+                    }
+                    case Constants.VAR_ROAD_ID -> out.writeTypedString(scenario.getEdgeID(scenario.getVehicleEdge(index)));
+                    case Constants.VAR_LANE_ID -> out.writeTypedString(scenario.getLaneID(scenario.getVehicleLane(index)));
+                    default -> {
+                        return unknown(domain, variable);
+                    }
+                }
+            }
+            case Constants.CMD_GET_EDGE_VARIABLE -> {
+                switch (variable) {
+                    case Constants.VAR_LANE_INDEX -> out.writeTypedInt(scenario.getLaneCount(index));
+                    case Constants.LAST_STEP_VEHICLE_NUMBER -> out.writeTypedInt(scenario.getEdgeVehicleCount(index));
+                    case Constants.LAST_STEP_VEHICLE_HALTING_NUMBER -> out.writeTypedInt(scenario.getEdgeHaltingCount(index));
+                    case Constants.LAST_STEP_MEAN_SPEED -> out.writeTypedDouble(scenario.getEdgeMeanSpeed(index));
+                    // Percent, like SUMO
+                    case Constants.LAST_STEP_OCCUPANCY -> out.writeTypedDouble(100 * scenario.getEdgeOccupancy(index));
+                    case Constants.VAR_CURRENT_TRAVELTIME -> out.writeTypedDouble(scenario.getEdgeTravelTime(index));
+                    default -> {
+                        return unknown(domain, variable);
+                    }
+                }
+            }
+            case Constants.CMD_GET_LANE_VARIABLE -> {
+                switch (variable) {
+                    case Constants.LANE_EDGE_ID -> out.writeTypedString(scenario.getEdgeID(scenario.getLaneEdge(index)));
+                    case Constants.VAR_LENGTH -> out.writeTypedDouble(scenario.getLaneLength(index));
+                    case Constants.VAR_MAXSPEED -> out.writeTypedDouble(scenario.getLaneMaxSpeed(index));
+                    case Constants.VAR_SHAPE -> out.writePolygon(scenario.getLaneShape(index));
+                    default -> {
+                        return unknown(domain, variable);
+                    }
+                }
+            }
+            case Constants.CMD_GET_JUNCTION_VARIABLE -> {
+                if (variable != Constants.VAR_SHAPE) {
+                    return unknown(domain, variable);
+                }
+                out.writePolygon(scenario.getJunctionShape(index));
+            }
+            case Constants.CMD_GET_TL_VARIABLE -> {
+                switch (variable) {
+                    case Constants.TL_RED_YELLOW_GREEN_STATE -> out.writeTypedString(scenario.getTlsState(index));
+                    case Constants.TL_CURRENT_PHASE -> out.writeTypedInt(scenario.getTlsPhase(index));
+                    case Constants.TL_PHASE_DURATION -> out.writeTypedDouble(scenario.getTlsPhaseDuration(index));
+                    case Constants.TL_NEXT_SWITCH -> out.writeTypedDouble(scenario.getTlsNextSwitch(index));
+                    case Constants.TL_CURRENT_PROGRAM -> out.writeTypedString("0");
+                    case Constants.TL_COMPLETE_DEFINITION_RYG -> writeProgram(index);
+                    case Constants.TL_CONTROLLED_LINKS -> writeLinks(index);
+                    default -> {
+                        return unknown(domain, variable);
+                    }
+                }
+            }
+            case Constants.CMD_GET_SIM_VARIABLE -> {
+                switch (variable) {
+                    case Constants.VAR_TIME -> out.writeTypedDouble(scenario.getTime());
+                    case Constants.VAR_DEPARTED_VEHICLES_IDS -> {
+                        out.writeByte(Constants.TYPE_STRINGLIST);
+                        out.writeStringList(scenario.getDeparted());
+                    }
+                    case Constants.VAR_ARRIVED_VEHICLES_IDS -> {
+                        out.writeByte(Constants.TYPE_STRINGLIST);
+                        out.writeStringList(scenario.getArrived());
+                    }
+                    default -> {
+                        return unknown(domain, variable);
+                    }
+                }
+            }
+            default -> {
+                return unknown(domain, variable);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Private helper method: keep the error of an unknown variable
+     */
+    private boolean unknown(int domain, int variable) {
+        error = "Variable " + variable + " of command " + domain + " is not implemented by the fake server.";
+        return false;
+    }
+
+    /**
+     * Private helper method: write the program of a traffic light (complete definition, one static program "0")
+     */
+    private void writeProgram(int tls) {
+        Message out = response;
+        String[] states = scenario.getTlsStates(tls);
+        double[] durations = scenario.getTlsDurations(tls);
+        out.writeByte(Constants.TYPE_COMPOUND);
+        out.writeInt(1);
+        out.writeByte(Constants.TYPE_COMPOUND);
+        out.writeInt(5);
+        out.writeTypedString("0");
+        out.writeTypedInt(0);
+        out.writeTypedInt(scenario.getTlsPhase(tls));
+        out.writeByte(Constants.TYPE_COMPOUND);
+        out.writeInt(states.length);
+        for (int p = 0; p < states.length; p++) {
+            out.writeByte(Constants.TYPE_COMPOUND);
+            out.writeInt(6);
+            out.writeTypedDouble(durations[p]);
+            out.writeTypedString(states[p]);
+            out.writeTypedDouble(durations[p]);
+            out.writeTypedDouble(durations[p]);
+            out.writeByte(Constants.TYPE_COMPOUND);
+            out.writeInt(0);
+            out.writeTypedString("");
+        }
+        // No parameters
+        out.writeByte(Constants.TYPE_COMPOUND);
+        out.writeInt(0);
+    }
+
+    /**
+     * Private helper method: write the controlled links of a traffic light, one link (from, to, via lane) per signal
+     */
+    private void writeLinks(int tls) {
+        Message out = response;
+        int links = scenario.getTlsLinkCount(tls);
+        out.writeByte(Constants.TYPE_COMPOUND);
+        out.writeInt(1 + links);
+        out.writeTypedInt(links);
+        for (int k = 0; k < links; k++) {
+            out.writeTypedInt(1);
+            out.writeByte(Constants.TYPE_STRINGLIST);
+            out.writeStringList(List.of(scenario.getLinkFromLane(tls, k), scenario.getLinkToLane(tls, k), ""));
+        }
+    }
+
+    /**
+     * Private helper method: read a typed value of a set command
+     * @return Integer, Double, String, List of String, List of values (compound), int[4] (color) or double[] (position, polygon, list)
+     */
+    private static Object readTyped(ByteBuffer content) {
+        int type = content.get() & 0xff;
+        switch (type) {
+            case Constants.TYPE_UBYTE:
+                return content.get() & 0xff;
+            case Constants.TYPE_BYTE:
+                return (int) content.get();
+            case Constants.TYPE_INTEGER:
+                return content.getInt();
+            case Constants.TYPE_DOUBLE:
+                return content.getDouble();
+            case Constants.TYPE_STRING:
+                return readString(content);
+            case Constants.TYPE_STRINGLIST: {
+                int n = content.getInt();
+                List<String> strings = new ArrayList<>(n);
+                for (int i = 0; i < n; i++) {
+                    strings.add(readString(content));
+                }
+                return strings;
+            }
+            case Constants.TYPE_COMPOUND: {
+                int n = content.getInt();
+                List<Object> items = new ArrayList<>(n);
+                for (int i = 0; i < n; i++) {
+                    items.add(readTyped(content));
+                }
+                return items;
+            }
+            case Constants.TYPE_COLOR:
+                return new int[]{content.get() & 0xff, content.get() & 0xff, content.get() & 0xff, content.get() & 0xff};
+            case Constants.POSITION_2D:
+                return new double[]{content.getDouble(), content.getDouble()};
+            case Constants.TYPE_POLYGON:
+            case Constants.TYPE_DOUBLELIST: {
+                int n = type == Constants.TYPE_POLYGON ? 2 * (content.get() & 0xff) : content.getInt();
+                double[] values = new double[n];
+                for (int i = 0; i < n; i++) {
+                    values[i] = content.getDouble();
+                }
+                return values;
+            }
+            default:
+                throw new IllegalArgumentException("unknown value type " + type);
+        }
+    }
+
+    /**
+     * Private helper method: read a TraCI string (int length, then the bytes)
+     */
+    private static String readString(ByteBuffer content) {
+        int length = content.getInt();
+        String value = new String(content.array(), content.arrayOffset() + content.position(), length, StandardCharsets.UTF_8);
+        content.position(content.position() + length);
+        return value;
+    }
+
+    /**
+     * Private helper method: write a status command (command ID, result, description)
+     */
+    private void status(int id, int result, String description) {
+        int command = response.beginCommand(id);
+        response.writeByte(result);
+        response.writeString(description);
+        response.endCommand(command);
+    }
+
+
+    /**
+     * Response message being built, big-endian like TraCI. <br>
+     * A command is written with room for the long length header (0, then an int),
+     *      it is moved back to the short header (one ubyte) when it fits, the one status reads of TraaS expect.
+     */
+    private static final class Message {
+        private byte[] data = new byte[1 << 16];
+        private int size = 0;
+
+        int size() {
+            return size;
+        }
+
+        void reset() {
+            size = 0;
+        }
+
+        void truncate(int newSize) {
+            size = newSize;
+        }
+
+        /**
+         * Start a command
+         * @return position of the command, for {@link #endCommand(int)}
+         */
+        int beginCommand(int id) {
+            int position = size;
+            ensure(6);
+            size += 5;
+            data[size++] = (byte) id;
+            return position;
+        }
+
+        /**
+         * Write the length of a command once its content is written
+         */
+        void endCommand(int position) {
+            int length = size - position;
+            if (length - 4 <= 255) {
+                System.arraycopy(data, position + 5, data, position + 1, size - position - 5);
+                size -= 4;
+                data[position] = (byte) (length - 4);
+            } else {
+                data[position] = 0;
+                putInt(position + 1, length);
+            }
+        }
+
+        void writeByte(int value) {
+            ensure(1);
+            data[size++] = (byte) value;
+        }
+
+        void writeInt(int value) {
+            ensure(4);
+            putInt(size, value);
+            size += 4;
+        }
+
+        void putInt(int position, int value) {
+            data[position] = (byte) (value >>> 24);
+            data[position + 1] = (byte) (value >>> 16);
+            data[position + 2] = (byte) (value >>> 8);
+            data[position + 3] = (byte) value;
+        }
+
+        void writeDouble(double value) {
+            long bits = Double.doubleToRawLongBits(value);
+            writeInt((int) (bits >>> 32));
+            writeInt((int) bits);
+        }
+
+        /** Strings are IDs and states, ASCII is copied char by char */
+        void writeString(String value) {
+            int length = value.length();
+            ensure(4 + length);
+            int start = size;
+            size += 4;
+            for (int i = 0; i < length; i++) {
+                char c = value.charAt(i);
+                if (c >= 0x80) {
+                    size = start;
+                    byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+                    writeInt(bytes.length);
+                    ensure(bytes.length);
+                    System.arraycopy(bytes, 0, data, size, bytes.length);
+                    size += bytes.length;
+                    return;
+                }
+                data[size++] = (byte) c;
+            }
+            putInt(start, length);
+        }
+
+        void writeStringList(List<String> values) {
+            writeInt(values.size());
+            for (String value : values) {
+                writeString(value);
+            }
+        }
+
+        void writeTypedInt(int value) {
+            writeByte(Constants.TYPE_INTEGER);
+            writeInt(value);
+        }
+
+        void writeTypedDouble(double value) {
+            writeByte(Constants.TYPE_DOUBLE);
+            writeDouble(value);
+        }
+
+        void writeTypedString(String value) {
+            writeByte(Constants.TYPE_STRING);
+            writeString(value);
+        }
+
+        /** Polygon of up to 255 points: x0, y0, x1, y1, ... */
+        void writePolygon(double[] points) {
+            writeByte(Constants.TYPE_POLYGON);
+            writeByte(points.length / 2);
+            for (double value : points) {
+                writeDouble(value);
+            }
+        }
+
+        private void ensure(int bytes) {
+            if (size + bytes > data.length) {
+                data = Arrays.copyOf(data, Math.max(size + bytes, 2 * data.length));
+            }
+        }
+    }
+}
@@ -6,10 +6,12 @@ import de.tudresden.sumo.objects.SumoGeometry;
 
 import java.util.List;
 import real_time_traffic_simulation_with_java.cores.JunctionData;
+import real_time_traffic_simulation_with_java.cores.NetworkTopology;
 
 
 /**
- * Wrapper class for TraaS to manage junctions in the simulation
+ * Wrapper class for TraaS to manage junctions in the simulation. <br>
+ * IDs and shapes are read from the {@link NetworkTopology} cache, internal junctions are not included.
  */
 public class JunctionManager {
     
@@ -17,6 +19,8 @@ public class JunctionManager {
     private final SumoTraciConnection conn;
     /** Stores List of visualization objects for junctions */
     private List<JunctionData> junctionDataList = new java.util.ArrayList<>();
+    /** Static network, read once at startup */
+    private NetworkTopology topology;
 
     /**
      * Wrapper class for TraaS to manage junctions in the simulation
@@ -27,13 +31,21 @@ public class JunctionManager {
     }
 
 
+    /**
+     * Set the static network cache, must be called once after Sumo has started
+     * @param topology NetworkTopology loaded at startup
+     */
+    public void setTopology(NetworkTopology topology) {
+        this.topology = topology;
+    }
+
+
     /**
      * Get list of junctions IDs
-     * @return a List type String of junction IDs
+     * @return a new List type String of junction IDs
     */ 
-    @SuppressWarnings("unchecked")
     public List<String> getIDList() throws Exception {
-        return (List<String>) conn.do_job_get(Junction.getIDList());
+        return topology.getJunctionIDList();
     }
 
     
@@ -42,12 +54,12 @@ public class JunctionManager {
      * @return an int number of junctions
     */
     public int getCount() throws Exception {
-        return this.getIDList().size();
+        return topology.getJunctionCount();
     }
 
 
     /**
-     * Get shape of the junction
+     * Get shape of the junction, queried from Sumo (junction shapes are cached by index in the topology)
      * @param junctionID the ID of the junction
      * @return SumoGeometry shape of the junction
     */
@@ -62,11 +74,10 @@ public class JunctionManager {
     */
     public List<JunctionData> getJunctionDataList() throws Exception {
         if(junctionDataList.isEmpty()){
-            List<String> IDs = this.getIDList();
-            for (String id : IDs) {
+            for (int i = 0; i < topology.getJunctionCount(); i++) {
                 JunctionData junctiondata = new JunctionData(
-                        id,
-                        this.getShape(id)
+                        topology.getJunctionID(i),
+                        topology.getJunctionShape(i)
                 );
                 junctionDataList.add(junctiondata);
             }
@@ -0,0 +1,317 @@
+package real_time_traffic_simulation_with_java.wrapper;
+
+import it.polito.appeal.traci.SumoTraciConnection;
+import de.tudresden.sumo.config.Constants;
+import de.tudresden.sumo.objects.SumoColor;
+import de.tudresden.sumo.objects.SumoPosition2D;
+import de.tudresden.sumo.objects.SumoPrimitive;
+import de.tudresden.sumo.objects.SumoStringList;
+import de.tudresden.sumo.subscription.ResponseType;
+import de.tudresden.sumo.subscription.SubscribtionVariable;
+import de.tudresden.sumo.subscription.SubscriptionObject;
+import de.tudresden.sumo.subscription.VariableSubscription;
+import de.tudresden.sumo.util.Observable;
+import de.tudresden.sumo.util.Observer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import real_time_traffic_simulation_with_java.alias.Color;
+import real_time_traffic_simulation_with_java.cores.NetworkTopology;
+import real_time_traffic_simulation_with_java.cores.StepSnapshot;
+import real_time_traffic_simulation_with_java.cores.VehicleStateStore;
+
+
+/**
+ * Wrapper class for TraaS variable subscriptions. <br>
+ * Subscriptions are registered once, SUMO then pushes all subscribed values with the answer of every do_timestep,
+ *      so a step costs a single exchange instead of one query per vehicle, edge and traffic light per attribute. <br>
+ * Results are decoded into mutable buffers while the step is read (vehicles into a {@link VehicleStateStore}),
+ *      then frozen into an immutable {@link StepSnapshot}.
+ */
+public class SubscriptionManager implements Observer {
+    private static final Logger LOGGER = Logger.getLogger(SubscriptionManager.class.getName());
+
+    /** Subscriptions are valid for the whole simulation (in simulation seconds) */
+    private static final double SUBSCRIPTION_BEGIN = 0;
+    private static final double SUBSCRIPTION_END = 100000 * 60;
+
+    /** Connection to Sumo */
+    private final SumoTraciConnection conn;
+
+    /** Current simulation time (s) */
+    private double time = 0;
+
+    /** Latest values of running vehicles, one primitive column per attribute */
+    private final VehicleStateStore vehicles = new VehicleStateStore(Color.toRGBA(Color.WHITE));
+    /** Vehicles departed in the last step, subscribed after the step has been read */
+    private final List<String> departedVehicles = new ArrayList<>();
+
+    /** Edge ID -> index in the edge arrays, equal to the edge handle of the vehicle store */
+    private final Map<String, Integer> edgeIndex = new HashMap<>();
+    private double[] edgeLength = new double[0];
+    private int[] edgeVehicleCount = new int[0];
+    private int[] edgeHaltingNumber = new int[0];
+    private double[] edgeAverageSpeed = new double[0];
+
+    /** Traffic light ID -> latest state string */
+    private final Map<String, String> tlsState = new HashMap<>();
+    /** Traffic light ID -> index in the traffic light arrays */
+    private final Map<String, Integer> tlsIndex = new HashMap<>();
+    private int[] tlsPhase = new int[0];
+    private double[] tlsPhaseDuration = new double[0];
+    private double[] tlsNextSwitch = new double[0];
+
+    /**
+     * Wrapper class for TraaS variable subscriptions
+     * @param connection connection to Sumo
+     */
+    public SubscriptionManager(SumoTraciConnection connection) {
+        this.conn = connection;
+    }
+
+
+    /**
+     * Register all subscriptions, must be called once after Sumo has started <br>
+     * All edges and traffic lights of the topology are observed, edge lengths for density come from the topology.
+     * @param topology static network loaded at startup
+     * @param vehicleIDs IDs of vehicles already running
+     * @throws Exception
+     */
+    public void register(NetworkTopology topology, List<String> vehicleIDs) throws Exception {
+        List<String> edgeIDs = topology.getEdgeIDList();
+        List<String> tlsIDs = topology.getTlsIDList();
+        conn.addObserver(this);
+
+        // Simulation: time, departed and arrived vehicles
+        VariableSubscription simulation = new VariableSubscription(SubscribtionVariable.simulation, SUBSCRIPTION_BEGIN, SUBSCRIPTION_END, "");
+        simulation.addCommand(Constants.VAR_TIME);
+        simulation.addCommand(Constants.VAR_DEPARTED_VEHICLES_IDS);
+        simulation.addCommand(Constants.VAR_ARRIVED_VEHICLES_IDS);
+        conn.do_subscription(simulation);
+
+        // Edges: vehicle count, halting number, mean speed
+        this.edgeLength = new double[edgeIDs.size()];
+        this.edgeVehicleCount = new int[edgeIDs.size()];
+        this.edgeHaltingNumber = new int[edgeIDs.size()];
+        this.edgeAverageSpeed = new double[edgeIDs.size()];
+        for (int i = 0; i < edgeIDs.size(); i++) {
+            String edgeID = edgeIDs.get(i);
+            edgeIndex.put(edgeID, vehicles.internEdge(edgeID));
+            edgeLength[i] = topology.getLength(i);
+            VariableSubscription edge = new VariableSubscription(SubscribtionVariable.edge, SUBSCRIPTION_BEGIN, SUBSCRIPTION_END, edgeID);
+            edge.addCommand(Constants.LAST_STEP_VEHICLE_NUMBER);
+            edge.addCommand(Constants.LAST_STEP_VEHICLE_HALTING_NUMBER);
+            edge.addCommand(Constants.LAST_STEP_MEAN_SPEED);
+            conn.do_subscription(edge);
+        }
+
+        // Traffic lights: state string, current phase, its duration and the time of the next switch
+        this.tlsPhase = new int[tlsIDs.size()];
+        this.tlsPhaseDuration = new double[tlsIDs.size()];
+        this.tlsNextSwitch = new double[tlsIDs.size()];
+        Arrays.fill(tlsPhase, -1);
+        Arrays.fill(tlsPhaseDuration, -1);
+        Arrays.fill(tlsNextSwitch, -1);
+        for (int i = 0; i < tlsIDs.size(); i++) {
+            String tlsID = tlsIDs.get(i);
+            tlsIndex.put(tlsID, i);
+            VariableSubscription tls = new VariableSubscription(SubscribtionVariable.trafficlight, SUBSCRIPTION_BEGIN, SUBSCRIPTION_END, tlsID);
+            tls.addCommand(Constants.TL_RED_YELLOW_GREEN_STATE);
+            tls.addCommand(Constants.TL_CURRENT_PHASE);
+            tls.addCommand(Constants.TL_PHASE_DURATION);
+            tls.addCommand(Constants.TL_NEXT_SWITCH);
+            conn.do_subscription(tls);
+        }
+
+        // Vehicles already in the simulation
+        for (String vehicleID : vehicleIDs) {
+            subscribeVehicle(vehicleID);
+        }
+        LOGGER.log(Level.INFO, String.format("Subscribed to %d edges, %d traffic lights and %d vehicles.",
+                                                edgeIDs.size(), tlsIDs.size(), vehicleIDs.size()));
+    }
+
+
+    /**
+     * Finish reading a step: subscribe vehicles departed in this step and freeze all buffers into a snapshot. <br>
+     * Departed vehicles appear in the snapshot from the next step on, when SUMO first reports their values.
+     * @return immutable snapshot of the step just performed
+     */
+    public StepSnapshot collect() {
+        for (String vehicleID : departedVehicles) {
+            try {
+                subscribeVehicle(vehicleID);
+            } catch (IllegalStateException e) {
+                throw e;
+            } catch (Exception e) {
+                LOGGER.log(Level.WARNING, "Unable to subscribe to vehicle ID: " + vehicleID, e);
+            }
+        }
+        departedVehicles.clear();
+        return buildSnapshot();
+    }
+
+
+    /**
+     * Receive one subscribed value from SUMO, called by TraaS while do_timestep reads the answer
+     */
+    @Override
+    public void update(Observable observable, SubscriptionObject so) {
+        if (so.status != Constants.RTYPE_OK) {
+            return;
+        }
+        if (so.response == ResponseType.VEHICLE_VARIABLE) {
+            updateVehicle(so);
+        } else if (so.response == ResponseType.EDGE_VARIABLE) {
+            updateEdge(so);
+        } else if (so.response == ResponseType.TL_VARIABLE) {
+            updateTls(so);
+        } else if (so.response == ResponseType.SIM_VARIABLE) {
+            updateSimulation(so);
+        }
+    }
+
+
+    // ---------------------------------------------------------
+    // Private helper methods
+    // ---------------------------------------------------------
+    /**
+     * Private helper method: subscribe position, angle, color, speed and edge of a vehicle
+     */
+    private void subscribeVehicle(String vehicleID) throws Exception {
+        VariableSubscription vehicle = new VariableSubscription(SubscribtionVariable.vehicle, SUBSCRIPTION_BEGIN, SUBSCRIPTION_END, vehicleID);
+        vehicle.addCommand(Constants.VAR_POSITION);
+        vehicle.addCommand(Constants.VAR_ANGLE);
+        vehicle.addCommand(Constants.VAR_COLOR);
+        vehicle.addCommand(Constants.VAR_SPEED);
+        vehicle.addCommand(Constants.VAR_ROAD_ID);
+        conn.do_subscription(vehicle);
+    }
+
+    /**
+     * Private helper method: decode simulation variables (time, departed and arrived vehicles)
+     */
+    private void updateSimulation(SubscriptionObject so) {
+        if (so.variable == Constants.VAR_TIME) {
+            time = (double) ((SumoPrimitive) so.object).val;
+        } else if (so.variable == Constants.VAR_DEPARTED_VEHICLES_IDS) {
+            departedVehicles.addAll((SumoStringList) so.object);
+        } else if (so.variable == Constants.VAR_ARRIVED_VEHICLES_IDS) {
+            for (String vehicleID : (SumoStringList) so.object) {
+                vehicles.remove(vehicleID);
+            }
+        }
+    }
+
+    /**
+     * Private helper method: decode vehicle variables
+     */
+    private void updateVehicle(SubscriptionObject so) {
+        int slot = vehicles.intern(so.id);
+        switch (so.variable) {
+            case Constants.VAR_POSITION:
+                SumoPosition2D pos = (SumoPosition2D) so.object;
+                vehicles.setPosition(slot, pos.x, pos.y);
+                break;
+            case Constants.VAR_ANGLE:
+                vehicles.setAngle(slot, (double) ((SumoPrimitive) so.object).val);
+                break;
+            case Constants.VAR_COLOR:
+                vehicles.setRGBA(slot, Color.toRGBA((SumoColor) so.object));
+                break;
+            case Constants.VAR_SPEED:
+                vehicles.setSpeed(slot, (double) ((SumoPrimitive) so.object).val * 3.6);
+                break;
+            case Constants.VAR_ROAD_ID:
+                vehicles.setEdge(slot, (String) ((SumoPrimitive) so.object).val);
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * Private helper method: decode edge variables
+     */
+    private void updateEdge(SubscriptionObject so) {
+        Integer i = edgeIndex.get(so.id);
+        if (i == null) {
+            return;
+        }
+        switch (so.variable) {
+            case Constants.LAST_STEP_VEHICLE_NUMBER:
+                edgeVehicleCount[i] = (int) ((SumoPrimitive) so.object).val;
+                break;
+            case Constants.LAST_STEP_VEHICLE_HALTING_NUMBER:
+                edgeHaltingNumber[i] = (int) ((SumoPrimitive) so.object).val;
+                break;
+            case Constants.LAST_STEP_MEAN_SPEED:
+                edgeAverageSpeed[i] = (double) ((SumoPrimitive) so.object).val * 3.6;
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * Private helper method: decode traffic light variables
+     */
+    private void updateTls(SubscriptionObject so) {
+        if (so.variable == Constants.TL_RED_YELLOW_GREEN_STATE) {
+            tlsState.put(so.id, (String) ((SumoPrimitive) so.object).val);
+            return;
+        }
+        Integer t = tlsIndex.get(so.id);
+        if (t == null) {
+            return;
+        }
+        switch (so.variable) {
+            case Constants.TL_CURRENT_PHASE:
+                tlsPhase[t] = (int) ((SumoPrimitive) so.object).val;
+                break;
+            case Constants.TL_PHASE_DURATION:
+                tlsPhaseDuration[t] = (double) ((SumoPrimitive) so.object).val;
+                break;
+            case Constants.TL_NEXT_SWITCH:
+                tlsNextSwitch[t] = (double) ((SumoPrimitive) so.object).val;
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * Private helper method: copy the current buffers into a new immutable snapshot
+     */
+    private StepSnapshot buildSnapshot() {
+        int n = vehicles.size();
+        String[] ids = new String[n];
+        double[] x = new double[n];
+        double[] y = new double[n];
+        double[] angle = new double[n];
+        double[] speed = new double[n];
+        int[] rgba = new int[n];
+        int[] edge = new int[n];
+        vehicles.copyLive(ids, x, y, angle, speed, rgba, edge);
+        double[] density = new double[edgeLength.length];
+        for (int e = 0; e < density.length; e++) {
+            density[e] = edgeVehicleCount[e] / edgeLength[e] * 1000;
+        }
+        return new StepSnapshot(time, ids, x, y, angle, speed, rgba, edge, vehicles.getEdgeDictionary(),
+                                edgeIndex,
+                                Arrays.copyOf(edgeVehicleCount, edgeVehicleCount.length),
+                                Arrays.copyOf(edgeHaltingNumber, edgeHaltingNumber.length),
+                                Arrays.copyOf(edgeAverageSpeed, edgeAverageSpeed.length),
+                                density,
+                                new HashMap<>(tlsState), tlsIndex,
+                                Arrays.copyOf(tlsPhase, tlsPhase.length),
+                                Arrays.copyOf(tlsPhaseDuration, tlsPhaseDuration.length),
+                                Arrays.copyOf(tlsNextSwitch, tlsNextSwitch.length));
+    }
+}
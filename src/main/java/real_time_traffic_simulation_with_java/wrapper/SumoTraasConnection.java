@@ -4,75 +4,61 @@ import java.util.logging.Logger;
 
 import de.tudresden.sumo.cmd.Simulation;
 import it.polito.appeal.traci.SumoTraciConnection;
-import real_time_traffic_simulation_with_java.alias.Path;
+import real_time_traffic_simulation_with_java.alias.Metrics;
 
 /** Wrapper class for SumoTraciConnection to manage connection with SUMO simulator using TraaS library */
 public class SumoTraasConnection {
     
     private static final Logger LOGGER = Logger.getLogger( SumoTraasConnection.class.getName() );
     
-    /** Private Sumo port */
-    private int port = 8813;
-
-    /** added waiting time for Sumo in ms */
-    private int wait = 500;
-
-    /** declare field variable*/
-    private SumoTraciConnection connection;
-
-    /** 
-     * Sumo binary file path. <br>
-     * To change the path go to alias folder and change the path.java file
-    */
-    private String SumoBinary = Path.SumoPath;
-    /** 
-     * Sumo net file path. <br>
-     * To change the path go to alias folder and change the path.java file
-    */
-    private String netFile = Path.NetFilePath;
     /** 
-     * Sumo route file path. <br>
-     * To change the path go to alias folder and change the path.java file
+     * How the connection is opened (local Sumo binary, remote Sumo or fake server). <br>
+     * To change the Sumo paths go to alias folder and change the path.java file
     */
-    private String rouFile = Path.RouFilePath;
+    private final SumoTransport transport;
+
+    /** declare field variable, null until the connection is started */
+    private SumoTraciConnection connection;
     
     /** 
-     * Constructor for SumoTraasConnection 
+     * Constructor for SumoTraasConnection, with the transport selected by -Dsumo.transport (local Sumo binary by default)
      * @throws Exception
     */
     public SumoTraasConnection() throws Exception{
-        try {
-            /** Creat a new sumo connection object */
-            connection = new SumoTraciConnection(SumoBinary, netFile, rouFile);
-            /** Throws (output) the errors */
-        } catch(Exception e){
-            LOGGER.log(Level.SEVERE, "Error initializing SumoTraciConnection: ", e);
-            throw e;
-        }
+        this(SumoTransport.fromSpec(Metrics.SUMO_TRANSPORT));
+    }
+
+    /** 
+     * Constructor for SumoTraasConnection 
+     * @param transport how the connection is opened
+    */
+    public SumoTraasConnection(SumoTransport transport) {
+        this.transport = transport;
     }
 
     /** Getter for connection 
-     * @return SumoTraciConnection connection object
+     * @return SumoTraciConnection connection object, null before {@link #startConnection()}
     */
     public SumoTraciConnection getConnection() {
         return this.connection;
     }
 
+    /** Getter for net file of the simulated network
+     * @return path of the net file, null if the network must be read over TraCI
+    */
+    public String getNetFile() {
+        return this.transport.getNetFile();
+    }
+
     /** Method to start the connection */
     public void startConnection() throws Exception{
-            System.out.println("Starting Sumo, please wait....");
-
-            /** Start Sumo automatically */
-            connection.addOption("start", "true");
-            
-            /** Sumo remote port*/
-            connection.runServer(port);
-            
-            /** Wait for Sumo */
-            Thread.sleep(wait);
- 
-            System.out.println("Sumo start successfully! Thank you for waiting.");
-            LOGGER.log(Level.INFO, "Sumo started successfully on port " + port);
+        try {
+            this.connection = this.transport.connect();
+            /** Throws (output) the errors */
+        } catch(Exception e){
+            LOGGER.log(Level.SEVERE, "Error connecting to " + this.transport.describe() + ": ", e);
+            throw e;
+        }
     }
 
     /** Make a Sumo-move-to-the-next-step method 
@@ -110,6 +96,7 @@ public class SumoTraasConnection {
             throw new Exception("Connection is null, cannot close connection.");
         }
         connection.close();
+        this.transport.close();
         LOGGER.log(Level.INFO, "Sumo connection closed successfully.");
     }
 }
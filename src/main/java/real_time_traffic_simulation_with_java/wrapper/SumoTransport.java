@@ -0,0 +1,140 @@
+package real_time_traffic_simulation_with_java.wrapper;
+
+import java.net.InetSocketAddress;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import it.polito.appeal.traci.SumoTraciConnection;
+import real_time_traffic_simulation_with_java.alias.Metrics;
+import real_time_traffic_simulation_with_java.alias.Path;
+
+
+/**
+ * Where the TraCI connection of {@link SumoTraasConnection} comes from. <br>
+ * The managers only see the TraaS SumoTraciConnection, a transport decides how it is opened:
+ * <ul>
+ *  <li>{@link SumoProcess}: start a local SUMO binary and connect to it (the default)</li>
+ *  <li>{@link Remote}: connect to a SUMO instance already running, e.g. on another machine</li>
+ *  <li>{@link FakeTraciServer}: connect to an in-process fake server, for load tests without SUMO</li>
+ * </ul>
+ * Select at startup with -Dsumo.transport=..., see {@link #fromSpec(String)}.
+ */
+public interface SumoTransport {
+
+    /**
+     * Open the connection, SUMO is ready to step once this returns
+     * @return connection to SUMO
+     * @throws Exception if SUMO cannot be started or reached
+     */
+    SumoTraciConnection connect() throws Exception;
+
+    /**
+     * Getter for net file of the simulated network, parsed at startup instead of querying the network over TraCI
+     * @return path of the net file, null if the network must be read over TraCI
+     */
+    String getNetFile();
+
+    /** Release what the transport holds once the connection is closed (a started server, ...) */
+    default void close() {
+    }
+
+    /** Getter for short description of the transport, for the log */
+    String describe();
+
+
+    /**
+     * Create a transport from its description
+     * @param spec "sumo" (local SUMO binary of {@link Path}), "remote:host:port" or "fake" (settings of {@link Metrics}). <br>
+     *      A remote SUMO may run any network: its network is read over TraCI, unless the net file it runs
+     *      is given as "remote:host:port:netfile".
+     * @return transport, local SUMO binary if the description is unknown
+     */
+    static SumoTransport fromSpec(String spec) {
+        String value = spec == null ? "" : spec.trim();
+        if (value.equals("fake")) {
+            return FakeTraciServer.fromMetrics();
+        }
+        if (value.startsWith("remote:")) {
+            // "remote:port", "remote:host:port" or "remote:host:port:netfile", the net file path may hold ':' itself
+            String[] parts = value.substring("remote:".length()).split(":", 3);
+            String host = parts.length > 1 ? parts[0] : "localhost";
+            int port = Integer.parseInt(parts[parts.length > 1 ? 1 : 0]);
+            String netFile = parts.length > 2 && !parts[2].isEmpty() ? parts[2] : null;
+            return new Remote(host, port, netFile);
+        }
+        if (!value.equals("sumo")) {
+            Logger.getLogger(SumoTransport.class.getName()).log(Level.WARNING, "Unknown Sumo transport: " + value + ", starting Sumo.");
+        }
+        return new SumoProcess(Path.SumoPath, Path.NetFilePath, Path.RouFilePath, Metrics.SUMO_PORT);
+    }
+
+
+    // ----------------------------------------------------------------------------
+    // Implementations
+    // ----------------------------------------------------------------------------
+    /**
+     * Start a local SUMO binary with a net and a route file, and connect to it
+     * @param sumoBinary path of the SUMO binary
+     * @param netFile path of the net file
+     * @param routeFile path of the route file
+     * @param port port SUMO listens on
+     */
+    record SumoProcess(String sumoBinary, String netFile, String routeFile, int port) implements SumoTransport {
+        /** Added waiting time for Sumo (ms) */
+        private static final int WAIT_MS = 500;
+
+        @Override
+        public SumoTraciConnection connect() throws Exception {
+            SumoTraciConnection connection = new SumoTraciConnection(sumoBinary, netFile, routeFile);
+            System.out.println("Starting Sumo, please wait....");
+
+            /** Start Sumo automatically */
+            connection.addOption("start", "true");
+
+            /** Sumo remote port*/
+            connection.runServer(port);
+
+            /** Wait for Sumo */
+            Thread.sleep(WAIT_MS);
+
+            System.out.println("Sumo start successfully! Thank you for waiting.");
+            Logger.getLogger(SumoTransport.class.getName()).log(Level.INFO, "Sumo started successfully on port " + port);
+            return connection;
+        }
+
+        @Override
+        public String getNetFile() {
+            return netFile;
+        }
+
+        @Override
+        public String describe() {
+            return "Sumo process " + sumoBinary + " on port " + port;
+        }
+    }
+
+    /**
+     * Connect to a SUMO instance already running with --remote-port
+     * @param host host name of SUMO
+     * @param port port SUMO listens on
+     * @param netFile path of the net file of the simulated network, null to read the network over TraCI
+     */
+    record Remote(String host, int port, String netFile) implements SumoTransport {
+        @Override
+        public SumoTraciConnection connect() throws Exception {
+            SumoTraciConnection connection = new SumoTraciConnection(new InetSocketAddress(host, port));
+            Logger.getLogger(SumoTransport.class.getName()).log(Level.INFO, "Connected to Sumo at " + host + ":" + port);
+            return connection;
+        }
+
+        @Override
+        public String getNetFile() {
+            return netFile;
+        }
+
+        @Override
+        public String describe() {
+            return "remote Sumo at " + host + ":" + port + (netFile == null ? "" : " (net file " + netFile + ")");
+        }
+    }
+}
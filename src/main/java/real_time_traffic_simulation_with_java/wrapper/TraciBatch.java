@@ -0,0 +1,94 @@
+package real_time_traffic_simulation_with_java.wrapper;
+
+import it.polito.appeal.traci.SumoTraciConnection;
+import it.polito.appeal.traci.protocol.RequestMessage;
+import it.polito.appeal.traci.protocol.ResponseContainer;
+import it.polito.appeal.traci.protocol.ResponseMessage;
+import de.tudresden.sumo.util.SumoCommand;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.net.Socket;
+import java.util.List;
+
+
+/**
+ * Pipelined TraCI set commands: many commands are written into one TraCI message and their statuses are read back
+ *      from one response message, instead of one blocking round trip per command. <br>
+ * TraaS only exposes single-command calls, so the batch writes to the socket of the TraaS connection directly.
+ *      Messages are exchanged while holding the connection lock (the lock of the synchronized do_job_* methods),
+ *      so a batch never interleaves with other TraCI traffic. The streams are unbuffered like the TraaS ones:
+ *      exactly one response message is read per request message, the socket stays in sync for TraaS. <br>
+ * Only commands whose response is a status (set commands) are supported.
+ */
+public final class TraciBatch {
+    private final SumoTraciConnection conn;
+    private final DataOutputStream out;
+    private final DataInputStream in;
+
+    /**
+     * Private constructor: use {@link #open(SumoTraciConnection)}
+     */
+    private TraciBatch(SumoTraciConnection conn, Socket socket) throws IOException {
+        this.conn = conn;
+        this.out = new DataOutputStream(socket.getOutputStream());
+        this.in = new DataInputStream(socket.getInputStream());
+    }
+
+
+    /**
+     * Open a batch channel on a running TraaS connection
+     * @param conn connection to Sumo, Sumo must have started
+     * @return TraciBatch sharing the socket of the connection
+     * @throws ReflectiveOperationException if the TraaS connection does not expose its socket as expected
+     * @throws IOException if the socket is not connected
+     */
+    public static TraciBatch open(SumoTraciConnection conn) throws ReflectiveOperationException, IOException {
+        Field socketField = SumoTraciConnection.class.getDeclaredField("socket");
+        socketField.setAccessible(true);
+        Socket socket = (Socket) socketField.get(conn);
+        if (socket == null || !socket.isConnected() || socket.isClosed()) {
+            throw new IOException("Sumo connection is not open.");
+        }
+        return new TraciBatch(conn, socket);
+    }
+
+
+    /**
+     * Send all commands in one TraCI message and read all their statuses from one response message
+     * @param commands set commands to execute, in order
+     * @return success of each command, in order
+     * @throws IOException if the connection fails, the connection is unusable afterwards
+     */
+    public boolean[] execute(List<SumoCommand> commands) throws IOException {
+        boolean[] ok = new boolean[commands.size()];
+        if (commands.isEmpty()) {
+            return ok;
+        }
+        RequestMessage request = new RequestMessage();
+        for (SumoCommand command : commands) {
+            request.append(command.get_command());
+        }
+        // Serialize first so the whole message leaves in one write
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(commands.size() * 64);
+        request.writeTo(new DataOutputStream(buffer));
+
+        ResponseMessage response;
+        synchronized (conn) {
+            if (conn.isClosed()) {
+                throw new IllegalStateException("Sumo connection is closed.");
+            }
+            buffer.writeTo(out);
+            out.flush();
+            response = new ResponseMessage(in);
+        }
+        List<ResponseContainer> statuses = response.responses();
+        for (int i = 0; i < ok.length && i < statuses.size(); i++) {
+            ok[i] = statuses.get(i).getStatus().result() == 0;
+        }
+        return ok;
+    }
+}
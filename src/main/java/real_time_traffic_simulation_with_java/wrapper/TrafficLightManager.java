@@ -1,9 +1,7 @@
 package real_time_traffic_simulation_with_java.wrapper;
 
 import it.polito.appeal.traci.SumoTraciConnection;
-import de.tudresden.sumo.cmd.Simulation;
 import de.tudresden.sumo.cmd.Trafficlight;
-import de.tudresden.sumo.objects.SumoGeometry;
 import de.tudresden.sumo.objects.SumoLink;
 import de.tudresden.sumo.objects.SumoTLSController;
 import de.tudresden.sumo.objects.SumoTLSProgram;
@@ -13,10 +11,15 @@ import java.util.List;
 import java.util.ArrayList;
 import java.util.logging.Logger;
 import java.util.logging.Level;
+import real_time_traffic_simulation_with_java.cores.NetworkTopology;
+import real_time_traffic_simulation_with_java.cores.StepSnapshot;
 import real_time_traffic_simulation_with_java.cores.TrafficLightData;
 
 
-/** Wrapper class for TraaS to manage traffic lights in the simulation */
+/** 
+ * Wrapper class for TraaS to manage traffic lights in the simulation. <br>
+ * Static values (IDs, number of phases, initial states and durations, lane shapes) are read from the {@link NetworkTopology} cache.
+ */
 public class TrafficLightManager{
     private static final Logger LOGGER = Logger.getLogger(TrafficLightManager.class.getName());
 
@@ -24,6 +27,10 @@ public class TrafficLightManager{
     private final SumoTraciConnection conn;
     /** Store List of visualization objects for traffic lights */
     private List<TrafficLightData> trafficLightDataList = new java.util.ArrayList<>();
+    /** Visualization objects by traffic light index (see {@link NetworkTopology#getTlsIndex}), published once the list is complete, null until then */
+    private volatile TrafficLightData[] trafficLightDataByIndex = null;
+    /** Static network, read once at startup */
+    private NetworkTopology topology;
 
     /**
      * Wrapper class for TraaS to manage traffic lights in the simulation
@@ -34,13 +41,21 @@ public class TrafficLightManager{
     }
 
 
+    /**
+     * Set the static network cache, must be called once after Sumo has started
+     * @param topology NetworkTopology loaded at startup
+     */
+    public void setTopology(NetworkTopology topology) {
+        this.topology = topology;
+    }
+
+
     /**
      * Get list of traffic light IDs
-     * @return a List type String of traffic light IDs
+     * @return a new List type String of traffic light IDs
     */ 
-    @SuppressWarnings("unchecked")    
     public List<String> getIDList() throws Exception{
-        return (List<String>) conn.do_job_get(Trafficlight.getIDList());
+        return topology.getTlsIDList();
     }
 
 
@@ -49,12 +64,7 @@ public class TrafficLightManager{
      * @return a int number of traffic lights
     */  
     public int getCount() {
-        try{
-            return (int) conn.do_job_get(Trafficlight.getIDCount());
-        } catch (Exception e){
-            LOGGER.log(Level.WARNING, "Error getting traffic light count.");
-            return -1;
-        }
+        return topology.getTlsCount();
     }
 
 
@@ -69,47 +79,35 @@ public class TrafficLightManager{
 
     /**
      * Get remaining time of the current phase of the traffic light (second)
+     * @param snapshot state of the current step, read instead of querying Sumo from the caller's thread
      * @param tlId ID of the traffic light
-     * @return double of remaining time in seconds
+     * @return double of remaining time in seconds, -1 if unknown
     */ 
-    public double getNextSwitch(String tlId) {
-        try{
-            double timeSeconds = (double)conn.do_job_get(Simulation.getTime());
-            return (double) conn.do_job_get(Trafficlight.getNextSwitch(tlId)) - timeSeconds;
-        } catch (Exception e){
-            LOGGER.log(Level.WARNING, "Error getting traffic light remaining time until next switch.");
-            return -1;
-        }
+    public double getNextSwitch(StepSnapshot snapshot, String tlId) {
+        double nextSwitch = snapshot.getTlsNextSwitch(tlId);
+        return nextSwitch < 0 ? -1 : nextSwitch - snapshot.getTime();
     }
 
 
     /**
      * Get the duration of the current phase of the traffic light (second)
+     * @param snapshot state of the current step, read instead of querying Sumo from the caller's thread
      * @param tlId ID of the traffic light
-     * @return double of duration of the current phase in seconds
+     * @return double of duration of the current phase in seconds, -1 if unknown
     */ 
-    public double getDuration(String tlId) {
-        try{
-            return (double) conn.do_job_get(Trafficlight.getPhaseDuration(tlId));
-        } catch (Exception e){
-            LOGGER.log(Level.WARNING, "Error getting traffic light current phase duration.");
-            return -1;
-        }
+    public double getDuration(StepSnapshot snapshot, String tlId) {
+        return snapshot.getTlsPhaseDuration(tlId);
     }
 
 
     /**
      * Get the current phase index of the traffic light
+     * @param snapshot state of the current step, read instead of querying Sumo from the caller's thread
      * @param tlId ID of the traffic light
-     * @return int of current phase index
+     * @return int of current phase index, -1 if unknown
     */ 
-    public int getPhaseID(String tlId) {
-        try{
-            return (int) conn.do_job_get(Trafficlight.getPhase(tlId));
-        } catch (Exception e){
-            LOGGER.log(Level.WARNING, "Error getting traffic light current phase index.");
-            return -1;
-        }
+    public int getPhaseID(StepSnapshot snapshot, String tlId) {
+        return snapshot.getTlsPhase(tlId);
     }
 
 
@@ -119,6 +117,11 @@ public class TrafficLightManager{
      * @return int of number of phases
      */
     public int getPhaseCount(String tlId) throws Exception{
+        // Phase count doesn't change when durations are adjusted, only query Sumo for unknown traffic lights
+        int cached = topology.getPhaseCount(tlId);
+        if (cached != -1) {
+            return cached;
+        }
         SumoTLSController controller = (SumoTLSController) conn.do_job_get(Trafficlight.getCompleteRedYellowGreenDefinition(tlId));
         SumoTLSProgram program = controller.programs.values().iterator().next();
         return program.phases.size();
@@ -165,11 +168,10 @@ public class TrafficLightManager{
             // Set the new program in the simulation
             conn.do_job_set(Trafficlight.setCompleteRedYellowGreenDefinition(tlId, newProgram));
             // Update the phases in TrafficLightData
-            for(TrafficLightData trafficLightData : this.trafficLightDataList) {
-                if(trafficLightData.getId().equals(tlId)) {
-                    trafficLightData.setPhasesDuration(newDurations);
-                    break;
-                }
+            TrafficLightData[] byIndex = this.trafficLightDataByIndex;
+            int index = topology.getTlsIndex(tlId);
+            if (index != -1 && byIndex != null) {
+                byIndex[index].setPhasesDuration(newDurations);
             }
         } catch (Exception e){
             LOGGER.log(Level.WARNING, "Error adjusting phase durations for traffic light " + tlId + ".");
@@ -215,34 +217,35 @@ public class TrafficLightManager{
      * @throws Exception
     */
     public List<TrafficLightData> getTrafficLightDataList() throws Exception {
-        List<String> IDs = this.getIDList();
-        for (String id : IDs) {
-            // Get coordinates of start lanes by lane IDs
-            List<SumoGeometry> LandGeometries = new java.util.ArrayList<>();
-            for(SumoLink link : this.getLinksTraffic(id)){
-                SumoGeometry laneGeometry = (SumoGeometry) conn.do_job_get(de.tudresden.sumo.cmd.Lane.getShape(link.from));
-                LandGeometries.add(laneGeometry);
-            }
+        TrafficLightData[] byIndex = new TrafficLightData[topology.getTlsCount()];
+        for (int i = 0; i < topology.getTlsCount(); i++) {
+            String id = topology.getTlsID(i);
+            // Coordinates of start lanes of the controlled links, initial state & durations are cached at startup
             TrafficLightData trafficLightData = new TrafficLightData(
                 id,
-                LandGeometries,
-                this.getState(id),
-                this.getPhasesDuration(id)
+                topology.getControlledLaneShapes(id),
+                topology.getInitialState(id),
+                topology.getPhaseDurations(id)
             );
             trafficLightDataList.add(trafficLightData);
+            byIndex[i] = trafficLightData;
         }
+        this.trafficLightDataByIndex = byIndex;
         return trafficLightDataList;
     }
 
 
     /**
-     * Update mapping data of the TrafficLightData List with current states from simulation
-     * @throws Exception
+     * Update mapping data of the TrafficLightData List with current states from simulation,
+     *      must be called on the JavaFX Application Thread
+     * @param snapshot state of the current step, read instead of querying Sumo per traffic light
     */
-    public void updateTrafficLightDataList() throws Exception {
+    public void updateTrafficLightDataList(StepSnapshot snapshot) {
         for (TrafficLightData trafficLightData : this.trafficLightDataList) {
-            String colorString = this.getState(trafficLightData.getId());
-            trafficLightData.setColor(colorString);
+            String colorString = snapshot.getTlsState(trafficLightData.getId());
+            if (colorString != null) {
+                trafficLightData.setColor(colorString);
+            }
         }
     }
 }
\ No newline at end of file
@@ -5,12 +5,16 @@ import de.tudresden.sumo.cmd.Vehicle;
 import de.tudresden.sumo.cmd.Lane;
 import de.tudresden.sumo.objects.SumoColor;
 import de.tudresden.sumo.objects.SumoPosition2D;
+import de.tudresden.sumo.util.SumoCommand;
 
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.logging.Logger;
 import java.util.logging.Level;
 
-import real_time_traffic_simulation_with_java.cores.VehicleData;
+import real_time_traffic_simulation_with_java.cores.StepSnapshot;
 import real_time_traffic_simulation_with_java.alias.Color;
 
 
@@ -19,12 +23,21 @@ public class VehicleManager {
     /** Logger for logging messages */
     private static final Logger LOGGER = Logger.getLogger(VehicleManager.class.getName());
 
+    /** Number of vehicles injected per TraCI message by {@link #addAll} */
+    private static final int INJECTION_BATCH_SIZE = 500;
+
     /** Connection to Sumo */
     private final SumoTraciConnection conn;
+    /** Pipelined channel for batch injection, opened on first use, null if unavailable */
+    private TraciBatch batch = null;
+    private boolean batchUnavailable = false;
 
     /** Filter for vehicles by color and edge */
     private String filter_color = "";
     private String filter_edge = "";
+    /** Edge handle of filter_edge in the last filtered snapshot, resolved once per snapshot */
+    private StepSnapshot filter_snapshot = null;
+    private int filter_edge_handle = -1;
 
     /**
      * Wrapper class for TraaS to manage vehicles in the simulation
@@ -41,6 +54,12 @@ public class VehicleManager {
     public void setFilter(String color, String edge) {
         this.filter_color = color;
         this.filter_edge = edge;
+        this.filter_snapshot = null;
+    }
+
+    /** Getter for edge ID of the vehicle filter, empty if vehicles are not filtered by edge */
+    public String getFilterEdge() {
+        return this.filter_edge;
     }
 
 
@@ -55,31 +74,28 @@ public class VehicleManager {
 
 
     /** 
-     * Get list of filtered running vehicle IDs, vehicles finished route or not yet be injected are not included
-     * @return a List type String of filtered running vehicle IDs
+     * Check whether a vehicle of the snapshot passes the current filter (color, edge)
+     * @param snapshot state of the current step
+     * @param i index of the vehicle in the snapshot
+     * @return true if the vehicle should be shown
      */
-    public List<String> getFilteredIDList() throws Exception{
-        List<String> allIDs = this.getIDList();
-        if(this.filter_color.isEmpty() && this.filter_edge.isEmpty()) {
-            return allIDs;
+    public boolean isFiltered(StepSnapshot snapshot, int i) {
+        if(!this.filter_color.isEmpty()) {
+            String vehColor = Color.colorToString(snapshot.getVehicleRGBA(i));
+            if(!vehColor.equals(this.filter_color)) {
+                return false;
+            }
         }
-        List<String> filteredIDs = new java.util.ArrayList<>();
-        for (String id : allIDs) {
-            if(!this.filter_color.isEmpty()) {
-                String vehColor = Color.colorToString(this.getColor(id));
-                if(vehColor != this.filter_color) {
-                    continue;
-                }
+        if(!this.filter_edge.isEmpty()) {
+            if(snapshot != this.filter_snapshot) {
+                this.filter_edge_handle = snapshot.getEdgeHandle(this.filter_edge);
+                this.filter_snapshot = snapshot;
             }
-            if(!this.filter_edge.isEmpty()) {
-                String vehEdgeID = this.getEdgeID(id);
-                if(!vehEdgeID.equals(this.filter_edge)) {
-                    continue;
-                }
+            if(snapshot.getVehicleEdge(i) != this.filter_edge_handle) {
+                return false;
             }
-            filteredIDs.add(id);
         }
-        return filteredIDs;
+        return true;
     }
 
 
@@ -184,35 +200,102 @@ public class VehicleManager {
      * @param vehID ID of the vehicle
      * @param routeID ID of the route
      * @param color String representing the color of the vehicle
+     * @return true if the vehicle was injected, even if its color could not be set
     */ 
-    public void add(String vehID, String routeID, String color, String speed_in_ms) {
+    public boolean add(String vehID, String routeID, String color, String speed_in_ms) {
         try{
-            conn.do_job_set(Vehicle.addFull(vehID, routeID, "DEFAULT_VEHTYPE", "now", "best", "base", speed_in_ms, "current", "max", "current", "", "", "", 0, 0));
-            this.setColor(vehID, Color.stringToColor(color));
+            conn.do_job_set(addCommand(vehID, routeID, speed_in_ms));
         } catch (Exception e) {
             LOGGER.log(Level.WARNING, "Unable to inject vehicle to SUMO. ");
+            return false;
         }
+        this.setColor(vehID, Color.stringToColor(color));
+        return true;
     }
 
 
     /**
-     * Create and get a List of VehicleData for all vehicles
-     * @return a List of VehicleData for all vehicles      
-    */
-    public List<VehicleData> getVehicleDataList() throws Exception {
-        List<VehicleData> vehicleDataList = new java.util.ArrayList<>();
-        List<String> IDs = this.getFilteredIDList();
-        for (String id : IDs) {
-            SumoPosition2D pos = this.getPosition(id);
-            VehicleData vehicledata = new VehicleData(
-                    id,
-                    pos.x,
-                    pos.y,
-                    this.getAngle(id),
-                    this.getColor(id)
-            );
-            vehicleDataList.add(vehicledata);
+     * Vehicle to inject with {@link VehicleManager#addAll}
+     * @param vehicleID ID of the vehicle
+     * @param routeID ID of an existing route
+     * @param color String representing the color of the vehicle, WHITE if invalid
+     * @param speed departure speed ("max", "random", ... or m/s)
+     */
+    public record VehicleSpec(String vehicleID, String routeID, String color, String speed) {}
+
+
+    /**
+     * Inject many vehicles of default type at once. <br>
+     * The add and color commands of up to INJECTION_BATCH_SIZE vehicles are written into one TraCI message
+     *      and their statuses read back from one response, instead of 2 blocking round trips per vehicle.
+     *      Falls back to {@link #add} per vehicle if the pipelined channel cannot be opened. <br>
+     * The injected-per-second throughput is logged.
+     * @param specs vehicles to inject, in order
+     * @return number of vehicles injected successfully
+     */
+    public int addAll(List<VehicleSpec> specs) {
+        long start = System.nanoTime();
+        int injected = 0;
+        TraciBatch channel = this.getBatch();
+        if (channel == null) {
+            for (VehicleSpec spec : specs) {
+                if (this.add(spec.vehicleID(), spec.routeID(), spec.color(), spec.speed())) {
+                    injected++;
+                }
+            }
+        } else {
+            // Each color is parsed once, not once per vehicle
+            Map<String, SumoColor> colors = new HashMap<>();
+            List<SumoCommand> commands = new ArrayList<>(2 * Math.min(specs.size(), INJECTION_BATCH_SIZE));
+            for (int from = 0; from < specs.size(); from += INJECTION_BATCH_SIZE) {
+                int to = Math.min(specs.size(), from + INJECTION_BATCH_SIZE);
+                commands.clear();
+                for (int i = from; i < to; i++) {
+                    VehicleSpec spec = specs.get(i);
+                    commands.add(addCommand(spec.vehicleID(), spec.routeID(), spec.speed()));
+                    commands.add(Vehicle.setColor(spec.vehicleID(), colors.computeIfAbsent(spec.color(), Color::stringToColor)));
+                }
+                try {
+                    boolean[] ok = channel.execute(commands);
+                    for (int k = 0; k < ok.length; k += 2) {
+                        if (ok[k]) {
+                            injected++;
+                        }
+                    }
+                } catch (java.io.IOException e) {
+                    LOGGER.log(Level.WARNING, "Unable to inject vehicles to SUMO, batch injection stopped.", e);
+                    this.batch = null;
+                    this.batchUnavailable = true;
+                    break;
+                }
+            }
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        LOGGER.log(Level.INFO, String.format("Batch injection: %d/%d vehicles in %.1f ms (%.0f vehicles/s).",
+                                                injected, specs.size(), seconds * 1000, seconds > 0 ? injected / seconds : 0));
+        return injected;
+    }
+
+
+    /**
+     * Private helper method: TraCI command adding a vehicle of default type, departing now
+     */
+    private static SumoCommand addCommand(String vehID, String routeID, String speed_in_ms) {
+        return Vehicle.addFull(vehID, routeID, "DEFAULT_VEHTYPE", "now", "best", "base", speed_in_ms, "current", "max", "current", "", "", "", 0, 0);
+    }
+
+    /**
+     * Private helper method: pipelined channel, opened once, null if it cannot be opened
+     */
+    private TraciBatch getBatch() {
+        if (this.batch == null && !this.batchUnavailable) {
+            try {
+                this.batch = TraciBatch.open(this.conn);
+            } catch (Exception e) {
+                LOGGER.log(Level.WARNING, "Batch injection unavailable, vehicles are injected one by one.", e);
+                this.batchUnavailable = true;
+            }
         }
-        return vehicleDataList;
+        return this.batch;
     }
 }
@@ -0,0 +1,216 @@
+package real_time_traffic_simulation_with_java;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javafx.application.Platform;
+import javafx.scene.Scene;
+import javafx.scene.chart.BarChart;
+import javafx.scene.chart.CategoryAxis;
+import javafx.scene.chart.NumberAxis;
+import javafx.scene.chart.XYChart;
+import real_time_traffic_simulation_with_java.cores.EdgeMetrics;
+import real_time_traffic_simulation_with_java.cores.StepSnapshot;
+import real_time_traffic_simulation_with_java.gui.dashboardSection.ChartSection;
+
+
+/**
+ * Dashboard chart update: per-edge lookups and rebuilt bars against the bulk per-edge metrics and bars updated in place. <br>
+ * Data part (no display needed): the chart values of all edges are read once per step, either edge by edge by ID
+ *      (three snapshot lookups and an array per edge, like the former per-edge getter) or from an {@link EdgeMetrics}
+ *      built once per step and read by edge handle. <br>
+ * JavaFX part: time spent on the JavaFX Application Thread per update, layout of the chart included,
+ *      for the former update (clear all series, add new data points) and for {@link ChartSection#refresh()}.
+ *      It is skipped if the JavaFX toolkit cannot start. Without a display run it headless:
+ *      -Dglass.platform=Monocle -Dmonocle.platform=Headless -Dprism.order=sw with openjfx-monocle on the class path. <br>
+ * Usage: ChartUpdateBenchmark [edges] [updates], default 500 edges, 200 updates. <br>
+ * Plain main method harness: a warm-up round, then one measured round.
+ */
+public class ChartUpdateBenchmark {
+    public static void main(String[] args) throws Exception {
+        int edges = args.length > 0 ? Integer.parseInt(args[0]) : 500;
+        int updates = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+        Network network = new Network(edges);
+        StepSnapshot[] steps = new StepSnapshot[updates];
+        for (int u = 0; u < updates; u++) {
+            steps[u] = network.step(u);
+        }
+        System.out.printf(Locale.ROOT, "%d edges, %d updates%n", edges, updates);
+
+        // Data: per-edge lookups by ID vs one metrics vector per step
+        double lookupSum = 0;
+        double bulkSum = 0;
+        double lookupMs = 0;
+        double bulkMs = 0;
+        for (int round = 0; round < 2; round++) {
+            lookupSum = 0;
+            bulkSum = 0;
+            long t0 = System.nanoTime();
+            for (StepSnapshot step : steps) {
+                for (String edgeID : network.sortedIDs) {
+                    double[] stats = {step.getEdgeAverageSpeed(edgeID), step.getEdgeDensity(edgeID),
+                                        step.getEdgeHaltingNumber(edgeID)};
+                    lookupSum += stats[0] + stats[1] + stats[2];
+                }
+            }
+            long t1 = System.nanoTime();
+            for (StepSnapshot step : steps) {
+                EdgeMetrics metrics = new EdgeMetrics(step, network.length, network.maxSpeed);
+                for (int handle : network.sortedHandles) {
+                    bulkSum += metrics.getAverageSpeed(handle) + metrics.getDensity(handle) + metrics.getHaltingNumber(handle);
+                }
+            }
+            long t2 = System.nanoTime();
+            lookupMs = (t1 - t0) / 1e6;
+            bulkMs = (t2 - t1) / 1e6;
+        }
+        System.out.printf(Locale.ROOT, "  data, lookups by edge ID      : %.1f us per update%n", lookupMs * 1e3 / updates);
+        System.out.printf(Locale.ROOT, "  data, metrics vector + handles: %.1f us per update (vector built once per step)%n",
+                            bulkMs * 1e3 / updates);
+        System.out.printf(Locale.ROOT, "  checksum: lookups %.3f, metrics vector %.3f, same values: %b%n", lookupSum, bulkSum,
+                            Math.abs(lookupSum - bulkSum) <= 1e-9 * Math.abs(lookupSum));
+
+        // JavaFX Application Thread
+        try {
+            CountDownLatch started = new CountDownLatch(1);
+            Platform.startup(started::countDown);
+            started.await();
+        } catch (RuntimeException | UnsatisfiedLinkError e) {
+            System.out.println("  JavaFX toolkit not available (" + e.getMessage() + "), FX-thread part skipped");
+            return;
+        }
+        AtomicReference<double[]> result = new AtomicReference<>();
+        CountDownLatch done = new CountDownLatch(1);
+        Platform.runLater(() -> {
+            result.set(measureFX(network, steps));
+            done.countDown();
+        });
+        done.await();
+        Platform.exit();
+        double[] ms = result.get();
+        System.out.printf(Locale.ROOT, "  FX thread, rebuild all bars: mean %.2f ms, max %.2f ms per update%n", ms[0], ms[1]);
+        System.out.printf(Locale.ROOT, "  FX thread, update in place : mean %.2f ms, max %.2f ms per update%n", ms[2], ms[3]);
+    }
+
+
+    /**
+     * Private helper method: {rebuild mean, rebuild max, in place mean, in place max} (ms), on the JavaFX Application Thread
+     */
+    private static double[] measureFX(Network network, StepSnapshot[] steps) {
+        // Former update: clear the series and add new data points
+        BarChart<Number, String> rebuilt = new BarChart<>(new NumberAxis(), new CategoryAxis());
+        rebuilt.setAnimated(false);
+        List<XYChart.Series<Number, String>> series = new ArrayList<>();
+        for (int s = 0; s < 3; s++) {
+            series.add(new XYChart.Series<>());
+            rebuilt.getData().add(series.get(s));
+        }
+        new Scene(rebuilt, 350, network.sortedIDs.size() * 30 + 50);
+        double[] rebuild = {0, 0};
+        for (int round = 0; round < 2; round++) {
+            rebuild = time(steps, step -> {
+                for (XYChart.Series<Number, String> s : series) {
+                    s.getData().clear();
+                }
+                for (String edgeID : network.sortedIDs) {
+                    double[] stats = {step.getEdgeAverageSpeed(edgeID), step.getEdgeDensity(edgeID),
+                                        step.getEdgeHaltingNumber(edgeID)};
+                    for (int s = 0; s < 3; s++) {
+                        series.get(s).getData().add(new XYChart.Data<>(stats[s], edgeID));
+                    }
+                }
+                rebuilt.applyCss();
+                rebuilt.layout();
+            });
+        }
+
+        // Update in place
+        AtomicReference<EdgeMetrics> current = new AtomicReference<>(EdgeMetrics.EMPTY);
+        Map<String, Integer> handles = new HashMap<>();
+        for (int k = 0; k < network.sortedIDs.size(); k++) {
+            handles.put(network.sortedIDs.get(k), network.sortedHandles[k]);
+        }
+        ChartSection chart = new ChartSection(network.sortedIDs, current::get, handles::get);
+        new Scene(chart, 350, network.sortedIDs.size() * 30 + 50);
+        double[] inPlace = {0, 0};
+        for (int round = 0; round < 2; round++) {
+            inPlace = time(steps, step -> {
+                current.set(new EdgeMetrics(step, network.length, network.maxSpeed));
+                chart.refresh();
+                chart.applyCss();
+                chart.layout();
+            });
+        }
+        return new double[]{rebuild[0], rebuild[1], inPlace[0], inPlace[1]};
+    }
+
+    /**
+     * Private helper method: {mean, max} time (ms) of an update per step
+     */
+    private static double[] time(StepSnapshot[] steps, java.util.function.Consumer<StepSnapshot> update) {
+        long total = 0;
+        long max = 0;
+        for (StepSnapshot step : steps) {
+            long t0 = System.nanoTime();
+            update.accept(step);
+            long ns = System.nanoTime() - t0;
+            total += ns;
+            max = Math.max(max, ns);
+        }
+        return new double[]{total / 1e6 / steps.length, max / 1e6};
+    }
+
+    /** Synthetic network: edge IDs, lengths, speed limits and random edge statistics per step */
+    private static final class Network {
+        private final Random random = new Random(42);
+        private final String[] dictionary;
+        private final Map<String, Integer> edgeIndex = new HashMap<>();
+        private final double[] length;
+        private final double[] maxSpeed;
+        /** Edge IDs in chart order (sorted) and their handles */
+        private final List<String> sortedIDs;
+        private final int[] sortedHandles;
+
+        Network(int edges) {
+            dictionary = new String[edges];
+            length = new double[edges];
+            maxSpeed = new double[edges];
+            for (int e = 0; e < edges; e++) {
+                dictionary[e] = "E" + e;
+                edgeIndex.put(dictionary[e], e);
+                length[e] = 20 + random.nextDouble() * 300;
+                maxSpeed[e] = 30 + random.nextInt(4) * 10;
+            }
+            sortedIDs = new ArrayList<>(List.of(dictionary));
+            Collections.sort(sortedIDs);
+            sortedHandles = new int[edges];
+            for (int k = 0; k < edges; k++) {
+                sortedHandles[k] = edgeIndex.get(sortedIDs.get(k));
+            }
+        }
+
+        StepSnapshot step(int step) {
+            int edges = dictionary.length;
+            int[] vehicleCount = new int[edges];
+            int[] halting = new int[edges];
+            double[] speed = new double[edges];
+            double[] density = new double[edges];
+            for (int e = 0; e < edges; e++) {
+                vehicleCount[e] = random.nextInt(12);
+                halting[e] = random.nextInt(vehicleCount[e] + 1);
+                speed[e] = vehicleCount[e] == 0 ? maxSpeed[e] : random.nextDouble() * maxSpeed[e];
+                density[e] = vehicleCount[e] / length[e] * 1000;
+            }
+            return new StepSnapshot(step, new String[0], new double[0], new double[0], new double[0], new double[0],
+                                    new int[0], new int[0], dictionary, edgeIndex, vehicleCount, halting, speed, density,
+                                    Collections.emptyMap());
+        }
+    }
+}
@@ -0,0 +1,193 @@
+package real_time_traffic_simulation_with_java;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+
+import real_time_traffic_simulation_with_java.alias.Metrics;
+import real_time_traffic_simulation_with_java.cores.CongestionDetector;
+import real_time_traffic_simulation_with_java.cores.CongestionEngine;
+import real_time_traffic_simulation_with_java.cores.EdgeMetrics;
+import real_time_traffic_simulation_with_java.cores.NetworkTopology;
+import real_time_traffic_simulation_with_java.cores.StepSnapshot;
+
+
+/**
+ * Per-step cost of the {@link CongestionEngine} on a large network, with the halting rate detector alone and with all
+ *      built-in detectors, against the former per-edge update (halting rate and duration arrays updated edge by edge). <br>
+ * Edges alternate between calm and jammed phases of random lengths so that congestion starts and clears every step. <br>
+ * Checks that the engine with the halting rate detector finds the same congested edges as the former update every step,
+ *      and that the events received by a subscriber replay the congestion state. <br>
+ * Usage: CongestionBenchmark [edges], default 50000. <br>
+ * Plain main method harness: warm-up steps, then the median of the measured steps is printed.
+ */
+public class CongestionBenchmark {
+    private static final int WARMUP_STEPS = 2_000;
+    private static final int MEASURED_STEPS = 500;
+    /** Different step states cycled through */
+    private static final int STATES = 64;
+
+    public static void main(String[] args) {
+        int edges = args.length > 0 ? Integer.parseInt(args[0]) : 50_000;
+        Random random = new Random(42);
+
+        // Static network: straight edges of 1 to 3 lanes, 50 to 300 m, 30 to 90 km/h
+        NetworkTopology.Builder builder = new NetworkTopology.Builder();
+        for (int i = 0; i < edges; i++) {
+            builder.addEdge("E" + i);
+            int lanes = 1 + random.nextInt(3);
+            double length = 50 + random.nextInt(250);
+            double speed = (30 + 10 * random.nextInt(7)) / 3.6;
+            for (int lane = 0; lane < lanes; lane++) {
+                builder.addLane(length, speed);
+                builder.addPoint(0, i * 10 + lane * Metrics.DEFAULT_LANE_WIDTH);
+                builder.addPoint(length, i * 10 + lane * Metrics.DEFAULT_LANE_WIDTH);
+            }
+        }
+        NetworkTopology topology = builder.build("benchmark", 0, 0);
+        double[] length = new double[edges];
+        double[] maxSpeed = new double[edges];
+        for (int e = 0; e < edges; e++) {
+            length[e] = topology.getLength(e);
+            maxSpeed[e] = topology.getMaxSpeed(e);
+        }
+        StepSnapshot[] snapshots = new StepSnapshot[STATES];
+        EdgeMetrics[] metrics = new EdgeMetrics[STATES];
+        for (int s = 0; s < STATES; s++) {
+            snapshots[s] = snapshot(topology, s, random);
+            metrics[s] = new EdgeMetrics(snapshots[s], length, maxSpeed);
+        }
+
+        int duration = 5;
+        CongestionEngine halting = new CongestionEngine(topology,
+                List.of(CongestionDetector.haltingRate(topology, Metrics.HIGH_HALTING_RATE_THRESHOLD)), duration);
+        CongestionEngine all = new CongestionEngine(topology,
+                CongestionDetector.parse("halting,travelTime,speedRatio,occupancy", topology), duration);
+        FormerUpdate former = new FormerUpdate(topology, duration);
+        // Subscriber replaying the events of the engine with all detectors
+        boolean[] replayed = new boolean[edges];
+        long[] eventCount = new long[2];
+        all.subscribe(event -> {
+            replayed[event.edge()] = event.type() == CongestionEngine.EventType.START;
+            eventCount[event.type().ordinal()]++;
+        });
+
+        long[] formerTimes = new long[MEASURED_STEPS];
+        long[] haltingTimes = new long[MEASURED_STEPS];
+        long[] allTimes = new long[MEASURED_STEPS];
+        boolean same = true;
+        long congestedSum = 0;
+        for (int step = 0; step < WARMUP_STEPS + MEASURED_STEPS; step++) {
+            StepSnapshot snapshot = snapshots[step % STATES];
+            EdgeMetrics stepMetrics = metrics[step % STATES];
+            long t0 = System.nanoTime();
+            former.update(snapshot);
+            long t1 = System.nanoTime();
+            halting.update(snapshot, stepMetrics);
+            long t2 = System.nanoTime();
+            all.update(snapshot, stepMetrics);
+            long t3 = System.nanoTime();
+            for (int e = 0; e < edges; e++) {
+                same &= former.congested[e] == halting.isCongested(e) && replayed[e] == all.isCongested(e);
+            }
+            if (step >= WARMUP_STEPS) {
+                formerTimes[step - WARMUP_STEPS] = t1 - t0;
+                haltingTimes[step - WARMUP_STEPS] = t2 - t1;
+                allTimes[step - WARMUP_STEPS] = t3 - t2;
+                congestedSum += all.getCongestedCount();
+            }
+        }
+
+        System.out.printf(Locale.ROOT, "%d edges, per step (median):%n", edges);
+        System.out.printf(Locale.ROOT, "  former per-edge update        : %8.1f us (%d congested)%n",
+                            median(formerTimes) / 1e3, halting.getCongestedCount());
+        System.out.printf(Locale.ROOT, "  engine, halting rate          : %8.1f us%n", median(haltingTimes) / 1e3);
+        System.out.printf(Locale.ROOT, "  engine, all 4 detectors       : %8.1f us (%.0f congested on average, %d starts, %d clears)%n",
+                            median(allTimes) / 1e3, (double) congestedSum / MEASURED_STEPS, eventCount[0], eventCount[1]);
+        System.out.println("  same congested edges as the former update, events replay the state: " + same);
+    }
+
+
+    /**
+     * Snapshot of a step: each edge is jammed (fully halted, slow, dense) in some of the states, calm in the others
+     */
+    private static StepSnapshot snapshot(NetworkTopology topology, int state, Random random) {
+        int edges = topology.getEdgeCount();
+        String[] dictionary = topology.getEdgeIDList().toArray(new String[0]);
+        Map<String, Integer> edgeIndex = new HashMap<>();
+        for (int e = 0; e < dictionary.length; e++) {
+            edgeIndex.put(dictionary[e], e);
+        }
+        int[] vehicleCount = new int[edges];
+        int[] haltingNumber = new int[edges];
+        double[] averageSpeed = new double[edges];
+        double[] density = new double[edges];
+        for (int e = 0; e < edges; e++) {
+            // Jammed in a window of states which depends on the edge
+            int phase = (state + e * 7) % STATES;
+            boolean jammed = e % 5 == 0 && phase < 24 + (e % 16);
+            int lanes = topology.getLaneCount(e);
+            if (jammed) {
+                vehicleCount[e] = (int) (topology.getLength(e) * lanes / 7.5);
+                haltingNumber[e] = vehicleCount[e];
+                averageSpeed[e] = random.nextDouble() * 5;
+            } else {
+                vehicleCount[e] = random.nextInt(3 * lanes + 1);
+                haltingNumber[e] = random.nextInt(2);
+                averageSpeed[e] = vehicleCount[e] == 0 ? topology.getMaxSpeed(e) : topology.getMaxSpeed(e) * (0.5 + random.nextDouble() / 2);
+            }
+            density[e] = vehicleCount[e] / topology.getLength(e) * 1000;
+        }
+        return new StepSnapshot(state, new String[0], new double[0], new double[0], new double[0], new double[0],
+                                new int[0], new int[0], dictionary, edgeIndex,
+                                vehicleCount, haltingNumber, averageSpeed, density, Collections.emptyMap());
+    }
+
+    /** Former EdgeManager.updateEdgeDataList: per-edge halting rate with a duration, one edge at a time */
+    private static final class FormerUpdate {
+        private final NetworkTopology topology;
+        private final int duration;
+        private final boolean[] congested;
+        private final boolean[] highHaltingRate;
+        private final int[] highHaltingDuration;
+
+        FormerUpdate(NetworkTopology topology, int duration) {
+            this.topology = topology;
+            this.duration = duration;
+            this.congested = new boolean[topology.getEdgeCount()];
+            this.highHaltingRate = new boolean[topology.getEdgeCount()];
+            this.highHaltingDuration = new int[topology.getEdgeCount()];
+        }
+
+        void update(StepSnapshot snapshot) {
+            for (int i = 0; i < congested.length; i++) {
+                int haltingNumber = snapshot.getEdgeHaltingNumber(i);
+                if (haltingNumber == -1) {
+                    continue;
+                }
+                double haltingRate = haltingNumber / topology.getLaneCount(i);
+                if (haltingRate >= Metrics.HIGH_HALTING_RATE_THRESHOLD) {
+                    highHaltingDuration[i]++;
+                    highHaltingRate[i] = true;
+                    if (highHaltingDuration[i] >= duration) {
+                        congested[i] = true;
+                    }
+                } else if (highHaltingRate[i]) {
+                    congested[i] = false;
+                    highHaltingRate[i] = false;
+                    highHaltingDuration[i] = 0;
+                }
+            }
+        }
+    }
+
+    private static long median(long[] values) {
+        long[] sorted = values.clone();
+        Arrays.sort(sorted);
+        return sorted[sorted.length / 2];
+    }
+}
@@ -0,0 +1,264 @@
+package real_time_traffic_simulation_with_java;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+import real_time_traffic_simulation_with_java.cores.CongestionDetector;
+import real_time_traffic_simulation_with_java.cores.CongestionEngine;
+import real_time_traffic_simulation_with_java.cores.CongestionEngine.Event;
+import real_time_traffic_simulation_with_java.cores.CongestionEngine.EventType;
+import real_time_traffic_simulation_with_java.cores.EdgeMetrics;
+import real_time_traffic_simulation_with_java.cores.NetworkTopology;
+import real_time_traffic_simulation_with_java.cores.StepSnapshot;
+
+/**
+ * Unit test for CongestionEngine: duration hysteresis, combined detectors, events and the published state.
+ */
+public class CongestionEngineTest
+{
+    private static final int EDGES = 5;
+    private static final int THRESHOLD = 3;
+
+    /**
+     * Detector flagging the edges given by the test for the next step
+     */
+    private static final class ScriptedDetector implements CongestionDetector
+    {
+        private final String name;
+        private int[] flagged = new int[0];
+
+        ScriptedDetector( String name )
+        {
+            this.name = name;
+        }
+
+        @Override
+        public String getName()
+        {
+            return name;
+        }
+
+        @Override
+        public void detect( StepSnapshot snapshot, EdgeMetrics metrics, int[] mask, int bit )
+        {
+            for ( int edge : flagged )
+            {
+                mask[edge] |= bit;
+            }
+        }
+    }
+
+    private final NetworkTopology topology = topology( EDGES );
+    private final ScriptedDetector a = new ScriptedDetector( "a" );
+    private final ScriptedDetector b = new ScriptedDetector( "b" );
+    private final CongestionEngine engine = new CongestionEngine( topology, List.of( a, b ), THRESHOLD );
+    private final List<Event> events = new ArrayList<>();
+    private int step = 0;
+
+    public CongestionEngineTest()
+    {
+        engine.subscribe( events::add );
+    }
+
+    @Test
+    public void edgeIsCongestedAfterThresholdStepsInARow()
+    {
+        for ( int k = 1; k < THRESHOLD; k++ )
+        {
+            assertEquals( 0, step( new int[]{ 1 }, new int[0] ) );
+            assertFalse( engine.isCongested( 1 ) );
+        }
+        assertEquals( 1, step( new int[]{ 1 }, new int[0] ) );
+        assertTrue( engine.isCongested( 1 ) );
+        assertEquals( 1, engine.getCongestedCount() );
+        assertEquals( List.of( new Event( EventType.START, 1, "E1", THRESHOLD, "a" ) ), events );
+
+        // Staying flagged raises no new event
+        assertEquals( 0, step( new int[]{ 1 }, new int[0] ) );
+        assertEquals( 1, events.size() );
+    }
+
+    @Test
+    public void gapInTheFlagsRestartsTheDuration()
+    {
+        for ( int k = 1; k < THRESHOLD; k++ )
+        {
+            step( new int[]{ 2 }, new int[0] );
+        }
+        step( new int[0], new int[0] );
+        for ( int k = 1; k < THRESHOLD; k++ )
+        {
+            step( new int[]{ 2 }, new int[0] );
+        }
+        assertFalse( engine.isCongested( 2 ) );
+        step( new int[]{ 2 }, new int[0] );
+        assertTrue( engine.isCongested( 2 ) );
+    }
+
+    @Test
+    public void congestionClearsAsSoonAsNoDetectorFlagsTheEdge()
+    {
+        congest( 3 );
+        events.clear();
+        assertEquals( 1, step( new int[0], new int[0] ) );
+        assertFalse( engine.isCongested( 3 ) );
+        assertEquals( 0, engine.getCongestedCount() );
+        assertEquals( List.of( new Event( EventType.CLEAR, 3, "E3", step, "" ) ), events );
+    }
+
+    @Test
+    public void detectorsAreCombined()
+    {
+        // The duration runs on while the flag passes from one detector to the other
+        step( new int[]{ 0 }, new int[0] );
+        step( new int[0], new int[]{ 0 } );
+        step( new int[]{ 0 }, new int[]{ 0 } );
+        assertTrue( engine.isCongested( 0 ) );
+        assertEquals( "a+b", events.get( 0 ).detectors() );
+        assertEquals( List.of( "a", "b" ), engine.getDetectorNames() );
+    }
+
+    @Test
+    public void edgesWithoutStatisticsKeepTheirState()
+    {
+        congest( 4 );
+        // Edge 4 has no statistics in the next steps: neither cleared nor counted as flagged
+        for ( int k = 0; k < 2 * THRESHOLD; k++ )
+        {
+            step( new int[0], new int[0], EDGES - 1 );
+        }
+        assertTrue( engine.isCongested( 4 ) );
+        step( new int[0], new int[0] );
+        assertFalse( engine.isCongested( 4 ) );
+    }
+
+    @Test
+    public void eventsAndCongestedEdgesComeInEdgeOrder()
+    {
+        for ( int k = 0; k < THRESHOLD; k++ )
+        {
+            step( new int[]{ 4, 0 }, new int[]{ 2 } );
+        }
+        assertEquals( Arrays.asList( 0, 2, 4 ), edges( events ) );
+        List<Integer> congested = new ArrayList<>();
+        engine.forEachCongested( congested::add );
+        assertEquals( Arrays.asList( 0, 2, 4 ), congested );
+        assertEquals( 3, engine.getCongestedCount() );
+    }
+
+    @Test
+    public void listenersSeeTheStateOfTheirStep()
+    {
+        List<String> seen = new ArrayList<>();
+        engine.subscribe( event ->
+        {
+            List<Integer> congested = new ArrayList<>();
+            engine.forEachCongested( congested::add );
+            seen.add( event.type() + " " + engine.isCongested( event.edge() ) + " " + engine.getCongestedCount() + " " + congested );
+        } );
+        congest( 1 );
+        step( new int[0], new int[0] );
+        assertEquals( List.of( "START true 1 [1]", "CLEAR false 0 []" ), seen );
+    }
+
+    @Test
+    public void failingListenerDoesNotStopTheOthers()
+    {
+        List<Event> received = new ArrayList<>();
+        CongestionEngine engine = new CongestionEngine( topology, List.of( a ), 1 );
+        engine.subscribe( event ->
+        {
+            throw new IllegalStateException( "listener failure" );
+        } );
+        engine.subscribe( received::add );
+        a.flagged = new int[]{ 0, 1 };
+        engine.update( snapshot( 1, EDGES ), metrics( snapshot( 1, EDGES ) ) );
+        assertEquals( 2, received.size() );
+    }
+
+    @Test
+    public void unknownHandlesAreNotCongested()
+    {
+        congest( 0 );
+        assertFalse( engine.isCongested( -1 ) );
+        assertFalse( engine.isCongested( EDGES ) );
+        assertFalse( engine.isCongested( Integer.MAX_VALUE ) );
+    }
+
+
+    /**
+     * Private helper method: evaluate one step with the edges flagged by each detector, all edges with statistics
+     */
+    private int step( int[] byA, int[] byB )
+    {
+        return step( byA, byB, EDGES );
+    }
+
+    /**
+     * Private helper method: evaluate one step, edges from statsEdges on have no statistics
+     */
+    private int step( int[] byA, int[] byB, int statsEdges )
+    {
+        a.flagged = byA;
+        b.flagged = byB;
+        StepSnapshot snapshot = snapshot( ++step, statsEdges );
+        return engine.update( snapshot, metrics( snapshot ) );
+    }
+
+    private void congest( int edge )
+    {
+        for ( int k = 0; k < THRESHOLD; k++ )
+        {
+            step( new int[]{ edge }, new int[0] );
+        }
+        assertTrue( engine.isCongested( edge ) );
+    }
+
+    private static List<Integer> edges( List<Event> events )
+    {
+        List<Integer> edges = new ArrayList<>();
+        for ( Event event : events )
+        {
+            edges.add( event.edge() );
+        }
+        return edges;
+    }
+
+    private static NetworkTopology topology( int edges )
+    {
+        NetworkTopology.Builder builder = new NetworkTopology.Builder();
+        for ( int i = 0; i < edges; i++ )
+        {
+            builder.addEdge( "E" + i );
+            builder.addLane( 100, 50 );
+            builder.addPoint( 0, i * 10 );
+            builder.addPoint( 100, i * 10 );
+        }
+        return builder.build( "test", 0, 0 );
+    }
+
+    private static StepSnapshot snapshot( double time, int statsEdges )
+    {
+        return new StepSnapshot( time, new String[0], new double[0], new double[0], new double[0], new double[0],
+                                    new int[0], new int[0], new String[0], Collections.emptyMap(),
+                                    new int[statsEdges], new int[statsEdges], new double[statsEdges], new double[statsEdges],
+                                    Collections.emptyMap() );
+    }
+
+    private EdgeMetrics metrics( StepSnapshot snapshot )
+    {
+        double[] length = new double[EDGES];
+        double[] maxSpeed = new double[EDGES];
+        Arrays.fill( length, 100 );
+        Arrays.fill( maxSpeed, 50 );
+        return new EdgeMetrics( snapshot, length, maxSpeed );
+    }
+}
@@ -0,0 +1,177 @@
+package real_time_traffic_simulation_with_java;
+
+import java.io.FileWriter;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+
+import com.opencsv.CSVWriter;
+
+import real_time_traffic_simulation_with_java.alias.Color;
+import real_time_traffic_simulation_with_java.alias.Metrics;
+import real_time_traffic_simulation_with_java.cores.StepSnapshot;
+import real_time_traffic_simulation_with_java.tools.CSVManager;
+import real_time_traffic_simulation_with_java.tools.ReportData;
+
+
+/**
+ * Throughput of the CSV export: former String rows written by opencsv with a flush every step,
+ *      against the primitive rows encoded by {@link CSVManager} into its buffered FileChannel writer. <br>
+ * Usage: CsvLogBenchmark [rows] [vehicles per step], default 1,000,000 rows in steps of 1000 vehicles. <br>
+ * Plain main method harness: one warm-up run of each writer, then the median of the measured runs is printed
+ *      in rows/s, and both files are compared line by line.
+ */
+public class CsvLogBenchmark {
+    private static final int MEASURED_RUNS = 3;
+    private static final int EDGES = 500;
+
+    public static void main(String[] args) throws Exception {
+        int rows = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int vehicles = args.length > 1 ? Integer.parseInt(args[1]) : 1_000;
+        int steps = Math.max(1, rows / vehicles);
+
+        // A few distinct steps, cycled with an increasing time
+        Random random = new Random(42);
+        Step[] snapshots = new Step[10];
+        byte[][] congestion = new byte[snapshots.length][];
+        for (int s = 0; s < snapshots.length; s++) {
+            snapshots[s] = randomStep(vehicles, random);
+            congestion[s] = new byte[EDGES];
+            for (int e = 0; e < EDGES; e++) {
+                congestion[s][e] = e % 25 == 0 ? ReportData.NO_STATUS : (byte) (random.nextInt(10) == 0 ? 1 : 0);
+            }
+        }
+
+        java.nio.file.Path folder = Files.createTempDirectory("csvlog");
+        try {
+            double[] legacy = new double[MEASURED_RUNS];
+            double[] buffered = new double[MEASURED_RUNS];
+            java.nio.file.Path legacyFile = null;
+            java.nio.file.Path bufferedFile = null;
+            for (int run = -1; run < MEASURED_RUNS; run++) {
+                legacyFile = folder.resolve("legacy" + run + ".csv");
+                long t0 = System.nanoTime();
+                writeLegacy(legacyFile.toString(), snapshots, congestion, steps);
+                long t1 = System.nanoTime();
+                java.nio.file.Path runFolder = Files.createDirectories(folder.resolve("run" + run));
+                CSVManager csvManager = new CSVManager(runFolder.toString() + java.io.File.separator);
+                for (int step = 0; step < steps; step++) {
+                    int s = step % snapshots.length;
+                    csvManager.updateCSV(new ReportData(snapshots[s].at(step * 0.1), congestion[s]));
+                }
+                csvManager.closeCSV();
+                long t2 = System.nanoTime();
+                bufferedFile = java.nio.file.Paths.get(csvManager.getFilePath());
+                if (run >= 0) {
+                    legacy[run] = (long) steps * vehicles / ((t1 - t0) / 1e9);
+                    buffered[run] = (long) steps * vehicles / ((t2 - t1) / 1e9);
+                }
+            }
+            Arrays.sort(legacy);
+            Arrays.sort(buffered);
+
+            List<String> legacyLines = Files.readAllLines(legacyFile);
+            List<String> bufferedLines = Files.readAllLines(bufferedFile);
+            int different = 0;
+            for (int i = 0; i < Math.min(legacyLines.size(), bufferedLines.size()); i++) {
+                if (!legacyLines.get(i).equals(bufferedLines.get(i))) {
+                    different++;
+                }
+            }
+            System.out.printf(Locale.ROOT, "%d rows (%d steps x %d vehicles), %d KB, median of %d runs:%n",
+                                (long) steps * vehicles, steps, vehicles, Files.size(bufferedFile) / 1024, MEASURED_RUNS);
+            System.out.printf(Locale.ROOT, "  opencsv, String rows, flush every step : %,12.0f rows/s%n", legacy[MEASURED_RUNS / 2]);
+            System.out.printf(Locale.ROOT, "  buffered FileChannel, primitive rows  : %,12.0f rows/s%n", buffered[MEASURED_RUNS / 2]);
+            System.out.printf(Locale.ROOT, "  lines: %d vs %d, %d different%n", legacyLines.size(), bufferedLines.size(), different);
+        } finally {
+            try (var files = Files.walk(folder)) {
+                files.sorted(Collections.reverseOrder()).forEach(p -> p.toFile().delete());
+            }
+        }
+    }
+
+
+    /**
+     * Former export path: one String array per vehicle and step, opencsv writeAll and flush every step
+     */
+    private static void writeLegacy(String file, Step[] snapshots, byte[][] congestion, int steps) throws Exception {
+        try (CSVWriter writer = new CSVWriter(new FileWriter(file, true), CSVWriter.DEFAULT_SEPARATOR,
+                                            CSVWriter.NO_QUOTE_CHARACTER, CSVWriter.DEFAULT_ESCAPE_CHARACTER,
+                                            CSVWriter.DEFAULT_LINE_END)) {
+            writer.writeNext(Metrics.HEADERS);
+            writer.flush();
+            for (int step = 0; step < steps; step++) {
+                int s = step % snapshots.length;
+                StepSnapshot current = snapshots[s].at(step * 0.1);
+                String currentTimeStep = String.format("%.1f", step * 0.1);
+                List<String[]> data = new ArrayList<>();
+                for (int i = 0; i < current.getVehicleCount(); i++) {
+                    int edge = current.getVehicleEdge(i);
+                    String status = edge < EDGES && congestion[s][edge] != ReportData.NO_STATUS
+                                    ? String.valueOf(congestion[s][edge] == 1) : "";
+                    data.add(new String[] {currentTimeStep, current.getVehicleID(i),
+                                            Color.colorToString(current.getVehicleRGBA(i)),
+                                            String.format("%.2f", current.getVehicleSpeed(i)),
+                                            current.getEdgeID(edge), status,
+                                            stat(current.getEdgeAverageSpeed(edge)), stat(current.getEdgeDensity(edge))});
+                }
+                writer.writeAll(data);
+                writer.flush();
+            }
+        }
+    }
+
+    private static String stat(double value) {
+        return value == -1 ? "" : String.format("%.2f", value);
+    }
+
+    /**
+     * Columns of one step, the snapshot of each simulation time shares them (they are never modified)
+     */
+    private record Step(String[] ids, double[] speed, int[] rgba, int[] vehicleEdge, String[] dictionary,
+                        Map<String, Integer> edgeIndex, double[] edgeAverageSpeed, double[] edgeDensity) {
+        StepSnapshot at(double time) {
+            int vehicles = ids.length;
+            return new StepSnapshot(time, ids, new double[vehicles], new double[vehicles], new double[vehicles], speed,
+                                    rgba, vehicleEdge, dictionary, edgeIndex, new int[EDGES], new int[EDGES],
+                                    edgeAverageSpeed, edgeDensity, Collections.emptyMap());
+        }
+    }
+
+    /**
+     * Step with vehicles spread over the edges, 5% of them on a junction edge (no statistics)
+     */
+    private static Step randomStep(int vehicles, Random random) {
+        String[] dictionary = new String[EDGES + 1];
+        Map<String, Integer> edgeIndex = new HashMap<>();
+        for (int e = 0; e < EDGES; e++) {
+            dictionary[e] = (e % 2 == 0 ? "E" : "-E") + e;
+            edgeIndex.put(dictionary[e], e);
+        }
+        dictionary[EDGES] = ":J0_0";
+        int[] colors = {Color.toRGBA(Color.RED), Color.toRGBA(Color.BLUE), Color.toRGBA(Color.GREEN), Color.toRGBA(Color.WHITE)};
+        String[] ids = new String[vehicles];
+        double[] speed = new double[vehicles];
+        int[] rgba = new int[vehicles];
+        int[] vehicleEdge = new int[vehicles];
+        for (int i = 0; i < vehicles; i++) {
+            ids[i] = "veh_" + i;
+            speed[i] = random.nextDouble() * 60;
+            rgba[i] = colors[random.nextInt(colors.length)];
+            vehicleEdge[i] = random.nextInt(20) == 0 ? EDGES : random.nextInt(EDGES);
+        }
+        double[] edgeAverageSpeed = new double[EDGES];
+        double[] edgeDensity = new double[EDGES];
+        for (int e = 0; e < EDGES; e++) {
+            edgeAverageSpeed[e] = random.nextDouble() * 50;
+            edgeDensity[e] = random.nextDouble() * 120;
+        }
+        return new Step(ids, speed, rgba, vehicleEdge, dictionary, edgeIndex, edgeAverageSpeed, edgeDensity);
+    }
+}
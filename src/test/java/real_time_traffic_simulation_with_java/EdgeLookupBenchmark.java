@@ -0,0 +1,158 @@
+package real_time_traffic_simulation_with_java;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import real_time_traffic_simulation_with_java.cores.NetworkTopology;
+import real_time_traffic_simulation_with_java.cores.StepSnapshot;
+import real_time_traffic_simulation_with_java.wrapper.EdgeManager;
+
+
+/**
+ * Per-step cost of the edge congestion lookups done by the CSV export (one lookup per vehicle). <br>
+ * Compares the former linear scan over the edge list with the index-addressed lookup of {@link EdgeManager},
+ *      and times the congestion update of a step. Each benchmark method is one step. <br>
+ * Usage: EdgeLookupBenchmark [JMH options], e.g. -p edges=1000,10000 -p vehicles=5000,
+ *      default 1000 edges x 5000 vehicles. <br>
+ * JMH benchmark: the benchmark code is generated by the annotation processor at test compile.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EdgeLookupBenchmark {
+    @Param("1000")
+    public int edges;
+    @Param("5000")
+    public int vehicles;
+
+    private StepSnapshot snapshot;
+    private EdgeManager edgeManager;
+    private List<String> edgeList;
+    /** Congestion status in edge list order, like the former EdgeManager */
+    private boolean[] edgeListCongested;
+
+    public static void main(String[] args) throws Exception {
+        org.openjdk.jmh.Main.main(args.length > 0 ? args : new String[]{EdgeLookupBenchmark.class.getSimpleName()});
+    }
+
+    @Setup
+    public void setUp() {
+        // Static network: single lane straight edges
+        NetworkTopology.Builder builder = new NetworkTopology.Builder();
+        for (int i = 0; i < edges; i++) {
+            builder.addEdge("E" + i);
+            builder.addLane(100, 13.89);
+            builder.addPoint(0, i * 10);
+            builder.addPoint(100, i * 10);
+        }
+        NetworkTopology topology = builder.build("benchmark", 0, 0);
+        edgeManager = new EdgeManager(null);
+        edgeManager.setTopology(topology);
+
+        // Halted edges become congested after a few steps
+        snapshot = randomSnapshot(topology, vehicles, new Random(42));
+        for (int step = 0; step < 10; step++) {
+            edgeManager.updateEdgeDataList(snapshot);
+        }
+        edgeList = topology.getEdgeIDList();
+        edgeListCongested = new boolean[edges];
+        for (int e = 0; e < edges; e++) {
+            edgeListCongested[e] = edgeManager.getCongestedStatus(e);
+        }
+    }
+
+    /**
+     * Former EdgeManager.getCongestedStatus: scan of the edge list comparing IDs
+     */
+    @Benchmark
+    public int linearScanByEdgeID() {
+        int congested = 0;
+        for (int i = 0; i < snapshot.getVehicleCount(); i++) {
+            String edgeID = snapshot.getEdgeID(snapshot.getVehicleEdge(i));
+            for (int e = 0; e < edgeList.size(); e++) {
+                if (edgeList.get(e).equals(edgeID)) {
+                    congested += edgeListCongested[e] ? 1 : 0;
+                    break;
+                }
+            }
+        }
+        return congested;
+    }
+
+    @Benchmark
+    public int indexByEdgeID() {
+        int congested = 0;
+        for (int i = 0; i < snapshot.getVehicleCount(); i++) {
+            congested += edgeManager.getCongestedStatus(snapshot.getEdgeID(snapshot.getVehicleEdge(i))) ? 1 : 0;
+        }
+        return congested;
+    }
+
+    @Benchmark
+    public int indexByEdgeHandle() {
+        int congested = 0;
+        for (int i = 0; i < snapshot.getVehicleCount(); i++) {
+            congested += edgeManager.getCongestedStatus(snapshot.getVehicleEdge(i)) ? 1 : 0;
+        }
+        return congested;
+    }
+
+    @Benchmark
+    public int congestionUpdate() {
+        edgeManager.updateEdgeDataList(snapshot);
+        return edgeManager.getCongestedEdgeIDList().size();
+    }
+
+
+    /**
+     * Snapshot with vehicles spread over the edges, 5% of them on junction edges (no congestion status)
+     */
+    private static StepSnapshot randomSnapshot(NetworkTopology topology, int vehicles, Random random) {
+        int edges = topology.getEdgeCount();
+        String[] dictionary = Arrays.copyOf(topology.getEdgeIDList().toArray(new String[0]), edges + 1);
+        dictionary[edges] = ":J0_0";
+        Map<String, Integer> edgeIndex = new HashMap<>();
+        for (int e = 0; e < dictionary.length; e++) {
+            edgeIndex.put(dictionary[e], e);
+        }
+        String[] ids = new String[vehicles];
+        int[] vehicleEdge = new int[vehicles];
+        int[] edgeVehicleCount = new int[edges];
+        for (int i = 0; i < vehicles; i++) {
+            ids[i] = "veh" + i;
+            vehicleEdge[i] = random.nextInt(20) == 0 ? edges : random.nextInt(edges);
+            if (vehicleEdge[i] < edges) {
+                edgeVehicleCount[vehicleEdge[i]]++;
+            }
+        }
+        // Every 10th edge is fully halted
+        int[] edgeHaltingNumber = new int[edges];
+        for (int e = 0; e < edges; e += 10) {
+            edgeHaltingNumber[e] = edgeVehicleCount[e];
+        }
+        return new StepSnapshot(0, ids, new double[vehicles], new double[vehicles], new double[vehicles], new double[vehicles],
+                                new int[vehicles], vehicleEdge, dictionary, edgeIndex,
+                                edgeVehicleCount, edgeHaltingNumber, new double[edges], new double[edges],
+                                Collections.emptyMap());
+    }
+}
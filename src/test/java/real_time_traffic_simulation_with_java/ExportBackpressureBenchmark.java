@@ -0,0 +1,135 @@
+package real_time_traffic_simulation_with_java;
+
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+
+import real_time_traffic_simulation_with_java.alias.Color;
+import real_time_traffic_simulation_with_java.cores.StepSnapshot;
+import real_time_traffic_simulation_with_java.tools.BackpressurePolicy;
+import real_time_traffic_simulation_with_java.tools.ExportingFiles;
+import real_time_traffic_simulation_with_java.tools.ReportData;
+import real_time_traffic_simulation_with_java.tools.TraceReader;
+
+
+/**
+ * Stress scenario of the export queue: 10k vehicles per step, produced as fast as possible,
+ *      so the export worker falls behind and the backpressure policy decides. <br>
+ * For each {@link BackpressurePolicy}, the steps are queued with {@link ExportingFiles#queueCSV(ReportData)},
+ *      the export is shut down and the rows of the trace are counted against the rows produced.
+ *      BLOCK and SPILL must lose nothing. The export counters and the longest stall of the producer are printed. <br>
+ * Usage: ExportBackpressureBenchmark [steps] [vehicles per step] [queue capacity], default 2000 x 10000, capacity 50
+ *      (a small queue so that it saturates quickly). <br>
+ * Plain main method harness: each policy is run once.
+ */
+public class ExportBackpressureBenchmark {
+    private static final int EDGES = 2_000;
+
+    public static void main(String[] args) throws Exception {
+        int steps = args.length > 0 ? Integer.parseInt(args[0]) : 2_000;
+        int vehicles = args.length > 1 ? Integer.parseInt(args[1]) : 10_000;
+        int capacity = args.length > 2 ? Integer.parseInt(args[2]) : 50;
+
+        Step[] batches = buildSteps(Math.min(steps, 100), vehicles);
+        long producedRows = (long) steps * vehicles;
+        System.out.printf(Locale.ROOT, "%d steps x %d vehicles = %d rows, queue capacity %d%n",
+                            steps, vehicles, producedRows, capacity);
+
+        boolean zeroLoss = true;
+        for (BackpressurePolicy policy : BackpressurePolicy.values()) {
+            java.nio.file.Path folder = Files.createTempDirectory("export");
+            String prefix = folder.toString() + java.io.File.separator;
+            try {
+                ExportingFiles exportingFiles = new ExportingFiles(policy, prefix, capacity);
+                long maxStallNs = 0;
+                long t0 = System.nanoTime();
+                for (int step = 0; step < steps; step++) {
+                    long s0 = System.nanoTime();
+                    exportingFiles.queueCSV(batches[step % batches.length].at(step));
+                    maxStallNs = Math.max(maxStallNs, System.nanoTime() - s0);
+                }
+                long t1 = System.nanoTime();
+                ExportingFiles.ExportCounters atEnd = exportingFiles.getCounters();
+                exportingFiles.shutdown();
+                long t2 = System.nanoTime();
+
+                long traceRows;
+                try (TraceReader reader = TraceReader.open(exportingFiles.getTraceFilePath())) {
+                    traceRows = reader.getRowCount();
+                }
+                ExportingFiles.ExportCounters counters = exportingFiles.getCounters();
+                boolean lossless = traceRows == producedRows;
+                if (policy == BackpressurePolicy.BLOCK || policy == BackpressurePolicy.SPILL) {
+                    zeroLoss &= lossless;
+                }
+                System.out.printf(Locale.ROOT, "  %-8s: produce %,8.0f steps/s, max stall %7.1f ms, drain %6.0f ms,"
+                                    + " trace rows %,11d (%s)%n",
+                                    policy, steps / ((t1 - t0) / 1e9), maxStallNs / 1e6, (t2 - t1) / 1e6,
+                                    traceRows, lossless ? "no loss" : "lost " + (producedRows - traceRows));
+                System.out.printf(Locale.ROOT, "            enqueued %d, written %d, dropped %d, spilled %d (%,d KB), coalesced %d,"
+                                    + " depth at end of run %d, max depth %d%n",
+                                    counters.enqueued(), counters.written(), counters.dropped(), counters.spilled(),
+                                    counters.spilledBytes() / 1024, counters.coalesced(),
+                                    atEnd.queueDepth(), counters.maxQueueDepth());
+            } finally {
+                try (var files = Files.walk(folder)) {
+                    files.sorted(Collections.reverseOrder()).forEach(p -> p.toFile().delete());
+                }
+            }
+        }
+        System.out.println("Zero-loss export with BLOCK and SPILL: " + zeroLoss);
+    }
+
+
+    /** Rows of one step, published again at another time */
+    private record Step(String[] ids, double[] speed, int[] rgba, int[] vehicleEdge, String[] dictionary,
+                        Map<String, Integer> edgeIndex, double[] edgeAverageSpeed, double[] edgeDensity, byte[] congestion) {
+        ReportData at(double time) {
+            int vehicles = ids.length;
+            return new ReportData(new StepSnapshot(time, ids, new double[vehicles], new double[vehicles],
+                                        new double[vehicles], speed, rgba, vehicleEdge, dictionary, edgeIndex,
+                                        new int[EDGES], new int[EDGES], edgeAverageSpeed, edgeDensity,
+                                        Collections.emptyMap()), congestion);
+        }
+    }
+
+    /**
+     * Distinct steps reused in turn, each with its own vehicles and edge statistics
+     */
+    private static Step[] buildSteps(int count, int vehicles) {
+        Random random = new Random(42);
+        String[] dictionary = new String[EDGES];
+        Map<String, Integer> edgeIndex = new HashMap<>();
+        for (int e = 0; e < EDGES; e++) {
+            dictionary[e] = "E" + e;
+            edgeIndex.put(dictionary[e], e);
+        }
+        int[] colors = {Color.toRGBA(Color.RED), Color.toRGBA(Color.BLUE), Color.toRGBA(Color.GREEN)};
+        Step[] batches = new Step[count];
+        for (int step = 0; step < count; step++) {
+            String[] ids = new String[vehicles];
+            double[] speed = new double[vehicles];
+            int[] rgba = new int[vehicles];
+            int[] vehicleEdge = new int[vehicles];
+            for (int i = 0; i < vehicles; i++) {
+                ids[i] = "veh_" + (step + i);
+                speed[i] = random.nextDouble() * 60;
+                rgba[i] = colors[(step + i) % colors.length];
+                vehicleEdge[i] = random.nextInt(EDGES);
+            }
+            double[] edgeAverageSpeed = new double[EDGES];
+            double[] edgeDensity = new double[EDGES];
+            byte[] congestion = new byte[EDGES];
+            for (int e = 0; e < EDGES; e++) {
+                edgeAverageSpeed[e] = random.nextDouble() * 50;
+                edgeDensity[e] = random.nextDouble() * 120;
+                congestion[e] = (byte) (random.nextInt(10) == 0 ? 1 : 0);
+            }
+            batches[step] = new Step(ids, speed, rgba, vehicleEdge, dictionary, edgeIndex, edgeAverageSpeed, edgeDensity, congestion);
+        }
+        return batches;
+    }
+}
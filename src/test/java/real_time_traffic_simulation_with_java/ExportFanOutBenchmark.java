@@ -0,0 +1,158 @@
+package real_time_traffic_simulation_with_java;
+
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+
+import real_time_traffic_simulation_with_java.alias.Color;
+import real_time_traffic_simulation_with_java.cores.StepSnapshot;
+import real_time_traffic_simulation_with_java.tools.AggregateTracker;
+import real_time_traffic_simulation_with_java.tools.BackpressurePolicy;
+import real_time_traffic_simulation_with_java.tools.EdgeAggregateWriter;
+import real_time_traffic_simulation_with_java.tools.ExportSink;
+import real_time_traffic_simulation_with_java.tools.ExportingFiles;
+import real_time_traffic_simulation_with_java.tools.ReportData;
+import real_time_traffic_simulation_with_java.tools.TraceReader;
+import real_time_traffic_simulation_with_java.tools.TraceWriter;
+
+
+/**
+ * Fan-out export pipeline against the same sinks fed one after the other on a single thread. <br>
+ * The steps (10k vehicles each by default) are first appended to a trace, a per-edge aggregate file and an aggregate tracker
+ *      in turn, like a single export worker would. They are then queued to {@link ExportingFiles} (BLOCK policy),
+ *      where each sink runs on its own thread behind the ring buffer. The lag of every sink is sampled while the steps
+ *      are queued, and every sink must have seen every step at the end. <br>
+ * Usage: ExportFanOutBenchmark [steps] [vehicles per step], default 1500 x 10000. <br>
+ * Plain main method harness: each pipeline is run once after a warm-up of the single-thread run.
+ */
+public class ExportFanOutBenchmark {
+    private static final int EDGES = 2_000;
+
+    public static void main(String[] args) throws Exception {
+        int steps = args.length > 0 ? Integer.parseInt(args[0]) : 1_500;
+        int vehicles = args.length > 1 ? Integer.parseInt(args[1]) : 10_000;
+        Step[] batches = buildSteps(Math.min(steps, 100), vehicles);
+        System.out.printf(Locale.ROOT, "%d steps x %d vehicles%n", steps, vehicles);
+
+        java.nio.file.Path folder = Files.createTempDirectory("fanout");
+        String prefix = folder.toString() + java.io.File.separator;
+        try {
+            // One thread, sinks in turn
+            double serialMs = 0;
+            for (int run = 0; run < 2; run++) {
+                ExportSink[] serial = {new TraceWriter(prefix + "serial" + run + TraceWriter.EXTENSION),
+                                        new EdgeAggregateWriter(prefix + "serial" + run + EdgeAggregateWriter.SUFFIX),
+                                        new AggregateTracker()};
+                long[] busy = new long[serial.length];
+                long t0 = System.nanoTime();
+                for (int step = 0; step < steps; step++) {
+                    ReportData data = batches[step % batches.length].at(step);
+                    for (int k = 0; k < serial.length; k++) {
+                        long s0 = System.nanoTime();
+                        serial[k].append(data);
+                        busy[k] += System.nanoTime() - s0;
+                    }
+                }
+                for (ExportSink sink : serial) {
+                    sink.close();
+                }
+                serialMs = (System.nanoTime() - t0) / 1e6;
+                if (run == 1) {
+                    System.out.printf(Locale.ROOT, "  single thread: %7.0f ms, %6.0f steps/s  (trace %.0f ms, edge aggregates %.0f ms,"
+                                        + " aggregates %.0f ms)%n", serialMs, steps / (serialMs / 1e3),
+                                        busy[0] / 1e6, busy[1] / 1e6, busy[2] / 1e6);
+                }
+            }
+
+            // Fan-out: one thread per sink
+            ExportingFiles exportingFiles = new ExportingFiles(BackpressurePolicy.BLOCK, prefix, 50);
+            int sinkCount = exportingFiles.getSinkCounters().size();
+            long[] sampledMaxLag = new long[sinkCount];
+            long t0 = System.nanoTime();
+            for (int step = 0; step < steps; step++) {
+                exportingFiles.queueCSV(batches[step % batches.length].at(step));
+                if (step % 50 == 0) {
+                    List<ExportingFiles.SinkCounters> sample = exportingFiles.getSinkCounters();
+                    for (int k = 0; k < sinkCount; k++) {
+                        sampledMaxLag[k] = Math.max(sampledMaxLag[k], sample.get(k).lag());
+                    }
+                }
+            }
+            exportingFiles.shutdown();
+            double fanOutMs = (System.nanoTime() - t0) / 1e6;
+            System.out.printf(Locale.ROOT, "  fan-out      : %7.0f ms, %6.0f steps/s  (%.1fx)%n",
+                                fanOutMs, steps / (fanOutMs / 1e3), serialMs / fanOutMs);
+
+            boolean complete = true;
+            for (ExportingFiles.SinkCounters sink : exportingFiles.getSinkCounters()) {
+                complete &= sink.consumed() == steps && sink.lag() == 0;
+                System.out.printf(Locale.ROOT, "    %-16s: consumed %d, busy %6d ms, max lag %4d steps%n",
+                                    sink.name(), sink.consumed(), sink.busyMs(), sink.maxLag());
+            }
+            try (TraceReader reader = TraceReader.open(exportingFiles.getTraceFilePath())) {
+                complete &= reader.getRowCount() == (long) steps * vehicles;
+            }
+            complete &= exportingFiles.getAggregates().getStepCount() == steps;
+            long edgeRows = Files.lines(java.nio.file.Paths.get(exportingFiles.getEdgeAggregateFilePath())).count() - 1;
+            System.out.printf(Locale.ROOT, "  per-edge aggregate rows %d, every sink saw every step: %b%n", edgeRows, complete);
+        } finally {
+            try (var files = Files.walk(folder)) {
+                files.sorted(Collections.reverseOrder()).forEach(p -> p.toFile().delete());
+            }
+        }
+    }
+
+
+    /** Rows of one step, published again at another time */
+    private record Step(String[] ids, double[] speed, int[] rgba, int[] vehicleEdge, String[] dictionary,
+                        Map<String, Integer> edgeIndex, double[] edgeAverageSpeed, double[] edgeDensity, byte[] congestion) {
+        ReportData at(double time) {
+            int vehicles = ids.length;
+            return new ReportData(new StepSnapshot(time, ids, new double[vehicles], new double[vehicles],
+                                        new double[vehicles], speed, rgba, vehicleEdge, dictionary, edgeIndex,
+                                        new int[EDGES], new int[EDGES], edgeAverageSpeed, edgeDensity,
+                                        Collections.emptyMap()), congestion);
+        }
+    }
+
+    /**
+     * Distinct steps reused in turn, each with its own vehicles and edge statistics
+     */
+    private static Step[] buildSteps(int count, int vehicles) {
+        Random random = new Random(42);
+        String[] dictionary = new String[EDGES];
+        Map<String, Integer> edgeIndex = new HashMap<>();
+        for (int e = 0; e < EDGES; e++) {
+            dictionary[e] = "E" + e;
+            edgeIndex.put(dictionary[e], e);
+        }
+        int[] colors = {Color.toRGBA(Color.RED), Color.toRGBA(Color.BLUE), Color.toRGBA(Color.GREEN)};
+        Step[] batches = new Step[count];
+        for (int step = 0; step < count; step++) {
+            String[] ids = new String[vehicles];
+            double[] speed = new double[vehicles];
+            int[] rgba = new int[vehicles];
+            int[] vehicleEdge = new int[vehicles];
+            for (int i = 0; i < vehicles; i++) {
+                ids[i] = "veh_" + (step + i);
+                speed[i] = random.nextDouble() * 60;
+                rgba[i] = colors[(step + i) % colors.length];
+                vehicleEdge[i] = random.nextInt(EDGES);
+            }
+            double[] edgeAverageSpeed = new double[EDGES];
+            double[] edgeDensity = new double[EDGES];
+            byte[] congestion = new byte[EDGES];
+            for (int e = 0; e < EDGES; e++) {
+                edgeAverageSpeed[e] = random.nextDouble() * 50;
+                edgeDensity[e] = random.nextDouble() * 120;
+                congestion[e] = (byte) (random.nextInt(10) == 0 ? 1 : 0);
+            }
+            batches[step] = new Step(ids, speed, rgba, vehicleEdge, dictionary, edgeIndex, edgeAverageSpeed, edgeDensity, congestion);
+        }
+        return batches;
+    }
+}
@@ -0,0 +1,107 @@
+package real_time_traffic_simulation_with_java;
+
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+import real_time_traffic_simulation_with_java.cores.SimulationEngine;
+import real_time_traffic_simulation_with_java.cores.StepSnapshot;
+import real_time_traffic_simulation_with_java.tools.BackpressurePolicy;
+import real_time_traffic_simulation_with_java.tools.ExportingFiles;
+import real_time_traffic_simulation_with_java.wrapper.FakeScenario;
+import real_time_traffic_simulation_with_java.wrapper.FakeTraciServer;
+
+
+/**
+ * Load test of the simulation engine and the export without SUMO: the engine is connected to the in-process
+ *      {@link FakeTraciServer}, which serves a synthesized grid city. <br>
+ * For each scale, the vehicles depart (1000 per step) until the scale is reached, a stress test injects 1000 vehicles
+ *      and the traffic lights are toggled (batched set commands), then the measured steps run: each step is
+ *      stepped by the engine and queued for export. The step time (median, p99), the export counters and
+ *      the vehicles seen by the engine against the vehicles of the server are printed. <br>
+ * Usage: FakeTraciBenchmark [vehicles,vehicles,...] [steps] [latency us], default 1000,10000,50000 x 200 steps, no latency.
+ *      A latency is added to every answer of the server, like a SUMO on another machine. <br>
+ * Plain main method harness: each scale is run once.
+ */
+public class FakeTraciBenchmark {
+    private static final int DEPARTURES_PER_STEP = 1_000;
+    private static final int STRESS_VEHICLES = 1_000;
+    /** Vehicles per edge of the grid, sets the grid size of a scale */
+    private static final int VEHICLES_PER_EDGE = 5;
+
+    public static void main(String[] args) throws Exception {
+        int[] scales = args.length > 0 ? Arrays.stream(args[0].split(",")).mapToInt(Integer::parseInt).toArray()
+                                       : new int[] {1_000, 10_000, 50_000};
+        int steps = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+        long latencyMicros = args.length > 2 ? Long.parseLong(args[2]) : 0;
+
+        boolean consistent = true;
+        for (int vehicles : scales) {
+            // A grid of n x n junctions has about 4 n^2 edges
+            int gridSize = Math.max(10, (int) Math.ceil(Math.sqrt(vehicles / (4.0 * VEHICLES_PER_EDGE))));
+            FakeTraciServer server = new FakeTraciServer(new FakeScenario(gridSize, vehicles, DEPARTURES_PER_STEP, 42),
+                                                            latencyMicros, 0);
+            java.nio.file.Path folder = Files.createTempDirectory("fake");
+            String prefix = folder.toString() + java.io.File.separator;
+            try {
+                long c0 = System.nanoTime();
+                SimulationEngine engine = new SimulationEngine(server);
+                long c1 = System.nanoTime();
+                ExportingFiles exportingFiles = new ExportingFiles(BackpressurePolicy.BLOCK, prefix, 1_000);
+
+                // Ramp up: depart the vehicles, then inject and toggle through the batched set commands
+                int rampSteps = 0;
+                while (server.getRunningVehicleCount() < vehicles && rampSteps < 10 * (vehicles / DEPARTURES_PER_STEP + 1)) {
+                    engine.stepSimulation();
+                    rampSteps++;
+                }
+                List<String> edgeIDs = engine.getAllEdgeIDs();
+                engine.stressTest(STRESS_VEHICLES, edgeIDs.get(edgeIDs.size() / 2));
+                engine.toggleAllTls();
+
+                long[] stepNs = new long[steps];
+                long exportNs = 0;
+                int mismatches = 0;
+                long t0 = System.nanoTime();
+                for (int step = 0; step < steps; step++) {
+                    long s0 = System.nanoTime();
+                    engine.stepSimulation();
+                    long s1 = System.nanoTime();
+                    exportingFiles.queueCSV(engine.dataForCSV());
+                    exportNs += System.nanoTime() - s1;
+                    stepNs[step] = s1 - s0;
+                    // Vehicles departed in this step are subscribed after the snapshot is built
+                    StepSnapshot snapshot = engine.getSnapshot();
+                    if (snapshot.getVehicleCount() != server.getRunningVehicleCount() - server.getDepartedVehicleCount()) {
+                        mismatches++;
+                    }
+                }
+                long t1 = System.nanoTime();
+                int shownVehicles = engine.getSnapshot().getVehicleCount();
+                int congested = engine.getCongestedEdgeCount();
+                engine.stopSimulation();
+                exportingFiles.shutdown();
+                ExportingFiles.ExportCounters counters = exportingFiles.getCounters();
+                consistent &= mismatches == 0;
+
+                Arrays.sort(stepNs);
+                System.out.printf(Locale.ROOT, "%,7d vehicles (grid %dx%d, %,d edges): connect %6.0f ms, ramp-up %d steps%n",
+                                    vehicles, gridSize, gridSize, edgeIDs.size(), (c1 - c0) / 1e6, rampSteps);
+                System.out.printf(Locale.ROOT, "          %,8.1f steps/s, step median %7.2f ms, p99 %7.2f ms, export %6.2f ms/step%n",
+                                    steps / ((t1 - t0) / 1e9), stepNs[steps / 2] / 1e6,
+                                    stepNs[Math.min(steps - 1, steps * 99 / 100)] / 1e6, exportNs / 1e6 / steps);
+                System.out.printf(Locale.ROOT, "          server steps %d, engine vehicles %,d, congested edges %d,"
+                                    + " snapshot mismatches %d, exported %d/%d steps, dropped %d%n",
+                                    server.getStepCount(), shownVehicles, congested, mismatches,
+                                    counters.written(), counters.enqueued(), counters.dropped());
+            } finally {
+                try (var files = Files.walk(folder)) {
+                    files.sorted(Collections.reverseOrder()).forEach(p -> p.toFile().delete());
+                }
+            }
+        }
+        System.out.println(consistent ? "engine snapshots match the server" : "engine snapshots DIFFER from the server");
+    }
+}
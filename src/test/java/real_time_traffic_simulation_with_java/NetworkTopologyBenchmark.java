@@ -0,0 +1,204 @@
+package real_time_traffic_simulation_with_java;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Locale;
+
+import it.polito.appeal.traci.SumoTraciConnection;
+import real_time_traffic_simulation_with_java.alias.Path;
+import real_time_traffic_simulation_with_java.cores.NetFileLoader;
+import real_time_traffic_simulation_with_java.cores.NetworkTopology;
+
+
+/**
+ * Startup benchmark of the network topology: StAX net file parsing vs TraCI queries. <br>
+ * Runs on the shipped map and on a generated grid network (50k edges by default). <br>
+ * Usage: NetworkTopologyBenchmark [edges] [--traci] <br>
+ * The TraCI path needs the Sumo binary of {@link Path#SumoPath}, it is only measured with --traci. <br>
+ * Plain main method harness: warm-up runs, then the median of the measured runs is printed.
+ */
+public class NetworkTopologyBenchmark {
+    private static final int WARMUP_RUNS = 3;
+    private static final int MEASURED_RUNS = 7;
+
+    public static void main(String[] args) throws Exception {
+        int edges = 50_000;
+        boolean traci = false;
+        for (String arg : args) {
+            if (arg.equals("--traci")) {
+                traci = true;
+            } else {
+                edges = Integer.parseInt(arg);
+            }
+        }
+
+        java.nio.file.Path generated = Files.createTempFile("grid", ".net.xml");
+        java.nio.file.Path emptyRoutes = Files.createTempFile("empty", ".rou.xml");
+        try {
+            int gridSize = writeGridNet(generated, edges);
+            Files.writeString(emptyRoutes, "<routes/>\n");
+            System.out.printf(Locale.ROOT, "Generated %dx%d grid: %s (%d KB)%n",
+                                gridSize, gridSize, generated, Files.size(generated) / 1024);
+
+            benchmark("shipped map", Path.NetFilePath, Path.RouFilePath, traci);
+            benchmark("generated grid", generated.toString(), emptyRoutes.toString(), traci);
+        } finally {
+            Files.deleteIfExists(generated);
+            Files.deleteIfExists(emptyRoutes);
+        }
+    }
+
+
+    /**
+     * Time both loaders on one net file and compare their results
+     */
+    private static void benchmark(String name, String netFile, String rouFile, boolean traci) throws Exception {
+        NetworkTopology parsed = null;
+        for (int i = 0; i < WARMUP_RUNS; i++) {
+            parsed = NetFileLoader.load(netFile);
+        }
+        long[] runs = new long[MEASURED_RUNS];
+        for (int i = 0; i < MEASURED_RUNS; i++) {
+            long start = System.nanoTime();
+            parsed = NetFileLoader.load(netFile);
+            runs[i] = System.nanoTime() - start;
+        }
+        java.util.Arrays.sort(runs);
+        System.out.printf(Locale.ROOT, "[%s] StAX: %d edges, %d junctions, %d traffic lights, %d points, median %.1f ms%n",
+                            name, parsed.getEdgeCount(), parsed.getJunctionCount(), parsed.getTlsCount(),
+                            parsed.getPointCount(), runs[MEASURED_RUNS / 2] / 1e6);
+        if (!traci) {
+            return;
+        }
+
+        // TraCI path: Sumo has to be started before the first query
+        SumoTraciConnection conn = new SumoTraciConnection(Path.SumoPath, netFile, rouFile);
+        long start = System.nanoTime();
+        conn.addOption("start", "true");
+        conn.runServer();
+        long started = System.nanoTime();
+        NetworkTopology queried = NetworkTopology.load(conn);
+        long loaded = System.nanoTime();
+        conn.close();
+        System.out.printf(Locale.ROOT, "[%s] TraCI: Sumo start %.1f ms + %d round trips %.1f ms = %.1f ms%n",
+                            name, (started - start) / 1e6, queried.getLoadRoundTrips(), (loaded - started) / 1e6, (loaded - start) / 1e6);
+        System.out.printf(Locale.ROOT, "[%s] Same topology: edges %b, junctions %b, traffic lights %b, points %b%n",
+                            name, parsed.getEdgeCount() == queried.getEdgeCount(),
+                            parsed.getJunctionCount() == queried.getJunctionCount(),
+                            parsed.getTlsCount() == queried.getTlsCount(),
+                            parsed.getPointCount() == queried.getPointCount());
+    }
+
+    /**
+     * Write a square grid network with two-way single lane edges and a traffic light on every 4th junction
+     * @return number of junctions per side
+     */
+    private static int writeGridNet(java.nio.file.Path file, int edges) throws IOException {
+        // A n x n grid has 4n(n-1) edges
+        int n = (int) Math.ceil((1 + Math.sqrt(1 + edges)) / 2);
+        double spacing = 100.0;
+        double extent = (n - 1) * spacing;
+        try (BufferedWriter out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            out.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+            out.write("<net version=\"1.20\" junctionCornerDetail=\"5\" limitTurnSpeed=\"5.50\">\n");
+            out.write(String.format(Locale.ROOT,
+                "    <location netOffset=\"0.00,0.00\" convBoundary=\"0.00,0.00,%.2f,%.2f\" origBoundary=\"0.00,0.00,%.2f,%.2f\" projParameter=\"!\"/>%n",
+                extent, extent, extent, extent));
+            for (int row = 0; row < n; row++) {
+                for (int col = 0; col < n; col++) {
+                    if (col + 1 < n) {
+                        writeEdge(out, row, col, row, col + 1, spacing);
+                        writeEdge(out, row, col + 1, row, col, spacing);
+                    }
+                    if (row + 1 < n) {
+                        writeEdge(out, row, col, row + 1, col, spacing);
+                        writeEdge(out, row + 1, col, row, col, spacing);
+                    }
+                }
+            }
+            for (int row = 0; row < n; row++) {
+                for (int col = 0; col < n; col++) {
+                    if (isTrafficLight(row, col)) {
+                        int links = incomingEdges(row, col, n).length;
+                        out.write(String.format("    <tlLogic id=\"%s\" type=\"static\" programID=\"0\" offset=\"0\">%n", junction(row, col)));
+                        out.write(String.format("        <phase duration=\"30\" state=\"%s\"/>%n", "G".repeat(links)));
+                        out.write(String.format("        <phase duration=\"3\" state=\"%s\"/>%n", "y".repeat(links)));
+                        out.write(String.format("        <phase duration=\"30\" state=\"%s\"/>%n", "r".repeat(links)));
+                        out.write("    </tlLogic>\n");
+                    }
+                }
+            }
+            for (int row = 0; row < n; row++) {
+                for (int col = 0; col < n; col++) {
+                    double x = col * spacing;
+                    double y = row * spacing;
+                    StringBuilder incLanes = new StringBuilder();
+                    for (String edge : incomingEdges(row, col, n)) {
+                        incLanes.append(incLanes.length() == 0 ? "" : " ").append(edge).append("_0");
+                    }
+                    out.write(String.format(Locale.ROOT,
+                        "    <junction id=\"%s\" type=\"%s\" x=\"%.2f\" y=\"%.2f\" incLanes=\"%s\" intLanes=\"\" shape=\"%.2f,%.2f %.2f,%.2f %.2f,%.2f %.2f,%.2f\"/>%n",
+                        junction(row, col), isTrafficLight(row, col) ? "traffic_light" : "priority", x, y, incLanes,
+                        x - 5, y - 5, x + 5, y - 5, x + 5, y + 5, x - 5, y + 5));
+                }
+            }
+            // Straight-through connections, controlled ones carry the traffic light and link index
+            for (int row = 0; row < n; row++) {
+                for (int col = 0; col < n; col++) {
+                    String[] incoming = incomingEdges(row, col, n);
+                    for (int link = 0; link < incoming.length; link++) {
+                        String to = outgoingStraight(incoming[link], row, col, n);
+                        if (to == null) {
+                            continue;
+                        }
+                        String tl = isTrafficLight(row, col)
+                                    ? String.format(" tl=\"%s\" linkIndex=\"%d\"", junction(row, col), link) : "";
+                        out.write(String.format("    <connection from=\"%s\" to=\"%s\" fromLane=\"0\" toLane=\"0\"%s dir=\"s\" state=\"%s\"/>%n",
+                                                incoming[link], to, tl, tl.isEmpty() ? "M" : "O"));
+                    }
+                }
+            }
+            out.write("</net>\n");
+        }
+        return n;
+    }
+
+    private static void writeEdge(BufferedWriter out, int fromRow, int fromCol, int toRow, int toCol, double spacing) throws IOException {
+        String id = edge(fromRow, fromCol, toRow, toCol);
+        out.write(String.format(Locale.ROOT,
+            "    <edge id=\"%s\" from=\"%s\" to=\"%s\" priority=\"-1\">%n        <lane id=\"%s_0\" index=\"0\" speed=\"13.89\" length=\"%.2f\" shape=\"%.2f,%.2f %.2f,%.2f\"/>%n    </edge>%n",
+            id, junction(fromRow, fromCol), junction(toRow, toCol), id, spacing - 10,
+            fromCol * spacing, fromRow * spacing, toCol * spacing, toRow * spacing));
+    }
+
+    private static boolean isTrafficLight(int row, int col) {
+        return row % 2 == 1 && col % 2 == 1;
+    }
+
+    private static String junction(int row, int col) {
+        return "J" + row + "_" + col;
+    }
+
+    private static String edge(int fromRow, int fromCol, int toRow, int toCol) {
+        return "E" + fromRow + "_" + fromCol + "to" + toRow + "_" + toCol;
+    }
+
+    private static String[] incomingEdges(int row, int col, int n) {
+        java.util.List<String> incoming = new java.util.ArrayList<>(4);
+        if (col > 0) incoming.add(edge(row, col - 1, row, col));
+        if (col + 1 < n) incoming.add(edge(row, col + 1, row, col));
+        if (row > 0) incoming.add(edge(row - 1, col, row, col));
+        if (row + 1 < n) incoming.add(edge(row + 1, col, row, col));
+        return incoming.toArray(new String[0]);
+    }
+
+    private static String outgoingStraight(String incoming, int row, int col, int n) {
+        if (incoming.equals(edge(row, col - 1, row, col)) && col + 1 < n) return edge(row, col, row, col + 1);
+        if (incoming.equals(edge(row, col + 1, row, col)) && col > 0) return edge(row, col, row, col - 1);
+        if (incoming.equals(edge(row - 1, col, row, col)) && row + 1 < n) return edge(row, col, row + 1, col);
+        if (incoming.equals(edge(row + 1, col, row, col)) && row > 0) return edge(row, col, row - 1, col);
+        return null;
+    }
+}
@@ -0,0 +1,131 @@
+package real_time_traffic_simulation_with_java;
+
+import static org.junit.Assert.assertEquals;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.junit.Test;
+
+import de.tudresden.sumo.objects.SumoGeometry;
+import it.polito.appeal.traci.SumoTraciConnection;
+import real_time_traffic_simulation_with_java.cores.NetFileLoader;
+import real_time_traffic_simulation_with_java.cores.NetworkTopology;
+import real_time_traffic_simulation_with_java.wrapper.FakeScenario;
+import real_time_traffic_simulation_with_java.wrapper.FakeTraciServer;
+
+/**
+ * Unit test for the two topology loaders: the net file and TraCI must give the same edges, edge indices,
+ *      lanes, junctions and traffic lights. The network is the grid of the fake TraCI server,
+ *      read once from the net file it writes and once over TraCI.
+ */
+public class NetworkTopologyLoaderTest
+{
+    /** Net files store coordinates and lengths with 2 decimals */
+    private static final double NET_FILE_PRECISION = 0.01;
+
+    @Test
+    public void netFileAndTraciGiveTheSameTopology() throws Exception
+    {
+        FakeTraciServer server = new FakeTraciServer( new FakeScenario( 6, 0, 1, 42 ), 0, 0 );
+        NetworkTopology fromFile = NetFileLoader.load( server.getNetFile() );
+        NetworkTopology fromTraci;
+        SumoTraciConnection connection = server.connect();
+        try
+        {
+            fromTraci = NetworkTopology.load( connection );
+        }
+        finally
+        {
+            connection.close();
+            server.close();
+        }
+
+        assertEquals( fromTraci.getEdgeIDList(), fromFile.getEdgeIDList() );
+        for ( int i = 0; i < fromTraci.getEdgeCount(); i++ )
+        {
+            assertEquals( i, fromFile.getEdgeIndex( fromTraci.getEdgeID( i ) ) );
+            assertEquals( fromTraci.getLaneCount( i ), fromFile.getLaneCount( i ) );
+            assertEquals( fromTraci.getLength( i ), fromFile.getLength( i ), NET_FILE_PRECISION );
+            assertEquals( fromTraci.getMaxSpeed( i ), fromFile.getMaxSpeed( i ), NET_FILE_PRECISION * 3.6 );
+            assertShapesEqual( fromTraci.getLaneShapes( i ), fromFile.getLaneShapes( i ) );
+        }
+
+        assertEquals( fromTraci.getJunctionIDList(), fromFile.getJunctionIDList() );
+        for ( int j = 0; j < fromTraci.getJunctionCount(); j++ )
+        {
+            assertShapeEquals( fromTraci.getJunctionShape( j ), fromFile.getJunctionShape( j ) );
+        }
+
+        assertEquals( fromTraci.getTlsIDList(), fromFile.getTlsIDList() );
+        for ( String tlsID : fromTraci.getTlsIDList() )
+        {
+            assertEquals( fromTraci.getTlsIndex( tlsID ), fromFile.getTlsIndex( tlsID ) );
+            assertEquals( fromTraci.getPhaseDurations( tlsID ), fromFile.getPhaseDurations( tlsID ) );
+            assertShapesEqual( fromTraci.getControlledLaneShapes( tlsID ), fromFile.getControlledLaneShapes( tlsID ) );
+        }
+    }
+
+    @Test
+    public void netFileSkipsEveryInternalEdge() throws Exception
+    {
+        Path netFile = Files.createTempFile( "internal", ".net.xml" );
+        try
+        {
+            Files.write( netFile, String.join( "\n",
+                "<net version=\"1.9\">",
+                "    <edge id=\":J0_0\" function=\"internal\">",
+                "        <lane id=\":J0_0_0\" index=\"0\" speed=\"10\" length=\"5\" shape=\"0,0 5,0\"/>",
+                "    </edge>",
+                "    <edge id=\":cluster_1_0\" function=\"internal\">",
+                "        <lane id=\":cluster_1_0_0\" index=\"0\" speed=\"10\" length=\"5\" shape=\"0,0 5,0\"/>",
+                "    </edge>",
+                "    <edge id=\"A\" from=\"J0\" to=\"J1\">",
+                "        <lane id=\"A_0\" index=\"0\" speed=\"13.89\" length=\"100.00\" shape=\"0,0 100,0\"/>",
+                "        <lane id=\"A_1\" index=\"1\" speed=\"13.89\" length=\"100.00\" shape=\"0,3.2 100,3.2\"/>",
+                "    </edge>",
+                "    <edge id=\"B\" from=\"J1\" to=\"J0\">",
+                "        <lane id=\"B_0\" index=\"0\" speed=\"8.33\" length=\"50.00\" shape=\"100,10 50,10\"/>",
+                "    </edge>",
+                "    <junction id=\"J0\" type=\"priority\" x=\"0\" y=\"0\" shape=\"-1,-1 1,-1 1,1\"/>",
+                "    <junction id=\":J0_0_0\" type=\"internal\" x=\"0\" y=\"0\" shape=\"\"/>",
+                "    <junction id=\"J1\" type=\"priority\" x=\"100\" y=\"0\" shape=\"99,-1 101,-1 101,1\"/>",
+                "</net>" ).getBytes( StandardCharsets.UTF_8 ) );
+            NetworkTopology topology = NetFileLoader.load( netFile.toString() );
+            assertEquals( List.of( "A", "B" ), topology.getEdgeIDList() );
+            assertEquals( 2, topology.getLaneCount( 0 ) );
+            assertEquals( 50, topology.getLength( 1 ), 0 );
+            assertEquals( 8.33 * 3.6, topology.getMaxSpeed( 1 ), 1e-9 );
+            assertEquals( -1, topology.getEdgeIndex( ":cluster_1_0" ) );
+            assertEquals( List.of( "J0", "J1" ), topology.getJunctionIDList() );
+        }
+        finally
+        {
+            Files.delete( netFile );
+        }
+    }
+
+    /**
+     * Private helper method: shapes are equal point by point, within the net file precision
+     */
+    private static void assertShapesEqual( List<SumoGeometry> expected, List<SumoGeometry> actual )
+    {
+        assertEquals( expected.size(), actual.size() );
+        for ( int k = 0; k < expected.size(); k++ )
+        {
+            assertShapeEquals( expected.get( k ), actual.get( k ) );
+        }
+    }
+
+    private static void assertShapeEquals( SumoGeometry expected, SumoGeometry actual )
+    {
+        assertEquals( expected.coords.size(), actual.coords.size() );
+        for ( int p = 0; p < expected.coords.size(); p++ )
+        {
+            assertEquals( expected.coords.get( p ).x, actual.coords.get( p ).x, NET_FILE_PRECISION );
+            assertEquals( expected.coords.get( p ).y, actual.coords.get( p ).y, NET_FILE_PRECISION );
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package real_time_traffic_simulation_with_java;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Test;
+
+import com.lowagie.text.Document;
+import com.lowagie.text.PageSize;
+import com.lowagie.text.pdf.PRStream;
+import com.lowagie.text.pdf.PRTokeniser;
+import com.lowagie.text.pdf.PdfContentParser;
+import com.lowagie.text.pdf.PdfName;
+import com.lowagie.text.pdf.PdfObject;
+import com.lowagie.text.pdf.PdfReader;
+import com.lowagie.text.pdf.PdfWriter;
+
+import real_time_traffic_simulation_with_java.alias.Color;
+import real_time_traffic_simulation_with_java.cores.StepSnapshot;
+import real_time_traffic_simulation_with_java.tools.AggregateTracker;
+import real_time_traffic_simulation_with_java.tools.PDFmethod.PDFChart;
+import real_time_traffic_simulation_with_java.tools.ReportData;
+import real_time_traffic_simulation_with_java.tools.ReportSummary;
+
+/**
+ * Unit test for PDFChart: the content streams of the charts are valid, no path is built or painted inside a text object.
+ */
+public class PDFChartTest
+{
+    /** Path construction and painting operators, not allowed between BT and ET */
+    private static final Set<String> PATH_OPERATORS = Set.of( "m", "l", "c", "v", "y", "h", "re",
+                                                                "S", "s", "f", "F", "f*", "B", "B*", "b", "b*", "n" );
+    private static final int STEPS = 200;
+
+    @Test
+    public void noPathOperatorInsideATextObject() throws Exception
+    {
+        PdfReader reader = new PdfReader( charts( summary() ) );
+        List<String> operators = new ArrayList<>();
+        for ( int page = 1; page <= reader.getNumberOfPages(); page++ )
+        {
+            operators.addAll( operators( reader.getPageContent( page ) ) );
+        }
+        int forms = 0;
+        for ( int i = 1; i < reader.getXrefSize(); i++ )
+        {
+            PdfObject object = reader.getPdfObject( i );
+            if ( object instanceof PRStream && PdfName.FORM.equals( ( (PRStream) object ).get( PdfName.SUBTYPE ) ) )
+            {
+                forms++;
+                operators.addAll( operators( PdfReader.getStreamBytes( (PRStream) object ) ) );
+            }
+        }
+        reader.close();
+        assertEquals( 2, forms );
+
+        boolean inText = false;
+        int textObjects = 0;
+        int paths = 0;
+        for ( String operator : operators )
+        {
+            if ( operator.equals( "BT" ) )
+            {
+                assertFalse( "nested BT", inText );
+                inText = true;
+                textObjects++;
+            }
+            else if ( operator.equals( "ET" ) )
+            {
+                assertTrue( "ET without BT", inText );
+                inText = false;
+            }
+            else if ( PATH_OPERATORS.contains( operator ) )
+            {
+                assertFalse( "path operator " + operator + " inside BT/ET", inText );
+                paths++;
+            }
+        }
+        assertFalse( inText );
+        assertTrue( textObjects > 0 );
+        assertTrue( paths > 0 );
+    }
+
+
+    /**
+     * Private helper method: operators of a content stream, in order
+     */
+    private static List<String> operators( byte[] content ) throws IOException
+    {
+        List<String> operators = new ArrayList<>();
+        PdfContentParser parser = new PdfContentParser( new PRTokeniser( content ) );
+        List<PdfObject> operands = new ArrayList<>();
+        while ( !parser.parse( operands ).isEmpty() )
+        {
+            operators.add( operands.get( operands.size() - 1 ).toString() );
+        }
+        return operators;
+    }
+
+    /**
+     * Private helper method: PDF with the vehicle count chart (all colors, legend shown) and the congested edge count chart
+     */
+    private static byte[] charts( ReportSummary summary ) throws Exception
+    {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Document document = new Document( PageSize.A4 );
+        PdfWriter writer = PdfWriter.getInstance( document, out );
+        document.open();
+        PDFChart.addVehicleCountChart( summary, document, writer, "" );
+        PDFChart.addCongestedEdgeCountChart( summary, document, writer, String.valueOf( STEPS ) );
+        document.close();
+        return out.toByteArray();
+    }
+
+    /**
+     * Private helper method: running aggregates of STEPS steps with vehicles of two colors and some congested edges
+     */
+    private static ReportSummary summary()
+    {
+        int[] colors = { Color.toRGBA( Color.RED ), Color.toRGBA( Color.GREEN ) };
+        String[] dictionary = { "E0", "E1", "E2" };
+        AggregateTracker tracker = new AggregateTracker();
+        for ( int s = 0; s < STEPS; s++ )
+        {
+            int vehicles = 5 + s % 17;
+            String[] ids = new String[vehicles];
+            int[] rgba = new int[vehicles];
+            int[] vehicleEdge = new int[vehicles];
+            for ( int i = 0; i < vehicles; i++ )
+            {
+                ids[i] = "veh" + ( s + i );
+                rgba[i] = colors[( s + i ) % colors.length];
+                vehicleEdge[i] = i % dictionary.length;
+            }
+            byte[] congestion = { (byte) ( s % 40 < 10 ? 1 : 0 ), 0, (byte) ( s % 7 == 0 ? 1 : 0 ) };
+            StepSnapshot snapshot = new StepSnapshot( s, ids, new double[vehicles], new double[vehicles], new double[vehicles],
+                                                        new double[vehicles], rgba, vehicleEdge, dictionary,
+                                                        Collections.emptyMap(), new int[3], new int[3], new double[3],
+                                                        new double[3], Collections.emptyMap() );
+            tracker.append( new ReportData( snapshot, congestion ) );
+        }
+        return tracker.snapshot();
+    }
+}
@@ -0,0 +1,169 @@
+package real_time_traffic_simulation_with_java;
+
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import real_time_traffic_simulation_with_java.alias.Color;
+import real_time_traffic_simulation_with_java.cores.StepSnapshot;
+import real_time_traffic_simulation_with_java.tools.AggregateTracker;
+import real_time_traffic_simulation_with_java.tools.PDFExportService;
+import real_time_traffic_simulation_with_java.tools.ReportData;
+
+
+/**
+ * PDF exports running in the background while the export keeps feeding the running aggregates. <br>
+ * A run of [steps] steps is fed to an {@link AggregateTracker}. A stepper thread then keeps appending steps,
+ *      while several PDF exports are submitted at once to {@link PDFExportService}, each from a snapshot of the aggregates.
+ *      The longest append of the stepper is measured before and during the exports,
+ *      and each job must cover exactly the steps of its snapshot. <br>
+ * The PDF files are written to the PDF log folder and deleted at the end. <br>
+ * Usage: PDFExportBenchmark [steps] [concurrent exports], default 10000 steps, 4 exports. <br>
+ * Plain main method harness: one warm-up export, then one measured round.
+ */
+public class PDFExportBenchmark {
+    private static final int EDGES = 500;
+    private static final int VEHICLES = 200;
+
+    public static void main(String[] args) throws Exception {
+        int steps = args.length > 0 ? Integer.parseInt(args[0]) : 10_000;
+        int exports = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+
+        Feed feed = new Feed();
+        AggregateTracker aggregates = new AggregateTracker();
+        for (int step = 0; step < steps; step++) {
+            aggregates.append(feed.step(step));
+        }
+        List<String[]> simulationData = simulationData(steps);
+        PDFExportService service = new PDFExportService();
+        List<String> files = new ArrayList<>();
+
+        // Warm-up, alone
+        long w0 = System.nanoTime();
+        files.add(service.submit(aggregates.snapshot(), steps, "bench", "", false, simulationData, job -> { })
+                            .getResult().get());
+        System.out.printf(Locale.ROOT, "%d steps, single export: %.0f ms, %,d KB%n", steps, (System.nanoTime() - w0) / 1e6,
+                            Files.size(Paths.get(files.get(0))) / 1024);
+
+        // Stepper thread: keeps appending steps, records its longest append
+        AtomicBoolean exporting = new AtomicBoolean(false);
+        AtomicBoolean stop = new AtomicBoolean(false);
+        AtomicLong maxIdleAppendNs = new AtomicLong();
+        AtomicLong maxBusyAppendNs = new AtomicLong();
+        AtomicInteger stepped = new AtomicInteger(steps);
+        Thread stepper = new Thread(() -> {
+            while (!stop.get()) {
+                ReportData data = feed.step(stepped.get());
+                long t0 = System.nanoTime();
+                aggregates.append(data);
+                long ns = System.nanoTime() - t0;
+                (exporting.get() ? maxBusyAppendNs : maxIdleAppendNs).accumulateAndGet(ns, Math::max);
+                stepped.incrementAndGet();
+            }
+        }, "stepper");
+        stepper.start();
+        Thread.sleep(500);
+
+        // Concurrent exports, each from its own snapshot
+        exporting.set(true);
+        AtomicInteger updates = new AtomicInteger();
+        List<PDFExportService.Job> jobs = new ArrayList<>();
+        List<Integer> snapshotSteps = new ArrayList<>();
+        int steppedBefore = stepped.get();
+        long t0 = System.nanoTime();
+        long maxSubmitNs = 0;
+        for (int e = 0; e < exports; e++) {
+            long s0 = System.nanoTime();
+            AggregateTracker snapshot = aggregates.snapshot();
+            jobs.add(service.submit(snapshot, snapshot.getLastStepTime(), "bench", e % 2 == 0 ? "" : "RED", e % 3 == 0,
+                                    simulationData, job -> updates.incrementAndGet()));
+            maxSubmitNs = Math.max(maxSubmitNs, System.nanoTime() - s0);
+            snapshotSteps.add(snapshot.getStepCount());
+        }
+        boolean consistent = true;
+        for (int e = 0; e < exports; e++) {
+            String file = jobs.get(e).getResult().get();
+            files.add(file);
+            consistent &= file != null && jobs.get(e).getState() == PDFExportService.State.DONE
+                            && (int) jobs.get(e).getStepTime() == snapshotSteps.get(e) - 1;
+        }
+        long t1 = System.nanoTime();
+        exporting.set(false);
+        int steppedDuring = stepped.get() - steppedBefore;
+        stop.set(true);
+        stepper.join();
+
+        System.out.printf(Locale.ROOT, "%d concurrent exports: %.0f ms, longest submit (snapshot + queue) %.2f ms, %d progress updates%n",
+                            exports, (t1 - t0) / 1e6, maxSubmitNs / 1e6, updates.get());
+        System.out.printf(Locale.ROOT, "stepper: %d steps appended meanwhile, longest append %.2f ms (%.2f ms without exports)%n",
+                            steppedDuring, maxBusyAppendNs.get() / 1e6, maxIdleAppendNs.get() / 1e6);
+        System.out.println("Every job covers the steps of its snapshot: " + consistent);
+
+        service.shutdown(10);
+        for (String file : files) {
+            if (file != null) {
+                Files.deleteIfExists(Paths.get(file));
+            }
+        }
+    }
+
+
+    /**
+     * Private helper method: engine data of the PDF, {edgeCount, tlsCount}, {exportedSimulationStep}, {edgeID, laneCount, length}...
+     */
+    private static List<String[]> simulationData(int steps) {
+        List<String[]> data = new ArrayList<>();
+        data.add(new String[]{String.valueOf(EDGES), "20"});
+        data.add(new String[]{String.format(Locale.ROOT, "%.1f", (double) steps)});
+        for (int e = 0; e < EDGES; e++) {
+            data.add(new String[]{"E" + e, String.valueOf(1 + e % 3), String.format(Locale.ROOT, "%.2f", 50.0 + e)});
+        }
+        return data;
+    }
+
+    /** Synthetic steps: a sliding window of vehicles on random edges, some of them congested */
+    private static final class Feed {
+        private final Random random = new Random(42);
+        private final String[] dictionary = new String[EDGES];
+        private final Map<String, Integer> edgeIndex = new HashMap<>();
+        private final int[] colors = {Color.toRGBA(Color.RED), Color.toRGBA(Color.BLUE), Color.toRGBA(Color.GREEN),
+                                        Color.toRGBA(Color.WHITE)};
+
+        Feed() {
+            for (int e = 0; e < EDGES; e++) {
+                dictionary[e] = "E" + e;
+                edgeIndex.put(dictionary[e], e);
+            }
+        }
+
+        ReportData step(int step) {
+            int vehicles = VEHICLES / 2 + (int) (VEHICLES / 2 * Math.abs(Math.sin(step / 500.0)));
+            String[] ids = new String[vehicles];
+            int[] rgba = new int[vehicles];
+            int[] vehicleEdge = new int[vehicles];
+            for (int i = 0; i < vehicles; i++) {
+                int vehicle = step / 4 + i;
+                ids[i] = "veh_" + vehicle;
+                rgba[i] = colors[vehicle % colors.length];
+                vehicleEdge[i] = random.nextInt(EDGES);
+            }
+            byte[] congestion = new byte[EDGES];
+            for (int e = 0; e < EDGES; e++) {
+                congestion[e] = (byte) (random.nextInt(40) == 0 ? 1 : 0);
+            }
+            return new ReportData(new StepSnapshot(step, ids, new double[vehicles], new double[vehicles], new double[vehicles],
+                                        new double[vehicles], rgba, vehicleEdge, dictionary, edgeIndex,
+                                        new int[EDGES], new int[EDGES], new double[EDGES], new double[EDGES],
+                                        Collections.emptyMap()), congestion);
+        }
+    }
+}
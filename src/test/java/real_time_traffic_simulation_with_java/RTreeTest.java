@@ -0,0 +1,135 @@
+package real_time_traffic_simulation_with_java;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import real_time_traffic_simulation_with_java.cores.RTree;
+
+/**
+ * Unit test for RTree: rectangle and nearest queries against a linear scan over the same bounds.
+ */
+public class RTreeTest
+{
+    private static final int ITEMS = 5_000;
+    private static final double EXTENT = 10_000;
+
+    @Test
+    public void queryReportsEveryOverlappingItemOnce()
+    {
+        Random random = new Random( 42 );
+        double[][] b = randomBounds( ITEMS, random );
+        RTree tree = new RTree( b[0].clone(), b[1].clone(), b[2].clone(), b[3].clone() );
+        assertEquals( ITEMS, tree.size() );
+        assertTrue( tree.getHeight() > 1 );
+
+        for ( int q = 0; q < 200; q++ )
+        {
+            double x0 = random.nextDouble() * EXTENT;
+            double y0 = random.nextDouble() * EXTENT;
+            double x1 = x0 + random.nextDouble() * 1_000;
+            double y1 = y0 + random.nextDouble() * 1_000;
+            List<Integer> reported = new ArrayList<>();
+            int count = tree.query( x0, y0, x1, y1, reported::add );
+            List<Integer> expected = new ArrayList<>();
+            for ( int i = 0; i < ITEMS; i++ )
+            {
+                if ( b[2][i] >= x0 && b[0][i] <= x1 && b[3][i] >= y0 && b[1][i] <= y1 )
+                {
+                    expected.add( i );
+                }
+            }
+            assertEquals( expected.size(), count );
+            Collections.sort( reported );
+            assertEquals( expected, reported );
+        }
+    }
+
+    @Test
+    public void nearestFindsTheClosestBoundsWithinTheMaximumDistance()
+    {
+        Random random = new Random( 7 );
+        double[][] b = randomBounds( ITEMS, random );
+        RTree tree = new RTree( b[0].clone(), b[1].clone(), b[2].clone(), b[3].clone() );
+
+        for ( int q = 0; q < 500; q++ )
+        {
+            double x = random.nextDouble() * EXTENT;
+            double y = random.nextDouble() * EXTENT;
+            double maxDistance = q % 2 == 0 ? 20 : 200;
+            int best = -1;
+            double bestDistance = maxDistance;
+            for ( int i = 0; i < ITEMS; i++ )
+            {
+                double distance = RTree.boxDistance( x, y, b[0][i], b[1][i], b[2][i], b[3][i] );
+                if ( distance <= bestDistance )
+                {
+                    bestDistance = distance;
+                    best = i;
+                }
+            }
+            int found = tree.nearest( x, y, maxDistance, null );
+            if ( best == -1 )
+            {
+                assertEquals( -1, found );
+            }
+            else
+            {
+                // Items at the same distance may be found in any order
+                assertTrue( found >= 0 );
+                assertEquals( bestDistance, RTree.boxDistance( x, y, b[0][found], b[1][found], b[2][found], b[3][found] ), 0 );
+            }
+        }
+    }
+
+    @Test
+    public void nearestUsesTheItemDistanceOfTheCaller()
+    {
+        // Two items with overlapping bounds: the exact distance decides, not the bounds
+        RTree tree = new RTree( new double[]{ 0, 0 }, new double[]{ 0, 0 },
+                                new double[]{ 100, 100 }, new double[]{ 100, 100 } );
+        RTree.ItemDistance distance = ( item, x, y ) -> item == 0 ? 50 : 10;
+        assertEquals( 1, tree.nearest( 50, 50, 100, distance ) );
+        assertEquals( -1, tree.nearest( 50, 50, 5, distance ) );
+    }
+
+    @Test
+    public void emptyTreeFindsNothing()
+    {
+        RTree tree = new RTree( new double[0], new double[0], new double[0], new double[0] );
+        assertEquals( 0, tree.size() );
+        assertEquals( 0, tree.query( -1e9, -1e9, 1e9, 1e9, i -> { } ) );
+        assertEquals( -1, tree.nearest( 0, 0, Double.MAX_VALUE, null ) );
+    }
+
+    @Test
+    public void boxDistanceIsZeroInside()
+    {
+        assertEquals( 0, RTree.boxDistance( 5, 5, 0, 0, 10, 10 ), 0 );
+        assertEquals( 5, RTree.boxDistance( 15, 5, 0, 0, 10, 10 ), 0 );
+        assertEquals( 5, RTree.boxDistance( 13, 14, 0, 0, 10, 10 ), 1e-12 );
+    }
+
+
+    /**
+     * Private helper method: {minX, minY, maxX, maxY} of small random boxes, like edges of a city
+     */
+    private static double[][] randomBounds( int n, Random random )
+    {
+        double[][] b = new double[4][n];
+        for ( int i = 0; i < n; i++ )
+        {
+            b[0][i] = random.nextDouble() * EXTENT;
+            b[1][i] = random.nextDouble() * EXTENT;
+            b[2][i] = b[0][i] + random.nextDouble() * 100;
+            b[3][i] = b[1][i] + random.nextDouble() * 100;
+        }
+        return b;
+    }
+}
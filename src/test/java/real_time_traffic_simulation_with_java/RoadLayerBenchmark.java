@@ -0,0 +1,229 @@
+package real_time_traffic_simulation_with_java;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+
+import de.tudresden.sumo.objects.SumoGeometry;
+import de.tudresden.sumo.objects.SumoPosition2D;
+import javafx.animation.AnimationTimer;
+import javafx.application.Platform;
+import javafx.scene.Group;
+import javafx.scene.Scene;
+import javafx.scene.shape.Rectangle;
+import javafx.scene.transform.Scale;
+import javafx.scene.transform.Translate;
+import javafx.stage.Stage;
+import real_time_traffic_simulation_with_java.alias.Metrics;
+import real_time_traffic_simulation_with_java.cores.EdgeData;
+import real_time_traffic_simulation_with_java.cores.JunctionData;
+import real_time_traffic_simulation_with_java.gui.mapLayer.roadLayer;
+
+
+/**
+ * Road layer viewport culling and level of detail on a generated city-scale grid network. <br>
+ * Scene graph part (no display needed, run with -Dprism.order=sw): for each zoom level (pixels per meter),
+ *      the map is panned across the network and each move re-culls the road layer. The cost of a move on the
+ *      JavaFX Application Thread (transform change + culling), the culling part alone, and the number of road nodes
+ *      left visible are printed, against the whole network visible without culling
+ *      (in the merged level of detail, the few merged paths are drawn instead). <br>
+ * JavaFX part: frame times while panning at each zoom level, with and without culling, on a shown stage.
+ *      It is skipped if the JavaFX toolkit cannot start. Without a display run it headless:
+ *      -Dglass.platform=Monocle -Dmonocle.platform=Headless -Dprism.order=sw with openjfx-monocle on the class path,
+ *      -Djavafx.animation.fullspeed=true so that frames are not held to 60 per second, and -Dheadless.geometry=1600x900-32
+ *      since the default headless screen is lower than the map panel. <br>
+ * Usage: RoadLayerBenchmark [grid size], default 100 (100 x 100 junctions, about 40k edges). <br>
+ * Plain main method harness: a warm-up pass, then one measured pass per zoom level.
+ */
+public class RoadLayerBenchmark {
+    private static final double WIDTH = Metrics.WINDOW_WIDTH - Metrics.CONTROL_PANEL_WIDTH - Metrics.DASHBOARD_WIDTH;
+    private static final double HEIGHT = Metrics.WINDOW_HEIGHT;
+    private static final double SPACING = 100;
+    private static final double[] ZOOMS = {0.05, 0.3, 0.8, 2, 8};
+    private static final int MOVES = 60;
+    private static final int FRAMES = 120;
+
+    public static void main(String[] args) throws Exception {
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : 100;
+        long t0 = System.nanoTime();
+        Network network = new Network(size);
+        roadLayer layer = new roadLayer(network.junctions, network.edges, id -> id);
+        int total = network.edges.size() + network.junctions.size();
+        System.out.printf(Locale.ROOT, "%dx%d grid: %d edges, %d junctions, built in %.0f ms (%.1f km wide)%n",
+                            size, size, network.edges.size(), network.junctions.size(), (System.nanoTime() - t0) / 1e6,
+                            network.extent() / 1000);
+
+        // Map group transformed like MapPanel, the viewport is a rectangle of the map panel size
+        Group mapGroup = new Group(layer);
+        Rectangle viewport = new Rectangle(WIDTH, HEIGHT);
+        viewport.setVisible(false);
+        new Group(viewport, mapGroup);
+        layer.bindViewport(viewport);
+        for (int round = 0; round < 2; round++) {
+            for (double zoom : ZOOMS) {
+                double[] result = pan(mapGroup, layer, network, zoom);
+                if (round == 1) {
+                    System.out.printf(Locale.ROOT, "  zoom %5.2f px/m: %-8s move %.3f ms mean (culling %.3f ms), %.3f ms max, %6d of %d road nodes visible%n",
+                                        zoom, layer.getDetail(), result[0], result[3], result[1], (int) result[2], total);
+                }
+            }
+        }
+
+        // Frame times on the JavaFX Application Thread
+        try {
+            CountDownLatch started = new CountDownLatch(1);
+            Platform.startup(started::countDown);
+            started.await();
+        } catch (RuntimeException | UnsatisfiedLinkError e) {
+            System.out.println("  JavaFX toolkit not available (" + e.getMessage() + "), frame times skipped");
+            return;
+        }
+        // Each measurement closes its stage, the toolkit must outlive it
+        Platform.setImplicitExit(false);
+        for (boolean culled : new boolean[]{false, true}) {
+            for (double zoom : ZOOMS) {
+                // A new layer each time: a layer stays bound to the viewport it was given
+                Network fresh = new Network(size);
+                roadLayer shown = new roadLayer(fresh.junctions, fresh.edges, id -> id);
+                double[] frames = frameTimes(shown, fresh, zoom, culled);
+                System.out.printf(Locale.ROOT, "  %-10s zoom %5.2f px/m: frame %.2f ms mean, %.2f ms max%n",
+                                    culled ? "culled" : "not culled", zoom, frames[0], frames[1]);
+            }
+        }
+        Platform.exit();
+    }
+
+
+    /**
+     * Private helper method: pan across the network at a zoom level,
+     *      {mean move ms, max move ms, visible road nodes, mean culling ms}
+     */
+    private static double[] pan(Group mapGroup, roadLayer layer, Network network, double zoom) {
+        long total = 0;
+        long max = 0;
+        long shown = 0;
+        long culling = 0;
+        for (int move = 0; move < MOVES; move++) {
+            double[] center = network.center(move);
+            long t0 = System.nanoTime();
+            place(mapGroup, center, zoom);
+            long ns = System.nanoTime() - t0;
+            total += ns;
+            max = Math.max(max, ns);
+            shown += layer.getShownCount();
+            // Culling alone: the same view again, nothing to show or hide
+            long t1 = System.nanoTime();
+            layer.updateView();
+            culling += System.nanoTime() - t1;
+        }
+        return new double[]{total / 1e6 / MOVES, max / 1e6, (double) shown / MOVES, culling / 1e6 / MOVES};
+    }
+
+    /**
+     * Private helper method: transform the map group so that a point of the network is at the center of the viewport
+     */
+    private static void place(Group mapGroup, double[] center, double zoom) {
+        mapGroup.getTransforms().setAll(new Translate(WIDTH / 2, HEIGHT / 2), new Scale(zoom, zoom),
+                                        new Translate(-center[0], -center[1]));
+    }
+
+    /**
+     * Private helper method: {mean, max} frame time (ms) while panning, on a shown stage
+     */
+    private static double[] frameTimes(roadLayer layer, Network network, double zoom, boolean culled) throws Exception {
+        AtomicReference<double[]> result = new AtomicReference<>();
+        CountDownLatch done = new CountDownLatch(1);
+        Platform.runLater(() -> {
+            Group mapGroup = new Group(layer);
+            Rectangle viewport = new Rectangle(WIDTH, HEIGHT);
+            viewport.setVisible(false);
+            Stage stage = new Stage();
+            stage.setScene(new Scene(new Group(viewport, mapGroup), WIDTH, HEIGHT));
+            stage.show();
+            if (culled) {
+                layer.bindViewport(viewport);
+            }
+            long[] frame = {0, 0, 0, 0};
+            new AnimationTimer() {
+                @Override
+                public void handle(long now) {
+                    if (frame[0] > 0) {
+                        long ns = now - frame[3];
+                        frame[1] += ns;
+                        frame[2] = Math.max(frame[2], ns);
+                    }
+                    frame[3] = now;
+                    if (frame[0]++ == FRAMES) {
+                        stop();
+                        stage.close();
+                        result.set(new double[]{frame[1] / 1e6 / FRAMES, frame[2] / 1e6});
+                        done.countDown();
+                        return;
+                    }
+                    place(mapGroup, network.center((int) frame[0]), zoom);
+                }
+            }.start();
+        });
+        done.await();
+        return result.get();
+    }
+
+    /** Generated grid network: junctions on a square grid, a two-way edge pair between neighbours */
+    private static final class Network {
+        private final int size;
+        private final List<EdgeData> edges = new ArrayList<>();
+        private final List<JunctionData> junctions = new ArrayList<>();
+
+        Network(int size) {
+            this.size = size;
+            for (int row = 0; row < size; row++) {
+                for (int column = 0; column < size; column++) {
+                    double x = column * SPACING;
+                    double y = row * SPACING;
+                    SumoGeometry shape = new SumoGeometry();
+                    shape.add(new SumoPosition2D(x - 8, y - 8));
+                    shape.add(new SumoPosition2D(x + 8, y - 8));
+                    shape.add(new SumoPosition2D(x + 8, y + 8));
+                    shape.add(new SumoPosition2D(x - 8, y + 8));
+                    junctions.add(new JunctionData("J" + row + "_" + column, shape));
+                    if (column + 1 < size) {
+                        addEdges(row + "_" + column + "_E", x + 8, y, x + SPACING - 8, y, 1 + (row % 3));
+                    }
+                    if (row + 1 < size) {
+                        addEdges(row + "_" + column + "_N", x, y + 8, x, y + SPACING - 8, 1 + (column % 3));
+                    }
+                }
+            }
+        }
+
+        /** Width of the network (m) */
+        double extent() {
+            return (size - 1) * SPACING;
+        }
+
+        /** A point of the pan path across the network */
+        double[] center(int move) {
+            double t = (move % MOVES) / (double) MOVES;
+            return new double[]{extent() * (0.1 + 0.8 * t), extent() * (0.5 + 0.3 * Math.sin(2 * Math.PI * t))};
+        }
+
+        private void addEdges(String id, double x0, double y0, double x1, double y1, int lanes) {
+            double nx = y0 == y1 ? 0 : 1;
+            double ny = y0 == y1 ? 1 : 0;
+            for (int direction = 0; direction < 2; direction++) {
+                double sign = direction == 0 ? 1 : -1;
+                List<SumoGeometry> laneShapes = new ArrayList<>();
+                for (int lane = 0; lane < lanes; lane++) {
+                    double offset = sign * (lane + 0.5) * Metrics.DEFAULT_LANE_WIDTH;
+                    SumoGeometry laneShape = new SumoGeometry();
+                    laneShape.add(new SumoPosition2D(x0 + nx * offset, y0 + ny * offset));
+                    laneShape.add(new SumoPosition2D(x1 + nx * offset, y1 + ny * offset));
+                    laneShapes.add(laneShape);
+                }
+                edges.add(new EdgeData(id + direction, lanes, laneShapes));
+            }
+        }
+    }
+}
@@ -0,0 +1,266 @@
+package real_time_traffic_simulation_with_java;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+import de.tudresden.sumo.objects.SumoGeometry;
+import de.tudresden.sumo.objects.SumoPosition2D;
+import javafx.animation.AnimationTimer;
+import javafx.application.Platform;
+import javafx.scene.Group;
+import javafx.scene.Node;
+import javafx.scene.Scene;
+import javafx.scene.shape.Rectangle;
+import javafx.scene.transform.Scale;
+import javafx.scene.transform.Translate;
+import javafx.stage.Stage;
+import real_time_traffic_simulation_with_java.alias.Metrics;
+import real_time_traffic_simulation_with_java.cores.EdgeData;
+import real_time_traffic_simulation_with_java.cores.JunctionData;
+import real_time_traffic_simulation_with_java.gui.mapLayer.roadLayer;
+import real_time_traffic_simulation_with_java.gui.mapLayer.roadTileLayer;
+
+
+/**
+ * Tiled road renderer on a generated city-scale grid network, against the node road layer. <br>
+ * Scene graph part (no display needed, run with -Dprism.order=sw): the main thread stands in for the JavaFX
+ *      Application Thread, rendered tiles are delivered to it through a queue. For each zoom level (pixels per meter):
+ * <ul>
+ *  <li>cold: time until every tile of the first view is rendered, tiles rendered and mean render time per tile</li>
+ *  <li>warm: the map is panned across the network, each move updates the tile views (cache hits, tiles shown,
+ *      cost of a move on the FX thread), against the same moves with the node road layer (road nodes visible)</li>
+ * </ul>
+ * Cache memory and hit rate are printed after the zoom levels, with the default cap ({@link Metrics#ROAD_TILE_CACHE_MB},
+ *      override with -Dmap.tileCacheMB=...). <br>
+ * JavaFX part: frame times while panning at each zoom level on a shown stage, tiles delivered with
+ *      {@link Platform#runLater(Runnable)} from a new tile layer, against the node road layer.
+ *      It is skipped if the JavaFX toolkit cannot start. Without a display run it headless:
+ *      -Dglass.platform=Monocle -Dmonocle.platform=Headless -Dprism.order=sw with openjfx-monocle on the class path,
+ *      -Djavafx.animation.fullspeed=true so that frames are not held to 60 per second, and -Dheadless.geometry=1600x900-32
+ *      since the default headless screen is lower than the map panel. <br>
+ * Usage: RoadTileBenchmark [grid size], default 100 (100 x 100 junctions, about 40k edges). <br>
+ * Plain main method harness: a warm-up pass, then one measured pass per zoom level.
+ */
+public class RoadTileBenchmark {
+    private static final double WIDTH = Metrics.WINDOW_WIDTH - Metrics.CONTROL_PANEL_WIDTH - Metrics.DASHBOARD_WIDTH;
+    private static final double HEIGHT = Metrics.WINDOW_HEIGHT;
+    private static final double SPACING = 100;
+    private static final double[] ZOOMS = {0.05, 0.3, 0.8, 2, 8};
+    private static final int MOVES = 60;
+    private static final int FRAMES = 120;
+
+    public static void main(String[] args) throws Exception {
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : 100;
+        Network network = new Network(size);
+        ConcurrentLinkedQueue<Runnable> deliveries = new ConcurrentLinkedQueue<>();
+        long t0 = System.nanoTime();
+        roadTileLayer tiles = new roadTileLayer(network.junctions, network.edges, id -> id, deliveries::add);
+        System.out.printf(Locale.ROOT, "%dx%d grid: %d edges, %d junctions (%.1f km wide), tile layer built in %.0f ms, %d levels%n",
+                            size, size, network.edges.size(), network.junctions.size(), network.extent() / 1000,
+                            (System.nanoTime() - t0) / 1e6, tiles.getLevelCount());
+
+        Group tileGroup = new Group(tiles);
+        Rectangle tileViewport = new Rectangle(WIDTH, HEIGHT);
+        new Group(tileViewport, tileGroup);
+        tiles.bindViewport(tileViewport);
+
+        roadLayer nodes = new roadLayer(network.junctions, network.edges, id -> id);
+        Group nodeGroup = new Group(nodes);
+        Rectangle nodeViewport = new Rectangle(WIDTH, HEIGHT);
+        new Group(nodeViewport, nodeGroup);
+        nodes.bindViewport(nodeViewport);
+
+        for (int round = 0; round < 2; round++) {
+            for (double zoom : ZOOMS) {
+                // Cold: first view of this zoom level, until all of its tiles are rendered
+                int renderedBefore = tiles.getTilesRendered();
+                long renderNanosBefore = tiles.getRenderNanos();
+                long t1 = System.nanoTime();
+                place(tileGroup, network.center(MOVES / 2), zoom);
+                drain(tiles, deliveries);
+                double coldMs = (System.nanoTime() - t1) / 1e6;
+                int rendered = tiles.getTilesRendered() - renderedBefore;
+                double perTile = rendered == 0 ? 0 : (tiles.getRenderNanos() - renderNanosBefore) / 1e6 / rendered;
+
+                // Warm: pan across the network, rendering what the pan uncovers
+                long hitsBefore = tiles.getCacheHits();
+                long missesBefore = tiles.getCacheMisses();
+                long tileNanos = 0, nodeNanos = 0, shownTiles = 0, shownNodes = 0;
+                for (int move = 0; move < MOVES; move++) {
+                    double[] center = network.center(move);
+                    long t2 = System.nanoTime();
+                    place(tileGroup, center, zoom);
+                    tileNanos += System.nanoTime() - t2;
+                    shownTiles += tiles.getShownTileCount();
+                    drain(tiles, deliveries);
+                    long t3 = System.nanoTime();
+                    place(nodeGroup, center, zoom);
+                    nodeNanos += System.nanoTime() - t3;
+                    shownNodes += nodes.getShownCount();
+                }
+                long hits = tiles.getCacheHits() - hitsBefore;
+                long misses = tiles.getCacheMisses() - missesBefore;
+                if (round == 1) {
+                    System.out.printf(Locale.ROOT, "  zoom %5.2f px/m, level %2d: cold view %6.1f ms (%3d tiles, %.2f ms/tile), "
+                                                    + "pan move %.3f ms (%4.1f tiles, hit rate %5.1f%%) vs nodes %.3f ms (%6d nodes)%n",
+                                        zoom, tiles.getLevel(), coldMs, rendered, perTile,
+                                        tileNanos / 1e6 / MOVES, (double) shownTiles / MOVES, 100.0 * hits / Math.max(1, hits + misses),
+                                        nodeNanos / 1e6 / MOVES, shownNodes / MOVES);
+                }
+            }
+        }
+        System.out.printf(Locale.ROOT, "  cache: %.1f MB of %d MB, %d tiles rendered in total, hit rate %.1f%%%n",
+                            tiles.getCacheBytes() / 1048576.0, Metrics.ROAD_TILE_CACHE_MB, tiles.getTilesRendered(),
+                            100.0 * tiles.getCacheHits() / Math.max(1, tiles.getCacheHits() + tiles.getCacheMisses()));
+        tiles.dispose();
+
+        // Frame times on the JavaFX Application Thread
+        try {
+            CountDownLatch started = new CountDownLatch(1);
+            Platform.startup(started::countDown);
+            started.await();
+        } catch (RuntimeException | UnsatisfiedLinkError e) {
+            System.out.println("  JavaFX toolkit not available (" + e.getMessage() + "), frame times skipped");
+            return;
+        }
+        // Each measurement closes its stage, the toolkit must outlive it
+        Platform.setImplicitExit(false);
+        for (double zoom : ZOOMS) {
+            // New layers each time: a layer stays bound to the viewport it was given
+            roadTileLayer shownTiles = new roadTileLayer(network.junctions, network.edges, id -> id, Platform::runLater);
+            double[] tileFrames = frameTimes(shownTiles, shownTiles::bindViewport, network, zoom);
+            shownTiles.dispose();
+            Network fresh = new Network(size);
+            roadLayer shownNodes = new roadLayer(fresh.junctions, fresh.edges, id -> id);
+            double[] nodeFrames = frameTimes(shownNodes, shownNodes::bindViewport, fresh, zoom);
+            System.out.printf(Locale.ROOT, "  zoom %5.2f px/m: frame %.2f ms mean, %.2f ms max with tiles vs %.2f ms mean, %.2f ms max with nodes%n",
+                                zoom, tileFrames[0], tileFrames[1], nodeFrames[0], nodeFrames[1]);
+        }
+        Platform.exit();
+    }
+
+
+    /**
+     * Private helper method: run tile deliveries on this thread until no tile is pending
+     */
+    private static void drain(roadTileLayer tiles, ConcurrentLinkedQueue<Runnable> deliveries) throws InterruptedException {
+        while (tiles.getPendingTileCount() > 0 || !deliveries.isEmpty()) {
+            Runnable delivery = deliveries.poll();
+            if (delivery == null) {
+                Thread.sleep(0, 200_000);
+            } else {
+                delivery.run();
+            }
+        }
+    }
+
+    /**
+     * Private helper method: transform the map group so that a point of the network is at the center of the viewport
+     */
+    private static void place(Group mapGroup, double[] center, double zoom) {
+        mapGroup.getTransforms().setAll(new Translate(WIDTH / 2, HEIGHT / 2), new Scale(zoom, zoom),
+                                        new Translate(-center[0], -center[1]));
+    }
+
+    /**
+     * Private helper method: {mean, max} frame time (ms) while panning, on a shown stage with the layer bound to a viewport
+     *      of the map panel size
+     */
+    private static double[] frameTimes(Group layer, Consumer<Node> bindViewport, Network network, double zoom) throws Exception {
+        AtomicReference<double[]> result = new AtomicReference<>();
+        CountDownLatch done = new CountDownLatch(1);
+        Platform.runLater(() -> {
+            Group mapGroup = new Group(layer);
+            Rectangle viewport = new Rectangle(WIDTH, HEIGHT);
+            viewport.setVisible(false);
+            Stage stage = new Stage();
+            stage.setScene(new Scene(new Group(viewport, mapGroup), WIDTH, HEIGHT));
+            stage.show();
+            bindViewport.accept(viewport);
+            long[] frame = {0, 0, 0, 0};
+            new AnimationTimer() {
+                @Override
+                public void handle(long now) {
+                    if (frame[0] > 0) {
+                        long ns = now - frame[3];
+                        frame[1] += ns;
+                        frame[2] = Math.max(frame[2], ns);
+                    }
+                    frame[3] = now;
+                    if (frame[0]++ == FRAMES) {
+                        stop();
+                        stage.close();
+                        result.set(new double[]{frame[1] / 1e6 / FRAMES, frame[2] / 1e6});
+                        done.countDown();
+                        return;
+                    }
+                    place(mapGroup, network.center((int) frame[0]), zoom);
+                }
+            }.start();
+        });
+        done.await();
+        return result.get();
+    }
+
+    /** Generated grid network: junctions on a square grid, a two-way edge pair between neighbours */
+    private static final class Network {
+        private final int size;
+        private final List<EdgeData> edges = new ArrayList<>();
+        private final List<JunctionData> junctions = new ArrayList<>();
+
+        Network(int size) {
+            this.size = size;
+            for (int row = 0; row < size; row++) {
+                for (int column = 0; column < size; column++) {
+                    double x = column * SPACING;
+                    double y = row * SPACING;
+                    SumoGeometry shape = new SumoGeometry();
+                    shape.add(new SumoPosition2D(x - 8, y - 8));
+                    shape.add(new SumoPosition2D(x + 8, y - 8));
+                    shape.add(new SumoPosition2D(x + 8, y + 8));
+                    shape.add(new SumoPosition2D(x - 8, y + 8));
+                    junctions.add(new JunctionData("J" + row + "_" + column, shape));
+                    if (column + 1 < size) {
+                        addEdges(row + "_" + column + "_E", x + 8, y, x + SPACING - 8, y, 1 + (row % 3));
+                    }
+                    if (row + 1 < size) {
+                        addEdges(row + "_" + column + "_N", x, y + 8, x, y + SPACING - 8, 1 + (column % 3));
+                    }
+                }
+            }
+        }
+
+        /** Width of the network (m) */
+        double extent() {
+            return (size - 1) * SPACING;
+        }
+
+        /** A point of the pan path across the network */
+        double[] center(int move) {
+            double t = (move % MOVES) / (double) MOVES;
+            return new double[]{extent() * (0.1 + 0.8 * t), extent() * (0.5 + 0.3 * Math.sin(2 * Math.PI * t))};
+        }
+
+        private void addEdges(String id, double x0, double y0, double x1, double y1, int lanes) {
+            double nx = y0 == y1 ? 0 : 1;
+            double ny = y0 == y1 ? 1 : 0;
+            for (int direction = 0; direction < 2; direction++) {
+                double sign = direction == 0 ? 1 : -1;
+                List<SumoGeometry> laneShapes = new ArrayList<>();
+                for (int lane = 0; lane < lanes; lane++) {
+                    double offset = sign * (lane + 0.5) * Metrics.DEFAULT_LANE_WIDTH;
+                    SumoGeometry laneShape = new SumoGeometry();
+                    laneShape.add(new SumoPosition2D(x0 + nx * offset, y0 + ny * offset));
+                    laneShape.add(new SumoPosition2D(x1 + nx * offset, y1 + ny * offset));
+                    laneShapes.add(laneShape);
+                }
+                edges.add(new EdgeData(id + direction, lanes, laneShapes));
+            }
+        }
+    }
+}
@@ -0,0 +1,344 @@
+package real_time_traffic_simulation_with_java;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import real_time_traffic_simulation_with_java.alias.Metrics;
+import real_time_traffic_simulation_with_java.cores.NetworkIndex;
+import real_time_traffic_simulation_with_java.cores.NetworkTopology;
+import real_time_traffic_simulation_with_java.cores.StepSnapshot;
+import real_time_traffic_simulation_with_java.cores.VehicleGrid;
+
+
+/**
+ * Spatial index against linear scans, on a generated grid network with vehicles spread over its lanes. <br>
+ * Network ({@link NetworkIndex}, R-trees): edges in a rectangle, edge closest to a point. <br>
+ * Vehicles ({@link VehicleGrid}, rebuilt every step): grid build, vehicles in a viewport rectangle (street and district
+ *      scale), vehicle closest to the cursor (picking), vehicles on one edge (edge filter). <br>
+ * Each query is timed with the index (*Index) and with a linear scan over the same primitive data (*Scan),
+ *      one query per operation, at query points cycling through a fixed random set. The results of both are
+ *      compared by RTreeTest and VehicleGridTest. <br>
+ * Usage: SpatialIndexBenchmark [JMH options], e.g. -p vehicles=20000,50000 -p size=100,
+ *      default 20000 vehicles on a 100 x 100 junction grid (39600 edges). <br>
+ * JMH benchmark: the benchmark code is generated by the annotation processor at test compile.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SpatialIndexBenchmark {
+    private static final double SPACING = 100;
+    private static final int QUERIES = 2_000;
+    private static final double STREET_WIDTH = 300;
+    private static final double DISTRICT_WIDTH = 2_000;
+    private static final double PICK_DISTANCE = Metrics.PICK_RADIUS * 10;
+
+    @Param("20000")
+    public int vehicles;
+    @Param("100")
+    public int size;
+
+    private NetworkTopology topology;
+    private NetworkIndex network;
+    private double[][] edgeBounds;
+    private StepSnapshot snapshot;
+    private VehicleGrid grid;
+    private double[] vx;
+    private double[] vy;
+    private double[] qx;
+    private double[] qy;
+    private int q;
+
+    public static void main(String[] args) throws Exception {
+        org.openjdk.jmh.Main.main(args.length > 0 ? args : new String[]{SpatialIndexBenchmark.class.getSimpleName()});
+    }
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        topology = gridNetwork(size);
+        network = new NetworkIndex(topology);
+        edgeBounds = new double[topology.getEdgeCount()][];
+        for (int e = 0; e < edgeBounds.length; e++) {
+            edgeBounds[e] = network.getEdgeBounds(e);
+        }
+
+        // Vehicles on random lanes of random edges
+        snapshot = vehiclesOnNetwork(topology, vehicles, random);
+        grid = new VehicleGrid(snapshot);
+        vx = new double[vehicles];
+        vy = new double[vehicles];
+        for (int i = 0; i < vehicles; i++) {
+            vx[i] = snapshot.getVehicleX(i);
+            vy[i] = snapshot.getVehicleY(i);
+        }
+
+        double extent = (size - 1) * SPACING;
+        qx = new double[QUERIES];
+        qy = new double[QUERIES];
+        for (int k = 0; k < QUERIES; k++) {
+            qx[k] = random.nextDouble() * extent;
+            qy[k] = random.nextDouble() * extent;
+        }
+    }
+
+
+    // ---------------------------------------------------------
+    // Vehicles
+    // ---------------------------------------------------------
+    @Benchmark
+    public VehicleGrid vehicleGridBuild() {
+        return new VehicleGrid(snapshot);
+    }
+
+    @Benchmark
+    public int vehiclesInStreetViewIndex() {
+        return vehiclesInRectangleIndex(STREET_WIDTH);
+    }
+
+    @Benchmark
+    public int vehiclesInStreetViewScan() {
+        return vehiclesInRectangleScan(STREET_WIDTH);
+    }
+
+    @Benchmark
+    public int vehiclesInDistrictViewIndex() {
+        return vehiclesInRectangleIndex(DISTRICT_WIDTH);
+    }
+
+    @Benchmark
+    public int vehiclesInDistrictViewScan() {
+        return vehiclesInRectangleScan(DISTRICT_WIDTH);
+    }
+
+    @Benchmark
+    public int nearestVehicleIndex() {
+        int k = nextQuery();
+        return grid.nearest(qx[k], qy[k], PICK_DISTANCE, null);
+    }
+
+    @Benchmark
+    public int nearestVehicleScan() {
+        int k = nextQuery();
+        int best = -1;
+        double bestSquared = PICK_DISTANCE * PICK_DISTANCE;
+        for (int i = 0; i < vehicles; i++) {
+            double squared = (vx[i] - qx[k]) * (vx[i] - qx[k]) + (vy[i] - qy[k]) * (vy[i] - qy[k]);
+            if (squared <= bestSquared) {
+                bestSquared = squared;
+                best = i;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Grid over the edge bounds, then the edge handle
+     */
+    @Benchmark
+    public int vehiclesOnEdgeIndex() {
+        int edge = nextQuery() * 7919 % edgeBounds.length;
+        double[] b = edgeBounds[edge];
+        double margin = Metrics.DEFAULT_VEHICLE_LENGTH;
+        int[] found = {0};
+        grid.query(b[0] - margin, b[1] - margin, b[2] + margin, b[3] + margin, i -> {
+            if (snapshot.getVehicleEdge(i) == edge) {
+                found[0]++;
+            }
+        });
+        return found[0];
+    }
+
+    @Benchmark
+    public int vehiclesOnEdgeScan() {
+        int edge = nextQuery() * 7919 % edgeBounds.length;
+        int found = 0;
+        for (int i = 0; i < vehicles; i++) {
+            if (snapshot.getVehicleEdge(i) == edge) {
+                found++;
+            }
+        }
+        return found;
+    }
+
+
+    // ---------------------------------------------------------
+    // Network
+    // ---------------------------------------------------------
+    @Benchmark
+    public int edgesInRectangleIndex() {
+        int k = nextQuery();
+        return network.queryEdges(qx[k], qy[k], qx[k] + 900, qy[k] + 810, e -> { });
+    }
+
+    @Benchmark
+    public int edgesInRectangleScan() {
+        int k = nextQuery();
+        int found = 0;
+        for (double[] b : edgeBounds) {
+            if (b[2] >= qx[k] && b[0] <= qx[k] + 900 && b[3] >= qy[k] && b[1] <= qy[k] + 810) {
+                found++;
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Exact distance to the lane shapes
+     */
+    @Benchmark
+    public int nearestEdgeIndex() {
+        int k = nextQuery();
+        return network.nearestEdge(qx[k], qy[k], 20);
+    }
+
+    @Benchmark
+    public int nearestEdgeScan() {
+        int k = nextQuery();
+        int best = -1;
+        double bestDistance = 20;
+        for (int e = 0; e < edgeBounds.length; e++) {
+            double distance = network.edgeDistance(e, qx[k], qy[k]);
+            if (distance <= bestDistance) {
+                bestDistance = distance;
+                best = e;
+            }
+        }
+        return best;
+    }
+
+
+    /**
+     * Private helper method: next query point
+     */
+    private int nextQuery() {
+        q = q + 1 == QUERIES ? 0 : q + 1;
+        return q;
+    }
+
+    /**
+     * Private helper method: vehicles in a viewport of the given width at the next query point, with the grid
+     */
+    private int vehiclesInRectangleIndex(double width) {
+        int k = nextQuery();
+        return grid.query(qx[k], qy[k], qx[k] + width, qy[k] + width * 0.75, i -> { });
+    }
+
+    /**
+     * Private helper method: vehicles in a viewport of the given width at the next query point, with a linear scan
+     */
+    private int vehiclesInRectangleScan(double width) {
+        int k = nextQuery();
+        double height = width * 0.75;
+        int found = 0;
+        for (int i = 0; i < vehicles; i++) {
+            if (vx[i] >= qx[k] && vx[i] <= qx[k] + width && vy[i] >= qy[k] && vy[i] <= qy[k] + height) {
+                found++;
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Private helper method: grid network, a pair of edges with 1 to 3 lanes between neighbouring junctions
+     */
+    private static NetworkTopology gridNetwork(int size) {
+        NetworkTopology.Builder builder = new NetworkTopology.Builder();
+        for (int row = 0; row < size; row++) {
+            for (int column = 0; column < size; column++) {
+                double x = column * SPACING;
+                double y = row * SPACING;
+                if (column + 1 < size) {
+                    addEdges(builder, row + "_" + column + "_E", x + 8, y, x + SPACING - 8, y, 1 + (row % 3));
+                }
+                if (row + 1 < size) {
+                    addEdges(builder, row + "_" + column + "_N", x, y + 8, x, y + SPACING - 8, 1 + (column % 3));
+                }
+            }
+        }
+        for (int row = 0; row < size; row++) {
+            for (int column = 0; column < size; column++) {
+                double x = column * SPACING;
+                double y = row * SPACING;
+                builder.addJunction("J" + row + "_" + column);
+                builder.addPoint(x - 8, y - 8);
+                builder.addPoint(x + 8, y - 8);
+                builder.addPoint(x + 8, y + 8);
+                builder.addPoint(x - 8, y + 8);
+            }
+        }
+        return builder.build("generated", 0, 0);
+    }
+
+    /**
+     * Private helper method: both directions of a straight edge, lanes offset by a lane width
+     */
+    private static void addEdges(NetworkTopology.Builder builder, String id, double x0, double y0, double x1, double y1, int lanes) {
+        double nx = y0 == y1 ? 0 : 1;
+        double ny = y0 == y1 ? 1 : 0;
+        for (int direction = 0; direction < 2; direction++) {
+            double sign = direction == 0 ? 1 : -1;
+            builder.addEdge(id + direction);
+            for (int lane = 0; lane < lanes; lane++) {
+                double offset = sign * (lane + 0.5) * Metrics.DEFAULT_LANE_WIDTH;
+                builder.addLane(Math.hypot(x1 - x0, y1 - y0), 13.89);
+                builder.addPoint(x0 + nx * offset, y0 + ny * offset);
+                builder.addPoint(x1 + nx * offset, y1 + ny * offset);
+            }
+        }
+    }
+
+    /**
+     * Private helper method: snapshot of vehicles at random places of random lanes
+     */
+    private static StepSnapshot vehiclesOnNetwork(NetworkTopology topology, int vehicles, Random random) {
+        int edgeCount = topology.getEdgeCount();
+        String[] ids = new String[vehicles];
+        double[] x = new double[vehicles];
+        double[] y = new double[vehicles];
+        double[] angle = new double[vehicles];
+        double[] speed = new double[vehicles];
+        int[] rgba = new int[vehicles];
+        int[] edge = new int[vehicles];
+        for (int i = 0; i < vehicles; i++) {
+            int e = random.nextInt(edgeCount);
+            List<de.tudresden.sumo.objects.SumoPosition2D> shape = new ArrayList<>(
+                    topology.getLaneShapes(e).get(random.nextInt(topology.getLaneCount(e))).coords);
+            double t = random.nextDouble();
+            ids[i] = "veh" + i;
+            x[i] = shape.get(0).x + t * (shape.get(1).x - shape.get(0).x);
+            y[i] = shape.get(0).y + t * (shape.get(1).y - shape.get(0).y);
+            speed[i] = 30;
+            rgba[i] = 0xffffffff;
+            edge[i] = e;
+        }
+        String[] dictionary = new String[edgeCount];
+        Map<String, Integer> edgeIndex = new HashMap<>();
+        for (int e = 0; e < edgeCount; e++) {
+            dictionary[e] = topology.getEdgeID(e);
+            edgeIndex.put(dictionary[e], e);
+        }
+        return new StepSnapshot(0, ids, x, y, angle, speed, rgba, edge, dictionary, edgeIndex,
+                                new int[edgeCount], new int[edgeCount], new double[edgeCount], new double[edgeCount],
+                                Collections.emptyMap());
+    }
+}
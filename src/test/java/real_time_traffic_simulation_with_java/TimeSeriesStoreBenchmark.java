@@ -0,0 +1,145 @@
+package real_time_traffic_simulation_with_java;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+
+import real_time_traffic_simulation_with_java.cores.EdgeMetrics;
+import real_time_traffic_simulation_with_java.cores.StepSnapshot;
+import real_time_traffic_simulation_with_java.cores.TimeSeriesStore;
+import real_time_traffic_simulation_with_java.cores.TimeSeriesStore.EdgeMetric;
+import real_time_traffic_simulation_with_java.cores.TimeSeriesStore.GlobalMetric;
+
+
+/**
+ * In-memory metric history: cost of appending a step and of the dashboard queries, memory used,
+ *      and the results of the queries against a brute-force computation over the same samples. <br>
+ * Steps of [edges] edges are appended to a {@link TimeSeriesStore} with a memory budget of [MB] megabytes,
+ *      far more steps than fit, so the ring buffers wrap many times. <br>
+ * Usage: TimeSeriesStoreBenchmark [edges] [steps] [MB], default 500 edges, 50000 steps, 16 MB. <br>
+ * Plain main method harness: appends and queries are timed once, after the buffers have wrapped.
+ */
+public class TimeSeriesStoreBenchmark {
+    private static final double WINDOW = 60;
+    private static final int QUERIES = 2_000;
+
+    public static void main(String[] args) {
+        int edges = args.length > 0 ? Integer.parseInt(args[0]) : 500;
+        int steps = args.length > 1 ? Integer.parseInt(args[1]) : 50_000;
+        int budgetMB = args.length > 2 ? Integer.parseInt(args[2]) : 16;
+
+        Random random = new Random(42);
+        String[] dictionary = new String[edges];
+        Map<String, Integer> edgeIndex = new HashMap<>();
+        double[] length = new double[edges];
+        double[] maxSpeed = new double[edges];
+        for (int e = 0; e < edges; e++) {
+            dictionary[e] = "E" + e;
+            edgeIndex.put(dictionary[e], e);
+            length[e] = 20 + random.nextDouble() * 300;
+            maxSpeed[e] = 50;
+        }
+        TimeSeriesStore store = new TimeSeriesStore(edges, budgetMB * 1024L * 1024L);
+        System.out.printf(Locale.ROOT, "%d edges, %d steps, budget %d MB: %d steps kept, %.1f MB used (%d bytes per step)%n",
+                            edges, steps, budgetMB, store.getCapacity(), store.getMemoryBytes() / 1048576.0,
+                            TimeSeriesStore.bytesPerSample(edges));
+
+        // Appending, the last window of edge 7 and of the vehicle count are kept aside for the check
+        int windowSteps = (int) WINDOW;
+        float[] edgeWindow = new float[windowSteps];
+        float[] vehicleWindow = new float[windowSteps];
+        long appendNs = 0;
+        long maxAppendNs = 0;
+        for (int step = 0; step < steps; step++) {
+            int[] vehicleCount = new int[edges];
+            int[] halting = new int[edges];
+            double[] speed = new double[edges];
+            double[] density = new double[edges];
+            for (int e = 0; e < edges; e++) {
+                vehicleCount[e] = random.nextInt(10);
+                halting[e] = random.nextInt(vehicleCount[e] + 1);
+                speed[e] = vehicleCount[e] == 0 ? maxSpeed[e] : random.nextDouble() * maxSpeed[e];
+                density[e] = vehicleCount[e] / length[e] * 1000;
+            }
+            int vehicles = 100 + random.nextInt(100);
+            double[] vehicleSpeed = new double[vehicles];
+            Arrays.fill(vehicleSpeed, 30);
+            StepSnapshot snapshot = new StepSnapshot(step, new String[vehicles], new double[vehicles], new double[vehicles],
+                                        new double[vehicles], vehicleSpeed, new int[vehicles], new int[vehicles], dictionary,
+                                        edgeIndex, vehicleCount, halting, speed, density, Collections.emptyMap());
+            EdgeMetrics metrics = new EdgeMetrics(snapshot, length, maxSpeed);
+            edgeWindow[step % windowSteps] = (float) speed[7];
+            vehicleWindow[step % windowSteps] = vehicles;
+
+            long t0 = System.nanoTime();
+            store.append(snapshot, metrics, random.nextInt(20));
+            long ns = System.nanoTime() - t0;
+            if (step >= store.getCapacity()) {
+                appendNs += ns;
+                maxAppendNs = Math.max(maxAppendNs, ns);
+            }
+        }
+        int measured = Math.max(1, steps - store.getCapacity());
+        System.out.printf(Locale.ROOT, "  append: mean %.1f us, max %.2f ms per step%n",
+                            appendNs / 1e3 / measured, maxAppendNs / 1e6);
+
+        // Queries
+        double sink = 0;
+        long t0 = System.nanoTime();
+        for (int q = 0; q < QUERIES; q++) {
+            TimeSeriesStore.WindowStats stats = store.edgeStats(EdgeMetric.AVERAGE_SPEED, q % edges, WINDOW);
+            sink += stats.mean() + stats.percentile(90);
+        }
+        long t1 = System.nanoTime();
+        for (int q = 0; q < QUERIES / 20; q++) {
+            sink += store.globalStats(GlobalMetric.VEHICLE_COUNT, 0).percentile(50);
+        }
+        long t2 = System.nanoTime();
+        for (int q = 0; q < QUERIES / 20; q++) {
+            sink += store.edgeView(EdgeMetric.DENSITY, q % edges, 0, 300).size();
+        }
+        long t3 = System.nanoTime();
+        System.out.printf(Locale.ROOT, "  edge stats, %.0f s window       : %.1f us per query%n", WINDOW, (t1 - t0) / 1e3 / QUERIES);
+        System.out.printf(Locale.ROOT, "  global stats, all %d steps  : %.1f us per query%n", store.getSize(),
+                            (t2 - t1) / 1e3 / (QUERIES / 20));
+        System.out.printf(Locale.ROOT, "  edge view, all steps -> 300 points: %.1f us per query%n", (t3 - t2) / 1e3 / (QUERIES / 20));
+
+        // Check against brute force
+        boolean correct = true;
+        correct &= matches(store.edgeStats(EdgeMetric.AVERAGE_SPEED, 7, WINDOW), edgeWindow);
+        correct &= matches(store.globalStats(GlobalMetric.VEHICLE_COUNT, WINDOW), vehicleWindow);
+        TimeSeriesStore.WindowStats all = store.edgeStats(EdgeMetric.HALTING_NUMBER, 3, 0);
+        TimeSeriesStore.SeriesView view = store.edgeView(EdgeMetric.HALTING_NUMBER, 3, 0, 300);
+        double viewMin = Double.MAX_VALUE;
+        double viewMax = -Double.MAX_VALUE;
+        for (int i = 0; i < view.size(); i++) {
+            viewMin = Math.min(viewMin, view.values()[i]);
+            viewMax = Math.max(viewMax, view.values()[i]);
+            correct &= i == 0 || view.times()[i] > view.times()[i - 1];
+        }
+        correct &= view.size() <= 300 && viewMin == all.min() && viewMax == all.max();
+        correct &= all.count() == store.getSize() && store.getLatestTime() == steps - 1;
+        System.out.println("Windowed statistics and view match brute force: " + correct + " (" + (sink != 0) + ")");
+    }
+
+
+    /**
+     * Private helper method: whether the statistics are those of the values
+     */
+    private static boolean matches(TimeSeriesStore.WindowStats stats, float[] values) {
+        float[] sorted = values.clone();
+        Arrays.sort(sorted);
+        double sum = 0;
+        for (float value : sorted) {
+            sum += value;
+        }
+        double p90 = sorted[(int) Math.floor(0.9 * (sorted.length - 1))]
+                        + (0.9 * (sorted.length - 1) - Math.floor(0.9 * (sorted.length - 1)))
+                        * (sorted[(int) Math.floor(0.9 * (sorted.length - 1)) + 1] - sorted[(int) Math.floor(0.9 * (sorted.length - 1))]);
+        return stats.count() == values.length && stats.min() == sorted[0] && stats.max() == sorted[sorted.length - 1]
+                && Math.abs(stats.mean() - sum / values.length) < 1e-6 && Math.abs(stats.percentile(90) - p90) < 1e-6;
+    }
+}
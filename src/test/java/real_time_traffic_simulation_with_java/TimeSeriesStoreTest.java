@@ -0,0 +1,184 @@
+package real_time_traffic_simulation_with_java;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Test;
+
+import real_time_traffic_simulation_with_java.cores.EdgeMetrics;
+import real_time_traffic_simulation_with_java.cores.StepSnapshot;
+import real_time_traffic_simulation_with_java.cores.TimeSeriesStore;
+import real_time_traffic_simulation_with_java.cores.TimeSeriesStore.EdgeMetric;
+import real_time_traffic_simulation_with_java.cores.TimeSeriesStore.GlobalMetric;
+import real_time_traffic_simulation_with_java.cores.TimeSeriesStore.SeriesView;
+import real_time_traffic_simulation_with_java.cores.TimeSeriesStore.WindowStats;
+
+/**
+ * Unit test for TimeSeriesStore: capacity from the memory budget, ring buffer, window statistics and downsampled views.
+ */
+public class TimeSeriesStoreTest
+{
+    /** Edge 0 has statistics, edge 1 never has */
+    private static final int EDGES = 2;
+    private static final double[] LENGTH = { 100, 100 };
+    private static final double[] MAX_SPEED = { 50, 50 };
+
+    @Test
+    public void capacityFollowsTheMemoryBudget()
+    {
+        long sample = TimeSeriesStore.bytesPerSample( EDGES );
+        assertEquals( Double.BYTES + Float.BYTES * ( 4 * EDGES + 3 ), sample );
+        TimeSeriesStore store = new TimeSeriesStore( EDGES, 10 * sample + sample / 2 );
+        assertEquals( 10, store.getCapacity() );
+        assertEquals( 10 * sample, store.getMemoryBytes() );
+        assertEquals( 2, new TimeSeriesStore( EDGES, 0 ).getCapacity() );
+    }
+
+    @Test
+    public void fullStoreOverwritesTheOldestSamples()
+    {
+        TimeSeriesStore store = store( 10 );
+        assertEquals( 0, store.getSize() );
+        assertTrue( Double.isNaN( store.getLatestTime() ) );
+        for ( int t = 1; t <= 25; t++ )
+        {
+            append( store, t, t );
+        }
+        assertEquals( 10, store.getSize() );
+        assertEquals( 25, store.getLatestTime(), 0 );
+        WindowStats all = store.globalStats( GlobalMetric.VEHICLE_COUNT, 0 );
+        assertEquals( 10, all.count() );
+        assertEquals( 16, all.min(), 0 );
+        assertEquals( 25, all.max(), 0 );
+        assertEquals( 20.5, all.mean(), 1e-9 );
+    }
+
+    @Test
+    public void windowCoversTheLastSeconds()
+    {
+        TimeSeriesStore store = store( 100 );
+        for ( int t = 1; t <= 20; t++ )
+        {
+            append( store, t * 0.5, t );
+        }
+        // Samples newer than 10 - 2 s: 8.5, 9, 9.5 and 10
+        WindowStats window = store.globalStats( GlobalMetric.VEHICLE_COUNT, 2 );
+        assertEquals( 4, window.count() );
+        assertEquals( 17, window.min(), 0 );
+        assertEquals( 20, window.max(), 0 );
+        assertEquals( 18.5, window.mean(), 1e-9 );
+
+        WindowStats speed = store.edgeStats( EdgeMetric.AVERAGE_SPEED, 0, 2 );
+        assertEquals( 4, speed.count() );
+        assertEquals( 20, speed.max(), 0 );
+    }
+
+    @Test
+    public void percentilesInterpolateBetweenRanks()
+    {
+        TimeSeriesStore store = store( 100 );
+        for ( int t = 1; t <= 5; t++ )
+        {
+            // Values 10, 20, 30, 40, 50, appended out of order
+            append( store, t, ( t * 3 % 5 + 1 ) * 10 );
+        }
+        WindowStats stats = store.globalStats( GlobalMetric.VEHICLE_COUNT, 0 );
+        assertArrayEquals( new float[]{ 10, 20, 30, 40, 50 }, stats.sorted(), 0 );
+        assertEquals( 10, stats.percentile( 0 ), 0 );
+        assertEquals( 30, stats.percentile( 50 ), 0 );
+        assertEquals( 46, stats.percentile( 90 ), 1e-9 );
+        assertEquals( 50, stats.percentile( 150 ), 0 );
+    }
+
+    @Test
+    public void missingValuesAreLeftOut()
+    {
+        TimeSeriesStore store = store( 100 );
+        for ( int t = 1; t <= 5; t++ )
+        {
+            append( store, t, t );
+        }
+        WindowStats noStats = store.edgeStats( EdgeMetric.DENSITY, 1, 0 );
+        assertEquals( 0, noStats.count() );
+        assertTrue( Double.isNaN( noStats.mean() ) );
+        assertTrue( Double.isNaN( noStats.percentile( 50 ) ) );
+        assertEquals( 0, store.edgeView( EdgeMetric.DENSITY, 1, 0, 10 ).size() );
+
+        // No vehicle: no mean speed
+        append( store, 6, 0 );
+        assertEquals( 5, store.globalStats( GlobalMetric.MEAN_SPEED, 0 ).count() );
+
+        assertEquals( 0, store.edgeStats( EdgeMetric.DENSITY, EDGES, 0 ).count() );
+        assertEquals( 0, store.edgeView( EdgeMetric.DENSITY, -1, 0, 10 ).size() );
+    }
+
+    @Test
+    public void viewKeepsEverySampleWhenThereAreFewerThanThePointsWanted()
+    {
+        TimeSeriesStore store = store( 100 );
+        for ( int t = 1; t <= 5; t++ )
+        {
+            append( store, t, 10 * t );
+        }
+        SeriesView view = store.globalView( GlobalMetric.VEHICLE_COUNT, 0, 10 );
+        assertArrayEquals( new double[]{ 1, 2, 3, 4, 5 }, view.times(), 0 );
+        assertArrayEquals( new double[]{ 10, 20, 30, 40, 50 }, view.values(), 0 );
+
+        SeriesView window = store.globalView( GlobalMetric.VEHICLE_COUNT, 2, 10 );
+        assertArrayEquals( new double[]{ 4, 5 }, window.times(), 0 );
+    }
+
+    @Test
+    public void downsampledViewKeepsTheMinimumAndMaximumOfEachBucket()
+    {
+        TimeSeriesStore store = store( 100 );
+        // Two buckets of 10 samples with a spike and a dip each
+        double[] values = new double[20];
+        Arrays.fill( values, 5 );
+        values[3] = 90;
+        values[7] = 1;
+        values[12] = 0;
+        values[18] = 70;
+        for ( int k = 0; k < values.length; k++ )
+        {
+            append( store, k + 1, (int) values[k] );
+        }
+        SeriesView view = store.globalView( GlobalMetric.VEHICLE_COUNT, 0, 4 );
+        assertArrayEquals( new double[]{ 4, 8, 13, 19 }, view.times(), 0 );
+        assertArrayEquals( new double[]{ 90, 1, 0, 70 }, view.values(), 0 );
+
+        // A flat bucket gives one point
+        SeriesView flat = store.globalView( GlobalMetric.CONGESTED_EDGE_COUNT, 0, 4 );
+        assertEquals( 2, flat.size() );
+    }
+
+
+    /**
+     * Private helper method: store keeping the given number of samples
+     */
+    private static TimeSeriesStore store( int capacity )
+    {
+        return new TimeSeriesStore( EDGES, capacity * TimeSeriesStore.bytesPerSample( EDGES ) );
+    }
+
+    /**
+     * Private helper method: append a step with the given number of vehicles, each at 30 km/h,
+     *      the average speed of edge 0 equal to the vehicle count, edge 1 without statistics
+     */
+    private static void append( TimeSeriesStore store, double time, int vehicles )
+    {
+        String[] ids = new String[vehicles];
+        double[] speed = new double[vehicles];
+        Arrays.fill( ids, "veh" );
+        Arrays.fill( speed, 30 );
+        StepSnapshot snapshot = new StepSnapshot( time, ids, new double[vehicles], new double[vehicles], new double[vehicles],
+                                                    speed, new int[vehicles], new int[vehicles], new String[0],
+                                                    Collections.emptyMap(), new int[]{ vehicles }, new int[1],
+                                                    new double[]{ vehicles }, new double[]{ 1 }, Collections.emptyMap() );
+        store.append( snapshot, new EdgeMetrics( snapshot, LENGTH, MAX_SPEED ), 0 );
+    }
+}
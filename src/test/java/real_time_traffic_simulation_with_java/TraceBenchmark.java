@@ -0,0 +1,256 @@
+package real_time_traffic_simulation_with_java;
+
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+
+import tech.tablesaw.api.Table;
+
+import real_time_traffic_simulation_with_java.alias.Color;
+import real_time_traffic_simulation_with_java.cores.StepSnapshot;
+import real_time_traffic_simulation_with_java.tools.AggregateTracker;
+import real_time_traffic_simulation_with_java.tools.CSVManager;
+import real_time_traffic_simulation_with_java.tools.ReportData;
+import real_time_traffic_simulation_with_java.tools.TraceReader;
+import real_time_traffic_simulation_with_java.tools.TraceSummary;
+import real_time_traffic_simulation_with_java.tools.TraceWriter;
+
+
+/**
+ * File size and load time of the binary trace against the CSV log on a long run. <br>
+ * The same steps are written to a CSV log ({@link CSVManager}) and to a trace ({@link TraceWriter}),
+ *      then the CSV is loaded with Tablesaw (as PDFExporter used to) and the trace is decoded with {@link TraceReader}.
+ *      The trace converted back to CSV must equal the CSV log. <br>
+ * The PDF report data is then computed both ways: the former Tablesaw queries on the CSV log,
+ *      {@link TraceSummary} on the chunk footers of the trace, and a snapshot of the running aggregates
+ *      ({@link AggregateTracker}) fed with the steps as they were written. All must give the same results. <br>
+ * Last, the heap held by the running aggregates is measured for runs of 100k and a million distinct vehicles:
+ *      their unique vehicle counts keep a map entry per vehicle ID. <br>
+ * Usage: TraceBenchmark [steps] [vehicles per step], default 3600 steps x 1000 vehicles (one hour at one step per second). <br>
+ * Plain main method harness: each load is measured once after one warm-up load.
+ */
+public class TraceBenchmark {
+    private static final int EDGES = 2_000;
+
+    public static void main(String[] args) throws Exception {
+        int steps = args.length > 0 ? Integer.parseInt(args[0]) : 3_600;
+        int vehicles = args.length > 1 ? Integer.parseInt(args[1]) : 1_000;
+
+        java.nio.file.Path folder = Files.createTempDirectory("trace");
+        String prefix = folder.toString() + java.io.File.separator;
+        try {
+            // Write both formats from the same steps
+            Random random = new Random(42);
+            String[] dictionary = new String[EDGES + 1];
+            Map<String, Integer> edgeIndex = new HashMap<>();
+            for (int e = 0; e < EDGES; e++) {
+                dictionary[e] = (e % 2 == 0 ? "E" : "-E") + e;
+                edgeIndex.put(dictionary[e], e);
+            }
+            dictionary[EDGES] = ":J0_0";
+            int[] colors = {Color.toRGBA(Color.RED), Color.toRGBA(Color.BLUE), Color.toRGBA(Color.GREEN), Color.toRGBA(Color.WHITE)};
+
+            CSVManager csvManager = new CSVManager(prefix, "log");
+            TraceWriter traceWriter = new TraceWriter(prefix + "log" + TraceWriter.EXTENSION);
+            AggregateTracker aggregates = new AggregateTracker();
+            long csvNs = 0;
+            long traceNs = 0;
+            long aggregateNs = 0;
+            for (int step = 0; step < steps; step++) {
+                // Vehicles enter and leave: a sliding window over the vehicle IDs
+                String[] ids = new String[vehicles];
+                double[] speed = new double[vehicles];
+                int[] rgba = new int[vehicles];
+                int[] vehicleEdge = new int[vehicles];
+                for (int i = 0; i < vehicles; i++) {
+                    int vehicle = step / 2 + i;
+                    ids[i] = "veh_" + vehicle;
+                    speed[i] = random.nextDouble() * 60;
+                    rgba[i] = colors[vehicle % colors.length];
+                    vehicleEdge[i] = random.nextInt(20) == 0 ? EDGES : (vehicle * 7 + step / 10) % EDGES;
+                }
+                double[] edgeAverageSpeed = new double[EDGES];
+                double[] edgeDensity = new double[EDGES];
+                byte[] congestion = new byte[EDGES];
+                for (int e = 0; e < EDGES; e++) {
+                    edgeAverageSpeed[e] = random.nextDouble() * 50;
+                    edgeDensity[e] = random.nextDouble() * 120;
+                    congestion[e] = (byte) (random.nextInt(10) == 0 ? 1 : 0);
+                }
+                ReportData data = new ReportData(new StepSnapshot(step, ids, new double[vehicles], new double[vehicles],
+                                                        new double[vehicles], speed, rgba, vehicleEdge, dictionary, edgeIndex,
+                                                        new int[EDGES], new int[EDGES], edgeAverageSpeed, edgeDensity,
+                                                        Collections.emptyMap()), congestion);
+                long t0 = System.nanoTime();
+                csvManager.updateCSV(data);
+                long t1 = System.nanoTime();
+                traceWriter.append(data);
+                long t2 = System.nanoTime();
+                aggregates.append(data);
+                long t3 = System.nanoTime();
+                csvNs += t1 - t0;
+                traceNs += t2 - t1;
+                aggregateNs += t3 - t2;
+            }
+            csvManager.closeCSV();
+            traceWriter.close();
+
+            long rows = (long) steps * vehicles;
+            long csvSize = Files.size(java.nio.file.Paths.get(csvManager.getFilePath()));
+            long traceSize = traceWriter.getBytesWritten();
+            System.out.printf(Locale.ROOT, "%d rows (%d steps x %d vehicles):%n", rows, steps, vehicles);
+            System.out.printf(Locale.ROOT, "  CSV   : %,10d KB  %5.1f bytes/row  write %,12.0f rows/s%n",
+                                csvSize / 1024, (double) csvSize / rows, rows / (csvNs / 1e9));
+            System.out.printf(Locale.ROOT, "  trace : %,10d KB  %5.1f bytes/row  write %,12.0f rows/s  (%d chunks, %.1fx smaller)%n",
+                                traceSize / 1024, (double) traceSize / rows, rows / (traceNs / 1e9),
+                                traceWriter.getChunkCount(), (double) csvSize / traceSize);
+            System.out.printf(Locale.ROOT, "  running aggregates: %,12.0f rows/s%n", rows / (aggregateNs / 1e9));
+
+            // Load: Tablesaw on the CSV, memory-mapped decode of the trace
+            double csvLoadMs = 0;
+            double traceLoadMs = 0;
+            for (int run = 0; run < 2; run++) {
+                long t0 = System.nanoTime();
+                Table table = Table.read().csv(csvManager.getFilePath());
+                long t1 = System.nanoTime();
+                long decoded = 0;
+                try (TraceReader reader = TraceReader.open(traceWriter.getFilePath())) {
+                    for (int c = 0; c < reader.getChunkCount(); c++) {
+                        decoded += reader.readChunk(c).rowCount();
+                    }
+                }
+                long t2 = System.nanoTime();
+                if (table.rowCount() != decoded) {
+                    throw new IllegalStateException("Row count mismatch: " + table.rowCount() + " vs " + decoded);
+                }
+                csvLoadMs = (t1 - t0) / 1e6;
+                traceLoadMs = (t2 - t1) / 1e6;
+            }
+            System.out.printf(Locale.ROOT, "  load  : Tablesaw CSV %.0f ms, mapped trace %.0f ms (%.1fx faster)%n",
+                                csvLoadMs, traceLoadMs, csvLoadMs / traceLoadMs);
+
+            // Offline conversion back to CSV
+            long t0 = System.nanoTime();
+            String converted;
+            try (TraceReader reader = TraceReader.open(traceWriter.getFilePath())) {
+                converted = reader.toCSV(prefix, "converted");
+            }
+            long t1 = System.nanoTime();
+            List<String> original = Files.readAllLines(java.nio.file.Paths.get(csvManager.getFilePath()));
+            List<String> fromTrace = Files.readAllLines(java.nio.file.Paths.get(converted));
+            System.out.printf(Locale.ROOT, "  trace -> CSV conversion %.0f ms, identical to the CSV log: %b%n",
+                                (t1 - t0) / 1e6, original.equals(fromTrace));
+
+            // Report data: former Tablesaw queries against the chunk footers
+            long r0 = System.nanoTime();
+            Table table = Table.read().csv(csvManager.getFilePath());
+            Table uniqueVehicles = table.selectColumns("vehicle id", "vehicle color").dropDuplicateRows();
+            Table countByColor = uniqueVehicles.countBy("vehicle color");
+            Table congestedRows = table.where(table.booleanColumn("edge congestion status").isTrue());
+            List<String> congestedEdges = new java.util.ArrayList<>(congestedRows.stringColumn("vehicle is on edge").unique().asList());
+            Collections.sort(congestedEdges);
+            Table vehiclesPerStep = table.countBy("simulation step");
+            Table congestedPerStep = congestedRows.selectColumns("simulation step", "vehicle is on edge")
+                                                    .dropDuplicateRows().countBy("simulation step");
+            for (String colorName : table.stringColumn("vehicle color").unique()) {
+                table.where(table.stringColumn("vehicle color").isEqualTo(colorName)).countBy("simulation step");
+            }
+            long r1 = System.nanoTime();
+            TraceSummary summary;
+            try (TraceReader reader = TraceReader.open(traceWriter.getFilePath())) {
+                summary = TraceSummary.read(reader);
+            }
+            for (String colorName : summary.getColorNames()) {
+                summary.getVehicleCountSeries(colorName);
+            }
+            long r2 = System.nanoTime();
+
+            boolean same = uniqueVehicles.rowCount() == summary.getUniqueVehicleCount()
+                            && congestedEdges.equals(summary.getCongestedEdgeIDs())
+                            && vehiclesPerStep.intColumn("Count").asList().equals(summary.getVehicleCountSeries(null).get(1))
+                            && congestedPerStep.intColumn("Count").asList().equals(summary.getCongestedEdgeCountSeries().get(1));
+            for (int row = 0; row < countByColor.rowCount(); row++) {
+                same &= countByColor.intColumn("Count").get(row)
+                        == summary.getUniqueVehicleCount(countByColor.stringColumn("vehicle color").get(row));
+            }
+            System.out.printf(Locale.ROOT, "  report: Tablesaw on CSV %.0f ms, trace footers %.1f ms (%.0fx faster), same results: %b%n",
+                                (r1 - r0) / 1e6, (r2 - r1) / 1e6, (double) (r1 - r0) / (r2 - r1), same);
+
+            // Report data from the running aggregates: snapshot and the same queries
+            long a0 = System.nanoTime();
+            AggregateTracker frozen = aggregates.snapshot();
+            for (String colorName : frozen.getColorNames()) {
+                frozen.getVehicleCountSeries(colorName);
+            }
+            boolean sameAggregates = frozen.getColorNames().equals(summary.getColorNames())
+                            && frozen.getUniqueVehicleCount() == summary.getUniqueVehicleCount()
+                            && frozen.getCongestedEdgeIDs().equals(summary.getCongestedEdgeIDs())
+                            && frozen.getVehicleCountSeries(null).equals(summary.getVehicleCountSeries(null))
+                            && frozen.getCongestedEdgeCountSeries().equals(summary.getCongestedEdgeCountSeries());
+            long a1 = System.nanoTime();
+            for (String colorName : summary.getColorNames()) {
+                sameAggregates &= frozen.getUniqueVehicleCount(colorName) == summary.getUniqueVehicleCount(colorName)
+                                && frozen.getVehicleCountSeries(colorName).equals(summary.getVehicleCountSeries(colorName));
+            }
+            System.out.printf(Locale.ROOT, "  report: running aggregates %.1f ms, same results as the trace footers: %b%n",
+                                (a1 - a0) / 1e6, sameAggregates);
+
+            // Memory of the running aggregates: the vehicle ID map grows with every vehicle of the run
+            for (int distinct : new int[]{100_000, 1_000_000}) {
+                long bytes = aggregateMemory(distinct, vehicles, colors);
+                System.out.printf(Locale.ROOT, "  running aggregates memory, %,9d vehicles in the run: %6.1f MB (%.0f bytes/vehicle)%n",
+                                    distinct, bytes / 1048576.0, (double) bytes / distinct);
+            }
+        } finally {
+            try (var files = Files.walk(folder)) {
+                files.sorted(Collections.reverseOrder()).forEach(p -> p.toFile().delete());
+            }
+        }
+    }
+
+
+    /**
+     * Private helper method: heap (bytes) held by running aggregates fed with steps of the given number of vehicles,
+     *      every vehicle in a single step, until the given number of distinct vehicles has been seen
+     */
+    private static long aggregateMemory(int distinct, int vehicles, int[] colors) {
+        long before = usedHeap();
+        AggregateTracker aggregates = new AggregateTracker();
+        String[] dictionary = new String[0];
+        for (int step = 0; step * vehicles < distinct; step++) {
+            String[] ids = new String[vehicles];
+            int[] rgba = new int[vehicles];
+            int[] vehicleEdge = new int[vehicles];
+            for (int i = 0; i < vehicles; i++) {
+                int vehicle = step * vehicles + i;
+                ids[i] = "veh_" + vehicle;
+                rgba[i] = colors[vehicle % colors.length];
+                vehicleEdge[i] = -1;
+            }
+            aggregates.append(new ReportData(new StepSnapshot(step, ids, new double[vehicles], new double[vehicles],
+                                                new double[vehicles], new double[vehicles], rgba, vehicleEdge, dictionary,
+                                                Collections.emptyMap(), new int[0], new int[0], new double[0], new double[0],
+                                                Collections.emptyMap()), new byte[0]));
+        }
+        long bytes = usedHeap() - before;
+        if (aggregates.getUniqueVehicleCount() != distinct) {
+            throw new IllegalStateException("Unique vehicle count mismatch: " + aggregates.getUniqueVehicleCount());
+        }
+        return bytes;
+    }
+
+    /**
+     * Private helper method: heap in use (bytes) after garbage collection
+     */
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int k = 0; k < 3; k++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,275 @@
+package real_time_traffic_simulation_with_java;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import real_time_traffic_simulation_with_java.alias.Color;
+import real_time_traffic_simulation_with_java.alias.Metrics;
+import real_time_traffic_simulation_with_java.cores.StepSnapshot;
+import real_time_traffic_simulation_with_java.tools.AggregateTracker;
+import real_time_traffic_simulation_with_java.tools.CSVManager;
+import real_time_traffic_simulation_with_java.tools.ReportData;
+import real_time_traffic_simulation_with_java.tools.ReportSummary;
+import real_time_traffic_simulation_with_java.tools.TraceReader;
+import real_time_traffic_simulation_with_java.tools.TraceSummary;
+import real_time_traffic_simulation_with_java.tools.TraceWriter;
+
+/**
+ * Unit test for the binary trace: TraceWriter, TraceReader and TraceSummary. <br>
+ * The steps are generated with vehicles departing and arriving, junction edges (no statistics, no status),
+ *      vehicles without edge and several colors, and written in many small chunks.
+ */
+public class TraceTest
+{
+    private static final int STEPS = 60;
+    private static final int EDGES = 20;
+    /** Rows after which the writer starts a new chunk, the flush interval is never reached */
+    private static final int CHUNK_ROWS = 100;
+    private static final long NO_FLUSH_INTERVAL_MS = 3_600_000;
+    private static final int[] COLORS = { Color.toRGBA( Color.RED ), Color.toRGBA( Color.GREEN ), Color.toRGBA( Color.WHITE ),
+                                            Color.toRGBA( Color.BLUE ) };
+
+    private Path folder;
+    private String prefix;
+
+    @Before
+    public void createFolder() throws IOException
+    {
+        folder = Files.createTempDirectory( "trace" );
+        prefix = folder.toString() + java.io.File.separator;
+    }
+
+    @After
+    public void deleteFolder() throws IOException
+    {
+        try ( var files = Files.walk( folder ) )
+        {
+            files.sorted( Collections.reverseOrder() ).forEach( p -> p.toFile().delete() );
+        }
+    }
+
+    @Test
+    public void traceConvertsToTheSameCSVAsTheCSVLog() throws IOException
+    {
+        List<ReportData> steps = steps( STEPS, new Random( 42 ) );
+        CSVManager csv = new CSVManager( prefix, "direct" );
+        TraceWriter writer = new TraceWriter( prefix + "run" + TraceWriter.EXTENSION, CHUNK_ROWS, NO_FLUSH_INTERVAL_MS );
+        long rows = 0;
+        for ( ReportData data : steps )
+        {
+            csv.updateCSV( data );
+            writer.append( data );
+            rows += data.getRowCount();
+        }
+        csv.closeCSV();
+        writer.close();
+        assertEquals( rows, writer.getRowCount() );
+        assertTrue( writer.getChunkCount() > 10 );
+
+        try ( TraceReader reader = TraceReader.open( writer.getFilePath() ) )
+        {
+            assertEquals( Arrays.asList( Metrics.HEADERS ), reader.getColumnNames() );
+            assertEquals( writer.getChunkCount(), reader.getChunkCount() );
+            assertEquals( rows, reader.getRowCount() );
+            String converted = reader.toCSV( prefix, "converted" );
+            assertEquals( Files.readString( Path.of( csv.getFilePath() ) ), Files.readString( Path.of( converted ) ) );
+        }
+    }
+
+    @Test
+    public void chunksDecodeToTheAppendedRows() throws IOException
+    {
+        List<ReportData> steps = steps( STEPS, new Random( 7 ) );
+        String path = write( steps );
+        try ( TraceReader reader = TraceReader.open( path ) )
+        {
+            int step = 0;
+            for ( int c = 0; c < reader.getChunkCount(); c++ )
+            {
+                TraceReader.Chunk chunk = reader.readChunk( c );
+                int row = 0;
+                for ( int s = 0; s < chunk.stepTimes().length; s++, step++ )
+                {
+                    ReportData data = steps.get( step );
+                    assertEquals( data.getTime(), chunk.stepTimes()[s], 1e-9 );
+                    assertEquals( data.getRowCount(), chunk.stepRows()[s] );
+                    for ( int i = 0; i < data.getRowCount(); i++, row++ )
+                    {
+                        int edge = data.getVehicleEdge( i );
+                        assertEquals( data.getVehicleID( i ), reader.getVehicleID( chunk.vehicles()[row] ) );
+                        assertEquals( data.getVehicleColor( i ), reader.getColor( chunk.colors()[row] ) );
+                        assertEquals( data.getVehicleSpeed( i ), chunk.speeds()[row], 0.005 );
+                        assertEquals( data.getEdgeID( edge ), edge < 0 ? "" : reader.getEdgeID( chunk.edges()[row] ) );
+                        assertEquals( data.getEdgeCongestion( edge ), chunk.congestion()[row] );
+                        assertEquals( data.getEdgeAverageSpeed( edge ), chunk.edgeSpeeds()[row], 0.005 );
+                        assertEquals( data.getEdgeDensity( edge ), chunk.edgeDensities()[row], 0.005 );
+                    }
+                }
+                assertEquals( chunk.rowCount(), row );
+            }
+            assertEquals( steps.size(), step );
+        }
+    }
+
+    @Test
+    public void footersGiveTheSameSummaryAsTheAggregateTracker() throws IOException
+    {
+        List<ReportData> steps = steps( STEPS, new Random( 3 ) );
+        AggregateTracker tracker = new AggregateTracker();
+        for ( ReportData data : steps )
+        {
+            tracker.append( data );
+        }
+        String path = write( steps );
+        try ( TraceReader reader = TraceReader.open( path ) )
+        {
+            TraceSummary summary = TraceSummary.read( reader );
+            assertSameSummary( tracker.snapshot(), summary );
+            assertEquals( STEPS, summary.getStepCount() );
+            assertEquals( 4, summary.getColorNames().size() );
+            assertTrue( summary.getCongestedEdgeIDs().size() > 0 );
+        }
+    }
+
+    @Test
+    public void incompleteLastChunkIsIgnored() throws IOException
+    {
+        List<ReportData> steps = steps( STEPS, new Random( 11 ) );
+        String path = prefix + "partial" + TraceWriter.EXTENSION;
+        TraceWriter writer = new TraceWriter( path, Integer.MAX_VALUE, NO_FLUSH_INTERVAL_MS );
+        long firstRows = 0;
+        for ( int s = 0; s < STEPS / 2; s++ )
+        {
+            writer.append( steps.get( s ) );
+            firstRows += steps.get( s ).getRowCount();
+        }
+        writer.flush();
+        long complete = Files.size( Path.of( path ) );
+        for ( int s = STEPS / 2; s < STEPS; s++ )
+        {
+            writer.append( steps.get( s ) );
+        }
+
+        // Still being written: the rows of the open chunk are not in the file yet
+        try ( TraceReader reader = TraceReader.open( path ) )
+        {
+            assertEquals( 1, reader.getChunkCount() );
+            assertEquals( firstRows, reader.getRowCount() );
+        }
+        writer.close();
+        long size = Files.size( Path.of( path ) );
+
+        // Cut inside the header of the second chunk, then inside its sections
+        for ( long cut : new long[]{ complete + 6, size - 1 } )
+        {
+            Path copy = Path.of( prefix + "cut-" + cut + TraceWriter.EXTENSION );
+            Files.copy( Path.of( path ), copy );
+            try ( FileChannel channel = FileChannel.open( copy, StandardOpenOption.WRITE ) )
+            {
+                channel.truncate( cut );
+            }
+            try ( TraceReader reader = TraceReader.open( copy.toString() ) )
+            {
+                assertEquals( 1, reader.getChunkCount() );
+                assertEquals( firstRows, reader.getRowCount() );
+                assertEquals( STEPS / 2, TraceSummary.read( reader ).getStepCount() );
+            }
+        }
+    }
+
+
+    /**
+     * Private helper method: every part of two report summaries is equal
+     */
+    private static void assertSameSummary( ReportSummary expected, ReportSummary actual )
+    {
+        assertEquals( expected.getColorNames(), actual.getColorNames() );
+        assertEquals( expected.getUniqueVehicleCount(), actual.getUniqueVehicleCount() );
+        for ( String color : expected.getColorNames() )
+        {
+            assertEquals( expected.getUniqueVehicleCount( color ), actual.getUniqueVehicleCount( color ) );
+            assertEquals( expected.getVehicleCountSeries( color ), actual.getVehicleCountSeries( color ) );
+        }
+        assertEquals( expected.getCongestedEdgeIDs(), actual.getCongestedEdgeIDs() );
+        assertEquals( expected.getStepCount(), actual.getStepCount() );
+        assertEquals( expected.getCongestedEdgeCountSeries(), actual.getCongestedEdgeCountSeries() );
+    }
+
+    /**
+     * Private helper method: trace of the steps in chunks of CHUNK_ROWS rows
+     */
+    private String write( List<ReportData> steps ) throws IOException
+    {
+        TraceWriter writer = new TraceWriter( prefix + "run" + TraceWriter.EXTENSION, CHUNK_ROWS, NO_FLUSH_INTERVAL_MS );
+        for ( ReportData data : steps )
+        {
+            writer.append( data );
+        }
+        writer.close();
+        return writer.getFilePath();
+    }
+
+    /**
+     * Private helper method: steps of about 40 running vehicles, 3 departing and 3 arriving per step. <br>
+     * Edge handles 0..EDGES-1 have statistics and a congestion status, handle EDGES is a junction edge (neither),
+     *      some vehicles have no edge (-1).
+     */
+    private static List<ReportData> steps( int count, Random random )
+    {
+        String[] dictionary = new String[EDGES + 1];
+        for ( int e = 0; e < EDGES; e++ )
+        {
+            dictionary[e] = "E" + e;
+        }
+        dictionary[EDGES] = ":J0_0";
+        List<ReportData> steps = new ArrayList<>();
+        for ( int s = 0; s < count; s++ )
+        {
+            int vehicles = 40;
+            String[] ids = new String[vehicles];
+            double[] speed = new double[vehicles];
+            int[] rgba = new int[vehicles];
+            int[] vehicleEdge = new int[vehicles];
+            for ( int i = 0; i < vehicles; i++ )
+            {
+                int k = 3 * s + i;
+                ids[i] = "veh" + k;
+                rgba[i] = COLORS[k % COLORS.length];
+                speed[i] = random.nextInt( 50 ) == 0 ? 0 : random.nextDouble() * 60;
+                int draw = random.nextInt( EDGES + 4 );
+                vehicleEdge[i] = draw < EDGES + 2 ? Math.min( draw, EDGES ) : -1;
+            }
+            double[] edgeSpeed = new double[EDGES];
+            double[] edgeDensity = new double[EDGES];
+            byte[] congestion = new byte[EDGES];
+            for ( int e = 0; e < EDGES; e++ )
+            {
+                edgeSpeed[e] = random.nextDouble() * 50;
+                edgeDensity[e] = random.nextDouble() * 120;
+                congestion[e] = (byte) ( random.nextInt( 4 ) == 0 ? 1 : 0 );
+            }
+            StepSnapshot snapshot = new StepSnapshot( s * 0.5 + 1, ids, new double[vehicles], new double[vehicles],
+                                                        new double[vehicles], speed, rgba, vehicleEdge, dictionary,
+                                                        Collections.emptyMap(), new int[EDGES], new int[EDGES],
+                                                        edgeSpeed, edgeDensity, Collections.emptyMap() );
+            steps.add( new ReportData( snapshot, congestion ) );
+        }
+        return steps;
+    }
+}
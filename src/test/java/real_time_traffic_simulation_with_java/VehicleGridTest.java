@@ -0,0 +1,152 @@
+package real_time_traffic_simulation_with_java;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import real_time_traffic_simulation_with_java.cores.StepSnapshot;
+import real_time_traffic_simulation_with_java.cores.VehicleGrid;
+
+/**
+ * Unit test for VehicleGrid: rectangle and nearest queries against a linear scan over the vehicle positions.
+ */
+public class VehicleGridTest
+{
+    private static final int VEHICLES = 10_000;
+    private static final double EXTENT = 5_000;
+
+    @Test
+    public void queryReportsTheVehiclesInsideTheRectangle()
+    {
+        Random random = new Random( 42 );
+        StepSnapshot snapshot = randomSnapshot( VEHICLES, random );
+        VehicleGrid grid = new VehicleGrid( snapshot );
+        assertEquals( snapshot, grid.getSnapshot() );
+
+        for ( int q = 0; q < 200; q++ )
+        {
+            // Rectangles also reach over the border of the grid
+            double x0 = random.nextDouble() * EXTENT * 1.2 - EXTENT * 0.1;
+            double y0 = random.nextDouble() * EXTENT * 1.2 - EXTENT * 0.1;
+            double x1 = x0 + random.nextDouble() * 800;
+            double y1 = y0 + random.nextDouble() * 600;
+            List<Integer> reported = new ArrayList<>();
+            int count = grid.query( x0, y0, x1, y1, reported::add );
+            List<Integer> expected = new ArrayList<>();
+            for ( int i = 0; i < VEHICLES; i++ )
+            {
+                double x = snapshot.getVehicleX( i );
+                double y = snapshot.getVehicleY( i );
+                if ( x >= x0 && x <= x1 && y >= y0 && y <= y1 )
+                {
+                    expected.add( i );
+                }
+            }
+            assertEquals( expected.size(), count );
+            Collections.sort( reported );
+            assertEquals( expected, reported );
+        }
+        assertEquals( 0, grid.query( 10, 10, 0, 0, i -> { } ) );
+    }
+
+    @Test
+    public void nearestFindsTheClosestVehicle()
+    {
+        Random random = new Random( 7 );
+        StepSnapshot snapshot = randomSnapshot( VEHICLES, random );
+        VehicleGrid grid = new VehicleGrid( snapshot );
+
+        for ( int q = 0; q < 500; q++ )
+        {
+            double x = random.nextDouble() * EXTENT * 1.2 - EXTENT * 0.1;
+            double y = random.nextDouble() * EXTENT * 1.2 - EXTENT * 0.1;
+            double maxDistance = q % 2 == 0 ? 5 : 100;
+            // Even vehicles only, like a vehicle filter
+            boolean filtered = q % 3 == 0;
+            int best = -1;
+            double bestDistance = maxDistance;
+            for ( int i = 0; i < VEHICLES; i++ )
+            {
+                double distance = Math.hypot( snapshot.getVehicleX( i ) - x, snapshot.getVehicleY( i ) - y );
+                if ( distance <= bestDistance && ( !filtered || i % 2 == 0 ) )
+                {
+                    bestDistance = distance;
+                    best = i;
+                }
+            }
+            int found = grid.nearest( x, y, maxDistance, filtered ? i -> i % 2 == 0 : null );
+            if ( best == -1 )
+            {
+                assertEquals( -1, found );
+            }
+            else
+            {
+                assertTrue( found >= 0 );
+                assertTrue( !filtered || found % 2 == 0 );
+                assertEquals( bestDistance, Math.hypot( snapshot.getVehicleX( found ) - x, snapshot.getVehicleY( found ) - y ), 1e-9 );
+            }
+        }
+    }
+
+    @Test
+    public void nearestSearchesCellsFurtherThanTheFirstRing()
+    {
+        // One vehicle far from the others: the rings must grow until it is reached
+        double[] x = { 0, 1_000 };
+        double[] y = { 0, 1_000 };
+        VehicleGrid grid = new VehicleGrid( snapshot( x, y ) );
+        assertEquals( 1, grid.nearest( 900, 900, 200, null ) );
+        assertEquals( -1, grid.nearest( 500, 500, 200, null ) );
+        assertEquals( 0, grid.nearest( -300, -400, 501, null ) );
+    }
+
+    @Test
+    public void emptyGridFindsNothing()
+    {
+        assertEquals( 0, VehicleGrid.EMPTY.query( -1e9, -1e9, 1e9, 1e9, i -> { } ) );
+        assertEquals( -1, VehicleGrid.EMPTY.nearest( 0, 0, Double.MAX_VALUE, null ) );
+    }
+
+
+    /**
+     * Private helper method: snapshot of vehicles at random positions, some of them at the same place
+     */
+    private static StepSnapshot randomSnapshot( int vehicles, Random random )
+    {
+        double[] x = new double[vehicles];
+        double[] y = new double[vehicles];
+        for ( int i = 0; i < vehicles; i++ )
+        {
+            if ( i > 0 && i % 100 == 0 )
+            {
+                x[i] = x[i - 1];
+                y[i] = y[i - 1];
+            }
+            else
+            {
+                x[i] = random.nextDouble() * EXTENT;
+                y[i] = random.nextDouble() * EXTENT;
+            }
+        }
+        return snapshot( x, y );
+    }
+
+    private static StepSnapshot snapshot( double[] x, double[] y )
+    {
+        int n = x.length;
+        String[] ids = new String[n];
+        for ( int i = 0; i < n; i++ )
+        {
+            ids[i] = "veh" + i;
+        }
+        return new StepSnapshot( 0, ids, x, y, new double[n], new double[n], new int[n], new int[n], new String[0],
+                                    Collections.emptyMap(), new int[0], new int[0], new double[0], new double[0],
+                                    Collections.emptyMap() );
+    }
+}
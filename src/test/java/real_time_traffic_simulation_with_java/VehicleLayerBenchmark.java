@@ -0,0 +1,135 @@
+package real_time_traffic_simulation_with_java;
+
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javafx.application.Platform;
+import javafx.scene.Group;
+import javafx.scene.Scene;
+import real_time_traffic_simulation_with_java.alias.Metrics;
+import real_time_traffic_simulation_with_java.cores.SimulationEngine;
+import real_time_traffic_simulation_with_java.cores.StepSnapshot;
+import real_time_traffic_simulation_with_java.cores.VehicleData;
+import real_time_traffic_simulation_with_java.gui.mapLayer.vehicleLayer;
+import real_time_traffic_simulation_with_java.wrapper.FakeScenario;
+import real_time_traffic_simulation_with_java.wrapper.FakeTraciServer;
+
+
+/**
+ * Vehicle layer: nodes allocated per step and JavaFX Application Thread time, full rebuild against update in place. <br>
+ * The steps come from the simulation engine connected to the {@link FakeTraciServer}, once its vehicles depart
+ *      and arrive every step, like in SUMO. Each step is drawn twice on a scene of the map panel size:
+ *      rebuilt (a new layer with one new {@link VehicleData} per vehicle, like the former MapPanel refresh)
+ *      and updated in place ({@link vehicleLayer#update(StepSnapshot)}). The nodes allocated per step and the time
+ *      of an update, CSS and layout included, are printed. <br>
+ * Needs the JavaFX toolkit, without a display run it headless:
+ *      -Dglass.platform=Monocle -Dmonocle.platform=Headless -Dprism.order=sw with openjfx-monocle on the class path. <br>
+ * Usage: VehicleLayerBenchmark [vehicles] [steps], default 5000 vehicles, 300 steps. <br>
+ * Plain main method harness: a warm-up round, then one measured round.
+ */
+public class VehicleLayerBenchmark {
+    private static final double WIDTH = Metrics.WINDOW_WIDTH - Metrics.CONTROL_PANEL_WIDTH - Metrics.DASHBOARD_WIDTH;
+    private static final double HEIGHT = Metrics.WINDOW_HEIGHT;
+    /** Fake server step from which arrived vehicles are replaced every step */
+    private static final int STEADY_STEP = 600;
+
+    public static void main(String[] args) throws Exception {
+        int vehicles = args.length > 0 ? Integer.parseInt(args[0]) : 5_000;
+        int steps = args.length > 1 ? Integer.parseInt(args[1]) : 300;
+
+        CountDownLatch started = new CountDownLatch(1);
+        Platform.startup(started::countDown);
+        started.await();
+
+        // Steps of the engine once trips end and new vehicles replace them (steady departures and arrivals)
+        int gridSize = Math.max(10, (int) Math.ceil(Math.sqrt(vehicles / 20.0)));
+        FakeTraciServer server = new FakeTraciServer(new FakeScenario(gridSize, vehicles, 1_000, 42), 0, 0);
+        SimulationEngine engine = new SimulationEngine(server);
+        while (server.getStepCount() < STEADY_STEP) {
+            engine.stepSimulation();
+        }
+        StepSnapshot[] snapshots = new StepSnapshot[steps];
+        long departed = 0;
+        for (int step = 0; step < steps; step++) {
+            engine.stepSimulation();
+            snapshots[step] = engine.getSnapshot();
+            departed += server.getDepartedVehicleCount();
+        }
+        engine.stopSimulation();
+        System.out.printf(Locale.ROOT, "%d vehicles, %d steps, %.1f departures per step%n",
+                            snapshots[0].getVehicleCount(), steps, (double) departed / steps);
+
+        AtomicReference<double[][]> result = new AtomicReference<>();
+        CountDownLatch done = new CountDownLatch(1);
+        Platform.runLater(() -> {
+            double[][] rounds = null;
+            for (int round = 0; round < 2; round++) {
+                rounds = new double[][]{rebuild(snapshots), inPlace(engine, snapshots)};
+            }
+            result.set(rounds);
+            done.countDown();
+        });
+        done.await();
+        Platform.exit();
+        double[][] ms = result.get();
+        System.out.printf(Locale.ROOT, "  full rebuild   : %9.1f nodes allocated per step, FX thread %.2f ms mean, %.2f ms max%n",
+                            ms[0][0], ms[0][1], ms[0][2]);
+        System.out.printf(Locale.ROOT, "  update in place: %9.1f nodes allocated per step, FX thread %.2f ms mean, %.2f ms max%n",
+                            ms[1][0], ms[1][1], ms[1][2]);
+    }
+
+
+    /**
+     * Private helper method: draw each step on a new layer of new shapes,
+     *      {nodes allocated per step, mean ms, max ms} on the JavaFX Application Thread
+     */
+    private static double[] rebuild(StepSnapshot[] snapshots) {
+        Group root = new Group(new Group());
+        new Scene(root, WIDTH, HEIGHT);
+        long nodes = 0;
+        long total = 0;
+        long max = 0;
+        for (StepSnapshot snapshot : snapshots) {
+            long t0 = System.nanoTime();
+            Group layer = new Group();
+            for (int i = 0; i < snapshot.getVehicleCount(); i++) {
+                layer.getChildren().add(new VehicleData(snapshot.getVehicleID(i), snapshot.getVehicleX(i),
+                                        snapshot.getVehicleY(i), snapshot.getVehicleAngle(i), snapshot.getVehicleRGBA(i)));
+            }
+            root.getChildren().set(0, layer);
+            root.applyCss();
+            root.layout();
+            long ns = System.nanoTime() - t0;
+            nodes += layer.getChildren().size();
+            total += ns;
+            max = Math.max(max, ns);
+        }
+        return new double[]{(double) nodes / snapshots.length, total / 1e6 / snapshots.length, max / 1e6};
+    }
+
+    /**
+     * Private helper method: draw each step on one persistent layer,
+     *      {nodes allocated per step, mean ms, max ms} on the JavaFX Application Thread
+     */
+    private static double[] inPlace(SimulationEngine engine, StepSnapshot[] snapshots) {
+        vehicleLayer layer = new vehicleLayer(engine);
+        Group root = new Group(layer);
+        new Scene(root, WIDTH, HEIGHT);
+        layer.update(snapshots[0]);
+        long nodes = 0;
+        long total = 0;
+        long max = 0;
+        for (StepSnapshot snapshot : snapshots) {
+            long t0 = System.nanoTime();
+            layer.update(snapshot);
+            root.applyCss();
+            root.layout();
+            long ns = System.nanoTime() - t0;
+            nodes += layer.getNodesAllocatedLastUpdate();
+            total += ns;
+            max = Math.max(max, ns);
+        }
+        return new double[]{(double) nodes / snapshots.length, total / 1e6 / snapshots.length, max / 1e6};
+    }
+}
@@ -0,0 +1,167 @@
+package real_time_traffic_simulation_with_java;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.Test;
+
+import real_time_traffic_simulation_with_java.cores.VehicleStateStore;
+
+/**
+ * Unit test for VehicleStateStore: slot interning, slot recycling and edge handles.
+ */
+public class VehicleStateStoreTest
+{
+    private static final int WHITE = 0xFFFFFFFF;
+
+    @Test
+    public void internReturnsTheSameSlotForARunningVehicle()
+    {
+        VehicleStateStore store = new VehicleStateStore( WHITE );
+        int a = store.intern( "a" );
+        int b = store.intern( "b" );
+        assertTrue( a != b );
+        assertEquals( a, store.intern( "a" ) );
+        assertEquals( a, store.slotOf( "a" ) );
+        assertEquals( 2, store.size() );
+        assertEquals( WHITE, store.getRGBA( b ) );
+        assertEquals( VehicleStateStore.NO_HANDLE, store.getEdge( b ) );
+    }
+
+    @Test
+    public void removedSlotIsRecycledWithFreshValues()
+    {
+        VehicleStateStore store = new VehicleStateStore( WHITE );
+        store.intern( "a" );
+        int b = store.intern( "b" );
+        store.intern( "c" );
+        store.setPosition( b, 10, 20 );
+        store.setAngle( b, 90 );
+        store.setSpeed( b, 50 );
+        store.setRGBA( b, 0xFF0000FF );
+        store.setEdge( b, "E1" );
+
+        store.remove( "b" );
+        assertEquals( VehicleStateStore.NO_HANDLE, store.slotOf( "b" ) );
+        assertEquals( 2, store.size() );
+
+        int d = store.intern( "d" );
+        assertEquals( b, d );
+        assertEquals( "d", store.getID( d ) );
+        assertEquals( 0, store.getX( d ), 0 );
+        assertEquals( 0, store.getY( d ), 0 );
+        assertEquals( 0, store.getAngle( d ), 0 );
+        assertEquals( 0, store.getSpeed( d ), 0 );
+        assertEquals( WHITE, store.getRGBA( d ) );
+        assertEquals( VehicleStateStore.NO_HANDLE, store.getEdge( d ) );
+    }
+
+    @Test
+    public void removingAnUnknownVehicleChangesNothing()
+    {
+        VehicleStateStore store = new VehicleStateStore( WHITE );
+        store.intern( "a" );
+        store.remove( "x" );
+        store.remove( "a" );
+        store.remove( "a" );
+        assertEquals( 0, store.size() );
+        assertEquals( 0, store.intern( "b" ) );
+    }
+
+    @Test
+    public void liveRowsStayDenseAfterRemovals()
+    {
+        VehicleStateStore store = new VehicleStateStore( WHITE );
+        for ( int i = 0; i < 10; i++ )
+        {
+            int slot = store.intern( "v" + i );
+            store.setSpeed( slot, i );
+        }
+        store.remove( "v0" );
+        store.remove( "v5" );
+        store.remove( "v9" );
+
+        int n = store.size();
+        String[] ids = new String[n];
+        double[] speeds = new double[n];
+        store.copyLive( ids, new double[n], new double[n], new double[n], speeds, new int[n], new int[n] );
+        Set<String> expected = new HashSet<>( Arrays.asList( "v1", "v2", "v3", "v4", "v6", "v7", "v8" ) );
+        assertEquals( expected, new HashSet<>( Arrays.asList( ids ) ) );
+        for ( int k = 0; k < n; k++ )
+        {
+            assertEquals( Integer.parseInt( ids[k].substring( 1 ) ), speeds[k], 0 );
+            assertEquals( ids[k], store.getID( store.liveSlot( k ) ) );
+        }
+    }
+
+    @Test
+    public void slotsDoNotGrowBeyondThePeakUnderChurn()
+    {
+        VehicleStateStore store = new VehicleStateStore( WHITE );
+        int peak = 1000;
+        ArrayDeque<String> running = new ArrayDeque<>();
+        int next = 0;
+        for ( int i = 0; i < peak; i++ )
+        {
+            running.add( "v" + next );
+            store.intern( "v" + next++ );
+        }
+        // Every round the oldest half arrives and as many vehicles depart
+        for ( int round = 0; round < 20; round++ )
+        {
+            for ( int i = 0; i < peak / 2; i++ )
+            {
+                store.remove( running.poll() );
+            }
+            for ( int i = 0; i < peak / 2; i++ )
+            {
+                running.add( "v" + next );
+                assertTrue( store.intern( "v" + next++ ) < peak );
+            }
+            assertEquals( peak, store.size() );
+        }
+    }
+
+    @Test
+    public void edgeHandlesAreStableAndKeptBySnapshots()
+    {
+        VehicleStateStore store = new VehicleStateStore( WHITE );
+        assertEquals( VehicleStateStore.NO_HANDLE, store.internEdge( "" ) );
+        assertEquals( VehicleStateStore.NO_HANDLE, store.internEdge( null ) );
+        assertEquals( "", store.getEdgeID( VehicleStateStore.NO_HANDLE ) );
+
+        int e0 = store.internEdge( "E0" );
+        assertEquals( e0, store.internEdge( "E0" ) );
+        String[] dictionary = store.getEdgeDictionary();
+        // Growing the dictionary must leave the array held by an older snapshot valid
+        for ( int i = 1; i < 1000; i++ )
+        {
+            assertEquals( i, store.internEdge( "E" + i ) );
+        }
+        assertEquals( "E0", dictionary[e0] );
+        assertEquals( "E999", store.getEdgeID( 999 ) );
+
+        int slot = store.intern( "a" );
+        store.setEdge( slot, "E42" );
+        assertEquals( 42, store.getEdge( slot ) );
+    }
+
+    @Test
+    public void removedVehicleHasNoID()
+    {
+        VehicleStateStore store = new VehicleStateStore( WHITE );
+        int slot = store.intern( "a" );
+        store.remove( "a" );
+        assertNull( store.getID( slot ) );
+        String[] ids = new String[0];
+        store.copyLive( ids, new double[0], new double[0], new double[0], new double[0], new int[0], new int[0] );
+        assertArrayEquals( new String[0], ids );
+    }
+}
@@ -0,0 +1,157 @@
+package real_time_traffic_simulation_with_java.tools;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import real_time_traffic_simulation_with_java.cores.StepSnapshot;
+
+/**
+ * Unit test for ExportSpill: segments are read back batch by batch in step order, with the rows and edge columns
+ *      of each batch. In the package of ExportSpill, which is package-private.
+ */
+public class ExportSpillTest
+{
+    private static final int EDGES = 6;
+
+    private Path folder;
+    private ExportSpill spill;
+
+    @Before
+    public void createSpill() throws IOException
+    {
+        folder = Files.createTempDirectory( "spill" );
+        spill = new ExportSpill( folder.resolve( "log" ).toString() );
+    }
+
+    @After
+    public void deleteFolder() throws IOException
+    {
+        try ( var files = Files.walk( folder ) )
+        {
+            files.sorted( Collections.reverseOrder() ).forEach( p -> p.toFile().delete() );
+        }
+    }
+
+    @Test
+    public void segmentsAreReadBackInStepOrder() throws Exception
+    {
+        assertFalse( spill.isActive() );
+        List<ReportData> written = new ArrayList<>();
+        for ( int step = 0; step < 3; step++ )
+        {
+            written.add( batch( step ) );
+            spill.append( written.get( step ) );
+        }
+        assertTrue( spill.isActive() );
+        assertTrue( spill.getBytesSpilled() > 0 );
+
+        String first = spill.seal();
+        // Batches spilled while the first segment is read back go to a new segment
+        for ( int step = 3; step < 5; step++ )
+        {
+            written.add( batch( step ) );
+            spill.append( written.get( step ) );
+        }
+        List<ReportData> read = new ArrayList<>();
+        ExportSpill.read( first, read::add );
+        assertFalse( Files.exists( Path.of( first ) ) );
+        assertTrue( spill.isActive() );
+
+        String second = spill.seal();
+        assertTrue( !second.equals( first ) );
+        ExportSpill.read( second, read::add );
+
+        // Every segment has been read back: spilling stops
+        assertNull( spill.seal() );
+        assertFalse( spill.isActive() );
+
+        assertEquals( written.size(), read.size() );
+        for ( int step = 0; step < written.size(); step++ )
+        {
+            assertSameBatch( written.get( step ), read.get( step ) );
+        }
+    }
+
+
+    /**
+     * Private helper method: same rows and, for the edges the rows use or which have a status, same edge columns
+     */
+    private static void assertSameBatch( ReportData expected, ReportData actual )
+    {
+        assertEquals( expected.getTime(), actual.getTime(), 0 );
+        assertEquals( expected.getRowCount(), actual.getRowCount() );
+        String[] expectedIDs = new String[expected.getRowCount()];
+        String[] actualIDs = new String[actual.getRowCount()];
+        for ( int i = 0; i < expected.getRowCount(); i++ )
+        {
+            expectedIDs[i] = expected.getVehicleID( i );
+            actualIDs[i] = actual.getVehicleID( i );
+            assertEquals( expected.getVehicleColor( i ), actual.getVehicleColor( i ) );
+            assertEquals( expected.getVehicleSpeed( i ), actual.getVehicleSpeed( i ), 0 );
+            assertEquals( expected.getVehicleEdge( i ), actual.getVehicleEdge( i ) );
+        }
+        assertArrayEquals( expectedIDs, actualIDs );
+        for ( int edge = -1; edge <= EDGES; edge++ )
+        {
+            assertEquals( expected.getEdgeCongestion( edge ), actual.getEdgeCongestion( edge ) );
+            assertEquals( expected.getEdgeAverageSpeed( edge ), actual.getEdgeAverageSpeed( edge ), 0 );
+            assertEquals( expected.getEdgeDensity( edge ), actual.getEdgeDensity( edge ), 0 );
+        }
+        for ( int i = 0; i < expected.getRowCount(); i++ )
+        {
+            int edge = expected.getVehicleEdge( i );
+            assertEquals( expected.getEdgeID( edge ), actual.getEdgeID( edge ) );
+        }
+    }
+
+    /**
+     * Private helper method: rows of one step, edges 0..EDGES-1 with statistics and status,
+     *      a junction edge (handle EDGES) without, a vehicle without edge
+     */
+    private static ReportData batch( int step )
+    {
+        String[] dictionary = new String[EDGES + 1];
+        double[] edgeSpeed = new double[EDGES];
+        double[] edgeDensity = new double[EDGES];
+        byte[] congestion = new byte[EDGES];
+        for ( int e = 0; e < EDGES; e++ )
+        {
+            dictionary[e] = "E" + e;
+            edgeSpeed[e] = step * 10 + e + 0.25;
+            edgeDensity[e] = step + e * 0.5;
+            congestion[e] = (byte) ( ( step + e ) % 3 == 0 ? 1 : 0 );
+        }
+        dictionary[EDGES] = ":J0_0";
+        int vehicles = 4 + step;
+        String[] ids = new String[vehicles];
+        double[] speed = new double[vehicles];
+        int[] rgba = new int[vehicles];
+        int[] vehicleEdge = new int[vehicles];
+        for ( int i = 0; i < vehicles; i++ )
+        {
+            ids[i] = "veh" + ( step + i );
+            speed[i] = step + i / 3.0;
+            rgba[i] = 0xFF0000FF + ( i << 8 );
+            vehicleEdge[i] = i == 0 ? -1 : i % ( EDGES + 1 );
+        }
+        StepSnapshot snapshot = new StepSnapshot( step + 0.5, ids, new double[vehicles], new double[vehicles],
+                                                    new double[vehicles], speed, rgba, vehicleEdge, dictionary,
+                                                    Collections.emptyMap(), new int[EDGES], new int[EDGES],
+                                                    edgeSpeed, edgeDensity, Collections.emptyMap() );
+        return new ReportData( snapshot, congestion );
+    }
+}